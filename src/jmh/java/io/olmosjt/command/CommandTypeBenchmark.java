@@ -0,0 +1,35 @@
+package io.olmosjt.command;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command token lookup on its own: the perfect-hash table against {@code valueOf} on an upper-cased,
+ * trimmed copy, for a short and a long command, a lower-case token and an unknown one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandTypeBenchmark {
+
+  @Param({"MSG", "CREATE_ROOM", "list_rooms", "FROBNICATE"})
+  public String token;
+
+  @Benchmark
+  public CommandType fromString() {
+    return CommandType.fromString(token);
+  }
+
+  @Benchmark
+  public CommandType valueOf() {
+    try {
+      return CommandType.valueOf(token.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return CommandType.UNKNOWN;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package io.olmosjt.message;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.CommandHandler;
+import io.olmosjt.room.ChatRoom;
+import io.olmosjt.room.ChatRoomManager;
+import io.olmosjt.server.ClientHandler;
+import io.olmosjt.server.ClientManager;
+import io.olmosjt.server.ServerConfig;
+import io.olmosjt.server.SinkClients;
+import io.olmosjt.user.UserRegistry;
+import io.olmosjt.util.LoggerUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link MessageDispatcher#dispatch} per routed message type, with every connected client in a
+ * single room: SYSTEM, OK and NOK go to all clients, USER to the room, and PRIVATE to one recipient
+ * and the sender. COMMAND and PING are never dispatched and are left out.
+ * <p>
+ * Logging is raised to WARN as in a loaded deployment, so the per-message INFO lines are not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageDispatcherBenchmark {
+
+  @Param({"SYSTEM", "OK", "NOK", "USER", "PRIVATE"})
+  public MessageType type;
+
+  @Param({"10", "1000"})
+  public int clients;
+
+  private MessageDispatcher dispatcher;
+  private List<ClientHandler> connected;
+  private Message message;
+  private LoggerUtil.Level previousLevel;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    previousLevel = LoggerUtil.minLevel();
+    LoggerUtil.setMinLevel(LoggerUtil.Level.WARN);
+
+    var clientManager = new ClientManager();
+    dispatcher = new MessageDispatcher(clientManager);
+    var context = new ServerContext(new UserRegistry(), clientManager,
+            dispatcher, new CommandHandler(), new ChatRoomManager(), ServerConfig.defaultConfig(), null, null, null);
+    ChatRoom room = context.roomManager().createRoom("bench");
+    connected = SinkClients.connect(context, "user", clients);
+    for (ClientHandler client : connected) {
+      client.addRoom(room);
+      room.addMember(client);
+    }
+
+    String content = "Hello everyone, this is a fairly ordinary chat line of moderate length.";
+    message = switch (type) {
+      case USER -> Message.userMsg("user0", room.getId(), content);
+      case PRIVATE -> Message.privateMsg("user0", "user1", content);
+      default -> new Message(type, "SYSTEM", null, content, Instant.now());
+    };
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    SinkClients.disconnectAll(connected);
+    LoggerUtil.setMinLevel(previousLevel);
+  }
+
+  @Benchmark
+  public void dispatch() {
+    dispatcher.dispatch(message);
+  }
+}
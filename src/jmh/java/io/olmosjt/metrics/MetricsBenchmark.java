@@ -0,0 +1,55 @@
+package io.olmosjt.metrics;
+
+import io.olmosjt.command.CommandType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cost of the hot-path instrumentation from many concurrent callers: a striped counter, a plain
+ * {@link AtomicLong} for comparison, and a histogram record, as done once per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class MetricsBenchmark {
+
+  private final Counter counter = new Counter();
+  private final AtomicLong atomic = new AtomicLong();
+  private final Histogram histogram = new Histogram();
+
+  @State(Scope.Thread)
+  public static class Values {
+    long next = 1_000;
+
+    long next() {
+      next = next * 6364136223846793005L + 1442695040888963407L;
+      return (next >>> 40) & 0xFFFFF;
+    }
+  }
+
+  @Benchmark
+  public void counter() {
+    counter.increment();
+  }
+
+  @Benchmark
+  public long atomicLong() {
+    return atomic.incrementAndGet();
+  }
+
+  @Benchmark
+  public void histogram(Values values) {
+    histogram.record(values.next());
+  }
+
+  @Benchmark
+  public void commandHandled(Values values) {
+    ServerMetrics.commandHandled(CommandType.MSG, values.next());
+  }
+}
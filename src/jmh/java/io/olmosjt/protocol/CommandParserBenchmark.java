@@ -0,0 +1,56 @@
+package io.olmosjt.protocol;
+
+import io.olmosjt.command.CommandType;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the byte-level request parser against the previous
+ * {@code String.split} + {@code CommandType.valueOf} path, for valid, payload-less and unknown commands.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandParserBenchmark {
+
+  @Param({"REQ|MSG|Hello everyone, how is the release going?", "REQ|LIST_ROOMS|", "REQ|FROBNICATE|whatever"})
+  public String line;
+
+  private byte[] bytes;
+
+  @Setup
+  public void setUp() {
+    bytes = line.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public ParsedRequest bytes() {
+    return CommandParser.parse(bytes, 0, bytes.length);
+  }
+
+  @Benchmark
+  public ParsedRequest string() {
+    return CommandParser.parse(line);
+  }
+
+  @Benchmark
+  public ParsedRequest legacySplit() {
+    String raw = new String(bytes, StandardCharsets.UTF_8);
+    if (!raw.startsWith("REQ|")) return new ParsedRequest(CommandType.UNKNOWN, raw);
+    String[] parts = raw.split("\\|", 3);
+    String cmdToken = parts.length > 1 ? parts[1] : "";
+    String payload = parts.length > 2 ? parts[2] : "";
+    CommandType type;
+    try {
+      type = CommandType.valueOf(cmdToken.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      type = CommandType.UNKNOWN;
+    }
+    return new ParsedRequest(type, payload);
+  }
+}
@@ -0,0 +1,128 @@
+package io.olmosjt.protocol;
+
+import io.olmosjt.message.Message;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures what outbound compression costs in CPU and saves in bytes.
+ * <p>
+ * For each DEFLATE level, writes a room stream of {@code messages} chat messages (default 200000) through a
+ * compressing {@link WireEncoder}, the way one connection's writer does, ending a batch every {@code batch}
+ * frames (default 8, a busy room; 1 is a quiet one, where every message pays for its own flush). Reports the
+ * compressed size relative to the plain stream and the CPU time per frame.
+ * <p>
+ * It then sends one large broadcast to {@code recipients} compressed connections (default 1000), first with every
+ * connection deflating it itself and then with the frame deflated once and shared, as
+ * {@link CompressionConfig#sharedMinBytes()} arranges.
+ * <p>
+ * Run with {@code gradle compressionTradeoff -Dmessages=200000 -Dbatch=8 -Drecipients=1000}.
+ */
+public final class CompressionTradeoff {
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static final String[] WORDS = {"the", "release", "is", "going", "fine", "build", "broke", "again",
+          "looks", "good", "to", "me", "ship", "it", "café", "why", "does", "this", "test", "flake"};
+
+  public static void main(String[] args) {
+    int messageCount = Integer.getInteger("messages", 200_000);
+    int batch = Math.max(1, Integer.getInteger("batch", 8));
+    int recipients = Integer.getInteger("recipients", 1000);
+
+    List<Frame> stream = roomStream(messageCount);
+    long plain = 0;
+    for (Frame frame : stream) plain += frame.length();
+    System.out.printf("room stream: %,d frames, %,d bytes, batches of %d%n", messageCount, plain, batch);
+    System.out.printf("%5s %12s %7s %12s%n", "level", "bytes", "ratio", "cpu/frame");
+    for (int level = 1; level <= 9; level++) {
+      // Once to warm up, once to measure.
+      writeStream(stream, batch, level);
+      long start = THREADS.getCurrentThreadCpuTime();
+      long compressed = writeStream(stream, batch, level);
+      long cpu = THREADS.getCurrentThreadCpuTime() - start;
+      System.out.printf("%5d %,12d %6.1f%% %9.0f ns%n", level, compressed, 100.0 * compressed / plain,
+              (double) cpu / messageCount);
+    }
+
+    Frame broadcast = MessageEncoder.encodeFrame(Message.userMsg("alice", 100, String.join(" ", stream.subList(0, 60)
+            .stream().map(frame -> frame.message().content()).toList())));
+    System.out.printf("%nbroadcast of %,d bytes to %,d compressed connections:%n", broadcast.length(), recipients);
+    for (boolean shared : new boolean[]{false, true}) {
+      CompressionConfig config = new CompressionConfig(true, 6, shared ? 1024 : Integer.MAX_VALUE);
+      fanOut(MessageEncoder.encodeFrame(broadcast.message()), connections(recipients, config));
+      List<WireEncoder> connections = connections(recipients, config);
+      long start = THREADS.getCurrentThreadCpuTime();
+      long bytes = fanOut(MessageEncoder.encodeFrame(broadcast.message()), connections);
+      long cpu = THREADS.getCurrentThreadCpuTime() - start;
+      System.out.printf("  %-14s %,10d bytes per connection  %,8.1f us cpu%n",
+              shared ? "deflated once" : "per connection", bytes / recipients, cpu / 1000.0);
+    }
+  }
+
+  private static long writeStream(List<Frame> stream, int batch, int level) {
+    WireEncoder wire = compressing(new CompressionConfig(true, level, 1024));
+    long bytes = 0;
+    for (int i = 0; i < stream.size(); i++) {
+      Frame out = wire.encode(stream.get(i));
+      if (out != null) bytes += out.length();
+      if ((i + 1) % batch == 0) bytes += lengthOf(wire.endBatch());
+    }
+    bytes += lengthOf(wire.endBatch());
+    wire.close();
+    return bytes;
+  }
+
+  /**
+   * @return Compressing encoders that each already wrote some chat, so their deflaters have a window to reset.
+   */
+  private static List<WireEncoder> connections(int count, CompressionConfig config) {
+    Frame chat = MessageEncoder.encodeFrame(Message.userMsg("bob", 100, "looks good to me, ship it"));
+    List<WireEncoder> connections = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      WireEncoder wire = compressing(config);
+      wire.encode(chat);
+      wire.endBatch();
+      connections.add(wire);
+    }
+    return connections;
+  }
+
+  private static long fanOut(Frame frame, List<WireEncoder> connections) {
+    long bytes = 0;
+    for (WireEncoder wire : connections) {
+      Frame out = wire.encode(frame);
+      if (out != null) bytes += out.length();
+      bytes += lengthOf(wire.endBatch());
+      wire.close();
+    }
+    return bytes;
+  }
+
+  private static WireEncoder compressing(CompressionConfig config) {
+    WireEncoder wire = new WireEncoder();
+    wire.encode(MessageEncoder.encodeFrame(Message.serverOk(null, "Compression on.")).startingCompression(config));
+    return wire;
+  }
+
+  private static int lengthOf(Frame frame) {
+    return frame == null ? 0 : frame.length();
+  }
+
+  private static List<Frame> roomStream(int count) {
+    Random random = new Random(42);
+    List<Frame> frames = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      StringBuilder content = new StringBuilder();
+      int words = 3 + random.nextInt(12);
+      for (int w = 0; w < words; w++) {
+        if (w > 0) content.append(' ');
+        content.append(WORDS[random.nextInt(WORDS.length)]);
+      }
+      frames.add(MessageEncoder.encodeFrame(Message.userMsg("user" + random.nextInt(50), 100, content.toString())));
+    }
+    return frames;
+  }
+}
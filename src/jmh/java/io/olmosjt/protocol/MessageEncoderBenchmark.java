@@ -0,0 +1,50 @@
+package io.olmosjt.protocol;
+
+import io.olmosjt.message.Message;
+import io.olmosjt.message.MessageType;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding one message for the wire: the pipe-delimited string alone and the full UTF-8 {@link Frame},
+ * per message type, with a room recipient where the type has one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageEncoderBenchmark {
+
+  @Param
+  public MessageType type;
+
+  @Param({"Hello everyone, how is the release going?", "Grüße aus München — café ☕"})
+  public String content;
+
+  private Message message;
+
+  @Setup
+  public void setUp() {
+    String recipient = switch (type) {
+      case USER -> "#100";
+      case PRIVATE, OK, NOK -> "bob";
+      default -> null;
+    };
+    String sender = type == MessageType.USER || type == MessageType.PRIVATE ? "alice" : "SYSTEM";
+    message = new Message(type, sender, recipient, content, Instant.now());
+  }
+
+  @Benchmark
+  public String encode() {
+    return MessageEncoder.encode(message);
+  }
+
+  @Benchmark
+  public Frame encodeFrame() {
+    return MessageEncoder.encodeFrame(message);
+  }
+}
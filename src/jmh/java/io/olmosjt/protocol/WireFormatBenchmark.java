@@ -0,0 +1,113 @@
+package io.olmosjt.protocol;
+
+import io.olmosjt.command.CommandType;
+import io.olmosjt.message.Message;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The text protocol against the binary one, in both directions: encoding a room message and decoding it
+ * as a client would, and parsing a MSG request on the server.
+ * <p>
+ * The client-side decoders here are minimal reference implementations: the text one splits the line into
+ * its four fields, the binary one reads the varints and turns the same fields into strings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+  @Param({"Hello everyone, how is the release going?", "Grüße aus München — café ☕"})
+  public String content;
+
+  private Message message;
+  private int senderId;
+  private byte[] textLine;
+  private byte[] binaryRecord;
+  private byte[] textRequest;
+  private byte[] binaryRequestBody;
+
+  @Setup
+  public void setUp() {
+    message = Message.userMsg("alice", 100, content);
+    senderId = SenderIds.intern("alice").id();
+    textLine = MessageEncoder.encode(message).getBytes(StandardCharsets.UTF_8);
+    binaryRecord = BinaryCodec.encode(message, senderId);
+    textRequest = ("REQ|MSG|" + content).getBytes(StandardCharsets.UTF_8);
+    byte[] request = BinaryCodec.encodeRequest(CommandType.MSG, content);
+    int prefix = BinaryCodec.varintSize(request.length - 1);
+    binaryRequestBody = Arrays.copyOfRange(request, prefix, request.length);
+  }
+
+  @Benchmark
+  public Frame encodeText() {
+    return MessageEncoder.encodeFrame(message);
+  }
+
+  @Benchmark
+  public byte[] encodeBinary() {
+    return BinaryCodec.encode(message, senderId);
+  }
+
+  @Benchmark
+  public ParsedRequest parseRequestText() {
+    return CommandParser.parse(textRequest, 0, textRequest.length);
+  }
+
+  @Benchmark
+  public ParsedRequest parseRequestBinary() {
+    return BinaryCodec.parseRequest(binaryRequestBody, 0, binaryRequestBody.length);
+  }
+
+  @Benchmark
+  public void decodeText(Blackhole bh) {
+    byte[] b = textLine;
+    int p1 = indexOf(b, 0);
+    int p2 = indexOf(b, p1 + 1);
+    int p3 = indexOf(b, p2 + 1);
+    bh.consume(new String(b, 0, p1, StandardCharsets.UTF_8));
+    bh.consume(new String(b, p1 + 1, p2 - p1 - 1, StandardCharsets.UTF_8));
+    bh.consume(new String(b, p2 + 1, p3 - p2 - 1, StandardCharsets.UTF_8));
+    bh.consume(new String(b, p3 + 1, b.length - p3 - 1, StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public void decodeBinary(Blackhole bh) {
+    byte[] b = binaryRecord;
+    int[] pos = {0};
+    int length = readVarint(b, pos);
+    int end = pos[0] + length;
+    bh.consume(b[pos[0]++]);
+    bh.consume(readVarint(b, pos));
+    int recipientLength = readVarint(b, pos);
+    bh.consume(new String(b, pos[0], recipientLength, StandardCharsets.UTF_8));
+    pos[0] += recipientLength;
+    bh.consume(new String(b, pos[0], end - pos[0], StandardCharsets.UTF_8));
+  }
+
+  private static int indexOf(byte[] b, int from) {
+    for (int i = from; i < b.length; i++) {
+      if (b[i] == '|') return i;
+    }
+    return b.length;
+  }
+
+  private static int readVarint(byte[] b, int[] pos) {
+    int value = 0;
+    int shift = 0;
+    int x;
+    do {
+      x = b[pos[0]++];
+      value |= (x & 0x7F) << shift;
+      shift += 7;
+    } while ((x & 0x80) != 0);
+    return value;
+  }
+}
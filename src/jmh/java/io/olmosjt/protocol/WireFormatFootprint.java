@@ -0,0 +1,58 @@
+package io.olmosjt.protocol;
+
+import io.olmosjt.message.Message;
+
+import java.util.Random;
+
+/**
+ * Reports the bytes a client receives in each wire format.
+ * <p>
+ * Prints the size of a few typical frames in both formats, then replays a room stream of {@code messages}
+ * chat messages (default 100000) from {@code senders} users (default 50) through one connection's
+ * {@link WireEncoder} per format, so the binary total includes the sender definitions it sends along the way.
+ * <p>
+ * Run with {@code gradle wireFormatFootprint -Dmessages=100000 -Dsenders=50}.
+ */
+public final class WireFormatFootprint {
+  private static final String[] WORDS = {"the", "release", "is", "going", "fine", "build", "broke", "again",
+          "looks", "good", "to", "me", "ship", "it", "café", "why", "does", "this", "test", "flake"};
+
+  public static void main(String[] args) {
+    int messageCount = Integer.getInteger("messages", 100_000);
+    int senderCount = Integer.getInteger("senders", 50);
+
+    System.out.printf("%-16s %6s %6s%n", "frame", "text", "binary");
+    sample("room message", Message.userMsg("alice", 100, "Hello everyone, how is the release going?"));
+    sample("private message", Message.privateMsg("alice", "bob", "lunch?"));
+    sample("join notice", Message.serverOk("bob", "'alice' has joined 'general' (#100)."));
+    sample("ping", Message.ping("lz8k2c1x"));
+
+    Random random = new Random(42);
+    WireEncoder text = new WireEncoder();
+    WireEncoder binary = new WireEncoder();
+    binary.encode(MessageEncoder.encodeFrame(Message.serverOk(null, "Protocol binary.")).switchingTo(WireFormat.BINARY));
+    long textBytes = 0;
+    long binaryBytes = 0;
+    for (int i = 0; i < messageCount; i++) {
+      StringBuilder content = new StringBuilder();
+      int words = 3 + random.nextInt(12);
+      for (int w = 0; w < words; w++) {
+        if (w > 0) content.append(' ');
+        content.append(WORDS[random.nextInt(WORDS.length)]);
+      }
+      Frame frame = MessageEncoder.encodeFrame(Message.userMsg("user" + random.nextInt(senderCount), 100,
+              content.toString()));
+      textBytes += text.encode(frame).length();
+      binaryBytes += binary.encode(frame).length();
+    }
+    System.out.printf("%nroom stream of %,d messages from %d senders:%n", messageCount, senderCount);
+    System.out.printf("  text   %,12d bytes  %6.1f per message%n", textBytes, (double) textBytes / messageCount);
+    System.out.printf("  binary %,12d bytes  %6.1f per message  (%.0f%% of text)%n", binaryBytes,
+            (double) binaryBytes / messageCount, 100.0 * binaryBytes / textBytes);
+  }
+
+  private static void sample(String name, Message message) {
+    Frame frame = MessageEncoder.encodeFrame(message);
+    System.out.printf("%-16s %6d %6d%n", name, frame.length(), frame.binary().length());
+  }
+}
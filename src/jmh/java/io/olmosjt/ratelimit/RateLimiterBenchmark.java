@@ -0,0 +1,59 @@
+package io.olmosjt.ratelimit;
+
+import io.olmosjt.command.CommandType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the rate limit check on every request: a connection's own command bucket, the shared per-user
+ * map lookup, and a room fan-out bucket contended by every thread. Limits are set high enough that
+ * requests are always admitted, which is the common case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+  private RateLimiter limiter;
+  private TokenBuckets room;
+
+  @State(Scope.Thread)
+  public static class Connection {
+    TokenBuckets buckets;
+    String username;
+
+    @Setup
+    public void setUp(RateLimiterBenchmark benchmark) {
+      buckets = benchmark.limiter.newConnectionBuckets();
+      username = "user" + Thread.currentThread().threadId();
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    RateLimit generous = new RateLimit(1e9, 1_000_000);
+    limiter = new RateLimiter(new RateLimits(Map.of(CommandType.MSG, generous), generous, generous));
+    room = new TokenBuckets(1);
+  }
+
+  @Benchmark
+  public long command(Connection connection) {
+    return limiter.acquire(connection.buckets, null, CommandType.MSG, System.nanoTime());
+  }
+
+  @Benchmark
+  public long commandAndUser(Connection connection) {
+    return limiter.acquire(connection.buckets, connection.username, CommandType.MSG, System.nanoTime());
+  }
+
+  @Benchmark
+  public long sharedRoom() {
+    return limiter.acquireFanout(room, 100, System.nanoTime());
+  }
+}
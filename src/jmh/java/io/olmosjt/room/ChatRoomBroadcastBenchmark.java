@@ -0,0 +1,90 @@
+package io.olmosjt.room;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.CommandHandler;
+import io.olmosjt.message.Message;
+import io.olmosjt.message.MessageDispatcher;
+import io.olmosjt.protocol.MessageEncoder;
+import io.olmosjt.server.ClientHandler;
+import io.olmosjt.server.ClientManager;
+import io.olmosjt.server.ServerConfig;
+import io.olmosjt.server.SinkClients;
+import io.olmosjt.user.UserRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares room fan-out with a shared, encode-once frame against the previous
+ * per-member path, which re-encoded the message, built a payload preview and a
+ * log line, and printed through an autoflushing {@link PrintWriter} for every member.
+ * <p>
+ * The legacy baseline only builds its log line; the real path also paid for the
+ * console and file write, so the measured gap understates the actual difference.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatRoomBroadcastBenchmark {
+
+  @Param({"10", "1000", "10000"})
+  public int members;
+
+  private ChatRoom room;
+  private List<ClientHandler> clients;
+  private PrintWriter[] legacyWriters;
+  private Message message;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var clientManager = new ClientManager();
+    var context = new ServerContext(new UserRegistry(), clientManager,
+            new MessageDispatcher(clientManager), new CommandHandler(), new ChatRoomManager(), ServerConfig.defaultConfig(), null, null, null);
+    room = context.roomManager().createRoom("bench");
+    clients = SinkClients.connect(context, "user", members);
+    for (ClientHandler client : clients) {
+      client.addRoom(room);
+      room.addMember(client);
+    }
+
+    legacyWriters = new PrintWriter[members];
+    for (int i = 0; i < members; i++) {
+      legacyWriters[i] = new PrintWriter(new OutputStreamWriter(OutputStream.nullOutputStream()), true);
+    }
+    message = Message.userMsg("user0", "Hello everyone, this is a fairly ordinary chat line of moderate length.");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    SinkClients.disconnectAll(clients);
+  }
+
+  @Benchmark
+  public void encodeOnce() {
+    room.broadcast(message);
+  }
+
+  @Benchmark
+  public void encodePerMember(Blackhole bh) {
+    for (int i = 0; i < members; i++) {
+      String encoded = MessageEncoder.encode(message);
+      String content = message.content();
+      String preview = content.length() <= 120 ? content : content.substring(0, 120) + "...";
+      bh.consume("RESP to=user" + i +
+              " type=" + message.type() +
+              " from=" + message.sender() +
+              " rcpt=" + (message.recipient() == null ? "" : message.recipient()) +
+              " content.len=" + content.length() +
+              " content.preview=\"" + preview + "\"");
+      legacyWriters[i].println(encoded);
+    }
+  }
+}
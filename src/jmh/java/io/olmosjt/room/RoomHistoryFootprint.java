@@ -0,0 +1,77 @@
+package io.olmosjt.room;
+
+import io.olmosjt.message.Message;
+import io.olmosjt.protocol.Frame;
+import io.olmosjt.protocol.MessageEncoder;
+import io.olmosjt.store.MessageStore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the retained heap of room history across many rooms.
+ * <p>
+ * Creates {@code rooms} rooms (default 10000) and reports the heap in use after a full GC for three states:
+ * rooms that never saw a message, rooms whose history is full, and, for comparison, the same messages kept
+ * as a ring of {@link Frame} objects, which also retain their decoded {@link Message}.
+ * <p>
+ * Run with {@code gradle roomHistoryFootprint -Drooms=10000 -DmessageBytes=80}.
+ */
+public final class RoomHistoryFootprint {
+
+  public static void main(String[] args) {
+    int rooms = Integer.getInteger("rooms", 10_000);
+    int messageBytes = Integer.getInteger("messageBytes", 80);
+    HistoryConfig config = HistoryConfig.defaults();
+
+    long base = usedHeap();
+    ChatRoomManager manager = new ChatRoomManager(config, MessageStore.NONE);
+    List<ChatRoom> created = new ArrayList<>(rooms);
+    for (int i = 0; i < rooms; i++) {
+      created.add(manager.createRoom("room-" + i));
+    }
+    long empty = usedHeap();
+    report("empty rooms", rooms, empty - base);
+
+    String text = "x".repeat(Math.max(1, messageBytes - 12));
+    for (ChatRoom room : created) {
+      for (int m = 0; m < config.maxMessages(); m++) {
+        room.broadcast(Message.userMsg("user" + m, text));
+      }
+    }
+    long full = usedHeap();
+    report("history, " + config.maxMessages() + " msgs/room", rooms, full - empty);
+
+    List<ArrayDeque<Frame>> frameRings = new ArrayList<>(rooms);
+    for (int i = 0; i < rooms; i++) {
+      ArrayDeque<Frame> ring = new ArrayDeque<>(config.maxMessages());
+      for (int m = 0; m < config.maxMessages(); m++) {
+        ring.addLast(MessageEncoder.encodeFrame(Message.userMsg("user" + m, text)));
+      }
+      frameRings.add(ring);
+    }
+    long frames = usedHeap();
+    report("Frame ring baseline", rooms, frames - full);
+
+    // keep everything reachable until the last measurement
+    if (created.size() + frameRings.size() == 0) System.out.println(manager);
+  }
+
+  private static void report(String label, int rooms, long bytes) {
+    System.out.printf("%-32s total=%,12d B  per room=%,8d B%n", label, bytes, bytes / rooms);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
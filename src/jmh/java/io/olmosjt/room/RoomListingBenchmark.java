@@ -0,0 +1,55 @@
+package io.olmosjt.room;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * LIST_ROOMS cost with many rooms: the previous format-everything-into-a-HashSet listing
+ * against a page of the cached, name-sorted listing, with and without a prefix and member ordering.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoomListingBenchmark {
+
+  @Param({"1000", "50000"})
+  public int rooms;
+
+  private ChatRoomManager manager;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    manager = new ChatRoomManager();
+    for (int i = 0; i < rooms; i++) {
+      manager.createRoom("room-" + Integer.toString(i, 36));
+    }
+  }
+
+  @Benchmark
+  public Set<String> formatAll() {
+    return manager.allRooms().stream()
+            .map(room -> String.format("[#%d] %s", room.getId(), room.getName()))
+            .collect(Collectors.toSet());
+  }
+
+  @Benchmark
+  public RoomPage firstPage() {
+    return manager.listRooms(null, RoomOrder.NAME, 1, 50);
+  }
+
+  @Benchmark
+  public RoomPage prefixPage() {
+    return manager.listRooms("room-a", RoomOrder.NAME, 1, 50);
+  }
+
+  @Benchmark
+  public RoomPage byMembers() {
+    return manager.listRooms(null, RoomOrder.MEMBERS, 1, 50);
+  }
+}
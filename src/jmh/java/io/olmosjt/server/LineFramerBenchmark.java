@@ -0,0 +1,87 @@
+package io.olmosjt.server;
+
+import io.olmosjt.command.CommandType;
+import io.olmosjt.protocol.BinaryCodec;
+import io.olmosjt.protocol.WireFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound framing cost per read: a buffer of ordinary request lines versus one oversized line
+ * that must be skipped without being buffered, and the same requests as binary records.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineFramerBenchmark {
+  private static final int MAX_LINE_BYTES = 8 * 1024;
+
+  @Param({"valid", "oversized"})
+  public String kind;
+
+  private LineFramer framer;
+  private BinaryFramer binaryFramer;
+  private ByteBuffer input;
+  private ByteBuffer binaryInput;
+  private LineFramer.LineSink sink;
+  private long consumed;
+
+  @Setup
+  public void setUp() {
+    framer = new LineFramer(MAX_LINE_BYTES);
+    binaryFramer = new BinaryFramer(MAX_LINE_BYTES);
+    byte[] bytes;
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    if (kind.equals("valid")) {
+      bytes = "REQ|MSG|Hello everyone, how is the release going?\n".repeat(64).getBytes(StandardCharsets.UTF_8);
+      byte[] record = BinaryCodec.encodeRequest(CommandType.MSG, "Hello everyone, how is the release going?");
+      for (int i = 0; i < 64; i++) records.writeBytes(record);
+    } else {
+      bytes = new byte[4 * MAX_LINE_BYTES];
+      Arrays.fill(bytes, (byte) 'x');
+      bytes[bytes.length - 1] = '\n';
+      records.writeBytes(BinaryCodec.encodeRequest(CommandType.MSG, "x".repeat(4 * MAX_LINE_BYTES)));
+    }
+    input = ByteBuffer.wrap(bytes);
+    binaryInput = ByteBuffer.wrap(records.toByteArray());
+    sink = new LineFramer.LineSink() {
+      @Override
+      public void onLine(byte[] buf, int off, int len) {
+        consumed += len;
+      }
+
+      @Override
+      public void onOversizedLine() {
+        consumed--;
+      }
+
+      @Override
+      public WireFormat inboundFormat() {
+        return WireFormat.TEXT;
+      }
+    };
+  }
+
+  @Benchmark
+  public long feed() {
+    input.rewind();
+    framer.feed(input, sink);
+    return consumed;
+  }
+
+  @Benchmark
+  public long feedBinary() {
+    binaryInput.rewind();
+    binaryFramer.feed(binaryInput, sink);
+    return consumed;
+  }
+}
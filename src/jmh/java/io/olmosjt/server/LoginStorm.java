@@ -0,0 +1,89 @@
+package io.olmosjt.server;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.CommandHandler;
+import io.olmosjt.command.CommandType;
+import io.olmosjt.command.cmds.LoginCommand;
+import io.olmosjt.ratelimit.RateLimiter;
+import io.olmosjt.ratelimit.RateLimits;
+import io.olmosjt.user.SessionDirectory;
+import io.olmosjt.user.UserRegistry;
+import io.olmosjt.util.LoggerUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how many logins per second the server completes when many clients log in at once.
+ * <p>
+ * Each round connects {@code clients} in-memory clients (default 10000), releases one virtual thread per
+ * client at the same moment to send {@code REQ|LOGIN|<name>} through the real command path, and then
+ * disconnects them all. Names are drawn from a pool of {@code clients / collide} names (default
+ * {@code collide=1}: every name is distinct), so raising {@code collide} makes that many clients race for each
+ * name and exercises the refusal path. Reports logins per second and how many were refused over
+ * {@code rounds} rounds (default 10).
+ * <p>
+ * Run with {@code gradle loginStorm -Dclients=10000 -Dcollide=1 -Drounds=10}.
+ */
+public final class LoginStorm {
+
+  public static void main(String[] args) throws InterruptedException {
+    int clientCount = Integer.getInteger("clients", 10_000);
+    int collide = Math.max(1, Integer.getInteger("collide", 1));
+    int rounds = Integer.getInteger("rounds", 10);
+    LoggerUtil.setMinLevel(LoggerUtil.Level.ERROR);
+
+    SessionDirectory sessions = new SessionDirectory();
+    CommandHandler commands = new CommandHandler(new RateLimiter(RateLimits.none()));
+    commands.register(CommandType.LOGIN, new LoginCommand());
+    ServerContext context = new ServerContext(new UserRegistry(sessions), new ClientManager(sessions), null, commands,
+            null, ServerConfig.defaultConfig(), null, null, null);
+
+    byte[][] lines = new byte[clientCount][];
+    for (int i = 0; i < clientCount; i++) {
+      lines[i] = ("REQ|LOGIN|user" + (i / collide)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    for (int round = 0; round < rounds; round++) {
+      List<ClientHandler> clients = new ArrayList<>(clientCount);
+      for (int i = 0; i < clientCount; i++) {
+        ClientHandler client = new ClientHandler(context);
+        new SinkConnection(client);
+        client.onConnect();
+        clients.add(client);
+      }
+
+      CountDownLatch go = new CountDownLatch(1);
+      CountDownLatch done = new CountDownLatch(clientCount);
+      for (int i = 0; i < clientCount; i++) {
+        ClientHandler client = clients.get(i);
+        byte[] line = lines[i];
+        Thread.ofVirtual().start(() -> {
+          try {
+            go.await();
+            client.onLine(line, 0, line.length);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            done.countDown();
+          }
+        });
+      }
+      long start = System.nanoTime();
+      go.countDown();
+      done.await();
+      long nanos = System.nanoTime() - start;
+
+      int loggedIn = 0;
+      for (ClientHandler client : clients) {
+        if (client.isLoggedIn()) loggedIn++;
+      }
+      SinkClients.disconnectAll(clients);
+      System.out.printf("round %d: %,d logged in, %,d refused in %.1f ms, %,.0f logins/s, %d online after%n",
+              round, loggedIn, clientCount - loggedIn, nanos / 1e6, clientCount / (nanos / 1e9),
+              context.clientManager().count());
+    }
+  }
+}
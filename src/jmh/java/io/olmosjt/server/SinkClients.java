@@ -0,0 +1,32 @@
+package io.olmosjt.server;
+
+import io.olmosjt.ServerContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates logged-in {@link ClientHandler}s backed by {@link SinkConnection}s, so benchmarks can
+ * drive the real send path without opening network connections.
+ */
+public final class SinkClients {
+  private SinkClients() {}
+
+  public static List<ClientHandler> connect(ServerContext context, String prefix, int count) {
+    List<ClientHandler> clients = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ClientHandler client = new ClientHandler(context);
+      new SinkConnection(client);
+      client.onConnect();
+      client.registerUser(prefix + i);
+      clients.add(client);
+    }
+    return clients;
+  }
+
+  public static void disconnectAll(List<ClientHandler> clients) {
+    for (ClientHandler client : clients) {
+      client.disconnect();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package io.olmosjt.server;
+
+import io.olmosjt.protocol.Frame;
+import io.olmosjt.protocol.WireEncoder;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory {@link ClientConnection} used by benchmarks.
+ * <p>
+ * Drains the handler's outbound queue on the sending thread and discards the frames,
+ * counting the bytes that would have gone to the network in the client's wire format.
+ */
+public final class SinkConnection implements ClientConnection {
+  private final ClientHandler handler;
+  private final AtomicLong bytesWritten = new AtomicLong();
+  private final WireEncoder wire = new WireEncoder();
+
+  public SinkConnection(ClientHandler handler) {
+    this.handler = handler;
+    handler.attach(this);
+  }
+
+  @Override
+  public void frameQueued() {
+    Frame frame;
+    while ((frame = handler.outbound().poll()) != null) {
+      Frame encoded = wire.encode(frame);
+      if (encoded != null) bytesWritten.addAndGet(encoded.length());
+    }
+    Frame rest = wire.endBatch();
+    if (rest != null) bytesWritten.addAndGet(rest.length());
+  }
+
+  @Override
+  public void close() {
+    frameQueued();
+  }
+
+  @Override
+  public void abort() {
+  }
+
+  @Override
+  public InetAddress remoteAddress() {
+    return InetAddress.getLoopbackAddress();
+  }
+
+  public long bytesWritten() {
+    return bytesWritten.get();
+  }
+}
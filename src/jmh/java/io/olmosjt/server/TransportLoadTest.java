@@ -0,0 +1,263 @@
+package io.olmosjt.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback load test comparing the {@link TransportType#BLOCKING} and {@link TransportType#NIO} transports.
+ * <p>
+ * For each transport a fresh server JVM is started and two scenarios are run:
+ * <ul>
+ *   <li><b>idle</b> – many logged-in connections that never send anything; reports server RSS growth per connection</li>
+ *   <li><b>chatty</b> – fewer connections spread over rooms, each sending MSG at a fixed rate; reports delivery
+ *       latency percentiles measured from send to receipt by every room member</li>
+ * </ul>
+ * Knobs (system properties): {@code idle} (50000), {@code chatty} (5000), {@code rooms} (100),
+ * {@code rate} messages per second per chatty client (1), {@code seconds} measured per scenario (30),
+ * {@code port} (9100). RSS is read from {@code /proc}, so memory figures are Linux only.
+ * Raise the open file limit before running with the defaults.
+ */
+public final class TransportLoadTest {
+  private static final String HOST = "127.0.0.1";
+
+  public static void main(String[] args) throws Exception {
+    int idle = Integer.getInteger("idle", 50_000);
+    int chatty = Integer.getInteger("chatty", 5_000);
+    int rooms = Integer.getInteger("rooms", 100);
+    int rate = Integer.getInteger("rate", 1);
+    int seconds = Integer.getInteger("seconds", 30);
+    int port = Integer.getInteger("port", 9100);
+
+    List<String> report = new ArrayList<>();
+    for (TransportType transport : TransportType.values()) {
+      report.add(idleScenario(transport, port, idle));
+      report.add(chattyScenario(transport, port, chatty, rooms, rate, seconds));
+    }
+    System.out.println();
+    report.forEach(System.out::println);
+  }
+
+  private static String idleScenario(TransportType transport, int port, int count) throws Exception {
+    Process server = startServer(transport, port);
+    List<SocketChannel> channels = new ArrayList<>(count);
+    try {
+      long baseline = rssBytes(server.pid());
+      for (int i = 0; i < count; i++) {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, port));
+        writeLine(channel, "REQ|LOGIN|idle" + i);
+        channels.add(channel);
+      }
+      TimeUnit.SECONDS.sleep(5);
+      long grown = rssBytes(server.pid()) - baseline;
+      return String.format("%-8s idle   connections=%d rss.growth=%dMiB bytes/connection=%d",
+              transport, count, grown >> 20, grown / Math.max(1, count));
+    } finally {
+      for (SocketChannel channel : channels) channel.close();
+      server.destroy();
+      server.waitFor();
+    }
+  }
+
+  private static String chattyScenario(TransportType transport, int port, int count, int rooms, int rate, int seconds)
+          throws Exception {
+    Process server = startServer(transport, port);
+    Receiver receiver = new Receiver();
+    Thread receiverThread = Thread.ofPlatform().daemon().start(receiver);
+    SocketChannel[] channels = new SocketChannel[count];
+    try {
+      for (int i = 0; i < count; i++) {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, port));
+        writeLine(channel, "REQ|LOGIN|chat" + i);
+        if (i < rooms) writeLine(channel, "REQ|CREATE_ROOM|load" + i);
+        channels[i] = channel;
+      }
+      TimeUnit.SECONDS.sleep(1);
+      for (int i = 0; i < count; i++) {
+        // Rooms created above get consecutive ids after "general" (100).
+        writeLine(channels[i], "REQ|JOIN|" + (101 + i % rooms));
+        receiver.add(channels[i]);
+      }
+      TimeUnit.SECONDS.sleep(2);
+
+      long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+      long sent = 0;
+      long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, (long) rate * count);
+      long next = System.nanoTime();
+      int sender = 0;
+      while (System.nanoTime() < end) {
+        if (System.nanoTime() >= warmupEnd && !receiver.recording) {
+          receiver.recording = true;
+          sent = 0;
+        }
+        writeLine(channels[sender], "REQ|MSG|t=" + System.nanoTime());
+        sender = (sender + 1) % count;
+        sent++;
+        next += intervalNanos;
+        long wait = next - System.nanoTime();
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+      }
+      receiver.recording = false;
+      TimeUnit.SECONDS.sleep(1);
+
+      long[] samples = receiver.samples();
+      Arrays.sort(samples);
+      return String.format("%-8s chatty connections=%d rooms=%d sent/s=%d delivered/s=%d p50=%.2fms p99=%.2fms max=%.2fms",
+              transport, count, rooms, sent / seconds, receiver.delivered.get() / seconds,
+              percentile(samples, 0.50), percentile(samples, 0.99), percentile(samples, 1.0));
+    } finally {
+      receiverThread.interrupt();
+      for (SocketChannel channel : channels) if (channel != null) channel.close();
+      server.destroy();
+      server.waitFor();
+    }
+  }
+
+  /**
+   * Reads every client channel on one selector and records latency for {@code t=<nanos>} room messages.
+   */
+  private static final class Receiver implements Runnable {
+    private static final int MAX_SAMPLES = 2_000_000;
+
+    private final Selector selector;
+    private final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final long[] samples = new long[MAX_SAMPLES];
+    private final AtomicLong delivered = new AtomicLong();
+    private volatile boolean recording;
+    private int sampleCount;
+    private long seen;
+
+    Receiver() throws IOException {
+      selector = Selector.open();
+    }
+
+    void add(SocketChannel channel) {
+      pending.add(channel);
+      selector.wakeup();
+    }
+
+    synchronized long[] samples() {
+      return Arrays.copyOf(samples, sampleCount);
+    }
+
+    @Override
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        try {
+          selector.select(100);
+          SocketChannel channel;
+          while ((channel = pending.poll()) != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new PartialLine());
+          }
+          for (SelectionKey key : selector.selectedKeys()) {
+            SocketChannel ch = (SocketChannel) key.channel();
+            PartialLine partial = (PartialLine) key.attachment();
+            buffer.clear();
+            if (ch.read(buffer) < 0) {
+              key.cancel();
+              continue;
+            }
+            buffer.flip();
+            long now = System.nanoTime();
+            while (buffer.hasRemaining()) {
+              byte b = buffer.get();
+              if (b == '\n') {
+                onLine(partial.bytes, partial.length, now);
+                partial.length = 0;
+              } else if (partial.length < partial.bytes.length) {
+                partial.bytes[partial.length++] = b;
+              }
+            }
+          }
+          selector.selectedKeys().clear();
+        } catch (IOException e) {
+          // Connection torn down at the end of the run.
+        }
+      }
+    }
+
+    private void onLine(byte[] line, int length, long now) {
+      String text = new String(line, 0, length, StandardCharsets.UTF_8);
+      int marker = text.indexOf("|t=");
+      if (!recording || !text.startsWith("USER|") || marker < 0) return;
+      long latency = now - Long.parseLong(text.substring(marker + 3).trim());
+      delivered.incrementAndGet();
+      synchronized (this) {
+        seen++;
+        if (sampleCount < MAX_SAMPLES) {
+          samples[sampleCount++] = latency;
+        } else {
+          long slot = ThreadLocalRandom.current().nextLong(seen);
+          if (slot < MAX_SAMPLES) samples[(int) slot] = latency;
+        }
+      }
+    }
+  }
+
+  private static final class PartialLine {
+    final byte[] bytes = new byte[1024];
+    int length;
+  }
+
+  private static Process startServer(TransportType transport, int port) throws Exception {
+    String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    Process process = new ProcessBuilder(java,
+            "-Dtermitalk.transport=" + transport,
+            "-Dtermitalk.port=" + port,
+            "-cp", System.getProperty("java.class.path"),
+            "io.olmosjt.TermiTalkServer")
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+    for (int attempt = 0; attempt < 100; attempt++) {
+      try {
+        SocketChannel.open(new InetSocketAddress(HOST, port)).close();
+        TimeUnit.MILLISECONDS.sleep(500);
+        return process;
+      } catch (IOException e) {
+        TimeUnit.MILLISECONDS.sleep(100);
+      }
+    }
+    process.destroy();
+    throw new IllegalStateException("Server did not start on port " + port);
+  }
+
+  private static void writeLine(SocketChannel channel, String line) throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+    while (bytes.hasRemaining()) {
+      channel.write(bytes);
+    }
+  }
+
+  private static long rssBytes(long pid) throws IOException {
+    for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status"))) {
+      if (line.startsWith("VmRSS:")) {
+        return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+      }
+    }
+    return 0;
+  }
+
+  private static double percentile(long[] sorted, double p) {
+    if (sorted.length == 0) return Double.NaN;
+    int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+    return sorted[Math.max(0, index)] / 1_000_000.0;
+  }
+}
@@ -0,0 +1,67 @@
+package io.olmosjt.state;
+
+import io.olmosjt.room.ChatRoomManager;
+import io.olmosjt.room.HistoryConfig;
+import io.olmosjt.store.MessageStore;
+import io.olmosjt.user.UserRegistry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Measures how long a restart takes to restore rooms and users.
+ * <p>
+ * Builds a snapshot with {@code rooms} rooms and users (default 100000), journals {@code journal} further
+ * changes (default 10000) without snapshotting them, then recovers the state into fresh managers, as
+ * {@link io.olmosjt.TermiTalkServer} does on startup, several times over.
+ * <p>
+ * Run with {@code gradle stateColdStart -Drooms=100000 -Djournal=10000}.
+ */
+public final class StateColdStart {
+
+  public static void main(String[] args) throws IOException {
+    int roomCount = Integer.getInteger("rooms", 100_000);
+    int journalCount = Integer.getInteger("journal", 10_000);
+    Path directory = Files.createTempDirectory("termitalk-state");
+    StateConfig config = new StateConfig(directory, Integer.MAX_VALUE,
+            StateConfig.at(directory).snapshotInterval(), StateConfig.at(directory).fsyncInterval());
+    try {
+      StateStore writer = StateStore.open(config);
+      ChatRoomManager rooms = new ChatRoomManager(HistoryConfig.defaults(), MessageStore.NONE);
+      UserRegistry users = new UserRegistry();
+      writer.recover(rooms, users);
+      for (int i = 0; i < roomCount; i++) {
+        rooms.createRoom("room-" + i);
+        users.claim("user" + i);
+      }
+      writer.snapshot();
+      for (int i = 0; i < journalCount; i++) {
+        rooms.createRoom("late-" + i);
+      }
+      StateStats written = writer.stats();
+      System.out.printf("snapshot: %,d bytes in %d ms; journal: %,d records, avg %.1f us%n",
+              written.lastSnapshotBytes(), written.lastSnapshotMillis(), written.journalRecords(),
+              written.journalNanos() / 1000.0 / Math.max(1, written.journalRecords()));
+
+      for (int run = 0; run < 5; run++) {
+        long start = System.nanoTime();
+        StateStore reader = StateStore.open(config);
+        ChatRoomManager restoredRooms = new ChatRoomManager(HistoryConfig.defaults(), MessageStore.NONE);
+        UserRegistry restoredUsers = new UserRegistry();
+        reader.recover(restoredRooms, restoredUsers);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("run %d: restored %,d rooms and %,d users in %d ms%n",
+                run, restoredRooms.roomCount(), restoredUsers.size(), millis);
+      }
+    } finally {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+          Files.deleteIfExists(path);
+        }
+      }
+    }
+  }
+}
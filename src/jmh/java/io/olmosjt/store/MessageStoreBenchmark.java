@@ -0,0 +1,108 @@
+package io.olmosjt.store;
+
+import io.olmosjt.message.Message;
+import io.olmosjt.message.MessageType;
+import io.olmosjt.protocol.Frame;
+import io.olmosjt.protocol.MessageEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Append throughput and random-read latency of {@link SegmentedMessageStore}.
+ * <p>
+ * {@code append} queues {@value #BATCH} room messages and waits for them to be written and forced,
+ * so the score is end-to-end persisted throughput, not just the cost of the enqueue. {@code fsyncMillis=0}
+ * forces once per drained batch (group commit). The read benchmarks run against a log pre-filled with
+ * {@code records} messages spread over {@value #ROOMS} rooms and sample single-message lookups by sequence
+ * and by timestamp.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageStoreBenchmark {
+  private static final int BATCH = 4096;
+  private static final int ROOMS = 1000;
+
+  @Param({"0", "100"})
+  public int fsyncMillis;
+
+  @Param({"1000000"})
+  public int records;
+
+  private Path directory;
+  private SegmentedMessageStore store;
+  private Frame frame;
+  private long[] roomSequences;
+  private long firstTimestamp;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("termitalk-store-bench");
+    StoreConfig defaults = StoreConfig.at(directory);
+    store = SegmentedMessageStore.open(new StoreConfig(directory, defaults.segmentBytes(), 1024,
+            Duration.ofDays(1), Duration.ofMillis(fsyncMillis), BATCH * 4, defaults.indexInterval()));
+    frame = MessageEncoder.encodeFrame(Message.userMsg("user0",
+            "Hello everyone, this is a fairly ordinary chat line of moderate length."));
+
+    roomSequences = new long[ROOMS];
+    firstTimestamp = System.currentTimeMillis();
+    for (int i = 0; i < records; i++) {
+      int room = i % ROOMS;
+      Message message = new Message(MessageType.USER, "user" + room, null, "prefilled message " + i,
+              Instant.ofEpochMilli(firstTimestamp + i / 100));
+      store.append(100 + room, ++roomSequences[room], MessageEncoder.encodeFrame(message));
+      if (i % BATCH == 0) store.sync();
+    }
+    store.sync();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    store.close();
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(BATCH)
+  public void append() {
+    int room = ThreadLocalRandom.current().nextInt(ROOMS);
+    for (int i = 0; i < BATCH; i++) {
+      store.append(100 + room, ++roomSequences[room], frame);
+    }
+    store.sync();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<StoredMessage> readBySequence() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int room = random.nextInt(ROOMS);
+    return store.read(100 + room, 1 + random.nextLong(roomSequences[room]), 1);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public List<StoredMessage> readByTimestamp() {
+    long span = Math.max(1, records / 100);
+    return store.readFrom(firstTimestamp + ThreadLocalRandom.current().nextLong(span), 1);
+  }
+}
@@ -0,0 +1,149 @@
+package io.olmosjt.user;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.CommandHandler;
+import io.olmosjt.server.ClientHandler;
+import io.olmosjt.server.ClientManager;
+import io.olmosjt.server.ServerConfig;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Concurrency stress test for {@link SessionDirectory}, in the style of jcstress.
+ * <p>
+ * Each scenario races two actors on a fresh directory many times. After both finish, an arbiter reads the
+ * final state and combines it with the actors' results into an outcome, which is counted and checked against
+ * the outcomes the scenario allows. The process exits with status 1 if any forbidden outcome was seen. Run it
+ * on a machine with several cores; on one core the actors rarely overlap.
+ * <p>
+ * Knobs (system properties): {@code rounds} per scenario (200000).
+ */
+public final class SessionDirectoryStress {
+  private static ClientHandler a;
+  private static ClientHandler b;
+
+  @FunctionalInterface
+  private interface Arbiter {
+    String outcome(SessionDirectory directory, boolean r1, boolean r2);
+  }
+
+  private record Scenario(String name, String description, Set<String> acceptable, Consumer<SessionDirectory> setup,
+                          Predicate<SessionDirectory> actor1, Predicate<SessionDirectory> actor2, Arbiter arbiter) {}
+
+  public static void main(String[] args) throws Exception {
+    int rounds = Integer.getInteger("rounds", 200_000);
+    ServerContext context = new ServerContext(new UserRegistry(), new ClientManager(), null, new CommandHandler(),
+            null, ServerConfig.defaultConfig(), null, null, null);
+    a = new ClientHandler(context);
+    b = new ClientHandler(context);
+
+    Scenario[] scenarios = {
+            new Scenario("claim-claim", "a and b log in under the same new name",
+                    Set.of("true false holder=a online=1", "false true holder=b online=1"),
+                    d -> {},
+                    d -> d.claim("alice", a) != null,
+                    d -> d.claim("alice", b) != null,
+                    (d, r1, r2) -> r1 + " " + r2 + " holder=" + holder(d, "alice") + " online=" + d.onlineCount()),
+            new Scenario("release-claim", "a logs out while b logs in under the same name",
+                    Set.of("true true holder=b online=1", "true false holder=- online=0"),
+                    d -> d.claim("alice", a),
+                    d -> d.release("alice", a),
+                    d -> d.claim("alice", b) != null,
+                    (d, r1, r2) -> r1 + " " + r2 + " holder=" + holder(d, "alice") + " online=" + d.onlineCount()),
+            new Scenario("rename-claim", "a renames to the name b logs in under",
+                    Set.of("true false new=a old=absent online=1", "false true new=b old=a online=2"),
+                    d -> d.claim("alice", a),
+                    d -> d.rename("alice", "bob", a),
+                    d -> d.claim("bob", b) != null,
+                    (d, r1, r2) -> r1 + " " + r2 + " new=" + state(d, "bob") + " old=" + state(d, "alice")
+                            + " online=" + d.onlineCount()),
+            new Scenario("rename-release", "a renames while it logs out",
+                    Set.of("true false new=a old=absent online=1", "false true new=absent old=offline online=0"),
+                    d -> d.claim("alice", a),
+                    d -> d.rename("alice", "bob", a),
+                    d -> d.release("alice", a),
+                    (d, r1, r2) -> r1 + " " + r2 + " new=" + state(d, "bob") + " old=" + state(d, "alice")
+                            + " online=" + d.onlineCount()),
+            new Scenario("rename-rename", "a and b rename to the same new name",
+                    Set.of("true false new=a", "false true new=b"),
+                    d -> {
+                      d.claim("alice", a);
+                      d.claim("bob", b);
+                    },
+                    d -> d.rename("alice", "carol", a),
+                    d -> d.rename("bob", "carol", b),
+                    (d, r1, r2) -> r1 + " " + r2 + " new=" + holder(d, "carol")),
+    };
+
+    boolean failed = false;
+    for (Scenario scenario : scenarios) {
+      failed |= run(scenario, rounds);
+    }
+    System.exit(failed ? 1 : 0);
+  }
+
+  /**
+   * @return {@code true} if a forbidden outcome was seen.
+   */
+  private static boolean run(Scenario scenario, int rounds) throws Exception {
+    CyclicBarrier start = new CyclicBarrier(3);
+    CyclicBarrier done = new CyclicBarrier(3);
+    SessionDirectory[] directory = new SessionDirectory[1];
+    boolean[] results = new boolean[2];
+    boolean[] stop = new boolean[1];
+    List<Predicate<SessionDirectory>> actors = List.of(scenario.actor1(), scenario.actor2());
+    for (int i = 0; i < 2; i++) {
+      int index = i;
+      Thread.ofPlatform().daemon().start(() -> {
+        try {
+          while (true) {
+            start.await();
+            if (stop[0]) return;
+            results[index] = actors.get(index).test(directory[0]);
+            done.await();
+          }
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      });
+    }
+
+    Map<String, Integer> outcomes = new TreeMap<>();
+    for (int round = 0; round < rounds; round++) {
+      directory[0] = new SessionDirectory();
+      scenario.setup().accept(directory[0]);
+      start.await();
+      done.await();
+      outcomes.merge(scenario.arbiter().outcome(directory[0], results[0], results[1]), 1, Integer::sum);
+    }
+    stop[0] = true;
+    start.await();
+
+    boolean failed = false;
+    System.out.println("[" + scenario.name() + "] " + scenario.description());
+    for (Map.Entry<String, Integer> entry : outcomes.entrySet()) {
+      boolean ok = scenario.acceptable().contains(entry.getKey());
+      failed |= !ok;
+      System.out.printf("  %-10s %10d  %s%n", ok ? "ACCEPTABLE" : "FORBIDDEN", entry.getValue(), entry.getKey());
+    }
+    return failed;
+  }
+
+  private static String holder(SessionDirectory directory, String name) {
+    ClientHandler client = directory.client(name);
+    return client == null ? "-" : client == a ? "a" : client == b ? "b" : "?";
+  }
+
+  private static String state(SessionDirectory directory, String name) {
+    User user = directory.user(name);
+    if (user == null) return "absent";
+    if (directory.client(name) != null) return holder(directory, name);
+    return user.status() == UserStatus.OFFLINE ? "offline" : "unbound";
+  }
+}
@@ -0,0 +1,57 @@
+package io.olmosjt.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging throughput from many concurrent callers: the synchronous, globally locked writer against
+ * the ring-buffer backend with blocking and dropping overflow, plus a call below the minimum level.
+ * <p>
+ * Console output is disabled; every mode writes to a temporary log file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class LoggerBenchmark {
+
+  @Param({"sync", "async-block", "async-drop", "disabled"})
+  public String mode;
+
+  private Path logFile;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    logFile = Files.createTempFile("termitalk-bench", ".log");
+    LoggerUtil.setConsole(false);
+    LoggerUtil.setLogFile(logFile.toString());
+    LoggerUtil.setMinLevel(LoggerUtil.Level.INFO);
+    switch (mode) {
+      case "sync" -> LoggerUtil.useSync();
+      case "async-block" -> LoggerUtil.useAsync(16 * 1024, LoggerUtil.Overflow.BLOCK);
+      default -> LoggerUtil.useAsync(16 * 1024, LoggerUtil.Overflow.DROP);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    LoggerUtil.useSync();
+    Files.deleteIfExists(logFile);
+  }
+
+  @Benchmark
+  public void log() {
+    if (mode.equals("disabled")) {
+      LoggerUtil.debug("REQ parsed from=alice type=MSG payload.len=42");
+    } else {
+      LoggerUtil.info("REQ parsed from=alice type=MSG payload.len=42");
+    }
+  }
+}
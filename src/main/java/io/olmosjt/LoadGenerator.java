@@ -0,0 +1,34 @@
+package io.olmosjt;
+
+import io.olmosjt.loadgen.LoadRunner;
+import io.olmosjt.loadgen.LoadScenario;
+
+import java.net.InetAddress;
+
+/**
+ * Entrypoint for the load generator: drives a swarm of protocol clients against a TermiTalk server
+ * running on this machine and reports throughput, delivery latency, errors and server memory.
+ * <p>
+ * The scenario is read from {@code loadgen.*} system properties, see {@link LoadScenario#fromSystemProperties()}.
+ * Only loopback targets are accepted.
+ */
+public class LoadGenerator {
+
+  public static void main(String[] args) throws Exception {
+    LoadScenario scenario;
+    try {
+      scenario = LoadScenario.fromSystemProperties();
+    } catch (IllegalArgumentException e) {
+      System.err.println("Invalid scenario: " + e.getMessage());
+      System.exit(2);
+      return;
+    }
+    if (!InetAddress.getByName(scenario.host()).isLoopbackAddress()) {
+      System.err.println("Refusing to generate load against non-loopback host " + scenario.host() + ".");
+      System.exit(2);
+      return;
+    }
+    System.out.println("Load scenario: " + scenario);
+    new LoadRunner(scenario).run();
+  }
+}
@@ -1,16 +1,29 @@
 package io.olmosjt;
 
+import io.olmosjt.cluster.ClusterNode;
 import io.olmosjt.command.CommandHandler;
 import io.olmosjt.message.MessageDispatcher;
 import io.olmosjt.room.ChatRoomManager;
+import io.olmosjt.server.AdmissionControl;
 import io.olmosjt.server.ClientManager;
+import io.olmosjt.server.ServerConfig;
 import io.olmosjt.user.UserRegistry;
+import io.olmosjt.util.HashedWheelTimer;
 
+/**
+ * @param timer     Shared timer for room reaping and client idle checks; {@code null} disables idle checks.
+ * @param admission Connection admission shared by the transport and sessions; {@code null} admits everything.
+ * @param cluster   The cluster this server belongs to; {@code null} when it runs standalone.
+ */
 public record ServerContext(
         UserRegistry userRegistry,
         ClientManager clientManager,
         MessageDispatcher dispatcher,
         CommandHandler commandHandler,
-        ChatRoomManager roomManager
+        ChatRoomManager roomManager,
+        ServerConfig config,
+        HashedWheelTimer timer,
+        AdmissionControl admission,
+        ClusterNode cluster
 ) {
 }
@@ -1,39 +1,216 @@
 package io.olmosjt;
 
+import io.olmosjt.cluster.ClusterNode;
+import io.olmosjt.cluster.TcpMeshBus;
 import io.olmosjt.command.CommandHandler;
 import io.olmosjt.command.CommandType;
 import io.olmosjt.command.cmds.*;
 import io.olmosjt.message.MessageDispatcher;
+import io.olmosjt.metrics.MetricsRegistry;
+import io.olmosjt.metrics.MetricsServer;
+import io.olmosjt.metrics.ServerMetrics;
+import io.olmosjt.ratelimit.RateLimiter;
+import io.olmosjt.room.ChatRoom;
 import io.olmosjt.room.ChatRoomManager;
+import io.olmosjt.server.AdmissionControl;
 import io.olmosjt.server.ClientHandler;
 import io.olmosjt.server.ClientManager;
 import io.olmosjt.server.ServerConfig;
+import io.olmosjt.server.Transport;
+import io.olmosjt.state.StateStore;
+import io.olmosjt.store.MessageStore;
+import io.olmosjt.store.SegmentedMessageStore;
+import io.olmosjt.trace.DeliveryTracer;
+import io.olmosjt.trace.LatencyWindow;
+import io.olmosjt.user.SessionDirectory;
 import io.olmosjt.user.UserRegistry;
+import io.olmosjt.util.HashedWheelTimer;
 import io.olmosjt.util.LoggerUtil;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 
 /**
  * Main entrypoint for TermiTalk server.
  */
 public class TermiTalkServer {
+  private static final Duration RATE_LIMIT_SWEEP = Duration.ofSeconds(30);
 
   private final ServerContext context;
+  private final MessageStore messageStore;
+  private final StateStore stateStore;
 
   public TermiTalkServer(ServerConfig config) {
-    var userRegistry = new UserRegistry();
-    var clientManager = new ClientManager();
-    var dispatcher = new MessageDispatcher(clientManager);
-    var commandHandler = new CommandHandler();
-    var roomManager = new ChatRoomManager();
+    LoggerUtil.setMinLevel(config.logLevel());
+    DeliveryTracer.configure(config.trace());
+    var store = openStore(config);
+    this.messageStore = store;
+    var sessions = new SessionDirectory();
+    var userRegistry = new UserRegistry(sessions);
+    var clientManager = new ClientManager(sessions);
+    var commandHandler = new CommandHandler(new RateLimiter(config.limits()));
+    var timer = new HashedWheelTimer("termitalk-timer", Duration.ofMillis(100), 512);
+    var roomManager = new ChatRoomManager(config.history(), config.rooms(), store, timer);
+    var cluster = config.cluster().enabled()
+            ? new ClusterNode(config.cluster(), new TcpMeshBus(config.cluster()), clientManager, roomManager, timer)
+            : null;
+    var dispatcher = new MessageDispatcher(clientManager, store, cluster);
+
+    var admission = new AdmissionControl(config.admission());
+
+    this.context = new ServerContext(userRegistry, clientManager, dispatcher, commandHandler, roomManager, config, timer,
+            admission, cluster);
+
+    this.stateStore = openState(config, store, roomManager, userRegistry);
+    if (roomManager.roomCount() == 0) {
+      roomManager.setPinned(roomManager.createRoom("general").getId(), true);
+    }
+    startCluster(cluster);
 
-    this.context = new ServerContext(userRegistry, clientManager, dispatcher, commandHandler, roomManager);
+    registerCommands();
+    scheduleRateLimitSweep(timer, commandHandler.rateLimiter());
+    startMetrics(config);
+  }
 
-    roomManager.createRoom("general");
+  /**
+   * Periodically drops per-user rate limit buckets that have refilled.
+   */
+  private static void scheduleRateLimitSweep(HashedWheelTimer timer, RateLimiter limiter) {
+    timer.schedule(() -> {
+      limiter.sweep(System.nanoTime());
+      scheduleRateLimitSweep(timer, limiter);
+    }, RATE_LIMIT_SWEEP);
+  }
 
-    registerCommands();
+  private static void startCluster(ClusterNode cluster) {
+    if (cluster == null) return;
+    try {
+      cluster.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(cluster::close, "termitalk-cluster-shutdown"));
+    } catch (IOException e) {
+      LoggerUtil.error("Could not start cluster node " + cluster.nodeId() + ": " + e.getMessage()
+              + ". Continuing standalone.");
+    }
+  }
+
+  private static MessageStore openStore(ServerConfig config) {
+    if (!config.store().enabled()) return MessageStore.NONE;
+    if (!config.state().enabled()) {
+      LoggerUtil.error("The message store in " + config.store().directory() + " needs state persistence to keep "
+              + "room IDs stable across restarts. Continuing without it.");
+      return MessageStore.NONE;
+    }
+    try {
+      MessageStore store = SegmentedMessageStore.open(config.store());
+      Runtime.getRuntime().addShutdownHook(new Thread(store::close, "termitalk-store-shutdown"));
+      return store;
+    } catch (IOException e) {
+      LoggerUtil.error("Could not open message store in " + config.store().directory() + ": " + e.getMessage()
+              + ". Continuing without persistence.");
+      return MessageStore.NONE;
+    }
+  }
+
+  /**
+   * Restores rooms and users. Without them room IDs restart from the beginning, so a failure is fatal while
+   * the message store is open: new rooms would reuse IDs that the store holds history for.
+   */
+  private static StateStore openState(ServerConfig config, MessageStore store, ChatRoomManager rooms,
+                                      UserRegistry users) {
+    if (!config.state().enabled()) return null;
+    try {
+      StateStore state = StateStore.open(config.state());
+      state.recover(rooms, users);
+      Runtime.getRuntime().addShutdownHook(new Thread(state::close, "termitalk-state-shutdown"));
+      return state;
+    } catch (IOException e) {
+      if (store != MessageStore.NONE) {
+        store.close();
+        throw new UncheckedIOException("Could not restore state from " + config.state().directory()
+                + "; refusing to start with the message store in " + config.store().directory()
+                + " because room IDs would be reused", e);
+      }
+      LoggerUtil.error("Could not restore state from " + config.state().directory() + ": " + e.getMessage()
+              + ". Continuing without persistence.");
+      return null;
+    }
+  }
+
+  private void startMetrics(ServerConfig config) {
+    registerGauges();
+    if (config.metricsPort() <= 0) return;
+    try {
+      MetricsServer metrics = MetricsServer.start(ServerMetrics.REGISTRY, config.metricsPort());
+      Runtime.getRuntime().addShutdownHook(new Thread(metrics::close, "termitalk-metrics-shutdown"));
+    } catch (IOException e) {
+      LoggerUtil.error("Could not serve metrics on port " + config.metricsPort() + ": " + e.getMessage()
+              + ". Continuing without them.");
+    }
+  }
+
+  private void registerGauges() {
+    MetricsRegistry registry = ServerMetrics.REGISTRY;
+    ClientManager clients = context.clientManager();
+    registry.gauge("termitalk_rooms", "Rooms that currently exist.", context.roomManager()::roomCount);
+    registry.gauge("termitalk_users_online", "Logged-in clients.", clients::count);
+    registry.gauge("termitalk_connections_admitted", "Connections holding an admission slot.",
+            context.admission()::connections);
+    registry.gauge("termitalk_connections_unauthenticated", "Admitted connections that have not logged in yet.",
+            context.admission()::unauthenticated);
+    registry.gauge("termitalk_rate_limited_users_tracked", "Users whose rate limit bucket has not refilled yet.",
+            context.commandHandler().rateLimiter()::trackedUsers);
+    registry.gauge("termitalk_outbound_queued_frames", "Frames waiting in the outbound queues of logged-in clients.", () -> {
+      long total = 0;
+      for (ClientHandler client : clients.allClients()) total += client.outboundDepth();
+      return total;
+    });
+    registry.gauge("termitalk_outbound_queue_max_depth", "Deepest outbound queue among logged-in clients.", () -> {
+      long max = 0;
+      for (ClientHandler client : clients.allClients()) max = Math.max(max, client.outboundDepth());
+      return max;
+    });
+    registry.gauge("termitalk_slow_rooms", "Rooms whose smoothed sampled delivery latency is above the slow threshold.", () -> {
+      long slow = 0;
+      for (ChatRoom room : context.roomManager().allRooms()) {
+        LatencyWindow window = room.deliveryLatency();
+        if (window != null && window.isSlow()) slow++;
+      }
+      return slow;
+    });
+    registry.gauge("termitalk_slow_clients", "Clients whose smoothed sampled delivery latency is above the slow threshold.", () -> {
+      long slow = 0;
+      for (ClientHandler client : clients.allClients()) {
+        LatencyWindow window = client.deliveryLatency();
+        if (window != null && window.isSlow()) slow++;
+      }
+      return slow;
+    });
+    ClusterNode cluster = context.cluster();
+    if (cluster != null) {
+      registry.gauge("termitalk_cluster_peers_connected", "Cluster peers this node can currently send to.",
+              cluster::connectedPeers);
+      registry.gauge("termitalk_cluster_remote_users", "Users logged in to other cluster nodes.",
+              cluster::remoteUserCount);
+      registry.gauge("termitalk_cluster_ring_nodes", "Nodes sharing rooms and usernames on the hash ring, this one included.",
+              () -> cluster.ringMembers().size());
+    }
+    registry.gauge("termitalk_log_lines_dropped", "Log lines dropped because the async log buffer was full.",
+            LoggerUtil::droppedCount);
+    registry.gauge("termitalk_message_log_dropped", "Messages not persisted because the store queue was full.",
+            messageStore::droppedCount);
+    if (stateStore == null) return;
+    registry.gauge("termitalk_state_snapshots", "State snapshots written since startup.", () -> stateStore.stats().snapshots());
+    registry.gauge("termitalk_state_last_snapshot_millis", "Duration of the last state snapshot.",
+            () -> stateStore.stats().lastSnapshotMillis());
+    registry.gauge("termitalk_state_last_snapshot_bytes", "Size of the last state snapshot.",
+            () -> stateStore.stats().lastSnapshotBytes());
+    registry.gauge("termitalk_state_journal_records", "State journal records written since startup.",
+            () -> stateStore.stats().journalRecords());
+    registry.gauge("termitalk_state_journal_bytes", "State journal bytes written since startup.",
+            () -> stateStore.stats().journalBytes());
+    registry.gauge("termitalk_state_recovery_millis", "Time taken to restore state at startup.",
+            () -> stateStore.stats().recoveryMillis());
   }
 
   private void registerCommands() {
@@ -50,24 +227,21 @@ public class TermiTalkServer {
     handler.register(CommandType.QUIT, new QuitCommand());
     handler.register(CommandType.HELP, new HelpCommand());
     handler.register(CommandType.NICK, new NickCommand());
+    handler.register(CommandType.LOG_LEVEL, new LogLevelCommand());
+    handler.register(CommandType.STATS, new StatsCommand(stateStore, messageStore));
+    handler.register(CommandType.PIN, new PinCommand());
+    handler.register(CommandType.PONG, new PongCommand());
+    handler.register(CommandType.LATENCY, new LatencyCommand());
+    handler.register(CommandType.PROTOCOL, new ProtocolCommand());
+    handler.register(CommandType.COMPRESS, new CompressCommand());
     handler.register(CommandType.UNKNOWN, new UnknownCommand());
   }
 
 
   public void start() {
-    try (ServerSocket serverSocket = new ServerSocket(ServerConfig.defaultConfig().port())) {
+    try {
       LoggerUtil.info("==== TermiTalk server starting ====");
-      LoggerUtil.info("Listening on port " + serverSocket.getLocalPort());
-
-      while (true) {
-        Socket clientSocket = serverSocket.accept();
-        LoggerUtil.info("New client connected: " + clientSocket.getInetAddress());
-
-        // Pass the entire context to the handler
-        ClientHandler handler = new ClientHandler(clientSocket, context);
-
-        Thread.startVirtualThread(handler);
-      }
+      Transport.of(context.config().transport()).serve(context);
     } catch (IOException e) {
       LoggerUtil.error("Server error: " + e.getMessage());
       e.printStackTrace();
@@ -75,6 +249,6 @@ public class TermiTalkServer {
   }
 
   public static void main(String[] args) {
-    new TermiTalkServer(ServerConfig.defaultConfig()).start();
+    new TermiTalkServer(ServerConfig.fromSystemProperties()).start();
   }
 }
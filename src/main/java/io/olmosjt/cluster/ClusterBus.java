@@ -0,0 +1,62 @@
+package io.olmosjt.cluster;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Carries {@link ClusterMessage}s between the nodes of a cluster.
+ * <p>
+ * Delivery is at most once and in order per pair of nodes: messages sent while a peer is unreachable,
+ * or that overflow its queue, are dropped. After a link is re-established the bus reports
+ * {@link Listener#peerUp} so that state can be replayed.
+ */
+public interface ClusterBus extends Closeable {
+
+  /**
+   * Receives what arrives from other nodes. Callbacks for one peer come from one thread, in order.
+   */
+  interface Listener {
+    /**
+     * Messages sent to {@code nodeId} from now on reach it; anything sent before may have been lost.
+     */
+    void peerUp(String nodeId);
+
+    /**
+     * {@code nodeId} (re)connected to this node; whatever it announced before is stale.
+     */
+    void peerConnected(String nodeId);
+
+    /**
+     * The connection from {@code nodeId} closed; whatever it announced is stale.
+     */
+    void peerDown(String nodeId);
+
+    void received(String nodeId, ClusterMessage message);
+  }
+
+  /**
+   * Binds and starts connecting to the peers.
+   */
+  void start(Listener listener) throws IOException;
+
+  /**
+   * Sends a message to some peers, encoding it once.
+   * @return How many peers it was queued for.
+   */
+  int send(Collection<String> nodeIds, ClusterMessage message);
+
+  /**
+   * Sends a message to every peer, encoding it once.
+   * @return How many peers it was queued for.
+   */
+  int broadcast(ClusterMessage message);
+
+  /**
+   * @return The number of peers messages can currently be sent to.
+   */
+  int connectedPeers();
+
+  @Override
+  void close();
+}
@@ -0,0 +1,161 @@
+package io.olmosjt.cluster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary framing of {@link ClusterMessage}s between nodes.
+ * <p>
+ * A frame is a 4 byte big-endian length followed by a one byte kind and the fields of the message;
+ * strings are a 4 byte length and UTF-8 bytes, with length -1 for {@code null}. Encoding produces the
+ * whole frame, so a message sent to several peers is encoded once.
+ */
+public final class ClusterCodec {
+  /** Largest frame accepted from a peer. */
+  public static final int MAX_FRAME_BYTES = 1 << 20;
+
+  private static final byte HELLO = 1;
+  private static final byte USER_PRESENCE = 2;
+  private static final byte ROOM_PRESENCE = 3;
+  private static final byte ROOM_INTEREST = 4;
+  private static final byte ROOM_MESSAGE = 5;
+  private static final byte PRIVATE_MESSAGE = 6;
+  private static final byte UNDELIVERABLE = 7;
+  private static final byte ROOM_PUBLISH = 8;
+  private static final byte ROOM_HANDOFF = 9;
+  private static final byte CLAIM_REQUEST = 10;
+  private static final byte CLAIM_REPLY = 11;
+
+  private ClusterCodec() {}
+
+  /**
+   * @return The complete frame, length prefix included.
+   */
+  public static byte[] encode(ClusterMessage message) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(0);
+      switch (message) {
+        case ClusterMessage.Hello m -> {
+          out.writeByte(HELLO);
+          writeString(out, m.nodeId());
+        }
+        case ClusterMessage.UserPresence m -> {
+          out.writeByte(USER_PRESENCE);
+          writeString(out, m.username());
+          out.writeBoolean(m.online());
+        }
+        case ClusterMessage.RoomPresence m -> {
+          out.writeByte(ROOM_PRESENCE);
+          writeString(out, m.room());
+          out.writeBoolean(m.exists());
+        }
+        case ClusterMessage.RoomInterest m -> {
+          out.writeByte(ROOM_INTEREST);
+          writeString(out, m.room());
+          out.writeBoolean(m.interested());
+        }
+        case ClusterMessage.RoomPublish m -> {
+          out.writeByte(ROOM_PUBLISH);
+          writeString(out, m.room());
+          writeString(out, m.sender());
+          writeString(out, m.content());
+          out.writeLong(m.timestamp());
+        }
+        case ClusterMessage.RoomMessage m -> {
+          out.writeByte(ROOM_MESSAGE);
+          writeString(out, m.room());
+          writeString(out, m.sender());
+          writeString(out, m.content());
+          out.writeLong(m.timestamp());
+          out.writeLong(m.sequence());
+        }
+        case ClusterMessage.RoomHandoff m -> {
+          out.writeByte(ROOM_HANDOFF);
+          writeString(out, m.room());
+          out.writeLong(m.sequence());
+        }
+        case ClusterMessage.ClaimRequest m -> {
+          out.writeByte(CLAIM_REQUEST);
+          out.writeLong(m.id());
+          writeString(out, m.username());
+        }
+        case ClusterMessage.ClaimReply m -> {
+          out.writeByte(CLAIM_REPLY);
+          out.writeLong(m.id());
+          out.writeBoolean(m.granted());
+        }
+        case ClusterMessage.PrivateMessage m -> {
+          out.writeByte(PRIVATE_MESSAGE);
+          writeString(out, m.sender());
+          writeString(out, m.recipient());
+          writeString(out, m.content());
+          out.writeLong(m.timestamp());
+        }
+        case ClusterMessage.Undeliverable m -> {
+          out.writeByte(UNDELIVERABLE);
+          writeString(out, m.sender());
+          writeString(out, m.recipient());
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    byte[] frame = bytes.toByteArray();
+    int length = frame.length - 4;
+    frame[0] = (byte) (length >>> 24);
+    frame[1] = (byte) (length >>> 16);
+    frame[2] = (byte) (length >>> 8);
+    frame[3] = (byte) length;
+    return frame;
+  }
+
+  /**
+   * Reads one frame.
+   * @throws IOException If the stream ends or the frame is malformed.
+   */
+  public static ClusterMessage read(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 1 || length > MAX_FRAME_BYTES) throw new IOException("Bad cluster frame length " + length);
+    byte kind = in.readByte();
+    return switch (kind) {
+      case HELLO -> new ClusterMessage.Hello(readString(in));
+      case USER_PRESENCE -> new ClusterMessage.UserPresence(readString(in), in.readBoolean());
+      case ROOM_PRESENCE -> new ClusterMessage.RoomPresence(readString(in), in.readBoolean());
+      case ROOM_INTEREST -> new ClusterMessage.RoomInterest(readString(in), in.readBoolean());
+      case ROOM_PUBLISH -> new ClusterMessage.RoomPublish(readString(in), readString(in), readString(in), in.readLong());
+      case ROOM_MESSAGE -> new ClusterMessage.RoomMessage(readString(in), readString(in), readString(in), in.readLong(),
+              in.readLong());
+      case ROOM_HANDOFF -> new ClusterMessage.RoomHandoff(readString(in), in.readLong());
+      case CLAIM_REQUEST -> new ClusterMessage.ClaimRequest(in.readLong(), readString(in));
+      case CLAIM_REPLY -> new ClusterMessage.ClaimReply(in.readLong(), in.readBoolean());
+      case PRIVATE_MESSAGE -> new ClusterMessage.PrivateMessage(readString(in), readString(in), readString(in), in.readLong());
+      case UNDELIVERABLE -> new ClusterMessage.Undeliverable(readString(in), readString(in));
+      default -> throw new IOException("Unknown cluster frame kind " + kind);
+    };
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(utf8.length);
+    out.write(utf8);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == -1) return null;
+    if (length < 0 || length > MAX_FRAME_BYTES) throw new IOException("Bad cluster string length " + length);
+    byte[] utf8 = new byte[length];
+    in.readFully(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+}
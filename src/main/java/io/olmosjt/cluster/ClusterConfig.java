@@ -0,0 +1,93 @@
+package io.olmosjt.cluster;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cluster membership of this node.
+ *
+ * @param nodeId        Name of this node, unique in the cluster; {@code null} runs the server standalone.
+ * @param host          Address the cluster port binds to.
+ * @param port          Port other nodes connect to.
+ * @param peers         The other nodes, by node ID.
+ * @param queueCapacity Most frames waiting to be written to one peer; more are dropped.
+ * @param virtualNodes  Points per node on the {@link HashRing} that assigns rooms and usernames to owner nodes.
+ */
+public record ClusterConfig(
+        String nodeId,
+        String host,
+        int port,
+        Map<String, InetSocketAddress> peers,
+        int queueCapacity,
+        int virtualNodes
+) {
+
+  public ClusterConfig {
+    peers = Map.copyOf(peers);
+  }
+
+  /**
+   * @return A standalone server.
+   */
+  public static ClusterConfig disabled() {
+    return new ClusterConfig(null, "127.0.0.1", 9200, Map.of(), 65_536, 128);
+  }
+
+  /**
+   * @return This node and its peers, sorted; the position of a node in this list is its room ID partition.
+   */
+  public List<String> allNodes() {
+    List<String> all = new ArrayList<>(peers.keySet());
+    all.add(nodeId);
+    Collections.sort(all);
+    return all;
+  }
+
+  /**
+   * @return {@code true} if this node joins a cluster.
+   */
+  public boolean enabled() {
+    return nodeId != null;
+  }
+
+  /**
+   * Reads {@code termitalk.cluster.nodeId}, {@code termitalk.cluster.host}, {@code termitalk.cluster.port},
+   * {@code termitalk.cluster.queue}, {@code termitalk.cluster.virtualNodes} and {@code termitalk.cluster.peers},
+   * a comma separated list of
+   * {@code id@host:port}, falling back to {@code base} for anything not set.
+   */
+  public static ClusterConfig fromSystemProperties(ClusterConfig base) {
+    String peers = System.getProperty("termitalk.cluster.peers");
+    return new ClusterConfig(
+            System.getProperty("termitalk.cluster.nodeId", base.nodeId()),
+            System.getProperty("termitalk.cluster.host", base.host()),
+            Integer.getInteger("termitalk.cluster.port", base.port()),
+            peers == null ? base.peers() : parsePeers(peers),
+            Integer.getInteger("termitalk.cluster.queue", base.queueCapacity()),
+            Integer.getInteger("termitalk.cluster.virtualNodes", base.virtualNodes()));
+  }
+
+  /**
+   * Parses {@code id@host:port[,id@host:port...]}.
+   * @throws IllegalArgumentException If an entry is malformed.
+   */
+  public static Map<String, InetSocketAddress> parsePeers(String value) {
+    Map<String, InetSocketAddress> peers = new LinkedHashMap<>();
+    for (String entry : value.split(",")) {
+      entry = entry.trim();
+      if (entry.isEmpty()) continue;
+      int at = entry.indexOf('@');
+      int colon = entry.lastIndexOf(':');
+      if (at <= 0 || colon < at + 2 || colon == entry.length() - 1) {
+        throw new IllegalArgumentException("Peer '" + entry + "' is not of the form id@host:port");
+      }
+      peers.put(entry.substring(0, at), InetSocketAddress.createUnresolved(entry.substring(at + 1, colon),
+              Integer.parseInt(entry.substring(colon + 1))));
+    }
+    return peers;
+  }
+}
@@ -0,0 +1,45 @@
+package io.olmosjt.cluster;
+
+/**
+ * What nodes of a cluster tell each other.
+ * <p>
+ * State announcements ({@link UserPresence}, {@link RoomPresence}, {@link RoomInterest}) are idempotent, so a
+ * peer can be brought up to date by replaying the current state after a reconnect. Room names are compared
+ * ignoring case; a room of that name on each node forms one cluster room, and the {@link HashRing} names
+ * the node that owns it.
+ */
+public sealed interface ClusterMessage {
+
+  /** First frame on every link, naming the node that opened it. */
+  record Hello(String nodeId) implements ClusterMessage {}
+
+  /** A user logged in to or left the sending node. */
+  record UserPresence(String username, boolean online) implements ClusterMessage {}
+
+  /** A room with this name was created on, or the last one removed from, the sending node. */
+  record RoomPresence(String room, boolean exists) implements ClusterMessage {}
+
+  /** The sending node has local members in the room and wants its messages, or no longer does. */
+  record RoomInterest(String room, boolean interested) implements ClusterMessage {}
+
+  /** A user message sent on another node, for the owner of the room to number and relay. */
+  record RoomPublish(String room, String sender, String content, long timestamp) implements ClusterMessage {}
+
+  /** A user message numbered by the owner of the room, to be fanned out to the local members. */
+  record RoomMessage(String room, String sender, String content, long timestamp, long sequence) implements ClusterMessage {}
+
+  /** The sender owned the room until the ring changed; its last sequence number, for the new owner to continue from. */
+  record RoomHandoff(String room, long sequence) implements ClusterMessage {}
+
+  /** Asks the owner of a username to reserve it for a login on the sending node. */
+  record ClaimRequest(long id, String username) implements ClusterMessage {}
+
+  /** Answer to a {@link ClaimRequest}. */
+  record ClaimReply(long id, boolean granted) implements ClusterMessage {}
+
+  /** A private message for a user logged in to the receiving node. */
+  record PrivateMessage(String sender, String recipient, String content, long timestamp) implements ClusterMessage {}
+
+  /** A forwarded private message found its recipient offline. */
+  record Undeliverable(String sender, String recipient) implements ClusterMessage {}
+}
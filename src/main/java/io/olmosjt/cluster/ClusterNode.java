@@ -0,0 +1,495 @@
+package io.olmosjt.cluster;
+
+import io.olmosjt.message.Message;
+import io.olmosjt.message.MessageType;
+import io.olmosjt.protocol.MessageEncoder;
+import io.olmosjt.room.ChatRoom;
+import io.olmosjt.room.ChatRoomManager;
+import io.olmosjt.room.RoomListener;
+import io.olmosjt.server.ClientHandler;
+import io.olmosjt.server.ClientManager;
+import io.olmosjt.util.HashedWheelTimer;
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Joins this server to a cluster over a {@link ClusterBus}.
+ * <p>
+ * Each node keeps a directory of what the others announced: which users are logged in where, which
+ * nodes have a room of a given name, and which of those have local members in it. Rooms are matched by
+ * name, ignoring case; on each node the room with that name and the lowest ID is its part of the cluster
+ * room. Private messages to a user logged in elsewhere are forwarded to that user's node.
+ * <p>
+ * Rooms and usernames are sharded over the live nodes by a {@link HashRing}. The owner of a room numbers
+ * its messages: a message sent on another node is forwarded to the owner, which broadcasts it to its
+ * local members through {@link ChatRoom#broadcast(io.olmosjt.protocol.Frame, ChatRoom.Relay)} and relays it,
+ * with its sequence number, once to every other node with members there. Those fan it out locally and
+ * never forward it again. The owner of a username decides who may log in under it. When a node joins or
+ * leaves, only the rooms whose owner changed are handed off: the previous owner, or any node replaying its
+ * state to a new peer, tells the owner the last sequence number it knows so numbering continues.
+ * <p>
+ * All announcements, and the replay of local state to a peer whose link came up, are decided under this
+ * object's lock and queued in an outbox in that order. They are sent after the lock is released by one
+ * thread at a time, so every peer sees them in the order the changes happened here, but encoding and
+ * queueing frames for the peers never holds up another thread's change.
+ * <p>
+ * Only the messages of a cluster room are shared: WHO and the history replayed on JOIN are answered from
+ * the joining node's own copy of the room, which has the messages relayed to it while it had members there.
+ */
+public final class ClusterNode implements ClusterBus.Listener, RoomListener {
+  private static final Duration CLAIM_TIMEOUT = Duration.ofSeconds(2);
+  private static final Duration RESERVATION_TTL = Duration.ofSeconds(10);
+
+  /** Outcome of {@link #claimUsername}. */
+  public enum ClaimResult { GRANTED, TAKEN, UNAVAILABLE }
+
+  private final String nodeId;
+  private final int virtualNodes;
+  private final ClusterBus bus;
+  private final ClientManager clients;
+  private final ChatRoomManager rooms;
+  private final HashedWheelTimer timer;
+
+  private final Map<String, String> remoteUsers = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> remoteRooms = new ConcurrentHashMap<>();
+  private final Map<String, Set<String>> interestedNodes = new ConcurrentHashMap<>();
+  private final Map<String, Long> sequenceFloors = new ConcurrentHashMap<>();
+  private final Map<String, String> reservations = new ConcurrentHashMap<>();
+  private final Map<Long, Consumer<ClaimResult>> pendingClaims = new ConcurrentHashMap<>();
+  private final AtomicLong claimIds = new AtomicLong();
+  private final Queue<Outgoing> outbox = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean sending = new AtomicBoolean();
+
+  // Guarded by this.
+  private final Map<String, String> announcedRooms = new HashMap<>();
+  private final Set<String> announcedInterest = new HashSet<>();
+  private final Set<String> liveNodes = new TreeSet<>();
+  private volatile HashRing ring;
+
+  /** A message queued under the lock, for {@code to} or every peer if {@code null}. */
+  private record Outgoing(List<String> to, ClusterMessage message) {}
+
+  /**
+   * Also restricts the room IDs {@code rooms} hands out to this node's partition, so IDs are unique in the cluster.
+   * @param timer Times out username claims and reservations.
+   */
+  public ClusterNode(ClusterConfig config, ClusterBus bus, ClientManager clients, ChatRoomManager rooms,
+                     HashedWheelTimer timer) {
+    this.nodeId = config.nodeId();
+    this.virtualNodes = config.virtualNodes();
+    this.bus = bus;
+    this.clients = clients;
+    this.rooms = rooms;
+    this.timer = timer;
+    List<String> all = config.allNodes();
+    rooms.setIdPartition(all.indexOf(nodeId), all.size());
+    liveNodes.add(nodeId);
+    ring = HashRing.of(liveNodes, virtualNodes);
+  }
+
+  /**
+   * Announces the existing rooms and starts the bus.
+   */
+  public void start() throws IOException {
+    synchronized (this) {
+      rooms.setListener(this);
+      for (ChatRoom room : rooms.allRooms()) refresh(room.getName());
+    }
+    bus.start(this);
+    flush();
+  }
+
+  public void close() {
+    bus.close();
+  }
+
+  public String nodeId() {
+    return nodeId;
+  }
+
+  /**
+   * @return The number of peers this node can currently send to.
+   */
+  public int connectedPeers() {
+    return bus.connectedPeers();
+  }
+
+  /**
+   * @return The number of users logged in to other nodes.
+   */
+  public int remoteUserCount() {
+    return remoteUsers.size();
+  }
+
+  /**
+   * @return The nodes currently sharing rooms and usernames, this one included.
+   */
+  public List<String> ringMembers() {
+    return ring.nodes();
+  }
+
+  /**
+   * @return {@code true} if another node has a room with this name.
+   */
+  public boolean roomExistsElsewhere(String name) {
+    Set<String> nodes = remoteRooms.get(key(name));
+    return nodes != null && !nodes.isEmpty();
+  }
+
+  /**
+   * @return The node that numbers the messages of this room, or {@code null} if the room is not part of a
+   *         cluster room because a local room with the same name has a lower ID.
+   */
+  public String ownerOf(ChatRoom room) {
+    List<ChatRoom> named = rooms.findByName(room.getName());
+    if (named.isEmpty() || named.get(0) != room) return null;
+    return ring.ownerOf(roomKey(room.getName()));
+  }
+
+  /**
+   * Forwards a user message for a room owned by another node to that node.
+   * @return {@code false} if the owner is unreachable.
+   */
+  public boolean publish(String owner, ChatRoom room, Message message) {
+    return bus.send(List.of(owner), new ClusterMessage.RoomPublish(room.getName(), message.sender(),
+            message.content(), message.timestamp().toEpochMilli())) > 0;
+  }
+
+  /**
+   * @return What relays the numbered messages of a room this node owns to the other nodes with members in
+   *         it, or {@code null} if there are none.
+   */
+  public ChatRoom.Relay relayFor(ChatRoom room) {
+    Set<String> nodes = interestedNodes.get(key(room.getName()));
+    if (nodes == null || nodes.isEmpty()) return null;
+    return (frame, sequence) -> {
+      Message m = frame.message();
+      bus.send(nodes, new ClusterMessage.RoomMessage(room.getName(), m.sender(), m.content(),
+              m.timestamp().toEpochMilli(), sequence));
+    };
+  }
+
+  /**
+   * Forwards a private message to the node its recipient is logged in to.
+   * @return {@code false} if the recipient is not known to be logged in elsewhere or the node is unreachable.
+   */
+  public boolean routePrivate(Message message) {
+    String node = remoteUsers.get(message.recipient());
+    if (node == null) return false;
+    return bus.send(List.of(node), new ClusterMessage.PrivateMessage(message.sender(), message.recipient(),
+            message.content(), message.timestamp().toEpochMilli())) > 0;
+  }
+
+  /**
+   * Asks the owner of {@code username} to reserve it for a login on this node. {@code done} runs exactly once,
+   * on this thread if this node owns the name and otherwise on the thread that receives the answer or times out.
+   */
+  public void claimUsername(String username, Consumer<ClaimResult> done) {
+    String owner = ring.ownerOf(userKey(username));
+    if (owner.equals(nodeId)) {
+      done.accept(reserve(username, nodeId) ? ClaimResult.GRANTED : ClaimResult.TAKEN);
+      return;
+    }
+    long id = claimIds.incrementAndGet();
+    pendingClaims.put(id, done);
+    if (bus.send(List.of(owner), new ClusterMessage.ClaimRequest(id, username)) == 0) {
+      if (pendingClaims.remove(id) != null) done.accept(ClaimResult.UNAVAILABLE);
+      return;
+    }
+    timer.schedule(() -> {
+      Consumer<ClaimResult> pending = pendingClaims.remove(id);
+      if (pending != null) pending.accept(ClaimResult.UNAVAILABLE);
+    }, CLAIM_TIMEOUT);
+  }
+
+  /**
+   * Reserves a username this node owns for a login on {@code node}, unless someone holds or reserved it.
+   */
+  private boolean reserve(String username, String node) {
+    if (clients.isOnline(username) || remoteUsers.containsKey(username)) return false;
+    if (reservations.putIfAbsent(username, node) != null) return false;
+    // A login announced while reserving wins.
+    if (clients.isOnline(username) || remoteUsers.containsKey(username)) {
+      reservations.remove(username, node);
+      return false;
+    }
+    timer.schedule(() -> reservations.remove(username, node), RESERVATION_TTL);
+    return true;
+  }
+
+  public void userOnline(String username) {
+    synchronized (this) {
+      reservations.remove(username, nodeId);
+      post(null, new ClusterMessage.UserPresence(username, true));
+    }
+    flush();
+  }
+
+  public void userOffline(String username) {
+    synchronized (this) {
+      post(null, new ClusterMessage.UserPresence(username, false));
+    }
+    flush();
+  }
+
+  @Override
+  public void roomAdded(ChatRoom room) {
+    synchronized (this) {
+      Long floor = sequenceFloors.remove(key(room.getName()));
+      if (floor != null) room.continueFrom(floor);
+      refresh(room.getName());
+    }
+    flush();
+  }
+
+  @Override
+  public void roomRemoved(ChatRoom room) {
+    synchronized (this) {
+      refresh(room.getName());
+    }
+    flush();
+  }
+
+  @Override
+  public void membersChanged(ChatRoom room) {
+    synchronized (this) {
+      refresh(room.getName());
+    }
+    flush();
+  }
+
+  /**
+   * Announces whether a room of this name exists here and has members, if that changed.
+   */
+  private void refresh(String name) {
+    String key = key(name);
+    List<ChatRoom> named = rooms.findByName(name);
+    boolean exists = !named.isEmpty();
+    boolean interested = exists && named.get(0).memberCount() > 0;
+    if (exists != announcedRooms.containsKey(key)) {
+      if (exists) announcedRooms.put(key, named.get(0).getName());
+      else announcedRooms.remove(key);
+      post(null, new ClusterMessage.RoomPresence(name, exists));
+    }
+    if (interested ? announcedInterest.add(key) : announcedInterest.remove(key)) {
+      post(null, new ClusterMessage.RoomInterest(name, interested));
+    }
+  }
+
+  @Override
+  public void peerUp(String peer) {
+    synchronized (this) {
+      List<String> to = List.of(peer);
+      for (ClientHandler client : clients.allClients()) {
+        post(to, new ClusterMessage.UserPresence(client.getUser().username(), true));
+      }
+      for (String name : announcedRooms.values()) post(to, new ClusterMessage.RoomPresence(name, true));
+      for (String key : announcedInterest) post(to, new ClusterMessage.RoomInterest(key, true));
+      HashRing current = ring;
+      for (String name : announcedRooms.values()) {
+        if (current.ownerOf(roomKey(name)).equals(peer)) handOff(peer, name);
+      }
+    }
+    flush();
+  }
+
+  @Override
+  public void peerConnected(String peer) {
+    forget(peer);
+    synchronized (this) {
+      if (liveNodes.add(peer)) rebalance();
+    }
+    flush();
+  }
+
+  @Override
+  public void peerDown(String peer) {
+    forget(peer);
+    synchronized (this) {
+      if (liveNodes.remove(peer)) rebalance();
+    }
+    flush();
+  }
+
+  /**
+   * Queues a message decided under this object's lock; {@link #flush()} sends it once the lock is released.
+   * @param to The peers to send it to, or {@code null} for all of them.
+   */
+  private void post(List<String> to, ClusterMessage message) {
+    outbox.add(new Outgoing(to, message));
+  }
+
+  /**
+   * Sends what is in the outbox, in order, unless another thread already is; that thread then sends what
+   * was queued here too. Called without the lock held.
+   */
+  private void flush() {
+    while (!outbox.isEmpty() && sending.compareAndSet(false, true)) {
+      try {
+        Outgoing next;
+        while ((next = outbox.poll()) != null) {
+          if (next.to() == null) bus.broadcast(next.message());
+          else bus.send(next.to(), next.message());
+        }
+      } finally {
+        sending.set(false);
+      }
+    }
+  }
+
+  private void forget(String peer) {
+    remoteUsers.values().removeIf(peer::equals);
+    reservations.values().removeIf(peer::equals);
+    forget(remoteRooms, peer);
+    forget(interestedNodes, peer);
+  }
+
+  /**
+   * Rebuilds the ring from the live nodes and hands off the rooms this node owned that moved elsewhere.
+   */
+  private void rebalance() {
+    HashRing previous = ring;
+    HashRing next = HashRing.of(liveNodes, virtualNodes);
+    ring = next;
+    int moved = 0;
+    int handedOff = 0;
+    for (String name : announcedRooms.values()) {
+      String was = previous.ownerOf(roomKey(name));
+      String now = next.ownerOf(roomKey(name));
+      if (was.equals(now)) continue;
+      moved++;
+      if (was.equals(nodeId)) {
+        handOff(now, name);
+        handedOff++;
+      }
+    }
+    LoggerUtil.info("CLUSTER ring nodes=" + next.nodes() + " roomsMoved=" + moved + "/" + announcedRooms.size()
+            + " handedOff=" + handedOff);
+  }
+
+  private void handOff(String owner, String name) {
+    List<ChatRoom> named = rooms.findByName(name);
+    if (named.isEmpty()) return;
+    post(List.of(owner), new ClusterMessage.RoomHandoff(name, named.get(0).lastSequence()));
+  }
+
+  @Override
+  public void received(String peer, ClusterMessage message) {
+    switch (message) {
+      case ClusterMessage.Hello ignored -> {}
+      case ClusterMessage.UserPresence m -> {
+        if (m.online()) {
+          remoteUsers.put(m.username(), peer);
+          reservations.remove(m.username(), peer);
+        } else {
+          remoteUsers.remove(m.username(), peer);
+        }
+      }
+      case ClusterMessage.RoomPresence m -> update(remoteRooms, key(m.room()), peer, m.exists());
+      case ClusterMessage.RoomInterest m -> update(interestedNodes, key(m.room()), peer, m.interested());
+      case ClusterMessage.RoomPublish m -> publishOwned(m);
+      case ClusterMessage.RoomMessage m -> deliverRoomMessage(m);
+      case ClusterMessage.RoomHandoff m -> {
+        List<ChatRoom> named = rooms.findByName(m.room());
+        if (!named.isEmpty()) named.get(0).continueFrom(m.sequence());
+        else sequenceFloors.merge(key(m.room()), m.sequence(), Math::max);
+      }
+      case ClusterMessage.PrivateMessage m -> deliverPrivate(peer, m);
+      case ClusterMessage.Undeliverable m -> {
+        ClientHandler sender = clients.get(m.sender());
+        if (sender != null) {
+          sender.send(Message.serverNok(m.sender(), "User '" + m.recipient() + "' not found or is offline."));
+        }
+      }
+      case ClusterMessage.ClaimRequest m ->
+              bus.send(List.of(peer), new ClusterMessage.ClaimReply(m.id(), reserve(m.username(), peer)));
+      case ClusterMessage.ClaimReply m -> {
+        Consumer<ClaimResult> pending = pendingClaims.remove(m.id());
+        if (pending != null) pending.accept(m.granted() ? ClaimResult.GRANTED : ClaimResult.TAKEN);
+      }
+    }
+  }
+
+  /**
+   * Numbers and relays a message published on another node to a room this node owns, creating the room here
+   * if this node has none of that name.
+   */
+  private void publishOwned(ClusterMessage.RoomPublish m) {
+    List<ChatRoom> named = rooms.findByName(m.room());
+    ChatRoom room = named.isEmpty() ? rooms.createRoom(m.room(), rooms.historyDefaults(), null) : named.get(0);
+    if (room == null) {
+      LoggerUtil.warn("CLUSTER could not create room " + m.room() + " to publish to");
+      return;
+    }
+    Message message = new Message(MessageType.USER, m.sender(), "#" + room.getId(), m.content(),
+            Instant.ofEpochMilli(m.timestamp()));
+    room.broadcast(MessageEncoder.encodeFrame(message), relayFor(room));
+  }
+
+  private void deliverRoomMessage(ClusterMessage.RoomMessage m) {
+    List<ChatRoom> named = rooms.findByName(m.room());
+    if (named.isEmpty() || named.get(0).memberCount() == 0) return;
+    ChatRoom room = named.get(0);
+    room.replicate(MessageEncoder.encodeFrame(new Message(MessageType.USER, m.sender(), "#" + room.getId(),
+            m.content(), Instant.ofEpochMilli(m.timestamp()))), m.sequence());
+  }
+
+  private void deliverPrivate(String peer, ClusterMessage.PrivateMessage m) {
+    ClientHandler target = clients.get(m.recipient());
+    if (target == null) {
+      bus.send(List.of(peer), new ClusterMessage.Undeliverable(m.sender(), m.recipient()));
+      return;
+    }
+    target.send(new Message(MessageType.PRIVATE, m.sender(), m.recipient(), m.content(), Instant.ofEpochMilli(m.timestamp())));
+    if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+      LoggerUtil.info("ROUTE private from=" + m.sender() + " to=" + m.recipient() + " via node=" + peer);
+    }
+  }
+
+  private static void update(Map<String, Set<String>> directory, String key, String peer, boolean present) {
+    if (present) {
+      directory.compute(key, (k, nodes) -> {
+        if (nodes == null) nodes = ConcurrentHashMap.newKeySet();
+        nodes.add(peer);
+        return nodes;
+      });
+    } else {
+      directory.computeIfPresent(key, (k, nodes) -> {
+        nodes.remove(peer);
+        return nodes.isEmpty() ? null : nodes;
+      });
+    }
+  }
+
+  private static void forget(Map<String, Set<String>> directory, String peer) {
+    for (String key : directory.keySet()) update(directory, key, peer, false);
+  }
+
+  private static String key(String name) {
+    return name.trim().toLowerCase(Locale.ROOT);
+  }
+
+  private static String roomKey(String name) {
+    return "room:" + key(name);
+  }
+
+  private static String userKey(String username) {
+    return "user:" + username;
+  }
+}
@@ -0,0 +1,84 @@
+package io.olmosjt.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent-hash ring assigning keys to nodes.
+ * <p>
+ * Each node is placed on a 64-bit ring at {@code virtualNodes} points, and a key belongs to the node owning
+ * the first point at or after the key's hash, wrapping around. Adding or removing a node only moves the keys
+ * on the arcs next to its points, roughly {@code 1/n} of them, and virtual nodes keep the arcs balanced.
+ * Instances are immutable; every node building a ring from the same members gets the same assignment.
+ */
+public final class HashRing {
+  private final long[] points;
+  private final String[] owners;
+  private final List<String> nodes;
+
+  private HashRing(long[] points, String[] owners, List<String> nodes) {
+    this.points = points;
+    this.owners = owners;
+    this.nodes = nodes;
+  }
+
+  /**
+   * @param nodes        The member node IDs; must not be empty.
+   * @param virtualNodes Points per node.
+   */
+  public static HashRing of(Collection<String> nodes, int virtualNodes) {
+    List<String> sorted = List.copyOf(new TreeSet<>(nodes));
+    if (sorted.isEmpty()) throw new IllegalArgumentException("A ring needs at least one node");
+    int n = sorted.size() * virtualNodes;
+    long[] hashes = new long[n];
+    Integer[] order = new Integer[n];
+    for (int slot = 0; slot < n; slot++) {
+      hashes[slot] = hash(sorted.get(slot / virtualNodes) + "#" + (slot % virtualNodes));
+      order[slot] = slot;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+    long[] points = new long[n];
+    String[] owners = new String[n];
+    for (int i = 0; i < n; i++) {
+      points[i] = hashes[order[i]];
+      owners[i] = sorted.get(order[i] / virtualNodes);
+    }
+    return new HashRing(points, owners, sorted);
+  }
+
+  /**
+   * @return The node owning {@code key}.
+   */
+  public String ownerOf(String key) {
+    int i = Arrays.binarySearch(points, hash(key));
+    if (i < 0) i = -i - 1;
+    return owners[i == points.length ? 0 : i];
+  }
+
+  /**
+   * @return The member node IDs, sorted.
+   */
+  public List<String> nodes() {
+    return nodes;
+  }
+
+  /**
+   * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so that similar keys spread out.
+   */
+  static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      h ^= b & 0xff;
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
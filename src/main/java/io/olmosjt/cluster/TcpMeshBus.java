@@ -0,0 +1,240 @@
+package io.olmosjt.cluster;
+
+import io.olmosjt.metrics.ServerMetrics;
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ClusterBus} over a full mesh of TCP connections.
+ * <p>
+ * Every node dials every peer and writes to it over that connection only; what a peer sends arrives on
+ * the connection the peer dialled. Each outbound link has a bounded queue drained by its own virtual
+ * thread, so a slow or dead peer never blocks the sender, and reconnects with exponential backoff.
+ * Peers never write to a link they accepted, so a second virtual thread per link just waits for the
+ * peer to close it; that way a restarted peer is noticed and brought up to date even if nothing was
+ * being sent to it.
+ * Each inbound connection is read by a virtual thread that hands messages to the listener in order.
+ */
+public final class TcpMeshBus implements ClusterBus {
+  private static final long MIN_BACKOFF_MILLIS = 100;
+  private static final long MAX_BACKOFF_MILLIS = 5_000;
+  private static final int CONNECT_TIMEOUT_MILLIS = 2_000;
+  /** Queued by the watcher of an outbound link when the peer closed it. */
+  private static final byte[] PEER_CLOSED = new byte[0];
+
+  private final ClusterConfig config;
+  private final Map<String, Link> links = new ConcurrentHashMap<>();
+  private final Map<String, Socket> inbound = new ConcurrentHashMap<>();
+  private volatile Listener listener;
+  private volatile boolean closed;
+  private ServerSocket serverSocket;
+
+  public TcpMeshBus(ClusterConfig config) {
+    this.config = config;
+  }
+
+  @Override
+  public void start(Listener listener) throws IOException {
+    this.listener = listener;
+    serverSocket = new ServerSocket();
+    serverSocket.bind(new InetSocketAddress(config.host(), config.port()));
+    LoggerUtil.info("CLUSTER node=" + config.nodeId() + " listening on " + config.host() + ":" + serverSocket.getLocalPort()
+            + " peers=" + config.peers().keySet());
+    Thread.ofVirtual().name("cluster-accept").start(this::acceptLoop);
+    for (Map.Entry<String, InetSocketAddress> peer : config.peers().entrySet()) {
+      Link link = new Link(peer.getKey(), peer.getValue());
+      links.put(peer.getKey(), link);
+      link.thread = Thread.ofVirtual().name("cluster-link-" + peer.getKey()).start(link);
+    }
+  }
+
+  @Override
+  public int send(Collection<String> nodeIds, ClusterMessage message) {
+    byte[] frame = null;
+    int queued = 0;
+    for (String nodeId : nodeIds) {
+      Link link = links.get(nodeId);
+      if (link == null || !link.connected) continue;
+      if (frame == null) frame = ClusterCodec.encode(message);
+      if (link.offer(frame)) queued++;
+    }
+    return queued;
+  }
+
+  @Override
+  public int broadcast(ClusterMessage message) {
+    return send(links.keySet(), message);
+  }
+
+  @Override
+  public int connectedPeers() {
+    int count = 0;
+    for (Link link : links.values()) {
+      if (link.connected) count++;
+    }
+    return count;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      if (serverSocket != null) serverSocket.close();
+    } catch (IOException ignored) {
+    }
+    for (Link link : links.values()) link.close();
+    for (Socket socket : inbound.values()) closeQuietly(socket);
+  }
+
+  private void acceptLoop() {
+    while (!closed) {
+      try {
+        Socket socket = serverSocket.accept();
+        Thread.ofVirtual().name("cluster-inbound").start(() -> readLoop(socket));
+      } catch (IOException e) {
+        if (!closed) LoggerUtil.error("CLUSTER accept failed: " + e.getMessage());
+      }
+    }
+  }
+
+  private void readLoop(Socket socket) {
+    String nodeId = null;
+    try (socket) {
+      socket.setTcpNoDelay(true);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+      if (!(ClusterCodec.read(in) instanceof ClusterMessage.Hello hello) || !config.peers().containsKey(hello.nodeId())) {
+        LoggerUtil.warn("CLUSTER rejected connection from unknown node at " + socket.getRemoteSocketAddress());
+        return;
+      }
+      nodeId = hello.nodeId();
+      Socket previous = inbound.put(nodeId, socket);
+      if (previous != null) closeQuietly(previous);
+      LoggerUtil.info("CLUSTER inbound link from node=" + nodeId + " up");
+      listener.peerConnected(nodeId);
+      while (!closed) {
+        ClusterMessage message = ClusterCodec.read(in);
+        ServerMetrics.clusterReceived();
+        listener.received(nodeId, message);
+      }
+    } catch (IOException e) {
+      if (nodeId != null && !closed) LoggerUtil.warn("CLUSTER inbound link from node=" + nodeId + " down: " + e);
+    } catch (RuntimeException e) {
+      LoggerUtil.error("CLUSTER inbound link from node=" + nodeId + " failed: " + e);
+    } finally {
+      // A newer connection from the same node has already replaced this one and reset its state.
+      if (nodeId != null && inbound.remove(nodeId, socket) && !closed) listener.peerDown(nodeId);
+    }
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException ignored) {
+    }
+  }
+
+  /**
+   * The outbound connection to one peer.
+   */
+  private final class Link implements Runnable {
+    private final String nodeId;
+    private final InetSocketAddress address;
+    private final BlockingQueue<byte[]> queue;
+    private volatile boolean connected;
+    private volatile Socket socket;
+    private volatile Thread thread;
+
+    Link(String nodeId, InetSocketAddress address) {
+      this.nodeId = nodeId;
+      this.address = address;
+      this.queue = new ArrayBlockingQueue<>(config.queueCapacity());
+    }
+
+    boolean offer(byte[] frame) {
+      if (queue.offer(frame)) {
+        ServerMetrics.clusterSent();
+        return true;
+      }
+      ServerMetrics.clusterDropped();
+      return false;
+    }
+
+    @Override
+    public void run() {
+      long backoff = MIN_BACKOFF_MILLIS;
+      while (!closed) {
+        try (Socket s = new Socket()) {
+          socket = s;
+          s.connect(new InetSocketAddress(address.getHostString(), address.getPort()), CONNECT_TIMEOUT_MILLIS);
+          s.setTcpNoDelay(true);
+          s.setKeepAlive(true);
+          Thread.ofVirtual().name("cluster-watch-" + nodeId).start(() -> watch(s));
+          OutputStream out = new BufferedOutputStream(s.getOutputStream(), 64 * 1024);
+          out.write(ClusterCodec.encode(new ClusterMessage.Hello(config.nodeId())));
+          out.flush();
+          queue.clear();
+          connected = true;
+          backoff = MIN_BACKOFF_MILLIS;
+          LoggerUtil.info("CLUSTER outbound link to node=" + nodeId + " up");
+          listener.peerUp(nodeId);
+          while (!closed) {
+            byte[] frame = queue.take();
+            do {
+              if (frame == PEER_CLOSED) throw new EOFException("closed by peer");
+              out.write(frame);
+            } while ((frame = queue.poll()) != null);
+            out.flush();
+          }
+        } catch (IOException e) {
+          if (!closed) {
+            if (connected) LoggerUtil.warn("CLUSTER outbound link to node=" + nodeId + " down: " + e);
+            else LoggerUtil.debug("CLUSTER could not reach node=" + nodeId + ": " + e.getMessage());
+          }
+        } catch (InterruptedException e) {
+          return;
+        } finally {
+          connected = false;
+        }
+        try {
+          Thread.sleep(backoff);
+        } catch (InterruptedException e) {
+          return;
+        }
+        backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+      }
+    }
+
+    private void watch(Socket s) {
+      try {
+        while (s.getInputStream().read() >= 0) {
+          // Peers send nothing on this connection.
+        }
+      } catch (IOException ignored) {
+      }
+      if (s != socket) return;
+      closeQuietly(s);
+      queue.offer(PEER_CLOSED);
+    }
+
+    void close() {
+      Thread t = thread;
+      if (t != null) t.interrupt();
+      Socket s = socket;
+      if (s != null) closeQuietly(s);
+    }
+  }
+}
@@ -2,8 +2,13 @@ package io.olmosjt.command;
 
 import io.olmosjt.ServerContext;
 import io.olmosjt.message.Message;
+import io.olmosjt.metrics.ServerMetrics;
+import io.olmosjt.protocol.BinaryCodec;
 import io.olmosjt.protocol.CommandParser;
 import io.olmosjt.protocol.ParsedRequest;
+import io.olmosjt.protocol.WireFormat;
+import io.olmosjt.ratelimit.RateLimiter;
+import io.olmosjt.ratelimit.RateLimits;
 import io.olmosjt.server.ClientHandler;
 import io.olmosjt.util.LoggerUtil;
 
@@ -15,10 +20,27 @@ import java.util.Map;
  * <p>
  * Commands are mapped from {@link CommandType} to their {@link Command} implementation.
  * This allows a pluggable design where each command can be registered independently.
+ * Every request is counted and timed per {@link CommandType} in {@link ServerMetrics}.
+ * <p>
+ * Before a command runs, the {@link RateLimiter} takes a permit for it; a request over its limit is
+ * answered with a NOK that says when to retry, and is not executed.
  */
 public class CommandHandler {
 
   private final Map<CommandType, Command> commands = new EnumMap<>(CommandType.class);
+  private final RateLimiter rateLimiter;
+
+  public CommandHandler() {
+    this(new RateLimiter(RateLimits.none()));
+  }
+
+  public CommandHandler(RateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  public RateLimiter rateLimiter() {
+    return rateLimiter;
+  }
 
   public void register(CommandType type, Command command) {
     commands.put(type, command);
@@ -32,20 +54,67 @@ public class CommandHandler {
    */
   public void handle(ServerContext context, ClientHandler client, String raw) {
     // REQ|COMMAND:PAYLOAD
-    ParsedRequest parsed = CommandParser.parse(raw);
+    long start = System.nanoTime();
+    handle(context, client, CommandParser.parse(raw), start);
+  }
+
+  /**
+   * Handles an incoming command straight from the transport's inbound buffer, in the client's
+   * {@linkplain ClientHandler#inboundFormat() current format}.
+   * @param context The server context.
+   * @param client  The client handler for the connection.
+   * @param buf     The buffer holding the request line (without its terminator) or binary request body.
+   * @param off     Offset of the request in {@code buf}.
+   * @param len     Length of the request in bytes.
+   */
+  public void handle(ServerContext context, ClientHandler client, byte[] buf, int off, int len) {
+    long start = System.nanoTime();
+    ParsedRequest parsed = client.inboundFormat() == WireFormat.TEXT
+            ? CommandParser.parse(buf, off, len)
+            : BinaryCodec.parseRequest(buf, off, len);
+    handle(context, client, parsed, start);
+  }
+
+  private void handle(ServerContext context, ClientHandler client, ParsedRequest parsed, long start) {
+    try {
+      String username = client.isLoggedIn() ? client.getUser().username() : null;
+      long retryAfter = rateLimiter.acquire(client.rateBuckets(), username, parsed.type(), start);
+      if (retryAfter > 0) {
+        client.send(Message.serverNok(username, "Rate limit exceeded for " + parsed.type()
+                + ". Retry after " + retryAfterMillis(retryAfter) + " ms."));
+        return;
+      }
+      dispatch(context, client, parsed);
+    } finally {
+      ServerMetrics.commandHandled(parsed.type(), System.nanoTime() - start);
+    }
+  }
 
+  /**
+   * @return The wait rounded up to whole milliseconds.
+   */
+  public static long retryAfterMillis(long nanos) {
+    return (nanos + 999_999) / 1_000_000;
+  }
+
+  private void dispatch(ServerContext context, ClientHandler client, ParsedRequest parsed) {
     String who = client.isLoggedIn() ? client.getUser().username() : "(unauthenticated)";
-    String payload = parsed.payload();
-    String preview = payload == null ? "" : (payload.length() <= 120 ? payload : payload.substring(0, 120) + "...");
 
-    LoggerUtil.info("REQ parsed from=" + who +
-            " type=" + parsed.type() +
-            " payload.len=" + (payload == null ? 0 : payload.length()) +
-            " payload.preview=\"" + preview + "\"");
+    if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+      String payload = parsed.payload();
+      String preview = payload == null ? "" : (payload.length() <= 120 ? payload : payload.substring(0, 120) + "...");
+
+      LoggerUtil.info("REQ parsed from=" + who +
+              " type=" + parsed.type() +
+              " payload.len=" + (payload == null ? 0 : payload.length()) +
+              " payload.preview=\"" + preview + "\"");
+    }
 
     var command = commands.get(parsed.type());
     if (command != null) {
-      LoggerUtil.debug("DISPATCH command type=" + parsed.type() + " to=" + command.getClass().getSimpleName());
+      if (LoggerUtil.isEnabled(LoggerUtil.Level.DEBUG)) {
+        LoggerUtil.debug("DISPATCH command type=" + parsed.type() + " to=" + command.getClass().getSimpleName());
+      }
       command.execute(context, client, parsed.payload());
     } else {
       LoggerUtil.warn("NOHANDLER type=" + parsed.type() + " from=" + who);
@@ -1,28 +1,52 @@
 package io.olmosjt.command;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * Represents all supported client commands.
  * <p>
  * Commands are sent from the client as plain strings, for example: "LOGIN:Alice".
+ * <p>
+ * Command tokens are resolved through a small precomputed hash table keyed on length and the first
+ * and last characters, compared case-insensitively in place, so lookups never allocate or throw.
+ * <p>
+ * The binary protocol identifies a command by its {@link #code()}, its position in this enum, so new
+ * commands go just before {@link #UNKNOWN}, which clients never send.
  */
 public enum CommandType {
-  LOGIN("Log in with a username"),
-  NICK("Change your nickname"),
-  LIST_ROOMS("List available chat rooms"),
-  CREATE_ROOM("Create a new chat room"),
-  JOIN("Join a specific chat room"),
-  LEAVE("Leave the current chat room"),
-  WHO("List users in the current chat room"),
-  MSG("Send a message to the current room"),
-  PRIVMSG("Send a private message to a user"),
-  QUIT("Disconnect from the server"),
-  HELP("Show available commands"),
-  UNKNOWN("Unknown or unsupported command");
+  LOGIN("Log in with a username", true),
+  NICK("Change your nickname", true),
+  LIST_ROOMS("List available chat rooms", true),
+  CREATE_ROOM("Create a new chat room", true),
+  JOIN("Join a specific chat room", true),
+  LEAVE("Leave the current chat room, or the one given as #id", true),
+  WHO("List users in the current chat room, or the one given as #id", true),
+  MSG("Send a message to the current room, or to #id", true),
+  PRIVMSG("Send a private message to a user", true),
+  QUIT("Disconnect from the server", false),
+  HELP("Show available commands", false),
+  LOG_LEVEL("Show or change the server log level (local connections only)", true),
+  STATS("Show server persistence statistics (local connections only)", false),
+  PONG("Answer a server PING with its token", true),
+  LATENCY("Show sampled message delivery latency and the slowest rooms (local connections only)", false),
+  PIN("Keep a room even when it is empty, or 'off' to undo (local connections only)", true),
+  PROTOCOL("Switch this connection to another wire protocol ('binary'); only before LOGIN", true),
+  COMPRESS("Compress everything the server sends on this connection ('deflate')", true),
+  UNKNOWN("Unknown or unsupported command", false);
+
+  private static final int TABLE_SIZE = 64;
+  private static final CommandType[][] TABLE = buildTable();
+  private static final CommandType[] BY_CODE = values();
 
   private final String description;
+  private final boolean takesPayload;
+  private final byte[] token;
 
-  CommandType(String description) {
+  CommandType(String description, boolean takesPayload) {
     this.description = description;
+    this.takesPayload = takesPayload;
+    this.token = name().getBytes(StandardCharsets.US_ASCII);
   }
 
   /**
@@ -30,14 +54,95 @@ public enum CommandType {
    */
   public static CommandType fromString(String raw) {
     if (raw == null) return UNKNOWN;
-    try {
-      return CommandType.valueOf(raw.trim().toUpperCase());
-    } catch (IllegalArgumentException e) {
-      return UNKNOWN;
+    return fromString(raw, 0, raw.length());
+  }
+
+  /**
+   * Resolves the command token in {@code raw[start, end)}, ignoring case and surrounding whitespace.
+   */
+  public static CommandType fromString(String raw, int start, int end) {
+    while (start < end && raw.charAt(start) <= ' ') start++;
+    while (end > start && raw.charAt(end - 1) <= ' ') end--;
+    int len = end - start;
+    if (len == 0) return UNKNOWN;
+
+    for (CommandType candidate : TABLE[slot(len, raw.charAt(start), raw.charAt(end - 1))]) {
+      if (candidate.token.length != len) continue;
+      int i = 0;
+      while (i < len && equalsIgnoreCase(raw.charAt(start + i), candidate.token[i])) i++;
+      if (i == len) return candidate;
     }
+    return UNKNOWN;
+  }
+
+  /**
+   * Resolves the command token in {@code buf[off, off + len)}, ignoring case and surrounding whitespace.
+   */
+  public static CommandType fromBytes(byte[] buf, int off, int len) {
+    int start = off;
+    int end = off + len;
+    while (start < end && (buf[start] & 0xFF) <= ' ') start++;
+    while (end > start && (buf[end - 1] & 0xFF) <= ' ') end--;
+    len = end - start;
+    if (len == 0) return UNKNOWN;
+
+    for (CommandType candidate : TABLE[slot(len, (char) (buf[start] & 0xFF), (char) (buf[end - 1] & 0xFF))]) {
+      if (candidate.token.length != len) continue;
+      int i = 0;
+      while (i < len && equalsIgnoreCase((char) (buf[start + i] & 0xFF), candidate.token[i])) i++;
+      if (i == len) return candidate;
+    }
+    return UNKNOWN;
+  }
+
+  /**
+   * Resolves a command code from a binary request.
+   */
+  public static CommandType fromCode(int code) {
+    return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : UNKNOWN;
+  }
+
+  /**
+   * @return The code identifying this command in the binary protocol.
+   */
+  public int code() {
+    return ordinal();
   }
 
   public String getDescription() {
     return description;
   }
+
+  /**
+   * @return {@code true} if the command reads its payload; for other commands the parser
+   *         skips materializing it.
+   */
+  public boolean takesPayload() {
+    return takesPayload;
+  }
+
+  private static boolean equalsIgnoreCase(char c, byte upper) {
+    return c == upper || (c >= 'a' && c <= 'z' && c - ('a' - 'A') == upper);
+  }
+
+  private static int slot(int length, char first, char last) {
+    return (length * 31 + toUpper(first) * 7 + toUpper(last)) & (TABLE_SIZE - 1);
+  }
+
+  private static char toUpper(char c) {
+    return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+  }
+
+  private static CommandType[][] buildTable() {
+    CommandType[][] table = new CommandType[TABLE_SIZE][0];
+    for (CommandType type : values()) {
+      if (type == UNKNOWN) continue;
+      String name = type.name();
+      int slot = slot(name.length(), name.charAt(0), name.charAt(name.length() - 1));
+      CommandType[] bucket = Arrays.copyOf(table[slot], table[slot].length + 1);
+      bucket[bucket.length - 1] = type;
+      table[slot] = bucket;
+    }
+    return table;
+  }
 }
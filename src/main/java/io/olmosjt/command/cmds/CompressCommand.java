@@ -0,0 +1,32 @@
+package io.olmosjt.command.cmds;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.Command;
+import io.olmosjt.message.Message;
+import io.olmosjt.protocol.CompressionConfig;
+import io.olmosjt.server.ClientHandler;
+
+/**
+ * Turns on compression of everything the server sends on this connection: {@code REQ|COMPRESS|deflate}. The
+ * OK is the last uncompressed frame; after it the client receives one raw DEFLATE stream, flushed at the end
+ * of every batch of writes. Requests stay uncompressed, and compression cannot be turned off again.
+ */
+public class CompressCommand implements Command {
+  @Override
+  public void execute(ServerContext context, ClientHandler client, String payload) {
+    String username = client.isLoggedIn() ? client.getUser().username() : null;
+    String requested = payload == null ? "" : payload.trim();
+    if (!requested.equalsIgnoreCase("deflate")) {
+      client.send(Message.serverNok(username, "Unknown compression '" + requested + "'. Use: REQ|COMPRESS|deflate"));
+      return;
+    }
+    CompressionConfig config = context.config().compression();
+    if (!config.enabled()) {
+      client.send(Message.serverNok(username, "Compression is disabled on this server."));
+      return;
+    }
+    if (!client.startCompression(config, Message.serverOk(username, "Compression deflate level=" + config.level() + "."))) {
+      client.send(Message.serverNok(username, "Compression is already on."));
+    }
+  }
+}
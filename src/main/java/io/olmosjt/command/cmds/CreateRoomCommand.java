@@ -4,24 +4,47 @@ import io.olmosjt.ServerContext;
 import io.olmosjt.command.Command;
 import io.olmosjt.message.Message;
 import io.olmosjt.room.ChatRoom;
+import io.olmosjt.room.HistoryConfig;
 import io.olmosjt.server.ClientHandler;
 
 public class CreateRoomCommand implements Command {
+  private static final int MAX_HISTORY = 1000;
+
   @Override
   public void execute(ServerContext context, ClientHandler client, String payload) {
     if (!client.isLoggedIn()) {
       client.send(Message.serverNok(client.getUser().username(), "You must be logged in to create a room."));
       return;
     }
-    if (payload == null || payload.isBlank() || !payload.matches("^[a-zA-Z0-9_-]{3,20}$")) {
+    String name = payload == null ? null : payload.trim();
+    HistoryConfig history = context.roomManager().historyDefaults();
+    int space = name == null ? -1 : name.indexOf(' ');
+    if (space >= 0) {
+      String size = name.substring(space + 1).trim();
+      name = name.substring(0, space);
+      try {
+        int maxMessages = Integer.parseInt(size);
+        if (maxMessages < 0 || maxMessages > MAX_HISTORY) throw new NumberFormatException(size);
+        history = history.withMaxMessages(maxMessages);
+      } catch (NumberFormatException e) {
+        client.send(Message.serverNok(client.getUser().username(), "Invalid history size. Use 0-" + MAX_HISTORY + " messages."));
+        return;
+      }
+    }
+    if (name == null || name.isBlank() || !name.matches("^[a-zA-Z0-9_-]{3,20}$")) {
       client.send(Message.serverNok(client.getUser().username(),"Invalid room name. Use 3-20 alphanumeric characters, underscores, or hyphens."));
       return;
     }
-    ChatRoom chatRoom = context.roomManager().createRoom(payload);
+    String blocked = context.roomManager().creationBlockedReason(client.getUser().username());
+    if (blocked != null) {
+      client.send(Message.serverNok(client.getUser().username(), blocked));
+      return;
+    }
+    ChatRoom chatRoom = context.roomManager().createRoom(name, history, client.getUser().username());
     if (chatRoom != null) {
-      client.send(Message.serverOk(client.getUser().username(),"Room '" + payload + "' created."));
+      client.send(Message.serverOk(client.getUser().username(),"Room '" + name + "' created."));
     } else {
-      client.send(Message.serverNok(client.getUser().username(), "Failed to create room '" + payload + "'."));
+      client.send(Message.serverNok(client.getUser().username(), "Failed to create room '" + name + "'."));
     }
   }
 }
@@ -6,6 +6,7 @@ import io.olmosjt.message.Message;
 import io.olmosjt.room.ChatRoom;
 import io.olmosjt.server.ClientHandler;
 
+import java.util.List;
 import java.util.Optional;
 
 public class JoinCommand implements Command {
@@ -16,23 +17,71 @@ public class JoinCommand implements Command {
       return;
     }
     if (payload == null || payload.isBlank()) {
-      client.send(Message.serverNok(client.getUser().username(), "Usage: JOIN:<room_id>"));
+      client.send(Message.serverNok(client.getUser().username(), "Usage: JOIN:<room_id|#room_id|room_name> [since_seq]"));
       return;
     }
     try {
-      int roomId = Integer.parseInt(payload);
-      Optional<ChatRoom> roomToJoin = context.roomManager().getRoom(roomId);
+      String trimmed = payload.trim();
+      int space = trimmed.indexOf(' ');
+      String roomPart = space < 0 ? trimmed : trimmed.substring(0, space);
+      long since = space < 0 ? -1 : Long.parseLong(trimmed.substring(space + 1).trim());
+      if (space >= 0 && since < 0) throw new NumberFormatException("negative sequence");
+
+      Optional<ChatRoom> roomToJoin = resolve(context, client, roomPart);
+      if (roomToJoin == null) return;
       if (roomToJoin.isEmpty()) {
-        client.send(Message.serverNok(client.getUser().username(), "Room '" + payload + "' does not exist."));
+        client.send(Message.serverNok(client.getUser().username(), "Room '" + roomPart + "' does not exist."));
         return;
       }
-      client.getCurrentRoom().ifPresent(oldRoom -> oldRoom.removeMember(client));
       ChatRoom newRoom = roomToJoin.get();
-      client.setCurrentRoom(newRoom);
-      newRoom.addMember(client);
-      client.send(Message.serverOk(client.getUser().username(), "Joined room '" + newRoom.getName() + "'."));
+      if (!client.addRoom(newRoom)) {
+        client.send(Message.serverNok(client.getUser().username(), "You are already in "
+                + context.config().rooms().maxJoinedRooms() + " rooms. LEAVE one first."));
+        return;
+      }
+      ChatRoom.Replay replay = newRoom.join(client, since);
+      if (replay == null) {
+        client.removeRoom(newRoom);
+        client.send(Message.serverNok(client.getUser().username(), "Room '" + roomPart + "' does not exist."));
+        return;
+      }
+      if (!client.isConnected()) {
+        // Disconnected meanwhile; its room set was already cleared, so undo the join here.
+        newRoom.removeMember(client);
+        return;
+      }
+      client.send(Message.serverOk(client.getUser().username(), "Joined room '" + newRoom.getName() + "' (#" + newRoom.getId() + "). Replayed "
+              + replay.messages() + " message(s), room sequence is " + replay.sequence() + "."));
     } catch (NumberFormatException e) {
-      client.send(Message.serverNok(client.getUser().username(), "NumberFormatException. Usage: JOIN:<room_id>"));
+      client.send(Message.serverNok(client.getUser().username(), "NumberFormatException. Usage: JOIN:<room_id|#room_id|room_name> [since_seq]"));
+    }
+  }
+
+  /**
+   * Finds the room by {@code #id}, by numeric id, or by name. A name that only exists on other nodes of the
+   * cluster gets a local room, which joins the cluster room of that name.
+   * @return The room if found, empty if not, or {@code null} if the name is ambiguous and the client was told so.
+   */
+  private Optional<ChatRoom> resolve(ServerContext context, ClientHandler client, String roomPart) {
+    boolean hashed = roomPart.startsWith("#");
+    String id = hashed ? roomPart.substring(1) : roomPart;
+    if (!id.isEmpty() && id.chars().allMatch(Character::isDigit)) {
+      Optional<ChatRoom> byId = context.roomManager().getRoom(Integer.parseInt(id));
+      if (byId.isPresent() || hashed) return byId;
+    }
+    List<ChatRoom> named = context.roomManager().findByName(roomPart);
+    if (named.size() > 1) {
+      StringBuilder ids = new StringBuilder();
+      for (ChatRoom room : named) {
+        if (!ids.isEmpty()) ids.append(", ");
+        ids.append('#').append(room.getId());
+      }
+      client.send(Message.serverNok(client.getUser().username(),
+              "Several rooms are named '" + roomPart + "': " + ids + ". Join by id instead."));
+      return null;
     }
+    if (!named.isEmpty()) return Optional.of(named.get(0));
+    if (context.cluster() == null || !context.cluster().roomExistsElsewhere(roomPart)) return Optional.empty();
+    return Optional.ofNullable(context.roomManager().createRoom(roomPart, context.roomManager().historyDefaults(), null));
   }
 }
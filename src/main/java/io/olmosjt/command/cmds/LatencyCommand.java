@@ -0,0 +1,70 @@
+package io.olmosjt.command.cmds;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.Command;
+import io.olmosjt.message.Message;
+import io.olmosjt.metrics.Histogram;
+import io.olmosjt.room.ChatRoom;
+import io.olmosjt.server.ClientHandler;
+import io.olmosjt.trace.DeliveryTracer;
+import io.olmosjt.trace.LatencyWindow;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reports sampled delivery latency: server-wide percentiles, the rooms with the highest recent p99,
+ * and the clients currently flagged as slow.
+ * Only accepted from connections on the loopback interface.
+ */
+public class LatencyCommand implements Command {
+  private static final int TOP_ROOMS = 10;
+
+  @Override
+  public void execute(ServerContext context, ClientHandler client, String payload) {
+    String username = client.isLoggedIn() ? client.getUser().username() : null;
+    if (!client.remoteAddress().isLoopbackAddress()) {
+      client.send(Message.serverNok(username, "LATENCY is only available from local connections."));
+      return;
+    }
+    Histogram.Snapshot all = DeliveryTracer.latency();
+    StringBuilder sb = new StringBuilder("deliveries=").append(all.count())
+            .append(" p50=").append(millis(all.quantile(0.5)))
+            .append(" p99=").append(millis(all.quantile(0.99)))
+            .append(" max=").append(millis(all.max()));
+
+    record RoomLatency(ChatRoom room, LatencyWindow window, long p99) {}
+    List<RoomLatency> rooms = new ArrayList<>();
+    for (ChatRoom room : context.roomManager().allRooms()) {
+      LatencyWindow window = room.deliveryLatency();
+      if (window != null) rooms.add(new RoomLatency(room, window, window.quantile(0.99)));
+    }
+    rooms.sort(Comparator.comparingLong(RoomLatency::p99).reversed());
+    sb.append(" | slowest rooms:");
+    for (int i = 0; i < Math.min(TOP_ROOMS, rooms.size()); i++) {
+      RoomLatency r = rooms.get(i);
+      sb.append(i == 0 ? " " : ", ").append("[#").append(r.room().getId()).append("] ").append(r.room().getName())
+              .append(" p50=").append(millis(r.window().quantile(0.5)))
+              .append(" p99=").append(millis(r.p99()))
+              .append(" n=").append(r.window().count())
+              .append(r.window().isSlow() ? " SLOW" : "");
+    }
+    if (rooms.isEmpty()) sb.append(" none traced");
+
+    sb.append(" | slow clients:");
+    int slow = 0;
+    for (ClientHandler other : context.clientManager().allClients()) {
+      LatencyWindow window = other.deliveryLatency();
+      if (window == null || !window.isSlow()) continue;
+      sb.append(slow++ == 0 ? " " : ", ").append(other.getUser().username())
+              .append(" smoothed=").append(millis(window.smoothed()));
+    }
+    if (slow == 0) sb.append(" none");
+    client.send(Message.serverOk(username, sb.toString()));
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.2fms", nanos / 1e6);
+  }
+}
@@ -3,22 +3,32 @@ package io.olmosjt.command.cmds;
 import io.olmosjt.ServerContext;
 import io.olmosjt.command.Command;
 import io.olmosjt.message.Message;
+import io.olmosjt.room.ChatRoom;
 import io.olmosjt.server.ClientHandler;
 
 public class LeaveCommand implements Command {
   @Override
   public void execute(ServerContext context, ClientHandler client, String payload) {
     if (!client.isLoggedIn()) {
-      client.send(Message.serverNok(client.getUser().username(),"You are not logged in."));
+      client.send(Message.serverNok(null, "You are not logged in."));
       return;
     }
-    client.getCurrentRoom().ifPresentOrElse(
-            room -> {
-              room.removeMember(client);
-              client.setCurrentRoom(null);
-              client.send(Message.serverOk(client.getUser().username(),"You have left '" + room.getName() + "'."));
-            },
-            () -> client.send(Message.serverNok(client.getUser().username(), "You are not in a room."))
-    );
+    int roomId = -1;
+    if (payload != null && !payload.isBlank()) {
+      roomId = RoomArgument.parseId(payload.trim());
+      if (roomId < 0) {
+        client.send(Message.serverNok(client.getUser().username(), "Usage: LEAVE:[#room_id]"));
+        return;
+      }
+    }
+    ChatRoom room = client.findRoom(roomId);
+    if (room == null) {
+      client.send(Message.serverNok(client.getUser().username(),
+              roomId < 0 ? "You are not in a room." : "You are not in room #" + roomId + "."));
+      return;
+    }
+    room.removeMember(client);
+    client.removeRoom(room);
+    client.send(Message.serverOk(client.getUser().username(),"You have left '" + room.getName() + "'."));
   }
 }
@@ -3,15 +3,54 @@ package io.olmosjt.command.cmds;
 import io.olmosjt.ServerContext;
 import io.olmosjt.command.Command;
 import io.olmosjt.message.Message;
+import io.olmosjt.room.RoomOrder;
+import io.olmosjt.room.RoomPage;
 import io.olmosjt.server.ClientHandler;
 
-import java.util.Set;
-
+/**
+ * Lists rooms one page at a time.
+ * <p>
+ * Payload options, in any order: {@code prefix=<text>}, {@code page=<n>}, {@code sort=name|members},
+ * {@code size=<n>}. A bare number is taken as the page and any other bare word as the prefix.
+ */
 public class ListRoomsCommand implements Command {
+  private static final int DEFAULT_PAGE_SIZE = 50;
+  private static final int MAX_PAGE_SIZE = 200;
+  private static final String USAGE = "Usage: LIST_ROOMS:[prefix=<text>] [page=<n>] [sort=name|members] [size=<n>]";
+
   @Override
   public void execute(ServerContext context, ClientHandler client, String payload) {
-    Set<String> roomNames = context.roomManager().listRoomNames();
-    String roomList = roomNames.isEmpty() ? "No rooms available." : String.join(", ", roomNames);
-    client.send(Message.serverOk(client.getUser().username(), "Available rooms: " + roomList));
+    String username = client.isLoggedIn() ? client.getUser().username() : null;
+    String prefix = null;
+    RoomOrder order = RoomOrder.NAME;
+    int page = 1;
+    int size = DEFAULT_PAGE_SIZE;
+    try {
+      for (String token : Words.of(payload)) {
+        int eq = token.indexOf('=');
+        String key = eq < 0 ? null : token.substring(0, eq).toLowerCase();
+        String value = eq < 0 ? token : token.substring(eq + 1);
+        if (key == null) {
+          if (value.chars().allMatch(Character::isDigit)) page = Integer.parseInt(value);
+          else prefix = value;
+        } else {
+          switch (key) {
+            case "prefix" -> prefix = value;
+            case "page" -> page = Integer.parseInt(value);
+            case "sort" -> order = RoomOrder.valueOf(value.toUpperCase());
+            case "size" -> size = Math.min(MAX_PAGE_SIZE, Math.max(1, Integer.parseInt(value)));
+            default -> throw new IllegalArgumentException(key);
+          }
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      client.send(Message.serverNok(username, USAGE));
+      return;
+    }
+
+    RoomPage result = context.roomManager().listRooms(prefix, order, page, size);
+    String roomList = result.total() == 0 ? "No rooms available." : String.join(", ", result.entries());
+    client.send(Message.serverOk(username, "Available rooms (page " + result.page() + "/" + result.pages()
+            + ", " + result.total() + " total): " + roomList));
   }
 }
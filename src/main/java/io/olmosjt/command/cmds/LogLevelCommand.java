@@ -0,0 +1,34 @@
+package io.olmosjt.command.cmds;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.Command;
+import io.olmosjt.message.Message;
+import io.olmosjt.server.ClientHandler;
+import io.olmosjt.util.LoggerUtil;
+
+/**
+ * Shows or changes the server's minimum log level at runtime.
+ * Only accepted from connections on the loopback interface.
+ */
+public class LogLevelCommand implements Command {
+  @Override
+  public void execute(ServerContext context, ClientHandler client, String payload) {
+    String username = client.isLoggedIn() ? client.getUser().username() : null;
+    if (!client.remoteAddress().isLoopbackAddress()) {
+      client.send(Message.serverNok(username, "LOG_LEVEL is only available from local connections."));
+      return;
+    }
+    if (payload == null || payload.isBlank()) {
+      client.send(Message.serverOk(username, "Log level is " + LoggerUtil.minLevel() + "."));
+      return;
+    }
+    try {
+      LoggerUtil.Level level = LoggerUtil.Level.valueOf(payload.trim().toUpperCase());
+      LoggerUtil.setMinLevel(level);
+      LoggerUtil.warn("Log level changed to " + level + " by " + (username == null ? "(unauthenticated)" : username));
+      client.send(Message.serverOk(username, "Log level set to " + level + "."));
+    } catch (IllegalArgumentException e) {
+      client.send(Message.serverNok(username, "Usage: REQ|LOG_LEVEL|<TRACE|DEBUG|INFO|WARN|ERROR>"));
+    }
+  }
+}
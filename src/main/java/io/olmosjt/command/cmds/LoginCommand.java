@@ -1,11 +1,17 @@
 package io.olmosjt.command.cmds;
 
 import io.olmosjt.ServerContext;
+import io.olmosjt.cluster.ClusterNode;
 import io.olmosjt.command.Command;
 import io.olmosjt.message.Message;
 import io.olmosjt.protocol.CommandParser;
 import io.olmosjt.server.ClientHandler;
 
+/**
+ * Logs a client in. The name is claimed and bound to the connection in one step by
+ * {@link ClientHandler#registerUser}. In a cluster the username is first reserved with the node that owns
+ * it, which may answer after this command returned; the reply is sent once it has.
+ */
 public class LoginCommand implements Command {
 
   @Override
@@ -15,19 +21,47 @@ public class LoginCommand implements Command {
       return;
     }
     if (payload == null || payload.isBlank() || !payload.matches("^[a-zA-Z0-9_]{3,15}$")) {
-      client.send(Message.serverNok(client.getUser().username(),"Invalid username. Use 3-15 alphanumeric characters/underscores."));
+      client.send(Message.serverNok(null,"Invalid username. Use 3-15 alphanumeric characters/underscores."));
+      return;
+    }
+    if (ctx.cluster() == null) {
+      login(client, payload);
       return;
     }
 
-    if (ctx.userRegistry().find(payload).isPresent() || ctx.clientManager().isOnline(payload)) {
-      client.send(Message.serverNok(client.getUser().username(),"Username '" + payload + "' is already taken."));
+    if (ctx.clientManager().isOnline(payload)) {
+      // Not needed for correctness; saves asking the owner about a name held here.
+      taken(client, payload);
+      return;
+    }
+    if (!client.beginLogin()) {
+      client.send(Message.serverNok(null, "A login is already in progress."));
       return;
     }
+    ctx.cluster().claimUsername(payload, result -> {
+      if (result == ClusterNode.ClaimResult.GRANTED) {
+        login(client, payload);
+        return;
+      }
+      client.abandonLogin();
+      if (result == ClusterNode.ClaimResult.UNAVAILABLE) {
+        client.send(Message.serverNok(null, "Login is unavailable right now. Try again."));
+      } else {
+        taken(client, payload);
+      }
+    });
+  }
 
-    ctx.userRegistry().register(payload);
-    client.registerUser(payload);
+  private static void taken(ClientHandler client, String username) {
+    client.send(Message.serverNok(null,"Username '" + username + "' is already taken."));
+  }
 
+  private static void login(ClientHandler client, String username) {
+    if (!client.registerUser(username)) {
+      taken(client, username);
+      return;
+    }
     String tip = "\nPlease, use format to communicate with the server: " + CommandParser.REQUEST_FORMAT;
-    client.send(Message.serverOk(client.getUser().username(),"Welcome, " + payload + "!" + tip));
+    client.send(Message.serverOk(client.getUser().username(),"Welcome, " + username + "!" + tip));
   }
 }
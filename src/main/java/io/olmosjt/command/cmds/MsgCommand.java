@@ -2,30 +2,47 @@ package io.olmosjt.command.cmds;
 
 import io.olmosjt.ServerContext;
 import io.olmosjt.command.Command;
+import io.olmosjt.command.CommandHandler;
 import io.olmosjt.message.Message;
 import io.olmosjt.room.ChatRoom;
 import io.olmosjt.server.ClientHandler;
 
-import java.util.Optional;
-
 public class MsgCommand implements Command {
   @Override
   public void execute(ServerContext context, ClientHandler client, String payload) {
     if (!client.isLoggedIn()) {
-      client.send(Message.serverNok(client.getUser().username(),"You must be logged in to send messages."));
+      client.send(Message.serverNok(null, "You must be logged in to send messages."));
       return;
     }
-    Optional<ChatRoom> roomOpt = client.getCurrentRoom();
-    if (roomOpt.isEmpty()) {
-      client.send(Message.serverNok(client.getUser().username(),"You are not in a room. Use JOIN:<room_name> to join one."));
+    String text = payload;
+    int roomId = -1;
+    if (payload != null && payload.startsWith("#")) {
+      int space = payload.indexOf(' ');
+      roomId = RoomArgument.parseId(space < 0 ? payload : payload.substring(0, space));
+      if (roomId < 0) {
+        client.send(Message.serverNok(client.getUser().username(), "Usage: MSG:[#room_id] <text>"));
+        return;
+      }
+      text = space < 0 ? "" : payload.substring(space + 1);
+    }
+    ChatRoom room = client.findRoom(roomId);
+    if (room == null) {
+      client.send(Message.serverNok(client.getUser().username(), roomId < 0
+              ? "You are not in a room. Use JOIN:<room_name> to join one."
+              : "You are not in room #" + roomId + "."));
       return;
     }
-    if (payload == null || payload.isBlank()) {
+    if (text == null || text.isBlank()) {
       client.send(Message.serverNok(client.getUser().username(),"Cannot send an empty message."));
       return;
     }
-    Message message = Message.userMsg(client.getUser().username(), payload);
-//    roomOpt.get().broadcast(message);
-    context.dispatcher().dispatch(message); // IT SHOULD BE DISPATCHED TO THE CURRENT ROOM INSTEAD OF BROADCASTING TO ALL ROOM MEMBERS
+    long retryAfter = context.commandHandler().rateLimiter()
+            .acquireFanout(room.fanoutBudget(), room.memberCount(), System.nanoTime());
+    if (retryAfter > 0) {
+      client.send(Message.serverNok(client.getUser().username(), "Room #" + room.getId() + " is too busy. Retry after "
+              + CommandHandler.retryAfterMillis(retryAfter) + " ms."));
+      return;
+    }
+    context.dispatcher().dispatch(Message.userMsg(client.getUser().username(), room.getId(), text));
   }
 }
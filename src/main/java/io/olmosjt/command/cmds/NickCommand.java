@@ -3,11 +3,33 @@ package io.olmosjt.command.cmds;
 import io.olmosjt.ServerContext;
 import io.olmosjt.command.Command;
 import io.olmosjt.message.Message;
+import io.olmosjt.room.ChatRoom;
 import io.olmosjt.server.ClientHandler;
 
 public class NickCommand implements Command {
   @Override
   public void execute(ServerContext context, ClientHandler client, String payload) {
-    client.send(Message.serverNok(client.getUser().username(),"NICK not supported yet."));
+    if (!client.isLoggedIn()) {
+      client.send(Message.serverNok(null, "You must be logged in to change your nickname."));
+      return;
+    }
+    String oldName = client.getUser().username();
+    if (context.cluster() != null) {
+      client.send(Message.serverNok(oldName, "NICK is not available in cluster mode."));
+      return;
+    }
+    if (payload == null || !payload.trim().matches("^[a-zA-Z0-9_]{3,15}$")) {
+      client.send(Message.serverNok(oldName, "Invalid username. Use 3-15 alphanumeric characters/underscores."));
+      return;
+    }
+    String newName = payload.trim();
+    if (!client.rename(newName)) {
+      client.send(Message.serverNok(oldName, "Username '" + newName + "' is already taken."));
+      return;
+    }
+    client.send(Message.serverOk(newName, "You are now known as '" + newName + "'."));
+    for (ChatRoom room : client.getRooms()) {
+      room.broadcast(Message.serverOk(newName, "'" + oldName + "' is now known as '" + newName + "'."));
+    }
   }
 }
@@ -0,0 +1,44 @@
+package io.olmosjt.command.cmds;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.Command;
+import io.olmosjt.message.Message;
+import io.olmosjt.server.ClientHandler;
+import io.olmosjt.util.LoggerUtil;
+
+import java.util.List;
+
+/**
+ * Pins a room so it is kept while empty, or unpins it with {@code off}.
+ * Only accepted from connections on the loopback interface.
+ */
+public class PinCommand implements Command {
+  private static final String USAGE = "Usage: REQ|PIN|<room_id> [off]";
+
+  @Override
+  public void execute(ServerContext context, ClientHandler client, String payload) {
+    String username = client.isLoggedIn() ? client.getUser().username() : null;
+    if (!client.remoteAddress().isLoopbackAddress()) {
+      client.send(Message.serverNok(username, "PIN is only available from local connections."));
+      return;
+    }
+    List<String> parts = Words.of(payload);
+    boolean pinned = parts.size() == 1;
+    if (parts.isEmpty() || parts.size() > 2 || (parts.size() == 2 && !parts.get(1).equalsIgnoreCase("off"))) {
+      client.send(Message.serverNok(username, USAGE));
+      return;
+    }
+    int roomId = RoomArgument.parseId(parts.get(0));
+    if (roomId < 0) {
+      client.send(Message.serverNok(username, USAGE));
+      return;
+    }
+    if (!context.roomManager().setPinned(roomId, pinned)) {
+      client.send(Message.serverNok(username, "Room #" + roomId + " does not exist."));
+      return;
+    }
+    LoggerUtil.info("ROOM " + (pinned ? "pinned" : "unpinned") + " id=" + roomId + " by "
+            + (username == null ? "(unauthenticated)" : username));
+    client.send(Message.serverOk(username, "Room #" + roomId + (pinned ? " is pinned." : " is no longer pinned.")));
+  }
+}
@@ -0,0 +1,20 @@
+package io.olmosjt.command.cmds;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.Command;
+import io.olmosjt.message.Message;
+import io.olmosjt.server.ClientHandler;
+
+/**
+ * Answers a server PING. Any request counts as activity; PONG exists so an otherwise idle client
+ * can prove it is alive without side effects. Sends no reply unless the token is wrong.
+ */
+public class PongCommand implements Command {
+  @Override
+  public void execute(ServerContext context, ClientHandler client, String payload) {
+    if (!client.onPong(payload == null ? null : payload.trim())) {
+      client.send(Message.serverNok(client.isLoggedIn() ? client.getUser().username() : null,
+              "Unexpected PONG. Answer a PING with REQ|PONG|<token>."));
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package io.olmosjt.command.cmds;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.Command;
+import io.olmosjt.message.Message;
+import io.olmosjt.protocol.WireFormat;
+import io.olmosjt.server.ClientHandler;
+
+/**
+ * Negotiates the wire protocol: {@code REQ|PROTOCOL|binary} moves the connection to the binary protocol.
+ * Only allowed before LOGIN, so the switch happens while nothing but replies is sent to the client. The OK
+ * is the last text frame; the client's next request must be binary.
+ */
+public class ProtocolCommand implements Command {
+  @Override
+  public void execute(ServerContext context, ClientHandler client, String payload) {
+    String username = client.isLoggedIn() ? client.getUser().username() : null;
+    String requested = payload == null ? "" : payload.trim();
+    if (requested.equalsIgnoreCase("text")) {
+      if (client.inboundFormat() == WireFormat.TEXT) client.send(Message.serverOk(username, "Protocol text."));
+      else client.send(Message.serverNok(username, "A binary connection cannot switch back to text."));
+      return;
+    }
+    if (!requested.equalsIgnoreCase("binary")) {
+      client.send(Message.serverNok(username, "Unknown protocol '" + requested + "'. Use: REQ|PROTOCOL|binary"));
+      return;
+    }
+    if (client.isLoggedIn()) {
+      client.send(Message.serverNok(username, "The protocol can only be changed before LOGIN."));
+      return;
+    }
+    if (client.inboundFormat() == WireFormat.BINARY) {
+      client.send(Message.serverNok(null, "Already using the binary protocol."));
+      return;
+    }
+    client.switchFormat(WireFormat.BINARY, Message.serverOk(null, "Protocol binary."));
+  }
+}
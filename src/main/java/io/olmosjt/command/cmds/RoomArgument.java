@@ -0,0 +1,18 @@
+package io.olmosjt.command.cmds;
+
+/**
+ * Parsing of room ID arguments shared by the room commands.
+ */
+final class RoomArgument {
+  private RoomArgument() {}
+
+  /**
+   * @param token A room ID, with or without a leading {@code #}.
+   * @return The ID, or -1 if {@code token} is not one.
+   */
+  static int parseId(String token) {
+    String digits = token.startsWith("#") ? token.substring(1) : token;
+    if (digits.isEmpty() || digits.length() > 9 || !digits.chars().allMatch(Character::isDigit)) return -1;
+    return Integer.parseInt(digits);
+  }
+}
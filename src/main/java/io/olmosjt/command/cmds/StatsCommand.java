@@ -0,0 +1,52 @@
+package io.olmosjt.command.cmds;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.command.Command;
+import io.olmosjt.message.Message;
+import io.olmosjt.server.ClientHandler;
+import io.olmosjt.state.StateStats;
+import io.olmosjt.state.StateStore;
+import io.olmosjt.store.MessageStore;
+
+/**
+ * Reports what persistence costs: snapshot and journal statistics and dropped message-log writes.
+ * Only accepted from connections on the loopback interface.
+ */
+public class StatsCommand implements Command {
+  private final StateStore stateStore;
+  private final MessageStore messageStore;
+
+  /**
+   * @param stateStore   The room and user store, or {@code null} if state is not persisted.
+   * @param messageStore The message log.
+   */
+  public StatsCommand(StateStore stateStore, MessageStore messageStore) {
+    this.stateStore = stateStore;
+    this.messageStore = messageStore;
+  }
+
+  @Override
+  public void execute(ServerContext context, ClientHandler client, String payload) {
+    String username = client.isLoggedIn() ? client.getUser().username() : null;
+    if (!client.remoteAddress().isLoopbackAddress()) {
+      client.send(Message.serverNok(username, "STATS is only available from local connections."));
+      return;
+    }
+    StringBuilder sb = new StringBuilder("rooms=").append(context.roomManager().roomCount())
+            .append(" users=").append(context.userRegistry().size())
+            .append(" messageLogDropped=").append(messageStore.droppedCount());
+    if (stateStore == null) {
+      sb.append(" state=disabled");
+    } else {
+      StateStats s = stateStore.stats();
+      sb.append(" snapshots=").append(s.snapshots())
+              .append(" lastSnapshotMs=").append(s.lastSnapshotMillis())
+              .append(" lastSnapshotBytes=").append(s.lastSnapshotBytes())
+              .append(" journalRecords=").append(s.journalRecords())
+              .append(" journalBytes=").append(s.journalBytes())
+              .append(" journalAvgUs=").append(s.journalRecords() == 0 ? 0 : s.journalNanos() / s.journalRecords() / 1000)
+              .append(" recoveryMs=").append(s.recoveryMillis());
+    }
+    client.send(Message.serverOk(username, sb.toString()));
+  }
+}
@@ -3,20 +3,27 @@ package io.olmosjt.command.cmds;
 import io.olmosjt.ServerContext;
 import io.olmosjt.command.Command;
 import io.olmosjt.message.Message;
+import io.olmosjt.room.ChatRoom;
 import io.olmosjt.server.ClientHandler;
 
 public class WhoCommand implements Command {
   @Override
   public void execute(ServerContext context, ClientHandler client, String payload) {
-    var currentRoom = client.getCurrentRoom();
-
-    if(currentRoom.isEmpty()) {
-      client.send(Message.serverNok(client.getUser().username(),"You are not in a room."));
+    String username = client.isLoggedIn() ? client.getUser().username() : null;
+    int roomId = -1;
+    if (payload != null && !payload.isBlank()) {
+      roomId = RoomArgument.parseId(payload.trim());
+      if (roomId < 0) {
+        client.send(Message.serverNok(username, "Usage: WHO:[#room_id]"));
+        return;
+      }
+    }
+    ChatRoom room = client.findRoom(roomId);
+    if (room == null) {
+      client.send(Message.serverNok(username, roomId < 0 ? "You are not in a room." : "You are not in room #" + roomId + "."));
       return;
     }
-
-    var room = currentRoom.get();
     String userList = String.join(", ", room.getMemberNames());
-    client.send(Message.serverOk(client.getUser().username(), "Users in '" + room.getName() + "': " + userList));
+    client.send(Message.serverOk(username, "Users in '" + room.getName() + "': " + userList));
   }
 }
@@ -0,0 +1,29 @@
+package io.olmosjt.command.cmds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Whitespace tokenizing of command payloads, scanned by hand so requests never go through the regex
+ * engine behind {@link String#split(String)}.
+ */
+final class Words {
+  private Words() {}
+
+  /**
+   * @return The runs of non-whitespace characters in {@code payload}, in order; empty for {@code null}.
+   */
+  static List<String> of(String payload) {
+    if (payload == null) return List.of();
+    List<String> words = new ArrayList<>(4);
+    int length = payload.length();
+    int i = 0;
+    while (i < length) {
+      while (i < length && Character.isWhitespace(payload.charAt(i))) i++;
+      int start = i;
+      while (i < length && !Character.isWhitespace(payload.charAt(i))) i++;
+      if (i > start) words.add(payload.substring(start, i));
+    }
+    return words;
+  }
+}
@@ -0,0 +1,138 @@
+package io.olmosjt.loadgen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * One simulated user: a non-blocking connection, the rooms the server confirmed it joined, and the
+ * partial line being read from it.
+ * <p>
+ * The driver thread sends requests and the receiver thread answers PINGs, so writes are serialized on the
+ * client. Neither thread ever waits on the socket: a request that does not fit is queued, and the
+ * receiver's selector writes the queue out once the socket is writable again. Requests sent before the
+ * connection is established are queued the same way. Reads and {@link #addRoom} happen on the receiver
+ * thread only.
+ */
+final class LoadClient {
+  private static final int MAX_LINE = 4096;
+  /** Requests queued beyond this are refused, so a server that stops reading cannot grow the queue forever. */
+  private static final int MAX_QUEUED_BYTES = 64 * 1024;
+
+  final String name;
+  final SocketChannel channel;
+  final byte[] line = new byte[MAX_LINE];
+  int lineLength;
+  volatile boolean closing;
+  private volatile int[] roomIds = new int[0];
+  private final ArrayDeque<ByteBuffer> queued = new ArrayDeque<>();
+  private int queuedBytes;
+  private boolean connected;
+  private SelectionKey key;
+
+  LoadClient(String name, SocketChannel channel, boolean connected) {
+    this.name = name;
+    this.channel = channel;
+    this.connected = connected;
+  }
+
+  /**
+   * Writes one request line, or queues it if the connection is not established or the socket buffer is full.
+   * @return {@code false} if the connection is closed or too much is already queued.
+   */
+  synchronized boolean send(String request) {
+    if (closing) return false;
+    ByteBuffer bytes = ByteBuffer.wrap((request + "\n").getBytes(StandardCharsets.UTF_8));
+    try {
+      if (connected && queued.isEmpty()) {
+        channel.write(bytes);
+        if (!bytes.hasRemaining()) return true;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+    if (queuedBytes + bytes.remaining() > MAX_QUEUED_BYTES) return false;
+    queued.add(bytes);
+    queuedBytes += bytes.remaining();
+    if (connected && key != null) {
+      try {
+        key.interestOpsOr(SelectionKey.OP_WRITE);
+      } catch (CancelledKeyException e) {
+        return false;
+      }
+      key.selector().wakeup();
+    }
+    return true;
+  }
+
+  /**
+   * Registers the connection with the receiver's selector, waiting for the connect to finish or for
+   * readable data and, if requests are queued, for room to write them.
+   */
+  synchronized void register(Selector selector) throws IOException {
+    int ops = !connected ? SelectionKey.OP_CONNECT
+            : queued.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+    key = channel.register(selector, ops, this);
+  }
+
+  /**
+   * Completes a pending connect, if it has finished, and starts writing what was queued meanwhile.
+   * @return {@code false} if the connection failed after connecting.
+   * @throws IOException If the connect failed.
+   */
+  synchronized boolean finishConnect() throws IOException {
+    if (!channel.finishConnect()) return true;
+    connected = true;
+    key.interestOps(SelectionKey.OP_READ);
+    return flush();
+  }
+
+  /**
+   * Writes as much of the queue as the socket takes, and waits for it to become writable if any is left.
+   * @return {@code false} if the connection failed.
+   */
+  synchronized boolean flush() {
+    try {
+      ByteBuffer head;
+      while ((head = queued.peek()) != null) {
+        queuedBytes -= channel.write(head);
+        if (head.hasRemaining()) {
+          key.interestOpsOr(SelectionKey.OP_WRITE);
+          return true;
+        }
+        queued.poll();
+      }
+      key.interestOpsAnd(~SelectionKey.OP_WRITE);
+      return true;
+    } catch (IOException | CancelledKeyException e) {
+      return false;
+    }
+  }
+
+  void addRoom(int roomId) {
+    int[] current = roomIds;
+    for (int id : current) if (id == roomId) return;
+    int[] next = Arrays.copyOf(current, current.length + 1);
+    next[current.length] = roomId;
+    roomIds = next;
+  }
+
+  int[] roomIds() {
+    return roomIds;
+  }
+
+  void close() {
+    closing = true;
+    try {
+      channel.close();
+    } catch (IOException ignored) {
+      // Already gone.
+    }
+  }
+}
@@ -0,0 +1,476 @@
+package io.olmosjt.loadgen;
+
+import io.olmosjt.metrics.Histogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs one {@link LoadScenario} against a server and prints progress lines and a summary.
+ * <p>
+ * Rooms are created first by a few short-lived setup connections, since each user may only own a
+ * limited number of rooms. The clients then connect at the configured rate, log in and join rooms
+ * picked by Zipf rank. One driver thread paces room and private messages and churns connections;
+ * one receiver thread drives every connection through a selector, finishing connects, writing requests
+ * that did not fit in the socket buffer, answering PINGs and recording delivery latency. Connects and
+ * sends never block, so a slow server or a churned reconnect does not stall the driver's pacing. Every message carries its send time as {@code t=<nanos>}, so latency is measured from the
+ * send until each recipient reads it, including the sender's own copy.
+ * <p>
+ * Each report interval has its own counters and histograms. The driver swaps in fresh ones when it
+ * prints, so the receiver never blocks on reporting.
+ */
+public final class LoadRunner {
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  /** Rooms created per setup connection; matches the default per-user room limit. */
+  private static final int ROOMS_PER_CREATOR = 10;
+  private static final long MAX_LAG_NANOS = NANOS_PER_SECOND;
+
+  private final LoadScenario scenario;
+  private final ZipfSampler roomRanks;
+  private final String runId = Integer.toString(ThreadLocalRandom.current().nextInt(36 * 36 * 36, 36 * 36 * 36 * 36), 36);
+  private final String padding;
+  private final long serverPid;
+  private final LoadClient[] clients;
+  private final Selector selector;
+  private final Queue<LoadClient> pending = new ConcurrentLinkedQueue<>();
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+  private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+  private final Histogram totalRoomLatency = new Histogram();
+  private final Histogram totalPrivateLatency = new Histogram();
+  private final Interval totals = new Interval();
+  private volatile Interval interval = new Interval();
+  private volatile boolean measuring;
+  private int nextName;
+  private long peakRss;
+
+  /** What happened during one report interval. */
+  private static final class Interval {
+    final LongAdder roomSent = new LongAdder();
+    final LongAdder privateSent = new LongAdder();
+    final LongAdder roomDelivered = new LongAdder();
+    final LongAdder privateDelivered = new LongAdder();
+    final LongAdder noks = new LongAdder();
+    final LongAdder disconnects = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder churned = new LongAdder();
+    final Histogram roomLatency = new Histogram();
+    final Histogram privateLatency = new Histogram();
+
+    void addTo(Interval totals) {
+      totals.roomSent.add(roomSent.sum());
+      totals.privateSent.add(privateSent.sum());
+      totals.roomDelivered.add(roomDelivered.sum());
+      totals.privateDelivered.add(privateDelivered.sum());
+      totals.noks.add(noks.sum());
+      totals.disconnects.add(disconnects.sum());
+      totals.connectFailures.add(connectFailures.sum());
+      totals.churned.add(churned.sum());
+    }
+  }
+
+  public LoadRunner(LoadScenario scenario) throws IOException {
+    this.scenario = scenario;
+    this.roomRanks = new ZipfSampler(scenario.rooms(), scenario.zipfExponent());
+    this.padding = " " + "x".repeat(Math.max(0, scenario.messageBytes() - 24));
+    this.serverPid = scenario.serverPid() > 0 ? scenario.serverPid() : findServerPid();
+    this.clients = new LoadClient[scenario.clients()];
+    this.selector = Selector.open();
+  }
+
+  public void run() throws IOException {
+    Thread receiver = Thread.ofPlatform().name("loadgen-receiver").daemon(true).start(this::receive);
+    long startRss = rssBytes();
+    try {
+      createRooms();
+      connectAll();
+      drive();
+      printSummary(startRss);
+    } finally {
+      receiver.interrupt();
+      for (LoadClient client : clients) {
+        if (client != null) client.close();
+      }
+      selector.close();
+    }
+  }
+
+  private void createRooms() throws IOException {
+    for (int first = 0; first < scenario.rooms(); first += ROOMS_PER_CREATOR) {
+      try (Socket socket = new Socket(scenario.host(), scenario.port())) {
+        OutputStream out = socket.getOutputStream();
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        request(out, in, "REQ|LOGIN|" + newName());
+        for (int rank = first; rank < Math.min(scenario.rooms(), first + ROOMS_PER_CREATOR); rank++) {
+          String reply = request(out, in, "REQ|CREATE_ROOM|" + roomName(rank));
+          if (!reply.startsWith("OK|")) System.err.println("Could not create " + roomName(rank) + ": " + reply);
+        }
+      }
+    }
+    System.out.printf("Created %d rooms named %s-<rank>%n", scenario.rooms(), "lg" + runId);
+  }
+
+  private static String request(OutputStream out, BufferedReader in, String line) throws IOException {
+    out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    out.flush();
+    String reply;
+    while ((reply = in.readLine()) != null) {
+      if (reply.startsWith("OK|") || reply.startsWith("NOK|")) return reply;
+    }
+    throw new IOException("Connection closed while waiting for a reply to " + line);
+  }
+
+  private void connectAll() {
+    long step = (long) (NANOS_PER_SECOND / scenario.connectRate());
+    long next = System.nanoTime();
+    for (int i = 0; i < clients.length; i++) {
+      clients[i] = connect();
+      next += step;
+      long wait = next - System.nanoTime();
+      if (wait > 0) LockSupport.parkNanos(wait);
+    }
+    System.out.printf("Connected %d clients, %d rooms each%n", clients.length, scenario.roomsPerClient());
+  }
+
+  /**
+   * Starts a connection and queues its login and joins of {@code roomsPerClient} distinct rooms; the
+   * receiver finishes the connect and sends them.
+   * @return The client, or {@code null} if the connection could not be started.
+   */
+  private LoadClient connect() {
+    try {
+      SocketChannel channel = SocketChannel.open();
+      channel.configureBlocking(false);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+      boolean connected = channel.connect(new InetSocketAddress(scenario.host(), scenario.port()));
+      LoadClient client = new LoadClient(newName(), channel, connected);
+      client.send("REQ|LOGIN|" + client.name);
+      Set<Integer> ranks = new HashSet<>();
+      while (ranks.size() < scenario.roomsPerClient()) ranks.add(roomRanks.next());
+      for (int rank : ranks) client.send("REQ|JOIN|" + roomName(rank));
+      pending.add(client);
+      selector.wakeup();
+      return client;
+    } catch (IOException e) {
+      interval.connectFailures.increment();
+      error("connect: " + e.getMessage());
+      return null;
+    }
+  }
+
+  private void drive() {
+    long messageRate = Math.round(scenario.roomMessageRate() + scenario.privateMessageRate());
+    long messageStep = messageRate > 0 ? NANOS_PER_SECOND / messageRate : Long.MAX_VALUE;
+    long churnStep = scenario.churnRate() > 0 ? (long) (NANOS_PER_SECOND / scenario.churnRate()) : Long.MAX_VALUE;
+    long reportStep = scenario.reportInterval().toNanos();
+
+    long start = System.nanoTime();
+    long measureStart = start + scenario.warmup().toNanos();
+    long end = measureStart + scenario.duration().toNanos();
+    long lastReport = start;
+    long nextReport = start + reportStep;
+    long nextMessage = messageStep == Long.MAX_VALUE ? Long.MAX_VALUE : start;
+    long nextChurn = churnStep == Long.MAX_VALUE ? Long.MAX_VALUE : start + churnStep;
+
+    while (true) {
+      long now = System.nanoTime();
+      if (now >= end) {
+        report(start, lastReport, now);
+        return;
+      }
+      if (!measuring && now >= measureStart) {
+        report(start, lastReport, now);
+        measuring = true;
+        lastReport = now;
+        nextReport = now + reportStep;
+        continue;
+      }
+      if (now >= nextReport) {
+        report(start, lastReport, now);
+        lastReport = now;
+        nextReport += reportStep;
+      }
+      if (now >= nextChurn) {
+        churn();
+        nextChurn += churnStep;
+      }
+      if (now >= nextMessage) {
+        sendMessage();
+        // Falling further behind than this means the target rate is out of reach; report what was achieved.
+        nextMessage = Math.max(nextMessage + messageStep, now - MAX_LAG_NANOS);
+        continue;
+      }
+      long wake = Math.min(Math.min(nextMessage, nextChurn), Math.min(nextReport, measuring ? end : measureStart));
+      LockSupport.parkNanos(wake - now);
+    }
+  }
+
+  private void sendMessage() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    double total = scenario.roomMessageRate() + scenario.privateMessageRate();
+    boolean room = random.nextDouble() * total < scenario.roomMessageRate();
+    for (int attempt = 0; attempt < 4; attempt++) {
+      LoadClient from = clients[random.nextInt(clients.length)];
+      if (from == null || from.closing) continue;
+      if (room) {
+        int[] rooms = from.roomIds();
+        if (rooms.length == 0) continue;
+        if (from.send("REQ|MSG|#" + rooms[random.nextInt(rooms.length)] + " t=" + System.nanoTime() + padding)) {
+          interval.roomSent.increment();
+        }
+      } else {
+        LoadClient to = clients[random.nextInt(clients.length)];
+        if (to == null || to == from) continue;
+        if (from.send("REQ|PRIVMSG|" + to.name + " t=" + System.nanoTime() + padding)) {
+          interval.privateSent.increment();
+        }
+      }
+      return;
+    }
+  }
+
+  private void churn() {
+    int index = ThreadLocalRandom.current().nextInt(clients.length);
+    if (clients[index] != null) clients[index].close();
+    clients[index] = connect();
+    if (clients[index] != null) interval.churned.increment();
+  }
+
+  private void receive() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        selector.select(100);
+        LoadClient added;
+        while ((added = pending.poll()) != null) {
+          if (!added.channel.isOpen()) continue;
+          try {
+            added.register(selector);
+          } catch (IOException e) {
+            // Closed by churn before it was registered.
+          }
+        }
+        for (SelectionKey key : selector.selectedKeys()) {
+          LoadClient client = (LoadClient) key.attachment();
+          if (key.isValid() && key.isConnectable()) finishConnect(key, client);
+          if (key.isValid() && key.isWritable() && !client.flush()) disconnected(key, client);
+          if (key.isValid() && key.isReadable()) read(key);
+        }
+        selector.selectedKeys().clear();
+      } catch (IOException | ClosedSelectorException e) {
+        return;
+      }
+    }
+  }
+
+  private void finishConnect(SelectionKey key, LoadClient client) {
+    try {
+      if (!client.finishConnect()) disconnected(key, client);
+    } catch (IOException e) {
+      key.cancel();
+      if (!client.closing) {
+        interval.connectFailures.increment();
+        error("connect: " + e.getMessage());
+        client.close();
+      }
+    }
+  }
+
+  private void disconnected(SelectionKey key, LoadClient client) {
+    key.cancel();
+    if (!client.closing) {
+      interval.disconnects.increment();
+      client.close();
+    }
+  }
+
+  private void read(SelectionKey key) {
+    LoadClient client = (LoadClient) key.attachment();
+    int read;
+    readBuffer.clear();
+    try {
+      read = client.channel.read(readBuffer);
+    } catch (IOException e) {
+      read = -1;
+    }
+    if (read < 0) {
+      disconnected(key, client);
+      return;
+    }
+    readBuffer.flip();
+    long now = System.nanoTime();
+    while (readBuffer.hasRemaining()) {
+      byte b = readBuffer.get();
+      if (b == '\n') {
+        onLine(client, new String(client.line, 0, client.lineLength, StandardCharsets.UTF_8), now);
+        client.lineLength = 0;
+      } else if (client.lineLength < client.line.length) {
+        client.line[client.lineLength++] = b;
+      }
+    }
+  }
+
+  private void onLine(LoadClient client, String line, long now) {
+    Interval current = interval;
+    boolean room = line.startsWith("USER|");
+    if (room || line.startsWith("PRIVATE|")) {
+      int marker = line.indexOf("|t=");
+      if (marker < 0) return;
+      long latency = now - parseLong(line, marker + 3);
+      if (room) {
+        current.roomDelivered.increment();
+        current.roomLatency.record(latency);
+        if (measuring) totalRoomLatency.record(latency);
+      } else {
+        current.privateDelivered.increment();
+        current.privateLatency.record(latency);
+        if (measuring) totalPrivateLatency.record(latency);
+      }
+    } else if (line.startsWith("PING|")) {
+      client.send("REQ|PONG|" + line.substring(line.lastIndexOf('|') + 1));
+    } else if (line.startsWith("NOK|")) {
+      current.noks.increment();
+      error(line.substring(line.indexOf('|', line.indexOf('|', 4) + 1) + 1));
+    } else if (line.startsWith("OK|")) {
+      int joined = line.indexOf("Joined room '");
+      int id = joined < 0 ? -1 : line.indexOf("(#", joined);
+      if (id >= 0) client.addRoom((int) parseLong(line, id + 2));
+    }
+  }
+
+  /** Counts an error by its message, with quoted names and numbers masked so similar errors group together. */
+  private void error(String message) {
+    String kind = message.replaceAll("'[^']*'", "'...'").replaceAll("\\d+", "N");
+    errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+  }
+
+  private void report(long start, long from, long now) {
+    Interval ended = interval;
+    interval = new Interval();
+    if (measuring) ended.addTo(totals);
+    double seconds = (now - from) / 1e9;
+    Histogram.Snapshot rooms = ended.roomLatency.snapshot();
+    Histogram.Snapshot privates = ended.privateLatency.snapshot();
+    long rss = rssBytes();
+    peakRss = Math.max(peakRss, rss);
+    System.out.printf("[%6.1fs] %-7s conns=%d | room sent/s=%.0f delivered/s=%.0f p50=%s p99=%s max=%s"
+                    + " | private sent/s=%.0f p99=%s | nok=%d disconnects=%d churned=%d | rss=%s%n",
+            (now - start) / 1e9, measuring ? "measure" : "warmup", openConnections(),
+            ended.roomSent.sum() / seconds, ended.roomDelivered.sum() / seconds,
+            millis(rooms.quantile(0.5)), millis(rooms.quantile(0.99)), millis(rooms.max()),
+            ended.privateSent.sum() / seconds, millis(privates.quantile(0.99)),
+            ended.noks.sum(), ended.disconnects.sum() + ended.connectFailures.sum(), ended.churned.sum(), mebibytes(rss));
+  }
+
+  private void printSummary(long startRss) {
+    double seconds = scenario.duration().toNanos() / 1e9;
+    Histogram.Snapshot rooms = totalRoomLatency.snapshot();
+    Histogram.Snapshot privates = totalPrivateLatency.snapshot();
+    long roomSent = totals.roomSent.sum();
+    System.out.println();
+    System.out.printf("Summary: %d clients, %d rooms (zipf %.2f, %d per client), %.0fs measured%n",
+            scenario.clients(), scenario.rooms(), scenario.zipfExponent(), scenario.roomsPerClient(), seconds);
+    System.out.printf("  room messages    sent/s=%.0f delivered/s=%.0f fan-out=%.1f latency %s%n",
+            roomSent / seconds, totals.roomDelivered.sum() / seconds,
+            roomSent == 0 ? 0.0 : (double) totals.roomDelivered.sum() / roomSent, percentiles(rooms));
+    System.out.printf("  private messages sent/s=%.0f delivered/s=%.0f latency %s%n",
+            totals.privateSent.sum() / seconds, totals.privateDelivered.sum() / seconds, percentiles(privates));
+    System.out.printf("  connections      churned=%d disconnected=%d failed=%d%n",
+            totals.churned.sum(), totals.disconnects.sum(), totals.connectFailures.sum());
+    System.out.printf("  server rss       start=%s end=%s peak=%s%n", mebibytes(startRss), mebibytes(rssBytes()), mebibytes(peakRss));
+    System.out.printf("  errors           nok=%d%n", totals.noks.sum());
+    errors.entrySet().stream()
+            .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+            .limit(10)
+            .forEach(e -> System.out.printf("    %8d  %s%n", e.getValue().sum(), e.getKey()));
+  }
+
+  private int openConnections() {
+    int open = 0;
+    for (LoadClient client : clients) {
+      if (client != null && client.channel.isOpen()) open++;
+    }
+    return open;
+  }
+
+  private String newName() {
+    return "lg" + runId + "_" + Integer.toString(nextName++, 36);
+  }
+
+  private String roomName(int rank) {
+    return "lg" + runId + "-" + rank;
+  }
+
+  private static long parseLong(String text, int from) {
+    long value = 0;
+    for (int i = from; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') break;
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static String percentiles(Histogram.Snapshot s) {
+    return "p50=" + millis(s.quantile(0.5)) + " p90=" + millis(s.quantile(0.9)) + " p99=" + millis(s.quantile(0.99))
+            + " p999=" + millis(s.quantile(0.999)) + " max=" + millis(s.max());
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.2fms", nanos / 1e6);
+  }
+
+  private static String mebibytes(long bytes) {
+    return bytes > 0 ? (bytes >> 20) + "MiB" : "n/a";
+  }
+
+  private long rssBytes() {
+    if (serverPid <= 0) return 0;
+    try {
+      for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(serverPid), "status"))) {
+        if (line.startsWith("VmRSS:")) {
+          return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // Not Linux, or the server is gone.
+    }
+    return 0;
+  }
+
+  /**
+   * @return The PID of a TermiTalk server on this host, or 0 if none is found.
+   */
+  private static long findServerPid() {
+    long self = ProcessHandle.current().pid();
+    return ProcessHandle.allProcesses()
+            .filter(p -> p.pid() != self)
+            .filter(p -> p.info().command().map(cmd -> cmd.endsWith("java") || cmd.endsWith("java.exe")).orElse(false))
+            .filter(p -> p.info().commandLine()
+                    .map(cmd -> cmd.contains("io.olmosjt.TermiTalkServer") || cmd.matches(".*-jar\\s+\\S*termitalk-server\\S*\\.jar.*"))
+                    .orElse(false))
+            .mapToLong(ProcessHandle::pid)
+            .findFirst()
+            .orElse(0);
+  }
+}
@@ -0,0 +1,92 @@
+package io.olmosjt.loadgen;
+
+import java.time.Duration;
+
+/**
+ * What the load generator does against a running server.
+ *
+ * @param host                Server host; must resolve to a loopback address.
+ * @param port                Server port.
+ * @param clients             Connections kept open during the run.
+ * @param rooms               Rooms created before the run, named {@code lg-room-<rank>}.
+ * @param zipfExponent        Skew of room popularity; rank 1 is joined most. 0 spreads clients evenly.
+ * @param roomsPerClient      Distinct rooms each client joins.
+ * @param roomMessageRate     Room messages per second across all clients.
+ * @param privateMessageRate  Private messages per second across all clients.
+ * @param churnRate           Connections closed and replaced by a fresh login per second.
+ * @param connectRate         New connections per second while ramping up.
+ * @param messageBytes        Approximate size of each message's content.
+ * @param warmup              Time under load before measurement starts.
+ * @param duration            Measured time.
+ * @param reportInterval      How often a progress line is printed.
+ * @param serverPid           Server process to read RSS from; 0 looks for a local TermiTalk server.
+ */
+public record LoadScenario(
+        String host,
+        int port,
+        int clients,
+        int rooms,
+        double zipfExponent,
+        int roomsPerClient,
+        double roomMessageRate,
+        double privateMessageRate,
+        double churnRate,
+        double connectRate,
+        int messageBytes,
+        Duration warmup,
+        Duration duration,
+        Duration reportInterval,
+        long serverPid
+) {
+
+  public LoadScenario {
+    if (clients < 2) throw new IllegalArgumentException("clients must be at least 2");
+    if (rooms < 1) throw new IllegalArgumentException("rooms must be at least 1");
+    if (roomsPerClient < 1 || roomsPerClient > rooms) {
+      throw new IllegalArgumentException("roomsPerClient must be between 1 and rooms");
+    }
+    if (connectRate <= 0) throw new IllegalArgumentException("connectRate must be positive");
+  }
+
+  /**
+   * @return 1,000 clients on 127.0.0.1:9000 in 100 Zipf(1.0) rooms, one room each, sending 1,000 room and
+   *         100 private messages per second of 64 bytes, replacing 5 connections per second, measured for
+   *         60 seconds after a 5 second warmup.
+   */
+  public static LoadScenario defaults() {
+    return new LoadScenario("127.0.0.1", 9000, 1_000, 100, 1.0, 1, 1_000, 100, 5, 1_000, 64,
+            Duration.ofSeconds(5), Duration.ofSeconds(60), Duration.ofSeconds(5), 0);
+  }
+
+  /**
+   * Reads {@code loadgen.host}, {@code loadgen.port}, {@code loadgen.clients}, {@code loadgen.rooms},
+   * {@code loadgen.zipf}, {@code loadgen.roomsPerClient}, {@code loadgen.msgRate}, {@code loadgen.privRate},
+   * {@code loadgen.churnRate}, {@code loadgen.connectRate}, {@code loadgen.messageBytes},
+   * {@code loadgen.warmupSeconds}, {@code loadgen.seconds}, {@code loadgen.reportSeconds} and
+   * {@code loadgen.serverPid}, falling back to {@link #defaults()}.
+   */
+  public static LoadScenario fromSystemProperties() {
+    LoadScenario d = defaults();
+    return new LoadScenario(
+            System.getProperty("loadgen.host", d.host()),
+            Integer.getInteger("loadgen.port", d.port()),
+            Integer.getInteger("loadgen.clients", d.clients()),
+            Integer.getInteger("loadgen.rooms", d.rooms()),
+            doubleProperty("loadgen.zipf", d.zipfExponent()),
+            Integer.getInteger("loadgen.roomsPerClient", d.roomsPerClient()),
+            doubleProperty("loadgen.msgRate", d.roomMessageRate()),
+            doubleProperty("loadgen.privRate", d.privateMessageRate()),
+            doubleProperty("loadgen.churnRate", d.churnRate()),
+            doubleProperty("loadgen.connectRate", d.connectRate()),
+            Integer.getInteger("loadgen.messageBytes", d.messageBytes()),
+            Duration.ofSeconds(Long.getLong("loadgen.warmupSeconds", d.warmup().toSeconds())),
+            Duration.ofSeconds(Long.getLong("loadgen.seconds", d.duration().toSeconds())),
+            Duration.ofSeconds(Long.getLong("loadgen.reportSeconds", d.reportInterval().toSeconds())),
+            Long.getLong("loadgen.serverPid", d.serverPid()));
+  }
+
+  private static double doubleProperty(String name, double fallback) {
+    String value = System.getProperty(name);
+    return value == null ? fallback : Double.parseDouble(value);
+  }
+}
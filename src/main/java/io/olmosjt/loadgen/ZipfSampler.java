@@ -0,0 +1,30 @@
+package io.olmosjt.loadgen;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws ranks {@code 0..n-1} where rank {@code k} has weight {@code 1 / (k + 1)^s}.
+ * <p>
+ * The cumulative distribution is computed once, so each draw is one random number and a binary search.
+ */
+final class ZipfSampler {
+  private final double[] cumulative;
+
+  ZipfSampler(int n, double exponent) {
+    cumulative = new double[n];
+    double total = 0;
+    for (int k = 0; k < n; k++) {
+      total += 1 / Math.pow(k + 1, exponent);
+      cumulative[k] = total;
+    }
+    for (int k = 0; k < n; k++) {
+      cumulative[k] /= total;
+    }
+  }
+
+  int next() {
+    int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+    return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+  }
+}
@@ -39,6 +39,13 @@ public record Message(
     return new Message(MessageType.PRIVATE, from, to, content, Instant.now());
   }
 
+  /**
+   * PING|SYSTEM||token
+   */
+  public static Message ping(String token) {
+    return new Message(MessageType.PING, "SYSTEM", null, token, Instant.now());
+  }
+
   /**
    * USER|from|null|content
    */
@@ -46,4 +53,25 @@ public record Message(
     return new Message(MessageType.USER, from, null, content, Instant.now());
   }
 
+  /**
+   * USER|from|#roomId|content
+   */
+  public static Message userMsg(String from, int roomId, String content) {
+    return new Message(MessageType.USER, from, "#" + roomId, content, Instant.now());
+  }
+
+  /**
+   * @return The room ID of a {@code #id} recipient, or -1 if the recipient does not name a room.
+   */
+  public int roomId() {
+    if (recipient == null || recipient.length() < 2 || recipient.charAt(0) != '#') return -1;
+    int id = 0;
+    for (int i = 1; i < recipient.length(); i++) {
+      char c = recipient.charAt(i);
+      if (c < '0' || c > '9' || id > (Integer.MAX_VALUE - 9) / 10) return -1;
+      id = id * 10 + (c - '0');
+    }
+    return id;
+  }
+
 }
@@ -1,7 +1,15 @@
 package io.olmosjt.message;
 
+import io.olmosjt.cluster.ClusterNode;
+import io.olmosjt.metrics.ServerMetrics;
+import io.olmosjt.protocol.Frame;
+import io.olmosjt.protocol.MessageEncoder;
+import io.olmosjt.room.ChatRoom;
 import io.olmosjt.server.ClientHandler;
 import io.olmosjt.server.ClientManager;
+import io.olmosjt.store.MessageStore;
+import io.olmosjt.trace.DeliveryTrace;
+import io.olmosjt.trace.DeliveryTracer;
 import io.olmosjt.util.LoggerUtil;
 
 /**
@@ -11,19 +19,41 @@ import io.olmosjt.util.LoggerUtil;
  * and deliver {@link io.olmosjt.message.Message} instances.
  * <ul>
  *   <li>{@link io.olmosjt.message.MessageType#SYSTEM} and {@link io.olmosjt.message.MessageType#ERROR} → broadcast to all clients</li>
- *   <li>{@link io.olmosjt.message.MessageType#USER} → broadcast to a room (or all if no room logic attached)</li>
+ *   <li>{@link io.olmosjt.message.MessageType#USER} → broadcast to the room named by its {@code #id} recipient, or the
+ *   sender's current room if there is none; the sender must be a member</li>
  *   <li>{@link io.olmosjt.message.MessageType#PRIVATE} → direct message to specific recipient</li>
  * </ul>
  * <p>
  * This class has no state of its own; it depends on {@link ClientManager}
  * for active connections and {@link io.olmosjt.message.Message} for message metadata.
+ * Delivered private messages are handed to the {@link MessageStore}. Every routed message is counted
+ * by type in {@link ServerMetrics}, together with the number of recipients it reached.
+ * <p>
+ * In a cluster, a room message goes to the node owning the room, which numbers it; if that is this node,
+ * the {@link ClusterNode} relays it to the other nodes with members after the local broadcast. Private
+ * messages to users who are not logged in here are forwarded to the node they are on.
  */
 
 public class MessageDispatcher {
   private final ClientManager clientManager;
+  private final MessageStore store;
+  private final ClusterNode cluster;
 
   public MessageDispatcher(ClientManager clientManager) {
+    this(clientManager, MessageStore.NONE);
+  }
+
+  public MessageDispatcher(ClientManager clientManager, MessageStore store) {
+    this(clientManager, store, null);
+  }
+
+  /**
+   * @param cluster The cluster to forward messages through, or {@code null} when running standalone.
+   */
+  public MessageDispatcher(ClientManager clientManager, MessageStore store, ClusterNode cluster) {
     this.clientManager = clientManager;
+    this.store = store;
+    this.cluster = cluster;
   }
 
   public void dispatch(Message message) {
@@ -36,35 +66,57 @@ public class MessageDispatcher {
   }
 
   private void broadcast(Message message) {
+    Frame frame = MessageEncoder.encodeFrame(message);
     int count = 0;
     for (ClientHandler ch : clientManager.allClients()) {
-      ch.send(message);
+      ch.send(frame);
       count++;
     }
-    LoggerUtil.info("ROUTE broadcast type=" + message.type() +
-            " from=" + message.sender() +
-            " delivered=" + count);
+    ServerMetrics.messageRouted(message.type(), count);
+    if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+      LoggerUtil.info("ROUTE broadcast type=" + message.type() +
+              " from=" + message.sender() +
+              " delivered=" + count);
+    }
   }
 
   private void broadcastToRoom(Message message) {
+    long accepted = System.nanoTime();
     ClientHandler sender = clientManager.get(message.sender());
-    if (sender != null) {
-      sender.getCurrentRoom().ifPresentOrElse(
-              room -> {
-                room.broadcast(message);
-                LoggerUtil.info("ROUTE room type=" + message.type() +
-                        " from=" + message.sender() +
-                        " roomId=" + room.getId() +
-                        " roomName=" + room.getName() +
-                        " members=" + room.getMemberNames().size());
-              },
-              () -> {
-                LoggerUtil.warn("ROUTE room failed: sender not in a room. from=" + message.sender());
-                sender.send(Message.serverNok(message.sender(), "You are not in a room."));
-              }
-      );
-    } else {
+    if (sender == null) {
       LoggerUtil.warn("ROUTE room failed: unknown sender=" + message.sender());
+      return;
+    }
+    ChatRoom room = sender.findRoom(message.roomId());
+    if (room == null) {
+      LoggerUtil.warn("ROUTE room failed: sender not in room. from=" + message.sender() + " rcpt=" + message.recipient());
+      sender.send(Message.serverNok(message.sender(), message.recipient() == null
+              ? "You are not in a room." : "You are not in room " + message.recipient() + "."));
+      return;
+    }
+    String owner = cluster == null ? null : cluster.ownerOf(room);
+    if (owner != null && !owner.equals(cluster.nodeId())) {
+      // The owner numbers the message and relays it back to this node's members.
+      if (!cluster.publish(owner, room, message)) {
+        sender.send(Message.serverNok(message.sender(), "Room #" + room.getId() + " is unavailable. Try again."));
+        return;
+      }
+      if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+        LoggerUtil.info("ROUTE room type=" + message.type() + " from=" + message.sender() +
+                " roomId=" + room.getId() + " roomName=" + room.getName() + " owner=" + owner);
+      }
+      return;
+    }
+    DeliveryTrace trace = DeliveryTracer.sampled() ? room.startTrace(accepted) : null;
+    int delivered = owner == null ? room.broadcast(message, trace)
+            : room.broadcast(MessageEncoder.encodeFrame(message, trace), cluster.relayFor(room));
+    ServerMetrics.messageRouted(message.type(), delivered);
+    if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+      LoggerUtil.info("ROUTE room type=" + message.type() +
+              " from=" + message.sender() +
+              " roomId=" + room.getId() +
+              " roomName=" + room.getName() +
+              " members=" + room.memberCount());
     }
   }
 
@@ -73,12 +125,26 @@ public class MessageDispatcher {
 
     ClientHandler target = clientManager.get(message.recipient());
     if (target != null) {
-      target.send(message);
+      Frame frame = MessageEncoder.encodeFrame(message);
+      target.send(frame);
       ClientHandler sender = clientManager.get(message.sender());
+      int delivered = 1;
       if (sender != null && !sender.equals(target)) {
-        sender.send(message);
+        sender.send(frame);
+        delivered++;
+      }
+      ServerMetrics.messageRouted(message.type(), delivered);
+      store.appendPrivate(frame);
+      if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+        LoggerUtil.info("ROUTE private from=" + message.sender() + " to=" + message.recipient());
+      }
+    } else if (cluster != null && cluster.routePrivate(message)) {
+      ClientHandler sender = clientManager.get(message.sender());
+      if (sender != null) sender.send(message);
+      ServerMetrics.messageRouted(message.type(), 1);
+      if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+        LoggerUtil.info("ROUTE private from=" + message.sender() + " to=" + message.recipient() + " forwarded");
       }
-      LoggerUtil.info("ROUTE private from=" + message.sender() + " to=" + message.recipient());
     } else {
       ClientHandler sender = clientManager.get(message.sender());
       LoggerUtil.warn("ROUTE private failed: recipient offline or not found. from=" + message.sender() +
@@ -1,12 +1,19 @@
 package io.olmosjt.message;
 
+/**
+ * Kinds of messages sent to clients.
+ * <p>
+ * The binary protocol identifies a type by its {@link #code()}, its position in this enum, so new types
+ * go at the end.
+ */
 public enum MessageType {
   OK("successful response to a client request"),
   NOK("error response to a client request"),
   SYSTEM("server/system notifications (events)"),
   USER("normal chat messages in rooms"),
   PRIVATE("private messages between users"),
-  COMMAND("commands sent from client to server");
+  COMMAND("commands sent from client to server"),
+  PING("keepalive probe from the server; answer with REQ|PONG|<token>");
 
   private final String description;
 
@@ -14,6 +21,13 @@ public enum MessageType {
     this.description = description;
   }
 
+  /**
+   * @return The code identifying this type in the binary protocol.
+   */
+  public int code() {
+    return ordinal();
+  }
+
   public String getDescription() {
     return description;
   }
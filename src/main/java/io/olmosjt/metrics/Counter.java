@@ -0,0 +1,26 @@
+package io.olmosjt.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonically increasing count, backed by a {@link LongAdder} so concurrent updates spread over
+ * striped cells instead of contending on one CAS.
+ */
+public final class Counter {
+  private final LongAdder value = new LongAdder();
+
+  public void increment() {
+    value.increment();
+  }
+
+  public void add(long amount) {
+    value.add(amount);
+  }
+
+  /**
+   * @return The current total; not an atomic snapshot while updates are in flight.
+   */
+  public long sum() {
+    return value.sum();
+  }
+}
@@ -0,0 +1,118 @@
+package io.olmosjt.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of non-negative {@code long} values, in the style of HdrHistogram.
+ * <p>
+ * Each power of two is split into {@value #SUB_BUCKETS} linear sub-buckets, so every value is placed
+ * within 12.5% of its true magnitude across the whole {@code long} range with a fixed 496 buckets.
+ * Recording finds the bucket with a leading-zero count and a shift, then increments one slot of a
+ * per-thread stripe, so threads recording concurrently rarely touch the same cache line.
+ * Quantiles are computed when the histogram is read.
+ */
+public final class Histogram {
+  private static final int SUB_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BITS;
+  private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+  /** Spaces stripes apart so neighbouring stripes do not share a cache line. */
+  private static final int PAD = 8;
+  private static final int STRIPES =
+          Math.min(8, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors())));
+
+  private final AtomicLongArray counts = new AtomicLongArray(STRIPES * (BUCKETS + PAD));
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * Records one value; negative values are recorded as 0.
+   */
+  public void record(long value) {
+    if (value < 0) value = 0;
+    int stripe = (int) (Thread.currentThread().threadId() & (STRIPES - 1));
+    counts.getAndIncrement(stripe * (BUCKETS + PAD) + bucket(value));
+    sum.add(value);
+  }
+
+  /**
+   * @return A point-in-time copy of the recorded values.
+   */
+  public Snapshot snapshot() {
+    long[] merged = new long[BUCKETS];
+    for (int s = 0; s < STRIPES; s++) {
+      int base = s * (BUCKETS + PAD);
+      for (int b = 0; b < BUCKETS; b++) {
+        merged[b] += counts.get(base + b);
+      }
+    }
+    long total = 0;
+    for (long c : merged) total += c;
+    return new Snapshot(merged, total, sum.sum());
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) return (int) value;
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  static long lowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) return bucket;
+    int shift = bucket / SUB_BUCKETS - 1;
+    return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+  }
+
+  static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) return bucket;
+    int shift = bucket / SUB_BUCKETS - 1;
+    return lowerBound(bucket) + (1L << shift) - 1;
+  }
+
+  /**
+   * Merged bucket counts at one point in time.
+   */
+  public static final class Snapshot {
+    private final long[] buckets;
+    private final long count;
+    private final long sum;
+
+    Snapshot(long[] buckets, long count, long sum) {
+      this.buckets = buckets;
+      this.count = count;
+      this.sum = sum;
+    }
+
+    public long count() {
+      return count;
+    }
+
+    public long sum() {
+      return sum;
+    }
+
+    /**
+     * @param q The quantile, between 0 and 1.
+     * @return The upper bound of the bucket holding that quantile, or 0 if nothing was recorded.
+     */
+    public long quantile(double q) {
+      if (count == 0) return 0;
+      long rank = Math.max(1, (long) Math.ceil(q * count));
+      long seen = 0;
+      for (int b = 0; b < buckets.length; b++) {
+        seen += buckets[b];
+        if (seen >= rank) return upperBound(b);
+      }
+      return upperBound(buckets.length - 1);
+    }
+
+    /**
+     * @return The upper bound of the highest non-empty bucket, or 0 if nothing was recorded.
+     */
+    public long max() {
+      for (int b = buckets.length - 1; b >= 0; b--) {
+        if (buckets[b] != 0) return upperBound(b);
+      }
+      return 0;
+    }
+  }
+}
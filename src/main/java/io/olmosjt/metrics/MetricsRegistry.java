@@ -0,0 +1,158 @@
+package io.olmosjt.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named metrics with their help text and labels, rendered in the Prometheus text exposition format.
+ * <p>
+ * Registration is synchronized and meant to happen once, at startup or on first use; callers keep the
+ * returned {@link Counter} or {@link Histogram} and update it directly, so the registry is never touched
+ * on the hot path. Gauges are read from their supplier at scrape time. Histograms are exposed as
+ * summaries with fixed quantiles, which keeps the output to a few lines per series.
+ */
+public final class MetricsRegistry {
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private enum Type { COUNTER, GAUGE, SUMMARY }
+
+  private record Series(String labels, Object metric, double scale) {}
+
+  private static final class Family {
+    final String name;
+    final String help;
+    final Type type;
+    final List<Series> series = new ArrayList<>();
+
+    Family(String name, String help, Type type) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+    }
+  }
+
+  private final Map<String, Family> families = new LinkedHashMap<>();
+
+  /**
+   * @param name   Metric name, conventionally ending in {@code _total}.
+   * @param labels Alternating label names and values.
+   * @return The counter for these labels, created on first use.
+   */
+  public synchronized Counter counter(String name, String help, String... labels) {
+    return (Counter) series(name, help, Type.COUNTER, labels, Counter::new, 1);
+  }
+
+  /**
+   * @param scale  Multiplier from recorded values to the exposed unit, e.g. {@code 1e-9} for nanoseconds
+   *               exposed as seconds.
+   * @param labels Alternating label names and values.
+   * @return The histogram for these labels, created on first use.
+   */
+  public synchronized Histogram histogram(String name, String help, double scale, String... labels) {
+    return (Histogram) series(name, help, Type.SUMMARY, labels, Histogram::new, scale);
+  }
+
+  /**
+   * Registers a gauge read at scrape time, replacing any earlier gauge with the same name and labels.
+   * @param labels Alternating label names and values.
+   */
+  public synchronized void gauge(String name, String help, LongSupplier value, String... labels) {
+    Family family = family(name, help, Type.GAUGE);
+    String key = labels(labels);
+    family.series.removeIf(s -> s.labels.equals(key));
+    family.series.add(new Series(key, value, 1));
+  }
+
+  /**
+   * @return All metrics in the Prometheus text format, version 0.0.4.
+   */
+  public String scrape() {
+    List<Family> snapshot;
+    synchronized (this) {
+      snapshot = new ArrayList<>(families.size());
+      for (Family family : families.values()) {
+        Family copy = new Family(family.name, family.help, family.type);
+        copy.series.addAll(family.series);
+        snapshot.add(copy);
+      }
+    }
+    StringBuilder out = new StringBuilder(8192);
+    for (Family family : snapshot) {
+      out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+      out.append("# TYPE ").append(family.name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+      for (Series s : family.series) {
+        switch (family.type) {
+          case COUNTER -> sample(out, family.name, s.labels, null, ((Counter) s.metric).sum());
+          case GAUGE -> sample(out, family.name, s.labels, null, ((LongSupplier) s.metric).getAsLong());
+          case SUMMARY -> {
+            Histogram.Snapshot h = ((Histogram) s.metric).snapshot();
+            for (double q : QUANTILES) {
+              sample(out, family.name, s.labels, "quantile=\"" + q + "\"", h.quantile(q) * s.scale);
+            }
+            sample(out, family.name + "_sum", s.labels, null, h.sum() * s.scale);
+            sample(out, family.name + "_count", s.labels, null, h.count());
+          }
+        }
+      }
+    }
+    return out.toString();
+  }
+
+  private Object series(String name, String help, Type type, String[] labels,
+                        Supplier<Object> factory, double scale) {
+    Family family = family(name, help, type);
+    String key = labels(labels);
+    for (Series s : family.series) {
+      if (s.labels.equals(key)) return s.metric;
+    }
+    Object metric = factory.get();
+    family.series.add(new Series(key, metric, scale));
+    return metric;
+  }
+
+  private Family family(String name, String help, Type type) {
+    Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+    if (family.type != type) {
+      throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+    }
+    return family;
+  }
+
+  private static String labels(String[] labels) {
+    if (labels.length % 2 != 0) throw new IllegalArgumentException("Labels must be name/value pairs");
+    StringBuilder out = new StringBuilder();
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) out.append(',');
+      out.append(labels[i]).append("=\"");
+      String value = labels[i + 1];
+      for (int c = 0; c < value.length(); c++) {
+        char ch = value.charAt(c);
+        switch (ch) {
+          case '\\' -> out.append("\\\\");
+          case '"' -> out.append("\\\"");
+          case '\n' -> out.append("\\n");
+          default -> out.append(ch);
+        }
+      }
+      out.append('"');
+    }
+    return out.toString();
+  }
+
+  private static void sample(StringBuilder out, String name, String labels, String extra, double value) {
+    out.append(name);
+    if (!labels.isEmpty() || extra != null) {
+      out.append('{').append(labels);
+      if (extra != null) out.append(labels.isEmpty() ? "" : ",").append(extra);
+      out.append('}');
+    }
+    out.append(' ');
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) out.append((long) value);
+    else out.append(value);
+    out.append('\n');
+  }
+}
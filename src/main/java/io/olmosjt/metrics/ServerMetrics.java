@@ -0,0 +1,128 @@
+package io.olmosjt.metrics;
+
+import io.olmosjt.command.CommandType;
+import io.olmosjt.message.MessageType;
+import io.olmosjt.ratelimit.RateLimiter;
+import io.olmosjt.server.AdmissionControl;
+
+/**
+ * Server-wide instrumentation points.
+ * <p>
+ * Every series is created once when this class loads and kept in arrays indexed by enum ordinal, so
+ * recording is a field load plus a {@link Counter} or {@link Histogram} update: no map lookups, label
+ * formatting or allocation on the paths that call it.
+ */
+public final class ServerMetrics {
+  public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+  private static final Counter[] COMMANDS = new Counter[CommandType.values().length];
+  private static final Histogram[] COMMAND_LATENCY = new Histogram[CommandType.values().length];
+  private static final Counter[] ROUTED = new Counter[MessageType.values().length];
+  private static final Histogram[] FAN_OUT = new Histogram[MessageType.values().length];
+  private static final Counter[] RATE_LIMITED = new Counter[RateLimiter.Scope.values().length];
+  private static final Counter[] REJECTED = new Counter[AdmissionControl.Rejection.values().length];
+
+  private static final Counter FRAMES_OUT = REGISTRY.counter("termitalk_frames_queued_total",
+          "Frames queued for delivery to clients.");
+  private static final Counter BYTES_OUT = REGISTRY.counter("termitalk_bytes_queued_total",
+          "Bytes queued for delivery to clients.");
+  private static final Counter SLOW_CONSUMERS = REGISTRY.counter("termitalk_slow_consumer_disconnects_total",
+          "Clients disconnected because their outbound queue overflowed.");
+  private static final Counter CONNECTIONS_OPENED = REGISTRY.counter("termitalk_connections_opened_total",
+          "Client connections accepted.");
+  private static final Counter CONNECTIONS_CLOSED = REGISTRY.counter("termitalk_connections_closed_total",
+          "Client connections closed.");
+  private static final Counter COMPRESSION_IN = REGISTRY.counter("termitalk_compression_input_bytes_total",
+          "Bytes fed to the outbound compression of clients that asked for it.");
+  private static final Counter COMPRESSION_OUT = REGISTRY.counter("termitalk_compression_output_bytes_total",
+          "Compressed bytes those clients were sent in their place.");
+  private static final Counter CLUSTER_SENT = REGISTRY.counter("termitalk_cluster_frames_sent_total",
+          "Frames queued for other cluster nodes.");
+  private static final Counter CLUSTER_DROPPED = REGISTRY.counter("termitalk_cluster_frames_dropped_total",
+          "Frames for other cluster nodes dropped because their queue was full.");
+  private static final Counter CLUSTER_RECEIVED = REGISTRY.counter("termitalk_cluster_frames_received_total",
+          "Frames received from other cluster nodes.");
+
+  static {
+    for (CommandType type : CommandType.values()) {
+      COMMANDS[type.ordinal()] = REGISTRY.counter("termitalk_commands_total",
+              "Requests handled, by command.", "command", type.name());
+    }
+    for (CommandType type : CommandType.values()) {
+      COMMAND_LATENCY[type.ordinal()] = REGISTRY.histogram("termitalk_command_duration_seconds",
+              "Time to parse and execute a request, by command.", 1e-9, "command", type.name());
+    }
+    for (MessageType type : MessageType.values()) {
+      ROUTED[type.ordinal()] = REGISTRY.counter("termitalk_routed_messages_total",
+              "Messages routed by the dispatcher, by message type.", "type", type.name());
+    }
+    for (MessageType type : MessageType.values()) {
+      FAN_OUT[type.ordinal()] = REGISTRY.histogram("termitalk_fanout_recipients",
+              "Recipients per routed message, by message type.", 1, "type", type.name());
+    }
+    for (RateLimiter.Scope scope : RateLimiter.Scope.values()) {
+      RATE_LIMITED[scope.ordinal()] = REGISTRY.counter("termitalk_rate_limited_total",
+              "Requests and room messages refused by a rate limit, by limit.", "scope", scope.name().toLowerCase());
+    }
+    for (AdmissionControl.Rejection rejection : AdmissionControl.Rejection.values()) {
+      REJECTED[rejection.ordinal()] = REGISTRY.counter("termitalk_connections_rejected_total",
+              "Connections refused at accept time, by reason.", "reason", rejection.name().toLowerCase());
+    }
+    REGISTRY.gauge("termitalk_connections_open", "Client connections currently open.",
+            () -> CONNECTIONS_OPENED.sum() - CONNECTIONS_CLOSED.sum());
+  }
+
+  private ServerMetrics() {}
+
+  public static void commandHandled(CommandType type, long nanos) {
+    COMMANDS[type.ordinal()].increment();
+    COMMAND_LATENCY[type.ordinal()].record(nanos);
+  }
+
+  public static void messageRouted(MessageType type, int recipients) {
+    ROUTED[type.ordinal()].increment();
+    FAN_OUT[type.ordinal()].record(recipients);
+  }
+
+  public static void frameQueued(int bytes) {
+    FRAMES_OUT.increment();
+    BYTES_OUT.add(bytes);
+  }
+
+  public static void slowConsumerDisconnected() {
+    SLOW_CONSUMERS.increment();
+  }
+
+  public static void rateLimited(RateLimiter.Scope scope) {
+    RATE_LIMITED[scope.ordinal()].increment();
+  }
+
+  public static void connectionRejected(AdmissionControl.Rejection rejection) {
+    REJECTED[rejection.ordinal()].increment();
+  }
+
+  public static void connectionOpened() {
+    CONNECTIONS_OPENED.increment();
+  }
+
+  public static void connectionClosed() {
+    CONNECTIONS_CLOSED.increment();
+  }
+
+  public static void compressed(long bytesIn, long bytesOut) {
+    COMPRESSION_IN.add(bytesIn);
+    COMPRESSION_OUT.add(bytesOut);
+  }
+
+  public static void clusterSent() {
+    CLUSTER_SENT.increment();
+  }
+
+  public static void clusterDropped() {
+    CLUSTER_DROPPED.increment();
+  }
+
+  public static void clusterReceived() {
+    CLUSTER_RECEIVED.increment();
+  }
+}
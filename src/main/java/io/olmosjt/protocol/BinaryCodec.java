@@ -0,0 +1,182 @@
+package io.olmosjt.protocol;
+
+import io.olmosjt.command.CommandType;
+import io.olmosjt.message.Message;
+import io.olmosjt.message.MessageType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encoding of the {@linkplain WireFormat#BINARY binary} protocol.
+ * <p>
+ * Every record is an unsigned LEB128 varint holding the length of its body, followed by the body. Strings
+ * are raw UTF-8 and the last field of a body runs to its end, so content may hold any character,
+ * {@code |} and line breaks included.
+ * <pre>
+ * request (client to server)   u8 {@link CommandType#code()}, payload
+ * message (server to client)   u8 {@link MessageType#code()}, varint sender ID, varint recipient length,
+ *                              recipient, content
+ * sender definition            u8 {@link #SENDER_DEFINITION}, varint sender ID, sender name
+ * </pre>
+ * A message names its sender by an ID that the server assigns; the definition binding an ID to a name is
+ * sent on a connection before the first message that uses it. An empty recipient means none. Payloads
+ * use the same syntax as in the text protocol.
+ */
+public final class BinaryCodec {
+  /** Type byte of a record that binds a sender ID to a name. */
+  public static final int SENDER_DEFINITION = 0xFF;
+
+  private static final ParsedRequest EMPTY = new ParsedRequest(CommandType.UNKNOWN, "");
+  private static final byte[] NO_BYTES = {};
+  private static final byte[][] TYPE_NAMES = Arrays.stream(MessageType.values())
+          .map(type -> type.name().getBytes(StandardCharsets.US_ASCII))
+          .toArray(byte[][]::new);
+
+  /**
+   * A batch of text lines re-encoded as binary messages.
+   * @param senders The distinct senders the messages refer to.
+   */
+  record Transcoded(byte[] bytes, SenderIds.Sender[] senders) {}
+
+  private BinaryCodec() {}
+
+  /**
+   * Parses the body of a binary request, without its length prefix.
+   */
+  public static ParsedRequest parseRequest(byte[] buf, int off, int len) {
+    if (len == 0) return EMPTY;
+    CommandType type = CommandType.fromCode(buf[off] & 0xFF);
+    String payload = len == 1 || !type.takesPayload()
+            ? ""
+            : new String(buf, off + 1, len - 1, StandardCharsets.UTF_8);
+    return new ParsedRequest(type, payload);
+  }
+
+  /**
+   * Encodes a complete request record, length prefix included, as a client sends it.
+   */
+  public static byte[] encodeRequest(CommandType type, String payload) {
+    byte[] bytes = payload == null ? NO_BYTES : payload.getBytes(StandardCharsets.UTF_8);
+    int body = 1 + bytes.length;
+    byte[] out = new byte[varintSize(body) + body];
+    int pos = putVarint(out, 0, body);
+    out[pos++] = (byte) type.code();
+    System.arraycopy(bytes, 0, out, pos, bytes.length);
+    return out;
+  }
+
+  /**
+   * Encodes one message record, length prefix included.
+   */
+  static byte[] encode(Message message, int senderId) {
+    byte[] recipient = message.recipient() == null ? NO_BYTES : message.recipient().getBytes(StandardCharsets.UTF_8);
+    byte[] content = message.content().getBytes(StandardCharsets.UTF_8);
+    byte[] out = new byte[messageSize(senderId, recipient.length, content.length)];
+    putMessage(out, 0, message.type().code(), senderId, recipient, 0, recipient.length, content, 0, content.length);
+    return out;
+  }
+
+  static byte[] encodeSenderDefinition(int id, String name) {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    int body = 1 + varintSize(id) + bytes.length;
+    byte[] out = new byte[varintSize(body) + body];
+    int pos = putVarint(out, 0, body);
+    out[pos++] = (byte) SENDER_DEFINITION;
+    pos = putVarint(out, pos, id);
+    System.arraycopy(bytes, 0, out, pos, bytes.length);
+    return out;
+  }
+
+  /**
+   * Re-encodes newline-terminated {@code TYPE|SENDER|RECIPIENT|CONTENT} lines, such as a history replay,
+   * as binary message records. Lines that are not messages are skipped.
+   */
+  static Transcoded transcode(byte[] lines) {
+    byte[] out = new byte[lines.length + 16];
+    int pos = 0;
+    List<SenderIds.Sender> senders = new ArrayList<>(4);
+    int start = 0;
+    while (start < lines.length) {
+      int end = indexOf(lines, (byte) '\n', start, lines.length);
+      if (end < 0) end = lines.length;
+      int typeEnd = indexOf(lines, (byte) '|', start, end);
+      int senderEnd = typeEnd < 0 ? -1 : indexOf(lines, (byte) '|', typeEnd + 1, end);
+      int recipientEnd = senderEnd < 0 ? -1 : indexOf(lines, (byte) '|', senderEnd + 1, end);
+      int type = recipientEnd < 0 ? -1 : typeCode(lines, start, typeEnd);
+      if (type >= 0) {
+        SenderIds.Sender sender = SenderIds.intern(
+                new String(lines, typeEnd + 1, senderEnd - typeEnd - 1, StandardCharsets.UTF_8));
+        if (!senders.contains(sender)) senders.add(sender);
+        int recipientLength = recipientEnd - senderEnd - 1;
+        int contentLength = end - recipientEnd - 1;
+        int size = messageSize(sender.id(), recipientLength, contentLength);
+        if (pos + size > out.length) out = Arrays.copyOf(out, Math.max(out.length * 2, pos + size));
+        pos = putMessage(out, pos, type, sender.id(), lines, senderEnd + 1, recipientLength,
+                lines, recipientEnd + 1, contentLength);
+      }
+      start = end + 1;
+    }
+    return new Transcoded(Arrays.copyOf(out, pos), senders.toArray(SenderIds.Sender[]::new));
+  }
+
+  /**
+   * @return The number of bytes {@code value} takes as an unsigned varint.
+   */
+  public static int varintSize(int value) {
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  /**
+   * Writes {@code value} as an unsigned varint at {@code pos}.
+   * @return The position after it.
+   */
+  public static int putVarint(byte[] dst, int pos, int value) {
+    while ((value & ~0x7F) != 0) {
+      dst[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    dst[pos++] = (byte) value;
+    return pos;
+  }
+
+  private static int messageSize(int senderId, int recipientLength, int contentLength) {
+    int body = 1 + varintSize(senderId) + varintSize(recipientLength) + recipientLength + contentLength;
+    return varintSize(body) + body;
+  }
+
+  private static int putMessage(byte[] dst, int pos, int type, int senderId,
+                                byte[] recipient, int recipientOff, int recipientLength,
+                                byte[] content, int contentOff, int contentLength) {
+    int body = 1 + varintSize(senderId) + varintSize(recipientLength) + recipientLength + contentLength;
+    pos = putVarint(dst, pos, body);
+    dst[pos++] = (byte) type;
+    pos = putVarint(dst, pos, senderId);
+    pos = putVarint(dst, pos, recipientLength);
+    System.arraycopy(recipient, recipientOff, dst, pos, recipientLength);
+    pos += recipientLength;
+    System.arraycopy(content, contentOff, dst, pos, contentLength);
+    return pos + contentLength;
+  }
+
+  private static int typeCode(byte[] buf, int start, int end) {
+    for (int code = 0; code < TYPE_NAMES.length; code++) {
+      if (Arrays.equals(TYPE_NAMES[code], 0, TYPE_NAMES[code].length, buf, start, end)) return code;
+    }
+    return -1;
+  }
+
+  private static int indexOf(byte[] buf, byte b, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buf[i] == b) return i;
+    }
+    return -1;
+  }
+}
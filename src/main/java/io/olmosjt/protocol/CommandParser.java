@@ -2,28 +2,79 @@ package io.olmosjt.protocol;
 
 import io.olmosjt.command.CommandType;
 
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses {@code REQ|COMMAND|payload} request lines.
+ * <p>
+ * Both entry points locate the pipes by scanning, resolve the command token in place via
+ * {@link CommandType#fromBytes}/{@link CommandType#fromString}, and only create a payload string
+ * for commands that {@linkplain CommandType#takesPayload() read one}.
+ */
 public final class CommandParser {
 
   private CommandParser() {}
 
   public static final String REQUEST_FORMAT = "REQ|COMMAND|payload";
 
+  private static final ParsedRequest EMPTY = new ParsedRequest(CommandType.UNKNOWN, "");
+  private static final byte[] PREFIX = {'R', 'E', 'Q', '|'};
+
   public static ParsedRequest parse(String raw) {
-    if (raw == null || raw.isBlank())return new ParsedRequest(CommandType.UNKNOWN, "");
+    if (raw == null || raw.isBlank()) return EMPTY;
 
     if (!raw.startsWith("REQ|")) {
       return new ParsedRequest(CommandType.UNKNOWN, raw);
     }
 
+    // REQ | COMMAND | payload
+    int cmdStart = PREFIX.length;
+    int pipe = raw.indexOf('|', cmdStart);
+    int cmdEnd = pipe < 0 ? raw.length() : pipe;
+
+    CommandType type = CommandType.fromString(raw, cmdStart, cmdEnd);
+    String payload = pipe < 0 || !type.takesPayload() ? "" : raw.substring(pipe + 1);
+    return new ParsedRequest(type, payload);
+  }
+
+  /**
+   * Parses a request line directly from an inbound byte buffer.
+   * @param buf The buffer holding the line (without its terminator).
+   * @param off Offset of the first byte of the line.
+   * @param len Length of the line in bytes.
+   */
+  public static ParsedRequest parse(byte[] buf, int off, int len) {
+    if (isBlank(buf, off, len)) return EMPTY;
+
+    if (!startsWithPrefix(buf, off, len)) {
+      return new ParsedRequest(CommandType.UNKNOWN, "");
+    }
+
+    int end = off + len;
+    int cmdStart = off + PREFIX.length;
+    int pipe = cmdStart;
+    while (pipe < end && buf[pipe] != '|') pipe++;
 
-    // Split into at most 3 parts: REQ | COMMAND | payload
-    String[] parts = raw.split("\\|", 3);
-    // parts[0] = "REQ"
-    String cmdToken = parts.length > 1 ? parts[1] : "";
-    String payload  = parts.length > 2 ? parts[2] : "";
+    CommandType type = CommandType.fromBytes(buf, cmdStart, pipe - cmdStart);
+    String payload = pipe == end || !type.takesPayload()
+            ? ""
+            : new String(buf, pipe + 1, end - pipe - 1, StandardCharsets.UTF_8);
+    return new ParsedRequest(type, payload);
+  }
 
-    return new ParsedRequest(CommandType.fromString(cmdToken), payload);
+  private static boolean startsWithPrefix(byte[] buf, int off, int len) {
+    if (len < PREFIX.length) return false;
+    for (int i = 0; i < PREFIX.length; i++) {
+      if (buf[off + i] != PREFIX[i]) return false;
+    }
+    return true;
+  }
 
+  private static boolean isBlank(byte[] buf, int off, int len) {
+    for (int i = off; i < off + len; i++) {
+      if ((buf[i] & 0xFF) > ' ') return false;
+    }
+    return true;
   }
 
 }
@@ -0,0 +1,35 @@
+package io.olmosjt.protocol;
+
+/**
+ * Settings for compressing the outbound stream of connections that ask for it with {@code REQ|COMPRESS|deflate}.
+ *
+ * @param enabled        Whether clients may turn compression on.
+ * @param level          DEFLATE level, from 1 (fastest) to 9 (smallest).
+ * @param sharedMinBytes Frames at least this long are deflated once, on their own, and the result is spliced into
+ *                       every compressed connection they are written to. Shorter frames go through each
+ *                       connection's own stream, where earlier frames make them compress far better.
+ */
+public record CompressionConfig(
+        boolean enabled,
+        int level,
+        int sharedMinBytes
+) {
+
+  public CompressionConfig {
+    if (level < 1 || level > 9) throw new IllegalArgumentException("level must be 1 to 9: " + level);
+  }
+
+  /**
+   * @return Compression allowed at level 3, sharing frames of 1 KiB or more.
+   */
+  public static CompressionConfig defaults() {
+    return new CompressionConfig(true, 3, 1024);
+  }
+
+  /**
+   * @return Compression refused.
+   */
+  public static CompressionConfig disabled() {
+    return new CompressionConfig(false, 3, 1024);
+  }
+}
@@ -0,0 +1,224 @@
+package io.olmosjt.protocol;
+
+import io.olmosjt.message.Message;
+import io.olmosjt.trace.DeliveryTrace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Immutable, pre-encoded wire representation of a {@link Message}.
+ * <p>
+ * A frame holds the UTF-8 bytes of one complete line (including the trailing newline)
+ * and is meant to be serialized once and shared by every recipient of the message.
+ * The underlying array is never exposed, so a frame can be handed to any number of
+ * clients without copying. A frame may carry a {@link DeliveryTrace} when its message was sampled
+ * for delivery tracing.
+ * <p>
+ * Frames are built in the text format. Connections that negotiated the {@linkplain WireFormat#BINARY binary}
+ * protocol are written its binary twin, which is encoded the first time one of them needs it and then
+ * shared the same way, so a room broadcast is encoded at most once per format. Large frames written to
+ * connections that negotiated compression are likewise deflated once, on their own, and the result shared.
+ */
+public final class Frame {
+  private final Message message;
+  private final byte[] bytes;
+  private final DeliveryTrace trace;
+  /** Whether {@link #bytes} holds lines encoded earlier rather than the encoding of {@link #message}. */
+  private final boolean lines;
+  /** For binary frames, the senders whose IDs they use; {@code null} for text frames. */
+  private final SenderIds.Sender[] senders;
+  private final WireFormat switchTo;
+  private final CompressionConfig compressAfter;
+  private volatile Frame binary;
+  private volatile Deflated deflated;
+
+  /**
+   * This frame's bytes deflated on their own at {@code level}.
+   */
+  private record Deflated(int level, byte[] bytes) {}
+
+  Frame(Message message, byte[] bytes) {
+    this(message, bytes, null);
+  }
+
+  Frame(Message message, byte[] bytes, DeliveryTrace trace) {
+    this(message, bytes, trace, false, null, null, null);
+  }
+
+  private Frame(Message message, byte[] bytes, DeliveryTrace trace, boolean lines, SenderIds.Sender[] senders,
+                WireFormat switchTo, CompressionConfig compressAfter) {
+    this.message = message;
+    this.bytes = bytes;
+    this.trace = trace;
+    this.lines = lines;
+    this.senders = senders;
+    this.switchTo = switchTo;
+    this.compressAfter = compressAfter;
+  }
+
+  /**
+   * Wraps bytes holding one or more complete, newline-terminated lines that were encoded earlier,
+   * for example a batch of stored frames replayed in a single write. The frame takes ownership
+   * of the array; the caller must not modify it afterwards.
+   * @param message The message describing the batch, used for logging only.
+   * @param lines   The encoded lines.
+   * @return A frame over {@code lines}.
+   */
+  public static Frame ofLines(Message message, byte[] lines) {
+    return new Frame(message, lines, null, true, null, null, null);
+  }
+
+  /**
+   * Wraps a piece of a connection's compressed stream. It has no message.
+   */
+  static Frame ofCompressed(byte[] bytes) {
+    return new Frame(null, bytes);
+  }
+
+  /**
+   * Marks this frame as the last one a connection receives in its current format: the connection's
+   * {@link WireEncoder} writes everything queued after it in {@code format}.
+   * @return A copy of this frame carrying the switch.
+   */
+  public Frame switchingTo(WireFormat format) {
+    return new Frame(message, bytes, trace, lines, senders, format, compressAfter);
+  }
+
+  /**
+   * Marks this frame as the last one a connection receives uncompressed: the connection's
+   * {@link WireEncoder} compresses everything queued after it.
+   * @return A copy of this frame carrying the switch.
+   */
+  public Frame startingCompression(CompressionConfig config) {
+    return new Frame(message, bytes, trace, lines, senders, switchTo, config);
+  }
+
+  /**
+   * @return The compression that frames following this one are written with, or {@code null} if it does not change.
+   */
+  CompressionConfig compressAfter() {
+    return compressAfter;
+  }
+
+  /**
+   * @return The format that frames following this one are written in, or {@code null} if it does not change.
+   */
+  WireFormat switchTo() {
+    return switchTo;
+  }
+
+  /**
+   * @return The binary encoding of this text frame, created on first use and shared by every caller.
+   */
+  Frame binary() {
+    Frame twin = binary;
+    if (twin == null) {
+      if (lines) {
+        BinaryCodec.Transcoded transcoded = BinaryCodec.transcode(bytes);
+        twin = new Frame(message, transcoded.bytes(), trace, true, transcoded.senders(), null, null);
+      } else {
+        SenderIds.Sender sender = SenderIds.intern(message.sender());
+        twin = new Frame(message, BinaryCodec.encode(message, sender.id()), trace, false,
+                new SenderIds.Sender[]{sender}, null, null);
+      }
+      // Racing callers encode the same bytes; whichever twin is published last is as good as any.
+      binary = twin;
+    }
+    return twin;
+  }
+
+  /**
+   * @return For a binary frame, the senders whose IDs it uses.
+   */
+  SenderIds.Sender[] senders() {
+    return senders;
+  }
+
+  /**
+   * @return A binary frame with {@code prefix}, sender definitions, written ahead of this frame's bytes.
+   */
+  Frame withPrefix(byte[] prefix) {
+    byte[] combined = new byte[prefix.length + bytes.length];
+    System.arraycopy(prefix, 0, combined, 0, prefix.length);
+    System.arraycopy(bytes, 0, combined, prefix.length, bytes.length);
+    return new Frame(message, combined, trace, lines, senders, null, null);
+  }
+
+  /**
+   * @return This frame's bytes deflated on their own at {@code level} and sync flushed, so they can be spliced
+   *         into any connection's stream. Created on first use and shared by every caller.
+   */
+  byte[] deflated(int level) {
+    Deflated cached = deflated;
+    if (cached == null || cached.level() != level) {
+      Deflater deflater = new Deflater(level, true);
+      try {
+        deflater.setInput(bytes);
+        byte[] out = new byte[bytes.length / 2 + 64];
+        int length = 0;
+        while (true) {
+          length += deflater.deflate(out, length, out.length - length, Deflater.SYNC_FLUSH);
+          if (length < out.length) break;
+          out = Arrays.copyOf(out, out.length * 2);
+        }
+        cached = new Deflated(level, Arrays.copyOf(out, length));
+      } finally {
+        deflater.end();
+      }
+      deflated = cached;
+    }
+    return cached.bytes();
+  }
+
+  /**
+   * Hands this frame's bytes to {@code deflater} as its next input.
+   */
+  void setInputOf(Deflater deflater) {
+    deflater.setInput(bytes);
+  }
+
+  /**
+   * @return The message this frame was encoded from, or {@code null} for a piece of a compressed stream.
+   */
+  public Message message() {
+    return message;
+  }
+
+  /**
+   * @return The trace of a sampled message, or {@code null}.
+   */
+  public DeliveryTrace trace() {
+    return trace;
+  }
+
+  /**
+   * @return The number of bytes this frame occupies on the wire.
+   */
+  public int length() {
+    return bytes.length;
+  }
+
+  /**
+   * Writes the encoded bytes to the given stream. Does not flush.
+   * @param out The stream to write to.
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Copies as much of the frame as fits into {@code dst}, starting at {@code offset}.
+   * @param dst    The buffer to copy into.
+   * @param offset The number of bytes of this frame already copied by earlier calls.
+   * @return The number of bytes copied.
+   */
+  public int writeTo(ByteBuffer dst, int offset) {
+    int count = Math.min(dst.remaining(), bytes.length - offset);
+    dst.put(bytes, offset, count);
+    return count;
+  }
+}
@@ -0,0 +1,112 @@
+package io.olmosjt.protocol;
+
+import io.olmosjt.metrics.ServerMetrics;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses the frames written to one connection into a single raw DEFLATE stream.
+ * <p>
+ * Frames are fed to the connection's own {@link Deflater}, whose window spans earlier frames, so the
+ * repetitive prefixes and names of chat traffic shrink to a few bytes each. Output is handed back in pieces
+ * of at least {@link #CHUNK_BYTES}, and {@link #flush()} ends each batch with a sync flush, so the client
+ * can decode everything it has received without waiting for more.
+ * <p>
+ * Frames of {@link CompressionConfig#sharedMinBytes()} or more are not deflated per connection. Each is
+ * deflated once, on its own, by {@link Frame#deflated(int)} and the same bytes are spliced into every
+ * stream it goes to. A full flush first makes sure nothing after the splice refers back across it, since the
+ * connection's deflater never saw the spliced bytes that the client's inflater did.
+ * <p>
+ * Not thread-safe; each instance belongs to the single thread that writes to its connection.
+ */
+final class FrameCompressor {
+  static final int CHUNK_BYTES = 16 * 1024;
+
+  private final Deflater deflater;
+  private final int level;
+  private final int sharedMinBytes;
+  private byte[] out = new byte[CHUNK_BYTES + 1024];
+  private int outLength;
+  /** Whether input was added since the last flush. */
+  private boolean pending;
+  /** Whether output since the last full flush may refer back to earlier input. */
+  private boolean windowUsed;
+  private long bytesIn;
+
+  FrameCompressor(CompressionConfig config) {
+    this.deflater = new Deflater(config.level(), true);
+    this.level = config.level();
+    this.sharedMinBytes = config.sharedMinBytes();
+  }
+
+  /**
+   * Compresses {@code frame} into the stream.
+   * @return A piece of the stream to write now, or {@code null} if the output is still being collected.
+   */
+  Frame add(Frame frame) {
+    bytesIn += frame.length();
+    if (frame.length() >= sharedMinBytes) {
+      if (windowUsed) {
+        deflate(Deflater.FULL_FLUSH);
+        windowUsed = false;
+        pending = false;
+      }
+      append(frame.deflated(level));
+    } else {
+      frame.setInputOf(deflater);
+      deflate(Deflater.NO_FLUSH);
+      pending = true;
+      windowUsed = true;
+    }
+    return outLength >= CHUNK_BYTES ? take() : null;
+  }
+
+  /**
+   * Ends a batch: sync flushes whatever input is still inside the deflater.
+   * @return The rest of the stream to write, or {@code null} if nothing was added since the last call.
+   */
+  Frame flush() {
+    if (pending) {
+      deflate(Deflater.SYNC_FLUSH);
+      pending = false;
+    }
+    return outLength == 0 ? null : take();
+  }
+
+  /**
+   * Releases the deflater's native memory. The compressor must not be used afterwards.
+   */
+  void end() {
+    deflater.end();
+  }
+
+  private void deflate(int flush) {
+    while (true) {
+      ensureCapacity(outLength + 256);
+      int space = out.length - outLength;
+      int written = deflater.deflate(out, outLength, space, flush);
+      outLength += written;
+      if (written < space && (flush != Deflater.NO_FLUSH || deflater.needsInput())) return;
+    }
+  }
+
+  private void append(byte[] bytes) {
+    ensureCapacity(outLength + bytes.length);
+    System.arraycopy(bytes, 0, out, outLength, bytes.length);
+    outLength += bytes.length;
+  }
+
+  private Frame take() {
+    ServerMetrics.compressed(bytesIn, outLength);
+    bytesIn = 0;
+    Frame piece = Frame.ofCompressed(Arrays.copyOf(out, outLength));
+    outLength = 0;
+    if (out.length > CHUNK_BYTES * 4) out = new byte[CHUNK_BYTES + 1024];
+    return piece;
+  }
+
+  private void ensureCapacity(int required) {
+    if (out.length < required) out = Arrays.copyOf(out, Math.max(out.length * 2, required));
+  }
+}
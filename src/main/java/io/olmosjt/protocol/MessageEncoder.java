@@ -1,6 +1,10 @@
 package io.olmosjt.protocol;
 
 import io.olmosjt.message.Message;
+import io.olmosjt.message.MessageType;
+import io.olmosjt.trace.DeliveryTrace;
+
+import java.nio.charset.StandardCharsets;
 
 public final class MessageEncoder {
   private MessageEncoder() {}
@@ -8,13 +12,42 @@ public final class MessageEncoder {
   /**
    * Serializes a Message object to the pipe-delimited wire format.
    * Format: TYPE|SENDER|RECIPIENT|CONTENT
+   * <p>
+   * Line breaks in the content of user and private messages, which binary clients can send, are replaced
+   * with spaces so they cannot end the line early.
    */
   public static String encode(Message message) {
     return String.join("|",
             message.type().name(),
             message.sender(),
             message.recipient() != null ? message.recipient() : "",
-            message.content()
+            isUserContent(message.type()) ? singleLine(message.content()) : message.content()
     );
   }
+
+  private static boolean isUserContent(MessageType type) {
+    return type == MessageType.USER || type == MessageType.PRIVATE;
+  }
+
+  private static String singleLine(String content) {
+    if (content.indexOf('\n') < 0 && content.indexOf('\r') < 0) return content;
+    return content.replace('\r', ' ').replace('\n', ' ');
+  }
+
+  /**
+   * Serializes a Message once into a newline-terminated UTF-8 {@link Frame}
+   * that can be shared by all of its recipients.
+   */
+  public static Frame encodeFrame(Message message) {
+    return encodeFrame(message, null);
+  }
+
+  /**
+   * Like {@link #encodeFrame(Message)}, attaching a delivery trace to the frame.
+   * @param trace The trace, or {@code null} if the message is not sampled.
+   */
+  public static Frame encodeFrame(Message message, DeliveryTrace trace) {
+    byte[] bytes = (encode(message) + '\n').getBytes(StandardCharsets.UTF_8);
+    return new Frame(message, bytes, trace);
+  }
 }
@@ -0,0 +1,34 @@
+package io.olmosjt.protocol;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server-wide numbering of message senders for the binary protocol.
+ * <p>
+ * A binary message names its sender by ID. Each ID is assigned once, on first use, and keeps its
+ * definition record encoded, so a connection that has not seen the sender yet is sent that record
+ * ahead of the message by its {@link WireEncoder}. Senders are usernames and {@code SYSTEM}, which
+ * stay registered for the life of the server anyway, so the table is never trimmed.
+ */
+final class SenderIds {
+  /**
+   * @param id         The sender's ID.
+   * @param definition The record that binds {@code id} to the sender's name on the wire.
+   */
+  record Sender(int id, byte[] definition) {}
+
+  private static final ConcurrentHashMap<String, Sender> SENDERS = new ConcurrentHashMap<>();
+  private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+  private SenderIds() {}
+
+  static Sender intern(String name) {
+    Sender sender = SENDERS.get(name);
+    if (sender != null) return sender;
+    return SENDERS.computeIfAbsent(name, n -> {
+      int id = NEXT_ID.getAndIncrement();
+      return new Sender(id, BinaryCodec.encodeSenderDefinition(id, n));
+    });
+  }
+}
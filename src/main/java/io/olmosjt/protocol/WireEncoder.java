@@ -0,0 +1,87 @@
+package io.olmosjt.protocol;
+
+import java.util.BitSet;
+
+/**
+ * Picks the encoding of each frame written to one connection.
+ * <p>
+ * The format is tracked on the writing side, in queue order: frames are written as text until one
+ * {@linkplain Frame#switchingTo(WireFormat) carrying a switch} has been written, and in the new format
+ * after it, however the threads that queued them interleaved. In the binary format the encoder also
+ * remembers which sender IDs the client has been told about and prepends the definitions it still lacks.
+ * Once a frame {@linkplain Frame#startingCompression(CompressionConfig) starting compression} has been
+ * written, everything after it goes through a {@link FrameCompressor}; the writer then calls
+ * {@link #endBatch()} whenever it is about to flush.
+ * <p>
+ * Not thread-safe; each instance belongs to the single thread that writes to its connection.
+ */
+public final class WireEncoder {
+  private WireFormat format = WireFormat.TEXT;
+  private final BitSet announced = new BitSet();
+  private FrameCompressor compressor;
+
+  /**
+   * @return The bytes to write for {@code frame}: the frame itself, its binary encoding, or a piece of the
+   *         compressed stream; {@code null} if the compressor is still collecting output.
+   */
+  public Frame encode(Frame frame) {
+    Frame encoded = format == WireFormat.BINARY ? announce(frame.binary()) : frame;
+    WireFormat next = frame.switchTo();
+    if (next != null) format = next;
+    if (compressor != null) encoded = compressor.add(encoded);
+    CompressionConfig compression = frame.compressAfter();
+    if (compression != null && compressor == null) compressor = new FrameCompressor(compression);
+    return encoded;
+  }
+
+  /**
+   * Called before the writer flushes, so a compressed connection receives everything written so far in a form
+   * it can decode.
+   * @return The rest of the compressed stream to write first, or {@code null} if there is none.
+   */
+  public Frame endBatch() {
+    return compressor == null ? null : compressor.flush();
+  }
+
+  /**
+   * @return {@code true} once frames are being compressed.
+   */
+  public boolean compressing() {
+    return compressor != null;
+  }
+
+  /**
+   * Releases the compressor, if any. Called by the writing thread once the connection is closed.
+   */
+  public void close() {
+    if (compressor != null) compressor.end();
+    compressor = null;
+  }
+
+  /**
+   * @return The format the next frame will be written in.
+   */
+  public WireFormat format() {
+    return format;
+  }
+
+  private Frame announce(Frame binary) {
+    SenderIds.Sender[] senders = binary.senders();
+    int length = 0;
+    for (SenderIds.Sender sender : senders) {
+      if (!announced.get(sender.id())) length += sender.definition().length;
+    }
+    if (length == 0) return binary;
+
+    byte[] prefix = new byte[length];
+    int pos = 0;
+    for (SenderIds.Sender sender : senders) {
+      if (announced.get(sender.id())) continue;
+      byte[] definition = sender.definition();
+      System.arraycopy(definition, 0, prefix, pos, definition.length);
+      pos += definition.length;
+      announced.set(sender.id());
+    }
+    return binary.withPrefix(prefix);
+  }
+}
@@ -0,0 +1,15 @@
+package io.olmosjt.protocol;
+
+/**
+ * How frames are laid out on a client connection.
+ * <p>
+ * Every connection starts with {@link #TEXT}. A client may switch to {@link #BINARY} with
+ * {@code REQ|PROTOCOL|binary} before it logs in; the reply to that request is the last text frame it
+ * receives, and the next bytes it sends must be binary requests.
+ */
+public enum WireFormat {
+  /** Newline-terminated {@code TYPE|SENDER|RECIPIENT|CONTENT} lines and {@code REQ|COMMAND|payload} requests. */
+  TEXT,
+  /** Varint length-prefixed records, see {@link BinaryCodec}. */
+  BINARY
+}
@@ -0,0 +1,40 @@
+package io.olmosjt.ratelimit;
+
+/**
+ * A sustained rate with a burst allowance.
+ *
+ * @param perSecond Permits added per second.
+ * @param burst     Most permits that can be taken at once after a quiet period.
+ */
+public record RateLimit(double perSecond, int burst) {
+
+  public RateLimit {
+    if (!(perSecond > 0)) throw new IllegalArgumentException("perSecond must be positive: " + perSecond);
+    if (burst < 1) throw new IllegalArgumentException("burst must be at least 1: " + burst);
+  }
+
+  /**
+   * Parses {@code <perSecond>:<burst>}, or {@code <perSecond>} with a burst of the same size.
+   * @return The limit, or {@code null} for {@code off} or {@code 0}, meaning unlimited.
+   */
+  public static RateLimit parse(String text) {
+    String value = text.trim();
+    if (value.equalsIgnoreCase("off") || value.equals("0")) return null;
+    int colon = value.indexOf(':');
+    double perSecond = Double.parseDouble(colon < 0 ? value : value.substring(0, colon));
+    int burst = colon < 0 ? (int) Math.max(1, Math.ceil(perSecond)) : Integer.parseInt(value.substring(colon + 1));
+    return new RateLimit(perSecond, burst);
+  }
+
+  /**
+   * @return Nanoseconds between permits.
+   */
+  long intervalNanos() {
+    return Math.max(1, (long) (1_000_000_000L / perSecond));
+  }
+
+  @Override
+  public String toString() {
+    return perSecond + ":" + burst;
+  }
+}
@@ -0,0 +1,115 @@
+package io.olmosjt.ratelimit;
+
+import io.olmosjt.command.CommandType;
+import io.olmosjt.metrics.ServerMetrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Applies {@link RateLimits} to requests and room messages.
+ * <p>
+ * Each connection owns a {@link TokenBuckets} with one slot per limited command, laid out once here so the
+ * slot for a command is an array lookup. User buckets live in a map keyed by username, so reconnecting does
+ * not reset them; {@link #sweep(long)} drops the ones that have refilled, which loses nothing because a full
+ * bucket is the same as a new one. Each room owns its own fan-out bucket.
+ * <p>
+ * PONG and QUIT are never limited, so keepalives and leaving always get through.
+ */
+public final class RateLimiter {
+
+  public enum Scope { COMMAND, USER, ROOM }
+
+  private final RateLimits limits;
+  private final RateLimit[] commandLimits = new RateLimit[CommandType.values().length];
+  private final int[] slots = new int[CommandType.values().length];
+  private final int slotCount;
+  private final Map<String, TokenBuckets> users = new ConcurrentHashMap<>();
+
+  public RateLimiter(RateLimits limits) {
+    this.limits = limits;
+    Arrays.fill(slots, -1);
+    int next = 0;
+    for (var entry : limits.commands().entrySet()) {
+      if (isExempt(entry.getKey())) continue;
+      commandLimits[entry.getKey().ordinal()] = entry.getValue();
+      slots[entry.getKey().ordinal()] = next++;
+    }
+    this.slotCount = next;
+  }
+
+  public RateLimits limits() {
+    return limits;
+  }
+
+  /**
+   * @return Buckets for a new connection, one per limited command.
+   */
+  public TokenBuckets newConnectionBuckets() {
+    return new TokenBuckets(slotCount);
+  }
+
+  /**
+   * Takes one permit for a request from the user's bucket, once logged in, and from the connection's
+   * bucket for its command. A request refused by either takes nothing: the user's permit is checked first
+   * and returned if the command bucket then refuses, so one spammed command cannot drain the user's budget
+   * for everything else.
+   * @param connection The connection's buckets from {@link #newConnectionBuckets()}.
+   * @param username   The logged-in user, or {@code null}.
+   * @param now        {@link System#nanoTime()}.
+   * @return 0 if the request may proceed, otherwise nanoseconds until it would be allowed.
+   */
+  public long acquire(TokenBuckets connection, String username, CommandType type, long now) {
+    if (isExempt(type)) return 0;
+    RateLimit userLimit = limits.user();
+    TokenBuckets user = null;
+    if (userLimit != null && username != null) {
+      user = users.get(username);
+      if (user == null) user = users.computeIfAbsent(username, name -> new TokenBuckets(1));
+      long wait = user.tryAcquire(0, userLimit, 1, now);
+      if (wait > 0) {
+        ServerMetrics.rateLimited(Scope.USER);
+        return wait;
+      }
+    }
+    int slot = slots[type.ordinal()];
+    if (slot >= 0) {
+      long wait = connection.tryAcquire(slot, commandLimits[type.ordinal()], 1, now);
+      if (wait > 0) {
+        if (user != null) user.release(0, userLimit, 1);
+        ServerMetrics.rateLimited(Scope.COMMAND);
+        return wait;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Charges a room message to the room's fan-out budget, one permit per member.
+   * @param room A room's single-slot buckets.
+   * @return 0 if the message may be delivered, otherwise nanoseconds until it would be allowed.
+   */
+  public long acquireFanout(TokenBuckets room, int members, long now) {
+    RateLimit limit = limits.roomFanout();
+    if (limit == null) return 0;
+    long wait = room.tryAcquire(0, limit, Math.max(1, members), now);
+    if (wait > 0) ServerMetrics.rateLimited(Scope.ROOM);
+    return wait;
+  }
+
+  /**
+   * Forgets users whose bucket has refilled.
+   */
+  public void sweep(long now) {
+    users.values().removeIf(buckets -> buckets.isFull(now));
+  }
+
+  public int trackedUsers() {
+    return users.size();
+  }
+
+  private static boolean isExempt(CommandType type) {
+    return type == CommandType.PONG || type == CommandType.QUIT;
+  }
+}
@@ -0,0 +1,79 @@
+package io.olmosjt.ratelimit;
+
+import io.olmosjt.command.CommandType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Request rate limits.
+ *
+ * @param commands   Limits per command, applied to each connection; commands not listed are unlimited.
+ * @param user       Limit on all requests from one user, kept across reconnects; {@code null} for none.
+ * @param roomFanout Limit on deliveries per second in one room, charged as one permit per member for each
+ *                   message; {@code null} for none.
+ */
+public record RateLimits(
+        Map<CommandType, RateLimit> commands,
+        RateLimit user,
+        RateLimit roomFanout
+) {
+
+  public RateLimits {
+    EnumMap<CommandType, RateLimit> copy = new EnumMap<>(CommandType.class);
+    copy.putAll(commands);
+    commands = Collections.unmodifiableMap(copy);
+  }
+
+  /**
+   * @return MSG and PRIVMSG at 5/s with a burst of 20, JOIN at 10/s (burst 40), LIST_ROOMS and WHO at 5/s
+   *         (burst 10), LOGIN, NICK and CREATE_ROOM at 1/s (burst 5), unknown commands at 2/s (burst 10),
+   *         20 requests/s per user (burst 60) and 100,000 deliveries/s per room (burst 200,000).
+   */
+  public static RateLimits defaults() {
+    Map<CommandType, RateLimit> commands = new EnumMap<>(CommandType.class);
+    commands.put(CommandType.MSG, new RateLimit(5, 20));
+    commands.put(CommandType.PRIVMSG, new RateLimit(5, 20));
+    commands.put(CommandType.JOIN, new RateLimit(10, 40));
+    commands.put(CommandType.LIST_ROOMS, new RateLimit(5, 10));
+    commands.put(CommandType.WHO, new RateLimit(5, 10));
+    commands.put(CommandType.LOGIN, new RateLimit(1, 5));
+    commands.put(CommandType.NICK, new RateLimit(1, 5));
+    commands.put(CommandType.CREATE_ROOM, new RateLimit(1, 5));
+    commands.put(CommandType.PROTOCOL, new RateLimit(1, 5));
+    commands.put(CommandType.COMPRESS, new RateLimit(1, 5));
+    commands.put(CommandType.UNKNOWN, new RateLimit(2, 10));
+    return new RateLimits(commands, new RateLimit(20, 60), new RateLimit(100_000, 200_000));
+  }
+
+  /**
+   * @return No limits.
+   */
+  public static RateLimits none() {
+    return new RateLimits(Map.of(), null, null);
+  }
+
+  /**
+   * Overrides {@code base} with {@code termitalk.limits.<COMMAND>}, {@code termitalk.limits.user} and
+   * {@code termitalk.limits.roomFanout}, each {@code <perSecond>:<burst>} or {@code off}.
+   * {@code termitalk.limits.enabled=false} turns every limit off.
+   */
+  public static RateLimits fromSystemProperties(RateLimits base) {
+    if (!Boolean.parseBoolean(System.getProperty("termitalk.limits.enabled", "true"))) return none();
+    Map<CommandType, RateLimit> commands = new EnumMap<>(CommandType.class);
+    commands.putAll(base.commands());
+    for (CommandType type : CommandType.values()) {
+      String value = System.getProperty("termitalk.limits." + type.name());
+      if (value == null) continue;
+      RateLimit limit = RateLimit.parse(value);
+      if (limit == null) commands.remove(type);
+      else commands.put(type, limit);
+    }
+    String user = System.getProperty("termitalk.limits.user");
+    String roomFanout = System.getProperty("termitalk.limits.roomFanout");
+    return new RateLimits(commands,
+            user == null ? base.user() : RateLimit.parse(user),
+            roomFanout == null ? base.roomFanout() : RateLimit.parse(roomFanout));
+  }
+}
@@ -0,0 +1,60 @@
+package io.olmosjt.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed number of token buckets sharing one array, each a single {@code long}.
+ * <p>
+ * Uses the generic cell rate algorithm: instead of a token count and a refill timestamp, a bucket stores
+ * the theoretical arrival time (TAT) at which it would be full again. Taking {@code n} permits moves the
+ * TAT forward by {@code n} intervals, and is allowed while the TAT stays within {@code burst} intervals of
+ * now. This is equivalent to a token bucket, but one compare-and-set updates it, so acquiring is lock-free
+ * and never allocates. A bucket whose TAT has passed is full and holds no state worth keeping.
+ * <p>
+ * Buckets do not know their limit; callers pass it in, so one array can serve several commands.
+ */
+public final class TokenBuckets {
+  private final AtomicLongArray tats;
+
+  public TokenBuckets(int count) {
+    tats = new AtomicLongArray(count);
+    for (int i = 0; i < count; i++) {
+      tats.set(i, Long.MIN_VALUE);
+    }
+  }
+
+  /**
+   * Takes {@code cost} permits from bucket {@code slot}; costs above the burst are charged as the burst.
+   * @param now {@link System#nanoTime()}.
+   * @return 0 if the permits were taken, otherwise nanoseconds until they would be available.
+   */
+  public long tryAcquire(int slot, RateLimit limit, long cost, long now) {
+    long interval = limit.intervalNanos();
+    long tolerance = interval * limit.burst();
+    long charge = interval * Math.min(cost, limit.burst());
+    while (true) {
+      long tat = tats.get(slot);
+      long next = Math.max(tat, now) + charge;
+      long excess = next - now - tolerance;
+      if (excess > 0) return excess;
+      if (tats.compareAndSet(slot, tat, next)) return 0;
+    }
+  }
+
+  /**
+   * Returns permits taken by {@link #tryAcquire} that were not used, moving the TAT back.
+   */
+  public void release(int slot, RateLimit limit, long cost) {
+    tats.addAndGet(slot, -limit.intervalNanos() * Math.min(cost, limit.burst()));
+  }
+
+  /**
+   * @return {@code true} if every bucket has refilled completely by {@code now}.
+   */
+  public boolean isFull(long now) {
+    for (int i = 0; i < tats.length(); i++) {
+      if (tats.get(i) > now) return false;
+    }
+    return true;
+  }
+}
@@ -1,7 +1,17 @@
 package io.olmosjt.room;
 
 import io.olmosjt.message.Message;
+import io.olmosjt.message.MessageType;
+import io.olmosjt.protocol.Frame;
+import io.olmosjt.protocol.MessageEncoder;
+import io.olmosjt.ratelimit.TokenBuckets;
 import io.olmosjt.server.ClientHandler;
+import io.olmosjt.store.MessageStore;
+import io.olmosjt.store.StoredMessage;
+import io.olmosjt.trace.DeliveryTrace;
+import io.olmosjt.trace.DeliveryTracer;
+import io.olmosjt.trace.LatencyWindow;
+import io.olmosjt.util.HashedWheelTimer;
 import io.olmosjt.util.LoggerUtil;
 
 import java.util.Set;
@@ -11,16 +21,71 @@ import java.util.stream.Collectors;
 /**
  * Represents a single chat room, holding a set of connected clients.
  * This class is thread-safe.
+ * <p>
+ * User messages are numbered and kept in a bounded {@link RoomHistory} so that clients joining
+ * later can be sent what they missed. Recording and fan-out of a user message happen under the
+ * history lock, so every member receives user messages in sequence order and a joining client
+ * sees each message exactly once: either in its replay or live. User messages are also handed to the
+ * {@link MessageStore}, which persists them without blocking the broadcast.
+ * <p>
+ * A room that is not pinned is removed by its {@link ChatRoomManager} once it has been empty for the
+ * configured TTL. Removal closes the room under the same lock as {@link #join}, so a client can never
+ * join a room that is being removed.
  */
 public class ChatRoom {
   private final int id;
   private final String name;
   private final Set<ClientHandler> members = ConcurrentHashMap.newKeySet();
+  private final RoomHistory history;
+  private final MessageStore store;
+  private volatile HistoryConfig historyConfig;
+  private final String owner;
+  private volatile boolean pinned;
+  private volatile boolean closed;
+  private volatile long emptySince = System.nanoTime();
+  private volatile HashedWheelTimer.Timeout reapTimeout;
+  private volatile LatencyWindow deliveryLatency;
+  private final TokenBuckets fanoutBudget = new TokenBuckets(1);
+  ChatRoomManager manager;
 
+  /**
+   * Summary of the history sent to a joining client.
+   * @param messages How many messages were replayed.
+   * @param sequence The sequence number of the newest message in the room when the client joined.
+   */
+  public record Replay(int messages, long sequence) {}
+
+  /**
+   * Receives each user message broadcast through {@link #broadcast(Frame, Relay)} together with its sequence
+   * number. It is called under the history lock, in sequence order, and must not block.
+   */
+  @FunctionalInterface
+  public interface Relay {
+    void relay(Frame frame, long sequence);
+  }
 
   public ChatRoom(int id, String name) {
+    this(id, name, HistoryConfig.defaults());
+  }
+
+  public ChatRoom(int id, String name, HistoryConfig historyConfig) {
+    this(id, name, historyConfig, MessageStore.NONE);
+  }
+
+  public ChatRoom(int id, String name, HistoryConfig historyConfig, MessageStore store) {
+    this(id, name, historyConfig, store, null);
+  }
+
+  /**
+   * @param owner The user who created the room, or {@code null} for rooms created by the server.
+   */
+  public ChatRoom(int id, String name, HistoryConfig historyConfig, MessageStore store, String owner) {
     this.id = id;
     this.name = name;
+    this.store = store;
+    this.owner = owner;
+    this.history = new RoomHistory(historyConfig.maxMessages(), historyConfig.maxBytes());
+    this.historyConfig = historyConfig;
   }
 
   /**
@@ -28,10 +93,47 @@ public class ChatRoom {
    * @param client The client to add.
    */
   public void addMember(ClientHandler client) {
-    members.add(client);
-    LoggerUtil.info("ROOM join roomId=" + id + " roomName=" + name + " user=" + client.getUser().username() +
-            " membersNow=" + members.size());
-    broadcast(Message.serverOk(client.getUser().username(), "'" + client.getUser().username() + "' has joined the room."));
+    join(client, Long.MAX_VALUE);
+  }
+
+  /**
+   * Adds a client to the room, replays recent history to it in a single frame and notifies
+   * the members. A client that is already a member only gets the replay.
+   * @param client The client to add.
+   * @param since  Replay the messages with a sequence number greater than this;
+   *               a negative value replays the room's configured number of latest messages.
+   * @return What was replayed, or {@code null} if the room has been removed.
+   */
+  public Replay join(ClientHandler client, long since) {
+    Replay replay;
+    boolean joined;
+    synchronized (history) {
+      if (closed) return null;
+      joined = members.add(client);
+      HashedWheelTimer.Timeout timeout = reapTimeout;
+      if (timeout != null) {
+        timeout.cancel();
+        reapTimeout = null;
+      }
+      long last = history.lastSequence();
+      int n = since < 0 ? historyConfig.replayCount() : (int) Math.min(Integer.MAX_VALUE, Math.max(0, last - since));
+      n = Math.min(n, history.size());
+      if (n > 0) {
+        client.send(Frame.ofLines(
+                Message.serverOk(client.getUser().username(), "history roomId=" + id + " messages=" + n),
+                history.copyLast(n)));
+      }
+      replay = new Replay(n, last);
+    }
+    if (!joined) return replay;
+    ChatRoomManager owningManager = manager;
+    if (owningManager != null) owningManager.membersChanged(this);
+    if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+      LoggerUtil.info("ROOM join roomId=" + id + " roomName=" + name + " user=" + client.getUser().username() +
+              " membersNow=" + members.size());
+    }
+    broadcast(Message.serverOk(client.getUser().username(), "'" + client.getUser().username() + "' has joined '" + name + "' (#" + id + ")."));
+    return replay;
   }
 
   /**
@@ -41,19 +143,201 @@ public class ChatRoom {
   public void removeMember(ClientHandler client) {
     boolean removed = members.remove(client);
     if (removed) {
-      LoggerUtil.info("ROOM leave roomId=" + id + " roomName=" + name + " user=" + client.getUser().username() +
-              " membersNow=" + members.size());
-      broadcast(Message.serverOk(client.getUser().username(),"'" + client.getUser().username() + "' has left the room."));
+      if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+        LoggerUtil.info("ROOM leave roomId=" + id + " roomName=" + name + " user=" + client.getUser().username() +
+                " membersNow=" + members.size());
+      }
+      broadcast(Message.serverOk(client.getUser().username(),"'" + client.getUser().username() + "' has left '" + name + "' (#" + id + ")."));
+      ChatRoomManager owningManager = manager;
+      if (members.isEmpty()) {
+        emptySince = System.nanoTime();
+        if (owningManager != null) owningManager.roomEmptied(this);
+      }
+      if (owningManager != null) owningManager.membersChanged(this);
+    }
+  }
+
+  /**
+   * Replaces the pending removal of this room, cancelling the previous one.
+   */
+  void armReap(HashedWheelTimer.Timeout timeout) {
+    HashedWheelTimer.Timeout previous;
+    synchronized (history) {
+      previous = reapTimeout;
+      reapTimeout = timeout;
+    }
+    if (previous != null) previous.cancel();
+  }
+
+  /**
+   * Closes the room if it is unpinned and has been empty for at least {@code minEmptyNanos}.
+   * @return {@code true} if the room is now closed and may be removed.
+   */
+  boolean tryClose(long minEmptyNanos) {
+    synchronized (history) {
+      if (closed || pinned || !members.isEmpty() || System.nanoTime() - emptySince < minEmptyNanos) return false;
+      closed = true;
+      return true;
     }
   }
 
   /**
    * Sends a message to all members of the room.
+   * The message is encoded once and the resulting frame is shared by every member.
+   * @param message The message to send.
+   * @return The number of members it was queued for.
+   */
+  public int broadcast(Message message) {
+    return broadcast(MessageEncoder.encodeFrame(message));
+  }
+
+  /**
+   * Sends a message to all members of the room, tracing its delivery.
    * @param message The message to send.
+   * @param trace   The trace from {@link #startTrace(long)}, or {@code null} if the message is not sampled.
+   * @return The number of members it was queued for.
+   */
+  public int broadcast(Message message, DeliveryTrace trace) {
+    return broadcast(MessageEncoder.encodeFrame(message, trace));
+  }
+
+  /**
+   * Starts tracing a message to this room.
+   * @param acceptedNanos When the message was accepted, from {@link System#nanoTime()}.
    */
-  public void broadcast(Message message) {
+  public DeliveryTrace startTrace(long acceptedNanos) {
+    LatencyWindow window = deliveryLatency;
+    if (window == null) {
+      synchronized (this) {
+        window = deliveryLatency;
+        if (window == null) deliveryLatency = window = new LatencyWindow();
+      }
+    }
+    return DeliveryTracer.start(acceptedNanos, id, window);
+  }
+
+  /**
+   * @return Recent delivery latencies of traced messages, or {@code null} if none were traced.
+   */
+  public LatencyWindow deliveryLatency() {
+    return deliveryLatency;
+  }
+
+  /**
+   * Sends an already encoded frame to all members of the room.
+   * User messages are also appended to the room history.
+   * @param frame The frame to send.
+   * @return The number of members it was queued for.
+   */
+  public int broadcast(Frame frame) {
+    return broadcast(frame, null);
+  }
+
+  /**
+   * Sends an already encoded frame to all members of the room and hands user messages to {@code relay}
+   * once they are numbered.
+   * @param frame The frame to send.
+   * @param relay Where numbered user messages go next, or {@code null}.
+   * @return The number of members it was queued for.
+   */
+  public int broadcast(Frame frame, Relay relay) {
+    int count;
+    if (frame.message().type() == MessageType.USER) {
+      synchronized (history) {
+        long sequence = history.append(frame);
+        store.append(id, sequence, frame);
+        count = fanOut(frame);
+        if (relay != null) relay.relay(frame, sequence);
+      }
+    } else {
+      count = fanOut(frame);
+    }
+    if (LoggerUtil.isEnabled(LoggerUtil.Level.DEBUG)) {
+      LoggerUtil.debug("ROOM broadcast roomId=" + id + " type=" + frame.message().type() +
+              " from=" + frame.message().sender() + " bytes=" + frame.length() + " delivered=" + count);
+    }
+    return count;
+  }
+
+  /**
+   * Sends a user message numbered elsewhere to all members, recording it under that sequence number.
+   * Numbering continues from the higher of {@code sequence} and the last local one.
+   * @return The number of members it was queued for.
+   */
+  public int replicate(Frame frame, long sequence) {
+    synchronized (history) {
+      history.continueFrom(sequence - 1);
+      store.append(id, history.append(frame), frame);
+      return fanOut(frame);
+    }
+  }
+
+  /**
+   * Makes the next user message get a sequence number greater than {@code sequence}.
+   */
+  public void continueFrom(long sequence) {
+    synchronized (history) {
+      history.continueFrom(sequence);
+    }
+  }
+
+  /**
+   * Loads the newest persisted messages into the history and continues numbering after the last one.
+   */
+  void restoreHistory() {
+    long last = store.lastSequence(id);
+    if (last == 0) return;
+    synchronized (history) {
+      int n = history.maxMessages();
+      for (StoredMessage stored : store.read(id, Math.max(1, last - n + 1), n)) {
+        history.restore(stored.sequence(), stored.line());
+      }
+      history.continueFrom(last);
+    }
+  }
+
+  private int fanOut(Frame frame) {
+    int count = 0;
     for (ClientHandler member : members) {
-      member.send(message);
+      member.send(frame);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Changes how much history this room keeps; lowering a limit evicts the oldest messages immediately.
+   * @param historyConfig The new limits.
+   */
+  public void setHistoryLimits(HistoryConfig historyConfig) {
+    synchronized (history) {
+      history.resize(historyConfig.maxMessages(), historyConfig.maxBytes());
+      this.historyConfig = historyConfig;
+    }
+  }
+
+  /**
+   * @return The history limits of this room.
+   */
+  public HistoryConfig historyConfig() {
+    return historyConfig;
+  }
+
+  /**
+   * @return The number of messages currently retained in the room history.
+   */
+  public int historySize() {
+    synchronized (history) {
+      return history.size();
+    }
+  }
+
+  /**
+   * @return The sequence number of the newest user message, or 0 if none was sent yet.
+   */
+  public long lastSequence() {
+    synchronized (history) {
+      return history.lastSequence();
     }
   }
 
@@ -68,6 +352,38 @@ public class ChatRoom {
             .collect(Collectors.toSet());
   }
 
+  /**
+   * @return The current number of members, without copying the member set.
+   */
+  public int memberCount() {
+    return members.size();
+  }
+
+  /**
+   * @return The bucket that room messages are charged to, one permit per member, to bound fan-out work.
+   */
+  public TokenBuckets fanoutBudget() {
+    return fanoutBudget;
+  }
+
+  /**
+   * @return The user who created the room, or {@code null} for rooms created by the server.
+   */
+  public String owner() {
+    return owner;
+  }
+
+  /**
+   * @return {@code true} if the room is never removed for being empty.
+   */
+  public boolean isPinned() {
+    return pinned;
+  }
+
+  void setPinned(boolean pinned) {
+    this.pinned = pinned;
+  }
+
   public String getName() {
     return name;
   }
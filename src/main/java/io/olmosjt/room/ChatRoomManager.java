@@ -1,34 +1,286 @@
 package io.olmosjt.room;
 
+import io.olmosjt.state.StateJournal;
+import io.olmosjt.store.MessageStore;
+import io.olmosjt.util.HashedWheelTimer;
+import io.olmosjt.util.LoggerUtil;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages all chat rooms on the server.
  * This class is thread-safe.
+ * <p>
+ * Besides the ID map, rooms are indexed by case-insensitive name twice: a hash map from name to the IDs
+ * carrying it, for JOIN by name, and a skip list ordered by name and ID, for sorted, prefix-filtered
+ * listings. The formatted listing is built from the skip list once and reused until a room is added
+ * or removed.
+ * <p>
+ * Rooms that are not pinned are removed once they have been empty for {@link RoomLimits#emptyRoomTtl()}.
+ * Emptying a room schedules its removal on a {@link HashedWheelTimer}; joining it cancels the timeout,
+ * so idle rooms cost nothing until they expire and there is no periodic scan over all rooms.
  */
 public class ChatRoomManager {
   private final ConcurrentMap<Integer, ChatRoom> rooms = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Set<Integer>> idsByName = new ConcurrentHashMap<>();
+  private final ConcurrentSkipListMap<NameKey, ChatRoom> byName = new ConcurrentSkipListMap<>();
+  private final AtomicLong version = new AtomicLong();
+  private volatile Listing listing;
   private final AtomicInteger roomIdCounter = new AtomicInteger(100);
+  private volatile int idStride = 1;
+  private volatile int idOffset;
+  private final HistoryConfig historyDefaults;
+  private final MessageStore store;
+  private volatile StateJournal journal = StateJournal.NONE;
+  private volatile RoomListener listener = RoomListener.NONE;
+  private final RoomLimits limits;
+  private final HashedWheelTimer timer;
+  private final ConcurrentMap<String, Integer> ownedRooms = new ConcurrentHashMap<>();
+
+  public ChatRoomManager() {
+    this(HistoryConfig.defaults(), MessageStore.NONE);
+  }
+
+  /**
+   * @param historyDefaults History limits for rooms created without their own.
+   * @param store           Where rooms persist their messages.
+   */
+  public ChatRoomManager(HistoryConfig historyDefaults, MessageStore store) {
+    this(historyDefaults, RoomLimits.unlimited(), store, null);
+  }
 
   /**
-   * Creates a new chat room with a unique ID.
+   * @param historyDefaults History limits for rooms created without their own.
+   * @param limits          Room count limits and how long empty rooms are kept.
+   * @param store           Where rooms persist their messages.
+   * @param timer           Schedules the removal of empty rooms; {@code null} keeps them forever.
+   */
+  public ChatRoomManager(HistoryConfig historyDefaults, RoomLimits limits, MessageStore store, HashedWheelTimer timer) {
+    this.historyDefaults = historyDefaults;
+    this.limits = limits;
+    this.store = store;
+    this.timer = timer;
+  }
+
+  /**
+   * Sets where room changes are recorded so they survive a restart.
+   */
+  public void setJournal(StateJournal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Restricts the IDs this manager hands out to those equal to {@code index} modulo {@code count}, so that
+   * servers given different indexes never create rooms with the same ID. Call before creating rooms.
+   */
+  public void setIdPartition(int index, int count) {
+    if (count < 1 || index < 0 || index >= count) throw new IllegalArgumentException(index + " of " + count);
+    this.idOffset = index;
+    this.idStride = count;
+  }
+
+  /**
+   * Sets who is told about rooms being added, removed, joined and left.
+   */
+  public void setListener(RoomListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Creates a new chat room with a unique ID and the default history limits.
    * @param name The non-unique name of the room.
    * @return The newly created ChatRoom instance.
    */
   public ChatRoom createRoom(String name) {
+    return createRoom(name, historyDefaults);
+  }
+
+  /**
+   * Creates a new chat room with a unique ID and empty history.
+   * @param name          The non-unique name of the room.
+   * @param historyConfig History limits for this room.
+   * @return The newly created ChatRoom instance.
+   */
+  public ChatRoom createRoom(String name, HistoryConfig historyConfig) {
+    return createRoom(name, historyConfig, null);
+  }
+
+  /**
+   * Creates a new chat room owned by a user, with empty history. Only {@link #restoreRoom} loads persisted
+   * messages: a fresh ID may have belonged to an unrelated room before a restart that lost the ID counter.
+   * @param name          The non-unique name of the room.
+   * @param historyConfig History limits for this room.
+   * @param owner         The user creating the room, or {@code null} for the server.
+   * @return The newly created ChatRoom instance, or {@code null} if the name is blank or
+   *         {@link #creationBlockedReason(String)} refuses the room.
+   */
+  public ChatRoom createRoom(String name, HistoryConfig historyConfig, String owner) {
     if (name == null || name.isBlank()) return null;
-    int newId = roomIdCounter.getAndIncrement();
-    ChatRoom newRoom = new ChatRoom(newId, name);
-    rooms.put(newId, newRoom);
+    if (creationBlockedReason(owner) != null) return null;
+    int newId = align(roomIdCounter.getAndUpdate(next -> align(next) + 1));
+    ChatRoom newRoom = new ChatRoom(newId, name, historyConfig, store, owner);
+    // Keep the store's sequence numbers for this ID increasing, without replaying what they belonged to.
+    newRoom.continueFrom(store.lastSequence(newId));
+    add(newRoom);
+    journal.roomCreated(newId, name, owner, historyConfig.maxMessages(), historyConfig.maxBytes(), historyConfig.replayCount());
     return newRoom;
   }
 
+  /**
+   * Checks the room limits for a new room. The check is not atomic with creation, so concurrent
+   * creations may overshoot a limit by the number of racing requests.
+   * @param owner The user who wants to create a room, or {@code null} for the server.
+   * @return Why the room may not be created, or {@code null} if it may.
+   */
+  public String creationBlockedReason(String owner) {
+    if (rooms.size() >= limits.maxRooms()) {
+      return "The server already has the maximum of " + limits.maxRooms() + " rooms.";
+    }
+    if (owner != null && ownedRooms.getOrDefault(owner, 0) >= limits.maxRoomsPerUser()) {
+      return "You already own the maximum of " + limits.maxRoomsPerUser() + " rooms.";
+    }
+    return null;
+  }
+
+  /**
+   * Recreates a persisted room under its original ID and loads its latest messages from the message store.
+   * Does nothing if a room with that ID exists.
+   * Room IDs handed out later are always greater than {@code id}.
+   */
+  public void restoreRoom(int id, String name, HistoryConfig historyConfig, String owner, boolean pinned) {
+    advanceRoomId(id + 1);
+    if (rooms.containsKey(id)) return;
+    ChatRoom room = new ChatRoom(id, name, historyConfig, store, owner);
+    room.setPinned(pinned);
+    room.restoreHistory();
+    add(room);
+  }
+
+  /**
+   * Removes a room without checking that it is empty, for replaying a persisted removal.
+   */
+  public void removeRoom(int id) {
+    ChatRoom room = rooms.get(id);
+    if (room != null) remove(room);
+  }
+
+  /**
+   * Sets the pin flag of a room without journaling it, for replaying a persisted change.
+   */
+  public void restorePinned(int id, boolean pinned) {
+    ChatRoom room = rooms.get(id);
+    if (room != null) room.setPinned(pinned);
+  }
+
+  private void add(ChatRoom room) {
+    room.manager = this;
+    rooms.put(room.getId(), room);
+    String key = nameKey(room.getName());
+    idsByName.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(room.getId());
+    byName.put(new NameKey(key, room.getId()), room);
+    if (room.owner() != null) ownedRooms.merge(room.owner(), 1, Integer::sum);
+    version.incrementAndGet();
+    roomEmptied(room);
+    listener.roomAdded(room);
+  }
+
+  private void remove(ChatRoom room) {
+    if (!rooms.remove(room.getId(), room)) return;
+    String key = nameKey(room.getName());
+    idsByName.computeIfPresent(key, (k, ids) -> {
+      ids.remove(room.getId());
+      return ids.isEmpty() ? null : ids;
+    });
+    byName.remove(new NameKey(key, room.getId()));
+    if (room.owner() != null) ownedRooms.computeIfPresent(room.owner(), (k, count) -> count > 1 ? count - 1 : null);
+    version.incrementAndGet();
+    listener.roomRemoved(room);
+  }
+
+  /**
+   * Called by a room after a client joined or left it.
+   */
+  void membersChanged(ChatRoom room) {
+    listener.membersChanged(room);
+  }
+
+  /**
+   * Called by a room when its last member leaves; schedules its removal unless it is pinned.
+   */
+  void roomEmptied(ChatRoom room) {
+    Duration ttl = limits.emptyRoomTtl();
+    if (timer == null || ttl.isZero() || room.isPinned()) return;
+    room.armReap(timer.schedule(() -> reap(room, ttl.toNanos()), ttl));
+  }
+
+  private void reap(ChatRoom room, long ttlNanos) {
+    if (!room.tryClose(ttlNanos)) return;
+    remove(room);
+    journal.roomRemoved(room.getId());
+    LoggerUtil.info("ROOM reaped id=" + room.getId() + " name=" + room.getName() + " emptyFor>=" + limits.emptyRoomTtl());
+  }
+
+  /**
+   * Pins or unpins a room. Pinned rooms are never removed for being empty.
+   * @return {@code false} if there is no room with that ID.
+   */
+  public boolean setPinned(int id, boolean pinned) {
+    ChatRoom room = rooms.get(id);
+    if (room == null) return false;
+    room.setPinned(pinned);
+    journal.roomPinned(id, pinned);
+    if (!pinned && room.memberCount() == 0) roomEmptied(room);
+    return true;
+  }
+
+  /**
+   * Makes sure the next room created gets an ID of at least {@code nextId}.
+   */
+  public void advanceRoomId(int nextId) {
+    roomIdCounter.accumulateAndGet(nextId, Math::max);
+  }
+
+  /**
+   * @return The ID the next created room will get.
+   */
+  public int nextRoomId() {
+    return align(roomIdCounter.get());
+  }
+
+  /**
+   * @return The smallest ID in this manager's partition that is at least {@code id}.
+   */
+  private int align(int id) {
+    int stride = idStride;
+    return id + Math.floorMod(idOffset - id, stride);
+  }
+
+  /**
+   * @return The number of rooms.
+   */
+  public int roomCount() {
+    return rooms.size();
+  }
+
+  /**
+   * @return A copy of all rooms, in no particular order.
+   */
+  public List<ChatRoom> allRooms() {
+    return new ArrayList<>(rooms.values());
+  }
+
   /**
    * Finds a chat room by its unique ID.
    * @param id The unique ID of the room.
@@ -39,12 +291,139 @@ public class ChatRoomManager {
   }
 
   /**
-   * @return A List of strings representing all rooms in the format "[ID] Name".
+   * @return The history limits used for rooms created without their own.
+   */
+  public HistoryConfig historyDefaults() {
+    return historyDefaults;
+  }
+
+  /**
+   * Finds the rooms with the given name, ignoring case.
+   * @param name The room name.
+   * @return The matching rooms ordered by ID; empty if there are none.
    */
-  public Set<String> listRoomNames() {
-    return rooms.values().stream()
-            .map(room -> String.format("[#%d] %s", room.getId(), room.getName()))
-            .collect(Collectors.toSet());
+  public List<ChatRoom> findByName(String name) {
+    if (name == null) return List.of();
+    Set<Integer> ids = idsByName.get(nameKey(name.trim()));
+    if (ids == null) return List.of();
+    List<ChatRoom> result = new ArrayList<>(ids.size());
+    for (int id : ids) {
+      ChatRoom room = rooms.get(id);
+      if (room != null) result.add(room);
+    }
+    result.sort(Comparator.comparingInt(ChatRoom::getId));
+    return result;
+  }
+
+  /**
+   * Returns one page of the room listing.
+   * @param prefix   Only rooms whose name starts with this, ignoring case; {@code null} or empty for all.
+   * @param order    How to sort the rooms.
+   * @param page     The page to return, starting at 1; clamped to the last page.
+   * @param pageSize Rooms per page.
+   * @return The page, with each entry formatted as {@code [#id] name (members)}.
+   */
+  public RoomPage listRooms(String prefix, RoomOrder order, int page, int pageSize) {
+    Listing current = listing();
+    int from = 0;
+    int to = current.keys.length;
+    if (prefix != null && !prefix.isEmpty()) {
+      String key = nameKey(prefix);
+      from = current.lowerBound(key);
+      to = current.lowerBound(key + Character.MAX_VALUE);
+    }
+    int total = to - from;
+    int pages = Math.max(1, (total + pageSize - 1) / pageSize);
+    page = Math.min(Math.max(1, page), pages);
+    int start = (page - 1) * pageSize;
+    int end = Math.min(total, start + pageSize);
+
+    int[] sorted = current.order(order, from, to);
+    List<String> entries = new ArrayList<>(Math.max(0, end - start));
+    for (int i = start; i < end; i++) {
+      int index = sorted == null ? from + i : sorted[i];
+      entries.add(current.labels[index] + " (" + current.rooms[index].memberCount() + ")");
+    }
+    return new RoomPage(entries, page, pages, total);
+  }
+
+  private Listing listing() {
+    Listing current = listing;
+    long v = version.get();
+    if (current == null || current.version != v) {
+      current = new Listing(v, byName);
+      listing = current;
+    }
+    return current;
+  }
+
+  private static String nameKey(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  private record NameKey(String name, int id) implements Comparable<NameKey> {
+    @Override
+    public int compareTo(NameKey other) {
+      int c = name.compareTo(other.name);
+      return c != 0 ? c : Integer.compare(id, other.id);
+    }
+  }
+
+  /**
+   * Immutable, name-sorted copy of all rooms with their formatted labels.
+   */
+  private static final class Listing {
+    final long version;
+    final String[] keys;
+    final String[] labels;
+    final ChatRoom[] rooms;
+
+    Listing(long version, ConcurrentSkipListMap<NameKey, ChatRoom> byName) {
+      List<String> k = new ArrayList<>();
+      List<ChatRoom> r = new ArrayList<>();
+      byName.forEach((key, room) -> {
+        k.add(key.name());
+        r.add(room);
+      });
+      this.version = version;
+      this.keys = k.toArray(new String[0]);
+      this.rooms = r.toArray(new ChatRoom[0]);
+      this.labels = new String[rooms.length];
+      for (int i = 0; i < rooms.length; i++) {
+        labels[i] = "[#" + rooms[i].getId() + "] " + rooms[i].getName();
+      }
+    }
+
+    /**
+     * @return The first index whose key is not less than {@code key}.
+     */
+    int lowerBound(String key) {
+      int lo = 0;
+      int hi = keys.length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (keys[mid].compareTo(key) < 0) lo = mid + 1;
+        else hi = mid;
+      }
+      return lo;
+    }
+
+    /**
+     * @return Indexes of {@code [from, to)} in the requested order, or {@code null} if that is name order.
+     */
+    int[] order(RoomOrder order, int from, int to) {
+      if (order != RoomOrder.MEMBERS) return null;
+      long[] packed = new long[to - from];
+      for (int i = from; i < to; i++) {
+        packed[i - from] = ((long) (Integer.MAX_VALUE - rooms[i].memberCount()) << 32) | i;
+      }
+      Arrays.sort(packed);
+      int[] indexes = new int[packed.length];
+      for (int i = 0; i < packed.length; i++) {
+        indexes[i] = (int) packed[i];
+      }
+      return indexes;
+    }
   }
 
 }
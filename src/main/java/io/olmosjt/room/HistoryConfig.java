@@ -0,0 +1,41 @@
+package io.olmosjt.room;
+
+/**
+ * Limits for the message history each room keeps for replay on JOIN.
+ *
+ * @param maxMessages Most messages a room retains; 0 disables history.
+ * @param maxBytes    Most encoded bytes a room retains; the oldest messages are evicted first.
+ * @param replayCount How many of the latest messages are replayed to a client that joins without
+ *                    giving a sequence number.
+ */
+public record HistoryConfig(
+        int maxMessages,
+        int maxBytes,
+        int replayCount
+) {
+
+  public HistoryConfig {
+    if (maxMessages < 0 || maxBytes < 0 || replayCount < 0) {
+      throw new IllegalArgumentException("History limits must not be negative");
+    }
+  }
+
+  /**
+   * @return 100 messages or 32 KiB per room, whichever is reached first, and a 20-message replay.
+   */
+  public static HistoryConfig defaults() {
+    return new HistoryConfig(100, 32 * 1024, 20);
+  }
+
+  /**
+   * Returns a copy holding {@code maxMessages} messages, with the byte limit scaled by the same factor
+   * so the average message size allowed stays the same.
+   * @param maxMessages The new message limit.
+   * @return The adjusted configuration.
+   */
+  public HistoryConfig withMaxMessages(int maxMessages) {
+    if (this.maxMessages == 0) return new HistoryConfig(maxMessages, maxBytes, replayCount);
+    long bytes = (long) maxBytes * maxMessages / this.maxMessages;
+    return new HistoryConfig(maxMessages, (int) Math.min(Integer.MAX_VALUE, bytes), replayCount);
+  }
+}
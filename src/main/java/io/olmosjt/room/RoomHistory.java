@@ -0,0 +1,215 @@
+package io.olmosjt.room;
+
+import io.olmosjt.protocol.Frame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bounded ring of the most recent encoded messages of one room.
+ * <p>
+ * Messages are stored as their wire bytes, back to back in a circular byte array, next to a ring
+ * of their lengths, so a retained message costs its encoded size plus four bytes and nothing else
+ * is kept alive. Both arrays are allocated on first use and grow by doubling up to the configured
+ * limits, so a room that never sees a message holds no buffers at all.
+ * <p>
+ * Every appended message takes the next sequence number of the room. Sequence numbers are contiguous
+ * and the ring always holds messages {@link #firstSequence()} through {@link #lastSequence()}.
+ * <p>
+ * Not thread-safe; {@link ChatRoom} guards it.
+ */
+final class RoomHistory {
+  private static final int INITIAL_ENTRIES = 16;
+  private static final int INITIAL_BYTES = 1024;
+
+  private int maxMessages;
+  private int maxBytes;
+
+  private byte[] data;
+  private int dataHead;
+  private int dataUsed;
+
+  private int[] lengths;
+  private int head;
+  private int count;
+
+  private long lastSequence;
+
+  RoomHistory(int maxMessages, int maxBytes) {
+    this.maxMessages = maxMessages;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Appends a frame, evicting the oldest messages as needed to stay within the limits.
+   * A frame larger than the byte limit empties the history but still consumes a sequence number.
+   * @param frame The encoded message.
+   * @return The sequence number assigned to it.
+   */
+  long append(Frame frame) {
+    long sequence = ++lastSequence;
+    int length = frame.length();
+    int pos = reserve(length);
+    if (pos >= 0) {
+      int copied = frame.writeTo(ByteBuffer.wrap(data, pos, data.length - pos), 0);
+      if (copied < length) {
+        frame.writeTo(ByteBuffer.wrap(data, 0, length - copied), copied);
+      }
+    }
+    return sequence;
+  }
+
+  /**
+   * Appends a message read back from persistent storage under its original sequence number.
+   * @param sequence The stored sequence number; must be greater than {@link #lastSequence()}.
+   * @param line     The encoded line.
+   */
+  void restore(long sequence, byte[] line) {
+    lastSequence = sequence;
+    int pos = reserve(line.length);
+    if (pos >= 0) {
+      int first = Math.min(line.length, data.length - pos);
+      System.arraycopy(line, 0, data, pos, first);
+      System.arraycopy(line, first, data, 0, line.length - first);
+    }
+  }
+
+  /**
+   * Continues numbering after {@code sequence}, for example the last sequence number persisted for the room.
+   */
+  void continueFrom(long sequence) {
+    lastSequence = Math.max(lastSequence, sequence);
+  }
+
+  /**
+   * Makes room for a message of {@code length} bytes and records it.
+   * @return Where to copy the bytes, or -1 if the message is not retained.
+   */
+  private int reserve(int length) {
+    if (maxMessages == 0 || length > maxBytes) {
+      clear();
+      return -1;
+    }
+    while (count > 0 && (count == maxMessages || dataUsed + length > maxBytes)) {
+      evictOldest();
+    }
+    ensureEntryCapacity(count + 1);
+    ensureDataCapacity(dataUsed + length);
+
+    int pos = (dataHead + dataUsed) % data.length;
+    lengths[(head + count) % lengths.length] = length;
+    count++;
+    dataUsed += length;
+    return pos;
+  }
+
+  /**
+   * Copies the newest {@code n} messages, oldest first, into one array.
+   * @param n Number of messages; at most {@link #size()}.
+   * @return Their encoded lines back to back.
+   */
+  byte[] copyLast(int n) {
+    int total = 0;
+    for (int i = count - n; i < count; i++) {
+      total += lengths[(head + i) % lengths.length];
+    }
+    byte[] out = new byte[total];
+    if (total == 0) return out;
+    int start = Math.floorMod(dataHead + dataUsed - total, data.length);
+    int first = Math.min(total, data.length - start);
+    System.arraycopy(data, start, out, 0, first);
+    System.arraycopy(data, 0, out, first, total - first);
+    return out;
+  }
+
+  /**
+   * Changes the limits, evicting and shrinking the buffers immediately if they are lowered.
+   */
+  void resize(int maxMessages, int maxBytes) {
+    this.maxMessages = maxMessages;
+    this.maxBytes = maxBytes;
+    while (count > 0 && (count > maxMessages || dataUsed > maxBytes)) {
+      evictOldest();
+    }
+    if (maxMessages == 0 || maxBytes == 0) {
+      clear();
+    } else if (data != null && (data.length > maxBytes || lengths.length > maxMessages)) {
+      relocate(Math.min(data.length, maxBytes), Math.min(lengths.length, maxMessages));
+    }
+  }
+
+  int size() {
+    return count;
+  }
+
+  long lastSequence() {
+    return lastSequence;
+  }
+
+  long firstSequence() {
+    return lastSequence - count + 1;
+  }
+
+  int maxMessages() {
+    return maxMessages;
+  }
+
+  /**
+   * @return Bytes currently allocated for the buffers, excluding object headers.
+   */
+  long allocatedBytes() {
+    return (data == null ? 0 : data.length) + (lengths == null ? 0 : 4L * lengths.length);
+  }
+
+  private void evictOldest() {
+    int length = lengths[head];
+    dataHead = (dataHead + length) % data.length;
+    dataUsed -= length;
+    head = (head + 1) % lengths.length;
+    count--;
+    if (count == 0) {
+      head = 0;
+      dataHead = 0;
+    }
+  }
+
+  private void clear() {
+    data = null;
+    lengths = null;
+    head = 0;
+    count = 0;
+    dataHead = 0;
+    dataUsed = 0;
+  }
+
+  private void ensureEntryCapacity(int needed) {
+    if (lengths == null) {
+      lengths = new int[Math.min(maxMessages, INITIAL_ENTRIES)];
+      data = new byte[Math.min(maxBytes, Math.max(INITIAL_BYTES, dataUsed))];
+    }
+    if (lengths.length < needed) {
+      relocate(data.length, Math.min(maxMessages, Math.max(needed, lengths.length * 2)));
+    }
+  }
+
+  private void ensureDataCapacity(int needed) {
+    if (data.length < needed) {
+      relocate(Math.min(maxBytes, Math.max(needed, data.length * 2)), lengths.length);
+    }
+  }
+
+  private void relocate(int dataCapacity, int entryCapacity) {
+    byte[] newData = new byte[dataCapacity];
+    int first = Math.min(dataUsed, data.length - dataHead);
+    System.arraycopy(data, dataHead, newData, 0, first);
+    System.arraycopy(data, 0, newData, first, dataUsed - first);
+    data = newData;
+    dataHead = 0;
+
+    int[] newLengths = new int[entryCapacity];
+    for (int i = 0; i < count; i++) {
+      newLengths[i] = lengths[(head + i) % lengths.length];
+    }
+    lengths = newLengths;
+    head = 0;
+  }
+}
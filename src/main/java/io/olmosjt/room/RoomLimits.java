@@ -0,0 +1,34 @@
+package io.olmosjt.room;
+
+import java.time.Duration;
+
+/**
+ * Room lifecycle settings.
+ *
+ * @param maxRooms        Most rooms that may exist at once; pinned rooms count too.
+ * @param maxRoomsPerUser Most rooms one user may own (have created and not yet removed).
+ * @param maxJoinedRooms  Most rooms one session may be a member of at the same time.
+ * @param emptyRoomTtl    How long an unpinned room may stay empty before it is removed;
+ *                        {@link Duration#ZERO} keeps empty rooms forever.
+ */
+public record RoomLimits(
+        int maxRooms,
+        int maxRoomsPerUser,
+        int maxJoinedRooms,
+        Duration emptyRoomTtl
+) {
+
+  /**
+   * @return 10,000 rooms, 10 owned per user, 32 joined per session, and empty rooms removed after 10 minutes.
+   */
+  public static RoomLimits defaults() {
+    return new RoomLimits(10_000, 10, 32, Duration.ofMinutes(10));
+  }
+
+  /**
+   * @return No limits and no reaping.
+   */
+  public static RoomLimits unlimited() {
+    return new RoomLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Duration.ZERO);
+  }
+}
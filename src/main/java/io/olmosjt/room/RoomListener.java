@@ -0,0 +1,25 @@
+package io.olmosjt.room;
+
+/**
+ * Receives room lifecycle and membership changes from a {@link ChatRoomManager}.
+ * <p>
+ * Callbacks run on the thread that made the change, after it was applied, and must not block.
+ */
+public interface RoomListener {
+
+  /** A listener that ignores everything. */
+  RoomListener NONE = new RoomListener() {
+    @Override public void roomAdded(ChatRoom room) {}
+    @Override public void roomRemoved(ChatRoom room) {}
+    @Override public void membersChanged(ChatRoom room) {}
+  };
+
+  void roomAdded(ChatRoom room);
+
+  void roomRemoved(ChatRoom room);
+
+  /**
+   * Called after a client joined or left the room.
+   */
+  void membersChanged(ChatRoom room);
+}
@@ -0,0 +1,11 @@
+package io.olmosjt.room;
+
+/**
+ * How LIST_ROOMS sorts its result.
+ */
+public enum RoomOrder {
+  /** Case-insensitive by name, then by ID. */
+  NAME,
+  /** Most members first, then by name. */
+  MEMBERS
+}
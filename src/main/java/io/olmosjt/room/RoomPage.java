@@ -0,0 +1,19 @@
+package io.olmosjt.room;
+
+import java.util.List;
+
+/**
+ * One page of a room listing.
+ *
+ * @param entries The rooms on this page, formatted as {@code [#id] name (members)}.
+ * @param page    This page's number, starting at 1.
+ * @param pages   The number of pages, at least 1.
+ * @param total   The number of rooms matching the filter.
+ */
+public record RoomPage(
+        List<String> entries,
+        int page,
+        int pages,
+        int total
+) {
+}
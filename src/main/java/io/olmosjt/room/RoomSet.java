@@ -0,0 +1,96 @@
+package io.olmosjt.room;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The rooms one client session belongs to.
+ * <p>
+ * Stored as an array sorted by room ID that is replaced on every change, so lookups by ID are a
+ * binary search over a few references with no locking, boxing or allocation, while joins and leaves,
+ * which are rare by comparison, copy the array. A session in a handful of rooms costs one small array.
+ */
+public final class RoomSet {
+  private static final ChatRoom[] EMPTY = new ChatRoom[0];
+
+  private volatile ChatRoom[] rooms = EMPTY;
+
+  /**
+   * @return The member room with this ID, or {@code null}.
+   */
+  public ChatRoom find(int roomId) {
+    ChatRoom[] current = rooms;
+    int index = indexOf(current, roomId);
+    return index >= 0 ? current[index] : null;
+  }
+
+  public boolean contains(ChatRoom room) {
+    return find(room.getId()) == room;
+  }
+
+  /**
+   * Adds a room unless it is already present or the set holds {@code limit} rooms.
+   * @return {@code true} if the room is in the set afterwards.
+   */
+  public synchronized boolean add(ChatRoom room, int limit) {
+    ChatRoom[] current = rooms;
+    int index = indexOf(current, room.getId());
+    if (index >= 0) return true;
+    if (current.length >= limit) return false;
+    int insert = -index - 1;
+    ChatRoom[] next = new ChatRoom[current.length + 1];
+    System.arraycopy(current, 0, next, 0, insert);
+    next[insert] = room;
+    System.arraycopy(current, insert, next, insert + 1, current.length - insert);
+    rooms = next;
+    return true;
+  }
+
+  /**
+   * @return {@code true} if the room was in the set.
+   */
+  public synchronized boolean remove(ChatRoom room) {
+    ChatRoom[] current = rooms;
+    int index = indexOf(current, room.getId());
+    if (index < 0) return false;
+    ChatRoom[] next = current.length == 1 ? EMPTY : new ChatRoom[current.length - 1];
+    System.arraycopy(current, 0, next, 0, index);
+    System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+    rooms = next;
+    return true;
+  }
+
+  /**
+   * Empties the set.
+   * @return The rooms it held, ordered by ID.
+   */
+  public synchronized List<ChatRoom> clear() {
+    ChatRoom[] current = rooms;
+    rooms = EMPTY;
+    return Arrays.asList(current);
+  }
+
+  /**
+   * @return The rooms ordered by ID.
+   */
+  public List<ChatRoom> toList() {
+    return List.of(rooms);
+  }
+
+  public int size() {
+    return rooms.length;
+  }
+
+  private static int indexOf(ChatRoom[] rooms, int roomId) {
+    int lo = 0;
+    int hi = rooms.length - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      int id = rooms[mid].getId();
+      if (id < roomId) lo = mid + 1;
+      else if (id > roomId) hi = mid - 1;
+      else return mid;
+    }
+    return -(lo + 1);
+  }
+}
@@ -0,0 +1,37 @@
+package io.olmosjt.server;
+
+import java.time.Duration;
+
+/**
+ * Limits on accepting connections.
+ *
+ * @param maxConnections        Most client connections open at once.
+ * @param maxConnectionsPerIp   Most connections open at once from one remote address; loopback is exempt.
+ * @param acceptBacklog         Length of the kernel queue of connections waiting to be accepted.
+ * @param maxUnauthenticated    Most connections open at once that have not logged in yet.
+ * @param loginTimeout          How long a connection may stay without logging in before it is closed;
+ *                              {@link Duration#ZERO} disables the deadline.
+ */
+public record AdmissionConfig(
+        int maxConnections,
+        int maxConnectionsPerIp,
+        int acceptBacklog,
+        int maxUnauthenticated,
+        Duration loginTimeout
+) {
+
+  /**
+   * @return 50,000 connections, 256 per address, a backlog of 1024, 4096 awaiting login and a 10 second
+   *         login deadline.
+   */
+  public static AdmissionConfig defaults() {
+    return new AdmissionConfig(50_000, 256, 1024, 4096, Duration.ofSeconds(10));
+  }
+
+  /**
+   * @return No connection limits and no login deadline.
+   */
+  public static AdmissionConfig unlimited() {
+    return new AdmissionConfig(Integer.MAX_VALUE, Integer.MAX_VALUE, 50, Integer.MAX_VALUE, Duration.ZERO);
+  }
+}
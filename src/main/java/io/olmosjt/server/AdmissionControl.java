@@ -0,0 +1,137 @@
+package io.olmosjt.server;
+
+import io.olmosjt.message.Message;
+import io.olmosjt.metrics.ServerMetrics;
+import io.olmosjt.protocol.MessageEncoder;
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides whether a newly accepted connection may become a session.
+ * <p>
+ * The transports ask {@link #admit(InetAddress)} right after {@code accept()}, before a {@link ClientHandler}
+ * or any per-connection buffers exist. A refused connection is sent a pre-encoded NOK line and closed on the
+ * accept thread, so shedding a reconnect storm costs one small write and a close per socket.
+ * <p>
+ * An admitted connection holds a connection slot, a slot for its address and a login slot. The login slot is
+ * freed by {@link #releaseLoginSlot()} once the session logs in or ends, and the others by {@link #release(InetAddress)}.
+ */
+public final class AdmissionControl {
+
+  public enum Rejection {
+    SERVER_FULL("Server is full. Try again later."),
+    TOO_MANY_FROM_ADDRESS("Too many connections from your address."),
+    TOO_MANY_UNAUTHENTICATED("Too many connections waiting to log in. Try again later.");
+
+    private final byte[] frame;
+
+    Rejection(String reason) {
+      this.frame = (MessageEncoder.encode(Message.serverNok(null, reason)) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  private final AdmissionConfig config;
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicInteger unauthenticated = new AtomicInteger();
+  private final Map<InetAddress, Integer> perAddress = new ConcurrentHashMap<>();
+
+  public AdmissionControl(AdmissionConfig config) {
+    this.config = config;
+  }
+
+  public AdmissionConfig config() {
+    return config;
+  }
+
+  /**
+   * Reserves the slots for a new connection.
+   * @return {@code null} if admitted, otherwise why not; nothing is reserved in that case.
+   */
+  public Rejection admit(InetAddress address) {
+    if (connections.incrementAndGet() > config.maxConnections()) {
+      connections.decrementAndGet();
+      return rejected(Rejection.SERVER_FULL);
+    }
+    if (unauthenticated.incrementAndGet() > config.maxUnauthenticated()) {
+      unauthenticated.decrementAndGet();
+      connections.decrementAndGet();
+      return rejected(Rejection.TOO_MANY_UNAUTHENTICATED);
+    }
+    if (!address.isLoopbackAddress()) {
+      if (perAddress.merge(address, 1, Integer::sum) > config.maxConnectionsPerIp()) {
+        releaseAddress(address);
+        unauthenticated.decrementAndGet();
+        connections.decrementAndGet();
+        return rejected(Rejection.TOO_MANY_FROM_ADDRESS);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Frees the login slot of a connection, once it has logged in or closed without logging in.
+   * Call at most once per connection.
+   */
+  public void releaseLoginSlot() {
+    unauthenticated.decrementAndGet();
+  }
+
+  /**
+   * Frees the connection and address slots of a closed connection.
+   */
+  public void release(InetAddress address) {
+    connections.decrementAndGet();
+    if (!address.isLoopbackAddress()) releaseAddress(address);
+  }
+
+  public int connections() {
+    return connections.get();
+  }
+
+  public int unauthenticated() {
+    return unauthenticated.get();
+  }
+
+  /**
+   * Sends the rejection to a blocking socket and closes it.
+   */
+  public static void shed(Socket socket, Rejection rejection) {
+    try (socket) {
+      OutputStream out = socket.getOutputStream();
+      out.write(rejection.frame);
+      out.flush();
+    } catch (IOException e) {
+      LoggerUtil.debug("Failed to refuse client: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Sends the rejection to a channel that is still in blocking mode and closes it.
+   */
+  public static void shed(SocketChannel channel, Rejection rejection) {
+    try (channel) {
+      channel.write(ByteBuffer.wrap(rejection.frame));
+    } catch (IOException e) {
+      LoggerUtil.debug("Failed to refuse client: " + e.getMessage());
+    }
+  }
+
+  private void releaseAddress(InetAddress address) {
+    perAddress.computeIfPresent(address, (a, count) -> count > 1 ? count - 1 : null);
+  }
+
+  private static Rejection rejected(Rejection rejection) {
+    ServerMetrics.connectionRejected(rejection);
+    return rejection;
+  }
+}
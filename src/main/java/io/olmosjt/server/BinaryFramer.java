@@ -0,0 +1,88 @@
+package io.olmosjt.server;
+
+import io.olmosjt.protocol.BinaryCodec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits a non-blocking byte stream into {@linkplain BinaryCodec binary} request records: a varint length
+ * followed by that many bytes of body.
+ * <p>
+ * Like {@link LineFramer} it keeps a partial record between reads in an array allocated on demand, and
+ * hands complete bodies to the sink. A record longer than the configured limit is skipped, its length
+ * being known, and reported once; a length prefix too long to be valid is reported the same way, but
+ * leaves the stream without a way to find the next record, so everything after it is discarded.
+ * <p>
+ * Not thread-safe; each instance belongs to a single connection.
+ */
+final class BinaryFramer {
+  private static final int RETAINED_CAPACITY = 4096;
+  /** Varints of more than this many bytes cannot hold an int. */
+  private static final int MAX_VARINT_BYTES = 5;
+
+  private final int maxBodyBytes;
+  private byte[] body;
+  private int bodyLength = -1;
+  private int filled;
+  private int lengthValue;
+  private int lengthBytes;
+  private long skipping;
+
+  BinaryFramer(int maxBodyBytes) {
+    this.maxBodyBytes = maxBodyBytes;
+  }
+
+  /**
+   * Consumes all remaining bytes of {@code src}, emitting each complete request body to {@code sink}.
+   * @param src A buffer in read mode.
+   */
+  void feed(ByteBuffer src, LineFramer.LineSink sink) {
+    while (src.hasRemaining()) {
+      if (skipping > 0) {
+        int skipped = (int) Math.min(skipping, src.remaining());
+        src.position(src.position() + skipped);
+        skipping -= skipped;
+        continue;
+      }
+
+      if (bodyLength < 0) {
+        int b = src.get() & 0xFF;
+        lengthValue |= (b & 0x7F) << (7 * lengthBytes);
+        lengthBytes++;
+        if ((b & 0x80) != 0) {
+          if (lengthBytes == MAX_VARINT_BYTES) {
+            resetLength();
+            skipping = Long.MAX_VALUE;
+            sink.onOversizedLine();
+          }
+          continue;
+        }
+        int length = lengthValue;
+        resetLength();
+        if (length < 0 || length > maxBodyBytes) {
+          skipping = length < 0 ? Long.MAX_VALUE : length;
+          sink.onOversizedLine();
+          continue;
+        }
+        bodyLength = length;
+        filled = 0;
+        if (body == null || body.length < length) body = new byte[Math.max(length, 64)];
+      }
+
+      int count = Math.min(bodyLength - filled, src.remaining());
+      src.get(body, filled, count);
+      filled += count;
+      if (filled == bodyLength) {
+        int length = bodyLength;
+        bodyLength = -1;
+        sink.onLine(body, 0, length);
+        if (body.length > RETAINED_CAPACITY) body = null;
+      }
+    }
+  }
+
+  private void resetLength() {
+    lengthValue = 0;
+    lengthBytes = 0;
+  }
+}
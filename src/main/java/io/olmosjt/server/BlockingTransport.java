@@ -0,0 +1,37 @@
+package io.olmosjt.server;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Socket-per-client transport: a blocking accept loop that starts one reader virtual thread per
+ * connection (plus its writer, see {@link SocketConnection}). Connections refused by {@link AdmissionControl}
+ * are answered and closed on the accept thread.
+ */
+public class BlockingTransport implements Transport {
+
+  @Override
+  public void serve(ServerContext context) throws IOException {
+    try (ServerSocket serverSocket = new ServerSocket(context.config().port(), context.config().admission().acceptBacklog())) {
+      LoggerUtil.info("Listening on port " + serverSocket.getLocalPort() + " (blocking transport)");
+
+      while (true) {
+        Socket clientSocket = serverSocket.accept();
+        AdmissionControl.Rejection rejection = context.admission() == null ? null
+                : context.admission().admit(clientSocket.getInetAddress());
+        if (rejection != null) {
+          AdmissionControl.shed(clientSocket, rejection);
+          continue;
+        }
+        LoggerUtil.info("New client connected: " + clientSocket.getInetAddress());
+
+        ClientHandler handler = new ClientHandler(context);
+        Thread.startVirtualThread(new SocketConnection(clientSocket, handler, context.config()));
+      }
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package io.olmosjt.server;
+
+import java.net.InetAddress;
+
+/**
+ * Transport side of a client session.
+ * <p>
+ * A {@link ClientHandler} holds session state and queues outgoing frames; its connection moves
+ * bytes between that queue and the network. Each {@link Transport} provides its own implementation.
+ */
+public interface ClientConnection {
+
+  /**
+   * Called after a frame has been added to the owning handler's outbound queue.
+   * Must not block.
+   */
+  void frameQueued();
+
+  /**
+   * Writes whatever is already queued, then closes the connection.
+   */
+  void close();
+
+  /**
+   * Closes the connection immediately, discarding queued frames.
+   */
+  void abort();
+
+  /**
+   * @return The address of the remote peer.
+   */
+  InetAddress remoteAddress();
+}
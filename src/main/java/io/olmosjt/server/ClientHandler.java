@@ -2,79 +2,356 @@ package io.olmosjt.server;
 
 import io.olmosjt.ServerContext;
 import io.olmosjt.message.Message;
+import io.olmosjt.metrics.ServerMetrics;
+import io.olmosjt.protocol.CompressionConfig;
+import io.olmosjt.protocol.Frame;
 import io.olmosjt.protocol.MessageEncoder;
+import io.olmosjt.protocol.WireFormat;
+import io.olmosjt.ratelimit.TokenBuckets;
 import io.olmosjt.room.ChatRoom;
+import io.olmosjt.room.RoomSet;
+import io.olmosjt.trace.DeliveryTrace;
+import io.olmosjt.trace.DeliveryTracer;
+import io.olmosjt.trace.LatencyWindow;
 import io.olmosjt.user.User;
 import io.olmosjt.user.UserStatus;
+import io.olmosjt.util.HashedWheelTimer;
 import io.olmosjt.util.LoggerUtil;
 
-import java.io.*;
-import java.net.Socket;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Handles communication with a single client.
- * Designed to run inside a virtual thread.
+ * Session state for a single client: identity, joined rooms and outgoing frames.
+ * <p>
+ * A session may be a member of several rooms at once, held in a {@link RoomSet}. The most recently
+ * joined one is its current room, which requests that do not name a room apply to.
+ * <p>
+ * The handler is independent of how bytes reach the network. A {@link Transport} creates a
+ * {@link ClientConnection} for each accepted client, attaches it, and feeds inbound lines to
+ * {@link #onLine(byte[], int, int)}.
+ * <p>
+ * Outgoing frames never touch the network on the caller's thread: they are placed on a bounded
+ * {@link OutboundQueue} that the connection drains, so a slow reader cannot stall room broadcasts
+ * or the sender's command loop.
+ * <p>
+ * Idle clients are found with one timeout per session on the server's {@link HashedWheelTimer}.
+ * Receiving a line only stores a timestamp; when the timeout fires it compares that timestamp with
+ * the limits and either sends a PING, disconnects the client, or re-arms itself for the remaining
+ * time. A session therefore costs at most one timer operation per check, however busy it is. Only
+ * complete lines count as activity, so a peer that trickles bytes without a newline still times out.
  */
-public class ClientHandler implements Runnable {
-  private final Socket socket;
+public class ClientHandler {
+  /** How long a timed-out client gets to take its final frames before the connection is aborted. */
+  private static final Duration ABORT_GRACE = Duration.ofSeconds(5);
+
+  /** A PING waiting for its PONG: the token the client must echo and when it was sent, from {@link System#nanoTime()}. */
+  private record Ping(String token, long sentAt) {}
+
   private final ServerContext context;
-  private ChatRoom currentRoom;
+  private final OutboundQueue outbound;
+  private ClientConnection connection;
+  private final RoomSet rooms = new RoomSet();
+  private volatile ChatRoom currentRoom;
 
-  private PrintWriter out;
-  private BufferedReader in;
-  private User user; // Still useful to hold user state
+  private volatile User user; // Still useful to hold user state
+  private volatile WireFormat inboundFormat = WireFormat.TEXT;
   private final AtomicBoolean running = new AtomicBoolean(true);
+  private final AtomicBoolean loginPending = new AtomicBoolean();
+  private final AtomicBoolean compressing = new AtomicBoolean();
 
+  private volatile long lastActivity = System.nanoTime();
+  private volatile HashedWheelTimer.Timeout idleCheck;
+  private volatile HashedWheelTimer.Timeout loginDeadline;
+  /** Whether this session still holds an {@link AdmissionControl} login slot. */
+  private final AtomicBoolean holdsLoginSlot;
+  /** The unanswered PING, published as one reference so the reader never pairs a token with another send time. */
+  private volatile Ping ping;
+  private volatile LatencyWindow deliveryLatency;
+  private final TokenBuckets rateBuckets;
 
-  public ClientHandler(Socket socket, ServerContext context) {
-    this.socket = socket;
+
+  public ClientHandler(ServerContext context) {
     this.context = context;
+    OutboundConfig outboundConfig = context.config().outbound();
+    this.outbound = new OutboundQueue(outboundConfig.queueCapacity(), outboundConfig.overflowPolicy());
+    this.rateBuckets = context.commandHandler().rateLimiter().newConnectionBuckets();
+    this.holdsLoginSlot = new AtomicBoolean(context.admission() != null);
+    ServerMetrics.connectionOpened();
+  }
+
+  /**
+   * Binds this session to its transport connection. Called once, before any input is delivered.
+   */
+  void attach(ClientConnection connection) {
+    this.connection = connection;
+  }
+
+  OutboundQueue outbound() {
+    return outbound;
   }
 
+  /**
+   * @return The room most recently joined and not yet left.
+   */
   public Optional<ChatRoom> getCurrentRoom() {
     return Optional.ofNullable(currentRoom);
   }
 
-  public void setCurrentRoom(ChatRoom room) {
-    this.currentRoom = room;
+  /**
+   * Looks up a room this session belongs to, without allocating.
+   * @param roomId The room ID, or a negative value for the current room.
+   * @return The room, or {@code null} if the session is not a member.
+   */
+  public ChatRoom findRoom(int roomId) {
+    return roomId < 0 ? currentRoom : rooms.find(roomId);
   }
 
-  @Override
-  public void run() {
-    try {
-      in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-      out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+  /**
+   * @return The rooms this session belongs to, ordered by ID.
+   */
+  public List<ChatRoom> getRooms() {
+    return rooms.toList();
+  }
 
-      send(Message.serverOk(null, "Welcome! Please log in with: REQ|LOGIN|<username>"));
+  /**
+   * Records that this session is a member of {@code room} and makes it the current room.
+   * Does not notify the room; see {@link ChatRoom#join}.
+   * @return {@code false} if the session already belongs to {@link io.olmosjt.room.RoomLimits#maxJoinedRooms()} rooms.
+   */
+  public boolean addRoom(ChatRoom room) {
+    if (!rooms.add(room, context.config().rooms().maxJoinedRooms())) return false;
+    currentRoom = room;
+    return true;
+  }
 
-      String line;
-      while (running.get() && (line = in.readLine()) != null) {
-        String who = isLoggedIn() ? getUser().username() : "(unauthenticated)";
-        LoggerUtil.info("REQ raw from=" + who + " line=" + line);
-        context.commandHandler().handle(context, this, line);
-      }
-    } catch (IOException e) {
-      LoggerUtil.debug("Client connection error: " + e.getMessage());
-    } finally {
+  /**
+   * Records that this session left {@code room}. If it was the current room, the remaining room
+   * with the highest ID becomes current.
+   */
+  public void removeRoom(ChatRoom room) {
+    rooms.remove(room);
+    if (currentRoom == room) {
+      List<ChatRoom> remaining = rooms.toList();
+      currentRoom = remaining.isEmpty() ? null : remaining.get(remaining.size() - 1);
+    }
+  }
+
+  /**
+   * Called by the transport once the connection is ready to carry frames.
+   */
+  public void onConnect() {
+    send(Message.serverOk(null, "Welcome! Please log in with: REQ|LOGIN|<username>"));
+    lastActivity = System.nanoTime();
+    scheduleIdleCheck(nextIdleCheck(0, false));
+    Duration loginTimeout = context.config().admission().loginTimeout();
+    if (context.timer() != null && loginTimeout.isPositive()) {
+      loginDeadline = context.timer().schedule(this::checkLogin, loginTimeout);
+    }
+  }
+
+  /**
+   * Runs on the timer thread when the login deadline passes.
+   */
+  private void checkLogin() {
+    if (!running.get() || isLoggedIn()) return;
+    LoggerUtil.info("Login timeout: " + remoteAddress());
+    send(Message.serverNok(null, "Disconnected: no LOGIN within "
+            + context.config().admission().loginTimeout().toSeconds() + "s."));
+    disconnect();
+    context.timer().schedule(connection::abort, ABORT_GRACE);
+  }
+
+  private void releaseLoginSlot() {
+    if (holdsLoginSlot.getAndSet(false)) context.admission().releaseLoginSlot();
+    HashedWheelTimer.Timeout deadline = loginDeadline;
+    if (deadline != null) deadline.cancel();
+  }
+
+  /**
+   * Called by the transport for every complete inbound line.
+   * The bytes are only valid for the duration of the call.
+   * @param buf The buffer holding the line, without its terminator.
+   * @param off Offset of the line in {@code buf}.
+   * @param len Length of the line in bytes.
+   */
+  public void onLine(byte[] buf, int off, int len) {
+    if (!running.get()) return;
+    lastActivity = System.nanoTime();
+    if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
+      String who = isLoggedIn() ? getUser().username() : "(unauthenticated)";
+      LoggerUtil.info(inboundFormat == WireFormat.TEXT
+              ? "REQ raw from=" + who + " line=" + new String(buf, off, len, StandardCharsets.UTF_8)
+              : "REQ raw from=" + who + " binary bytes=" + len);
+    }
+    context.commandHandler().handle(context, this, buf, off, len);
+  }
+
+  /**
+   * @return The format of this client's next request; the transport frames input accordingly.
+   */
+  public WireFormat inboundFormat() {
+    return inboundFormat;
+  }
+
+  /**
+   * Moves this connection to another wire format in both directions. {@code reply} is the last frame the
+   * client receives in the current format, and the request being handled must be the last one it sends in it.
+   * Must be called while handling a request.
+   */
+  public void switchFormat(WireFormat format, Message reply) {
+    send(MessageEncoder.encodeFrame(reply).switchingTo(format));
+    inboundFormat = format;
+  }
+
+  /**
+   * Compresses everything sent to this connection after {@code reply}, which is the last uncompressed frame.
+   * @return {@code false} if compression was already on.
+   */
+  public boolean startCompression(CompressionConfig config, Message reply) {
+    if (compressing.getAndSet(true)) return false;
+    send(MessageEncoder.encodeFrame(reply).startingCompression(config));
+    return true;
+  }
+
+  /**
+   * Called by the transport when an inbound line exceeded {@link ServerConfig#maxLineBytes()} and was discarded.
+   */
+  public void onOversizedLine() {
+    LoggerUtil.warn("REQ oversized from=" + (isLoggedIn() ? getUser().username() : "(unauthenticated)") +
+            " limit=" + context.config().maxLineBytes());
+    send(Message.serverNok(isLoggedIn() ? getUser().username() : null,
+            "Line too long. Maximum is " + context.config().maxLineBytes() + " bytes."));
+  }
+
+  /**
+   * Runs on the timer thread when the idle check is due.
+   */
+  private void checkIdle() {
+    if (!running.get()) return;
+    long now = System.nanoTime();
+    long idle = now - lastActivity;
+    long timeout = context.config().clientTimeout().toNanos();
+    if (timeout > 0 && idle >= timeout) {
+      LoggerUtil.info("Idle timeout: " + (isLoggedIn() ? user.username() : "(unauthenticated)") +
+              " idle=" + idle / 1_000_000 + "ms");
+      send(Message.serverNok(isLoggedIn() ? user.username() : null, "Disconnected after "
+              + context.config().clientTimeout().toSeconds() + "s without activity."));
       disconnect();
+      // close() waits for queued frames to be written, which never happens if the peer is gone.
+      context.timer().schedule(connection::abort, ABORT_GRACE);
+      return;
+    }
+    Ping outstanding = ping;
+    boolean pinged = outstanding != null && outstanding.sentAt() - lastActivity > 0;
+    long interval = context.config().pingInterval().toNanos();
+    if (!pinged && interval > 0 && idle >= interval) {
+      Ping sent = new Ping(Long.toString(now, 36), now);
+      ping = sent;
+      send(Message.ping(sent.token()));
+      pinged = true;
     }
+    scheduleIdleCheck(nextIdleCheck(idle, pinged));
   }
 
   /**
-   * Finalizes user registration after a successful LOGIN command.
+   * @return Nanoseconds until the next idle check is due, or -1 if none is needed.
+   */
+  private long nextIdleCheck(long idle, boolean pinged) {
+    long timeout = context.config().clientTimeout().toNanos();
+    long interval = context.config().pingInterval().toNanos();
+    long next = Long.MAX_VALUE;
+    if (timeout > 0) next = timeout - idle;
+    // Once pinged, only look again to see whether the client has answered in the meantime.
+    if (interval > 0) next = Math.min(next, pinged ? interval : interval - idle);
+    return next == Long.MAX_VALUE ? -1 : Math.max(0, next);
+  }
+
+  private void scheduleIdleCheck(long delayNanos) {
+    HashedWheelTimer timer = context.timer();
+    if (timer == null || delayNanos < 0 || !running.get()) return;
+    idleCheck = timer.schedule(this::checkIdle, Duration.ofNanos(delayNanos));
+  }
+
+  /**
+   * Called when the client answers a PING.
+   * @param token The token the client echoed.
+   * @return {@code true} if it matches the last PING sent.
+   */
+  public boolean onPong(String token) {
+    Ping expected = ping;
+    if (expected == null || !expected.token().equals(token)) return false;
+    if (LoggerUtil.isEnabled(LoggerUtil.Level.DEBUG)) {
+      long rtt = (System.nanoTime() - expected.sentAt()) / 1_000;
+      LoggerUtil.debug("PONG from=" + (isLoggedIn() ? user.username() : "(unauthenticated)") + " rtt=" + rtt + "us");
+    }
+    ping = null;
+    return true;
+  }
+
+  /**
+   * Marks a LOGIN as in progress while its username is being claimed from another cluster node.
+   * @return {@code false} if one already is.
+   */
+  public boolean beginLogin() {
+    return !loginPending.getAndSet(true);
+  }
+
+  /**
+   * Ends a LOGIN started with {@link #beginLogin()} that did not succeed.
+   */
+  public void abandonLogin() {
+    loginPending.set(false);
+  }
+
+  /**
+   * Logs this connection in under {@code username}, claiming the name and binding the connection to it in one
+   * atomic step. A claim answered by another cluster node completes on the bus thread, possibly after the
+   * connection closed, so a login that lost that race is undone here.
    * @param username The username to register.
+   * @return {@code false} if another connection holds the name or this connection was closed.
+   */
+  public boolean registerUser(String username) {
+    User claimed = context.clientManager().claim(username, this);
+    if (claimed == null) {
+      loginPending.set(false);
+      return false;
+    }
+    this.user = claimed;
+    releaseLoginSlot();
+    if (context.cluster() != null) context.cluster().userOnline(username);
+    loginPending.set(false);
+    if (running.get()) return true;
+    // disconnect() may have read the user before it was set and skipped this.
+    if (context.clientManager().release(username, this) && context.cluster() != null) {
+      context.cluster().userOffline(username);
+    }
+    return false;
+  }
+
+  /**
+   * Moves this logged-in connection to a new username.
+   * @return {@code false} if the name is registered or the connection is closing.
    */
-  public void registerUser(String username) {
-    this.user = new User(username, UserStatus.ONLINE, Instant.now());
-    context.clientManager().register(username, this);
+  public boolean rename(String newName) {
+    User current = user;
+    if (current == null || !context.clientManager().rename(current.username(), newName, this)) return false;
+    this.user = new User(newName, current.status(), current.joinedAt());
+    if (running.get()) return true;
+    // disconnect() may have released the old name, which the rename had already given up.
+    context.clientManager().release(newName, this);
+    return false;
   }
 
   public void send(Message message) {
-    if (out != null && running.get()) {
-      String encoded = MessageEncoder.encode(message);
+    if (!running.get()) return;
+
+    if (LoggerUtil.isEnabled(LoggerUtil.Level.INFO)) {
       String to = isLoggedIn() ? getUser().username() : "(unauthenticated)";
       String content = message.content();
       String preview = content == null ? "" : (content.length() <= 120 ? content : content.substring(0, 120) + "...");
@@ -85,11 +362,72 @@ public class ClientHandler implements Runnable {
               " rcpt=" + (message.recipient() == null ? "" : message.recipient()) +
               " content.len=" + (content == null ? 0 : content.length()) +
               " content.preview=\"" + preview + "\"");
+    }
+
+    send(MessageEncoder.encodeFrame(message));
+  }
 
-      out.println(encoded);
+  /**
+   * Queues an already encoded frame for this client. Never blocks.
+   * <p>
+   * Used by fan-out paths (rooms, global broadcast) that encode a message once and
+   * hand the same frame to every recipient, so nothing is re-encoded or logged per member.
+   * If the outbound queue is full, the configured {@link OverflowPolicy} applies.
+   * @param frame The shared, immutable frame to write.
+   */
+  public void send(Frame frame) {
+    if (!running.get()) return;
+    if (outbound.offer(frame)) {
+      ServerMetrics.frameQueued(frame.length());
+      if (frame.trace() != null) DeliveryTracer.queued(frame.trace());
+      connection.frameQueued();
+    } else {
+      ServerMetrics.slowConsumerDisconnected();
+      LoggerUtil.warn("Slow consumer disconnected: " + (isLoggedIn() ? user.username() : "(unauthenticated)") +
+              " queueDepth=" + outbound.depth() + " dropped=" + outbound.droppedCount());
+      disconnect();
+      connection.abort();
     }
   }
 
+  /**
+   * Called by the connection once a traced frame has been written to the socket.
+   * Always called from the connection's single writing thread.
+   */
+  void onWritten(DeliveryTrace trace) {
+    LatencyWindow window = deliveryLatency;
+    if (window == null) deliveryLatency = window = new LatencyWindow();
+    DeliveryTracer.written(trace, window, isLoggedIn() ? user.username() : "(unauthenticated)");
+  }
+
+  /**
+   * @return Recent delivery latencies of traced messages to this client, or {@code null} if none were traced.
+   */
+  public LatencyWindow deliveryLatency() {
+    return deliveryLatency;
+  }
+
+  /**
+   * @return This connection's per-command rate limit buckets.
+   */
+  public TokenBuckets rateBuckets() {
+    return rateBuckets;
+  }
+
+  /**
+   * @return The number of frames waiting to be written to this client.
+   */
+  public int outboundDepth() {
+    return outbound.depth();
+  }
+
+  /**
+   * @return The number of frames dropped for this client because its outbound queue was full.
+   */
+  public long outboundDropped() {
+    return outbound.droppedCount();
+  }
+
   public User getUser() {
     return user;
   }
@@ -104,29 +442,46 @@ public class ClientHandler implements Runnable {
     if (!running.getAndSet(false)) {
       return;
     }
+    ServerMetrics.connectionClosed();
+    HashedWheelTimer.Timeout check = idleCheck;
+    if (check != null) check.cancel();
+    releaseLoginSlot();
+    if (context.admission() != null) context.admission().release(remoteAddress());
 
-    // --- Leave the current room if in one ---
-    if (currentRoom != null) {
-      currentRoom.removeMember(this);
+    // --- Leave every joined room ---
+    currentRoom = null;
+    for (ChatRoom room : rooms.clear()) {
+      room.removeMember(this);
     }
-    // ----------------------------------------
-
-    try {
-      if (user != null) {
-        // We no longer need to broadcast a global departure message here,
-        // as the room departure is more specific.
-        context.clientManager().unregister(user.username());
-        context.userRegistry().unregister(user.username());
-        LoggerUtil.info("Client disconnected: " + user.username());
-      } else {
-        LoggerUtil.info("Client disconnected: (unauthenticated)");
-      }
+    // -------------------------------
 
-      if (socket != null && !socket.isClosed()) {
-        socket.close();
+    User current = user;
+    if (current != null) {
+      // We no longer need to broadcast a global departure message here,
+      // as the room departure is more specific.
+      if (context.clientManager().release(current.username(), this) && context.cluster() != null) {
+        context.cluster().userOffline(current.username());
       }
-    } catch (IOException e) {
-      LoggerUtil.error("Error closing client: " + e.getMessage());
+      LoggerUtil.info("Client disconnected: " + current.username() + " dropped=" + outbound.droppedCount());
+    } else {
+      LoggerUtil.info("Client disconnected: (unauthenticated)");
     }
+
+    // Let the connection flush what is already queued, then close it.
+    connection.close();
+  }
+
+  /**
+   * @return {@code true} until {@link #disconnect()} has been called.
+   */
+  public boolean isConnected() {
+    return running.get();
+  }
+
+  /**
+   * @return The address of the connected peer.
+   */
+  public InetAddress remoteAddress() {
+    return connection.remoteAddress();
   }
 }
@@ -1,37 +1,52 @@
 package io.olmosjt.server;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import io.olmosjt.user.SessionDirectory;
+import io.olmosjt.user.User;
 
 /**
- * Keeps track of active client connections in a thread-safe {@link java.util.concurrent.ConcurrentHashMap}.
+ * The connection side of a {@link SessionDirectory}: which {@link io.olmosjt.server.ClientHandler} is logged in
+ * under each username.
  * <p>
- * Each username is unique and mapped to its active {@link io.olmosjt.server.ClientHandler}.
- * <p>
- * This class is responsible only for connection management, not user identity.
- * Use {@link io.olmosjt.user.UserRegistry} for persistent user metadata.
+ * Use {@link io.olmosjt.user.UserRegistry} for persistent user metadata; both are views of the same directory,
+ * so {@link #claim} registers the user and binds the connection in one atomic step.
  */
 
 public class ClientManager {
-  private final Map<String, ClientHandler> clients = new ConcurrentHashMap<>();
+  private final SessionDirectory sessions;
+
+  public ClientManager() {
+    this(new SessionDirectory());
+  }
+
+  /**
+   * @param sessions The directory shared with the {@link io.olmosjt.user.UserRegistry}.
+   */
+  public ClientManager(SessionDirectory sessions) {
+    this.sessions = sessions;
+  }
 
   /**
-   * Registers a new client handler for a given username.
-   * @param username The unique username.
-   * @param handler The client's handler.
+   * Logs a client in under a username, unless another connection holds it.
+   * @return The user now bound to the name, or {@code null} if it is taken.
    */
-  public void register(String username, ClientHandler handler) {
-    if (username == null || handler == null) return;
-    clients.put(username, handler);
+  public User claim(String username, ClientHandler handler) {
+    return sessions.claim(username, handler);
   }
 
   /**
-   * Removes a client from the active list.
-   * @param username The username to unregister.
+   * Logs a client out, marking its user offline, if it is still the one registered under its username.
+   * @return {@code true} if it was.
    */
-  public void unregister(String username) {
-    if (username == null) return;
-    clients.remove(username);
+  public boolean release(String username, ClientHandler handler) {
+    return sessions.release(username, handler);
+  }
+
+  /**
+   * Moves a logged-in client to a new, unregistered username.
+   * @return {@code false} if the new name is registered or the client no longer holds the old one.
+   */
+  public boolean rename(String oldName, String newName, ClientHandler handler) {
+    return sessions.rename(oldName, newName, handler);
   }
 
   /**
@@ -40,8 +55,7 @@ public class ClientManager {
    * @return The ClientHandler, or null if not found.
    */
   public ClientHandler get(String username) {
-    if (username == null) return null;
-    return clients.get(username);
+    return sessions.client(username);
   }
 
   /**
@@ -50,14 +64,21 @@ public class ClientManager {
    * @return true if the user is connected, false otherwise.
    */
   public boolean isOnline(String username) {
-    return clients.containsKey(username);
+    return sessions.client(username) != null;
+  }
+
+  /**
+   * @return The number of logged-in clients.
+   */
+  public int count() {
+    return sessions.onlineCount();
   }
 
   /**
    * @return An iterable collection of all currently connected client handlers.
    */
   public Iterable<ClientHandler> allClients() {
-    return clients.values();
+    return sessions.clients();
   }
 
 }
@@ -0,0 +1,102 @@
+package io.olmosjt.server;
+
+import io.olmosjt.protocol.WireFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits a non-blocking byte stream into newline-terminated lines.
+ * <p>
+ * Bytes of an unterminated line are kept between reads in a small array that is only allocated
+ * once a client actually sends something. A trailing {@code '\r'} is stripped. Lines longer than
+ * the configured limit are skipped up to the next newline and reported once.
+ * <p>
+ * If a line makes the client leave the {@linkplain WireFormat#TEXT text} format, feeding stops right after
+ * it and the rest of the buffer is left for the next framer.
+ * <p>
+ * Not thread-safe; each instance belongs to a single connection.
+ */
+final class LineFramer {
+
+  interface LineSink {
+    /** A complete line; the array is reused after this call returns. */
+    void onLine(byte[] buf, int off, int len);
+
+    /** A line exceeded the limit and was discarded. */
+    void onOversizedLine();
+
+    /** The format the client's next request is in. */
+    WireFormat inboundFormat();
+  }
+
+  private static final int INITIAL_CAPACITY = 256;
+  private static final int RETAINED_CAPACITY = 4096;
+
+  private final int maxLineBytes;
+  private byte[] line;
+  private int lineLength;
+  private boolean discarding;
+
+  LineFramer(int maxLineBytes) {
+    this.maxLineBytes = maxLineBytes;
+  }
+
+  /**
+   * Consumes all remaining bytes of {@code src}, emitting each complete line to {@code sink}.
+   * @param src A buffer in read mode.
+   */
+  void feed(ByteBuffer src, LineSink sink) {
+    while (src.hasRemaining()) {
+      int start = src.position();
+      int limit = src.limit();
+      int newline = -1;
+      for (int i = start; i < limit; i++) {
+        if (src.get(i) == '\n') {
+          newline = i;
+          break;
+        }
+      }
+      int end = newline < 0 ? limit : newline;
+      int segment = end - start;
+
+      if (!discarding) {
+        if (lineLength + segment > maxLineBytes) {
+          discarding = true;
+          lineLength = 0;
+          sink.onOversizedLine();
+        } else {
+          ensureCapacity(lineLength + segment);
+          src.get(line, lineLength, segment);
+          lineLength += segment;
+        }
+      }
+
+      if (newline < 0) {
+        src.position(limit);
+        return;
+      }
+      src.position(newline + 1);
+
+      if (discarding) {
+        discarding = false;
+      } else {
+        int length = lineLength;
+        if (length > 0 && line[length - 1] == '\r') length--;
+        lineLength = 0;
+        sink.onLine(line, 0, length);
+        if (line.length > RETAINED_CAPACITY) line = null;
+        if (sink.inboundFormat() != WireFormat.TEXT) return;
+      }
+    }
+  }
+
+  private void ensureCapacity(int required) {
+    if (line == null) {
+      line = new byte[Math.max(INITIAL_CAPACITY, required)];
+    } else if (line.length < required) {
+      byte[] grown = new byte[Math.max(line.length * 2, required)];
+      System.arraycopy(line, 0, grown, 0, lineLength);
+      line = grown;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package io.olmosjt.server;
+
+import io.olmosjt.protocol.Frame;
+import io.olmosjt.protocol.WireEncoder;
+import io.olmosjt.protocol.WireFormat;
+import io.olmosjt.trace.DeliveryTrace;
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link ClientConnection} over a non-blocking {@link SocketChannel}, driven by one {@link NioEventLoop}.
+ * <p>
+ * All I/O happens on the loop thread. Queued frames are copied back to back into the loop's shared
+ * direct buffer and written with as few {@code write} calls as possible; only bytes the socket did not
+ * accept are kept per connection until it becomes writable again.
+ */
+final class NioConnection implements ClientConnection, LineFramer.LineSink {
+  /** Buffers written per flush before yielding to other connections on the loop. */
+  private static final int MAX_WRITES_PER_FLUSH = 16;
+
+  private final SocketChannel channel;
+  private final NioEventLoop loop;
+  private final ClientHandler handler;
+  private final RequestFramer framer;
+  private final WireEncoder wire = new WireEncoder();
+  private final InetAddress remoteAddress;
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private volatile boolean closing;
+
+  private SelectionKey key;
+  private Frame current;
+  private int currentOffset;
+  private ByteBuffer unwritten;
+  /** Traced frames taken from the queue for the buffer being written; reported once it is fully written. */
+  private List<DeliveryTrace> traced;
+
+  NioConnection(SocketChannel channel, NioEventLoop loop, ClientHandler handler, int maxLineBytes) throws IOException {
+    this.channel = channel;
+    this.loop = loop;
+    this.handler = handler;
+    this.framer = new RequestFramer(maxLineBytes);
+    this.remoteAddress = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+    handler.attach(this);
+  }
+
+  /**
+   * Registers the channel with the loop's selector. Runs on the loop thread.
+   */
+  void register() {
+    try {
+      key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+      handler.onConnect();
+    } catch (ClosedChannelException e) {
+      handler.disconnect();
+    }
+  }
+
+  void onReadable(ByteBuffer readBuffer) {
+    try {
+      readBuffer.clear();
+      int read = channel.read(readBuffer);
+      if (read < 0) {
+        handler.disconnect();
+        return;
+      }
+      readBuffer.flip();
+      framer.feed(readBuffer, this);
+    } catch (IOException e) {
+      LoggerUtil.debug("Client connection error: " + e.getMessage());
+      closeChannel();
+      handler.disconnect();
+    }
+  }
+
+  @Override
+  public void onLine(byte[] buf, int off, int len) {
+    handler.onLine(buf, off, len);
+  }
+
+  @Override
+  public void onOversizedLine() {
+    handler.onOversizedLine();
+  }
+
+  @Override
+  public WireFormat inboundFormat() {
+    return handler.inboundFormat();
+  }
+
+  /**
+   * Writes queued frames until the queue is empty or the socket stops accepting bytes.
+   * Runs on the loop thread.
+   */
+  void flush() {
+    flushScheduled.set(false);
+    if (!channel.isOpen()) {
+      wire.close();
+      return;
+    }
+    try {
+      if (drain(loop.writeBuffer())) {
+        if (key != null && key.isValid()) key.interestOps(SelectionKey.OP_READ);
+        if (closing) {
+          closeChannel();
+          wire.close();
+        }
+      } else if (key != null && key.isValid()) {
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      }
+    } catch (IOException e) {
+      LoggerUtil.debug("Client write error: " + e.getMessage());
+      closeChannel();
+      wire.close();
+      handler.disconnect();
+    }
+  }
+
+  /**
+   * @return {@code true} once everything queued has been written.
+   */
+  private boolean drain(ByteBuffer buffer) throws IOException {
+    if (unwritten != null) {
+      channel.write(unwritten);
+      if (unwritten.hasRemaining()) return false;
+      unwritten = null;
+      reportWritten();
+    }
+
+    OutboundQueue outbound = handler.outbound();
+    for (int round = 0; round < MAX_WRITES_PER_FLUSH; round++) {
+      buffer.clear();
+      while (buffer.hasRemaining()) {
+        if (current == null) {
+          Frame next = outbound.poll();
+          if (next == null) {
+            // Queue drained: a compressed stream ends the batch with a flush.
+            current = wire.endBatch();
+            if (current == null) break;
+          } else {
+            if (next.trace() != null) {
+              if (traced == null) traced = new ArrayList<>(2);
+              traced.add(next.trace());
+            }
+            current = wire.encode(next);
+            if (current == null) continue;
+          }
+          currentOffset = 0;
+        }
+        currentOffset += current.writeTo(buffer, currentOffset);
+        if (currentOffset == current.length()) current = null;
+      }
+      buffer.flip();
+      if (!buffer.hasRemaining()) return true;
+
+      channel.write(buffer);
+      if (buffer.hasRemaining()) {
+        unwritten = ByteBuffer.allocate(buffer.remaining());
+        unwritten.put(buffer).flip();
+        return false;
+      }
+      reportWritten();
+    }
+    // A compressor may still hold the end of the batch; come back for its flush.
+    return current == null && outbound.depth() == 0 && !wire.compressing();
+  }
+
+  private void reportWritten() {
+    if (traced == null || traced.isEmpty()) return;
+    for (DeliveryTrace trace : traced) handler.onWritten(trace);
+    traced.clear();
+  }
+
+  @Override
+  public void frameQueued() {
+    if (flushScheduled.compareAndSet(false, true)) {
+      loop.execute(this::flush);
+    }
+  }
+
+  @Override
+  public void close() {
+    closing = true;
+    loop.execute(this::flush);
+  }
+
+  @Override
+  public void abort() {
+    closeChannel();
+  }
+
+  @Override
+  public InetAddress remoteAddress() {
+    return remoteAddress;
+  }
+
+  private void closeChannel() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LoggerUtil.error("Error closing client: " + e.getMessage());
+    }
+  }
+}
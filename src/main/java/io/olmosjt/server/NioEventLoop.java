@@ -0,0 +1,94 @@
+package io.olmosjt.server;
+
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single selector thread serving many {@link NioConnection}s.
+ * <p>
+ * Read and write buffers are direct and shared by every connection on the loop, so an idle
+ * connection costs no buffer memory. Work from other threads (registrations, flush requests)
+ * is handed over through a task queue and a selector wakeup.
+ */
+final class NioEventLoop implements Runnable {
+  private final Selector selector;
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final ByteBuffer readBuffer;
+  private final ByteBuffer writeBuffer;
+  private Thread thread;
+
+  NioEventLoop(int readBufferBytes, int writeBufferBytes) throws IOException {
+    this.selector = Selector.open();
+    this.readBuffer = ByteBuffer.allocateDirect(readBufferBytes);
+    this.writeBuffer = ByteBuffer.allocateDirect(writeBufferBytes);
+  }
+
+  void start(String name) {
+    thread = Thread.ofPlatform().name(name).daemon().start(this);
+  }
+
+  /**
+   * Runs a task on the loop thread. Safe to call from any thread.
+   */
+  void execute(Runnable task) {
+    tasks.add(task);
+    if (Thread.currentThread() != thread) {
+      selector.wakeup();
+    }
+  }
+
+  Selector selector() {
+    return selector;
+  }
+
+  ByteBuffer writeBuffer() {
+    return writeBuffer;
+  }
+
+  @Override
+  public void run() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        if (tasks.isEmpty()) {
+          selector.select();
+        } else {
+          selector.selectNow();
+        }
+        processSelectedKeys();
+        runTasks();
+      } catch (IOException e) {
+        LoggerUtil.error("Event loop error: " + e.getMessage());
+      }
+    }
+  }
+
+  private void processSelectedKeys() {
+    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+    while (keys.hasNext()) {
+      SelectionKey key = keys.next();
+      keys.remove();
+      NioConnection connection = (NioConnection) key.attachment();
+      if (!key.isValid()) continue;
+      if (key.isReadable()) connection.onReadable(readBuffer);
+      if (key.isValid() && key.isWritable()) connection.flush();
+    }
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        LoggerUtil.error("Event loop task failed: " + e);
+      }
+    }
+  }
+}
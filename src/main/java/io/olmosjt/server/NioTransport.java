@@ -0,0 +1,66 @@
+package io.olmosjt.server;
+
+import io.olmosjt.ServerContext;
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Selector-based transport: one accept loop hands non-blocking channels round-robin to a fixed set
+ * of {@link NioEventLoop}s, which frame input into lines and write queued frames.
+ * <p>
+ * Commands run on the event loop thread that read them. They must not block; sends only enqueue.
+ * Connections refused by {@link AdmissionControl} are answered and closed by the accept loop before they
+ * reach an event loop.
+ */
+public class NioTransport implements Transport {
+  private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+  @Override
+  public void serve(ServerContext context) throws IOException {
+    ServerConfig config = context.config();
+    NioEventLoop[] loops = new NioEventLoop[config.eventLoopThreads()];
+    for (int i = 0; i < loops.length; i++) {
+      loops[i] = new NioEventLoop(READ_BUFFER_BYTES, config.outbound().writeBufferBytes());
+      loops[i].start("termitalk-nio-" + i);
+    }
+
+    try (ServerSocketChannel server = ServerSocketChannel.open()) {
+      server.bind(new InetSocketAddress(config.port()), config.admission().acceptBacklog());
+      LoggerUtil.info("Listening on port " + config.port() + " (nio transport, " + loops.length + " event loops)");
+
+      int next = 0;
+      while (true) {
+        SocketChannel channel = server.accept();
+        InetAddress address = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+        AdmissionControl admission = context.admission();
+        AdmissionControl.Rejection rejection = admission == null ? null : admission.admit(address);
+        if (rejection != null) {
+          AdmissionControl.shed(channel, rejection);
+          continue;
+        }
+        LoggerUtil.info("New client connected: " + channel.getRemoteAddress());
+        try {
+          channel.configureBlocking(false);
+          NioEventLoop loop = loops[next];
+          next = (next + 1) % loops.length;
+
+          ClientHandler handler = new ClientHandler(context);
+          NioConnection connection = new NioConnection(channel, loop, handler, config.maxLineBytes());
+          loop.execute(connection::register);
+        } catch (IOException e) {
+          LoggerUtil.debug("Failed to set up client channel: " + e.getMessage());
+          channel.close();
+          if (admission != null) {
+            admission.releaseLoginSlot();
+            admission.release(address);
+          }
+        }
+      }
+    }
+  }
+}
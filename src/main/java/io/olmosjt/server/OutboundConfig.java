@@ -0,0 +1,30 @@
+package io.olmosjt.server;
+
+import java.time.Duration;
+
+/**
+ * Settings for the per-client output path.
+ *
+ * @param queueCapacity    Maximum number of frames queued per client before the overflow policy applies.
+ * @param overflowPolicy   What to do with a client whose outbound queue is full.
+ * @param writeBufferBytes Size of the buffer frames are coalesced into before hitting the socket. The blocking
+ *                         transport allocates one per connection only while a burst is being written; the NIO
+ *                         transport shares one per event loop.
+ * @param maxFlushDelay    Upper bound on how long a frame may sit in the buffer while a burst keeps the queue busy.
+ *                         The buffer is always flushed as soon as the queue runs empty.
+ */
+public record OutboundConfig(
+        int queueCapacity,
+        OverflowPolicy overflowPolicy,
+        int writeBufferBytes,
+        Duration maxFlushDelay
+) {
+
+  /**
+   * @return A 1024-frame queue that drops the oldest frames on overflow, an 8 KiB write buffer,
+   *         and a 5 ms flush bound.
+   */
+  public static OutboundConfig defaults() {
+    return new OutboundConfig(1024, OverflowPolicy.DROP_OLDEST, 8 * 1024, Duration.ofMillis(5));
+  }
+}
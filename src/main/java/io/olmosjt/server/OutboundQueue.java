@@ -0,0 +1,101 @@
+package io.olmosjt.server;
+
+import io.olmosjt.protocol.Frame;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded queue of frames waiting to be written to a single client.
+ * <p>
+ * Any thread may offer frames; exactly one writer thread takes them. When the queue is full the
+ * configured {@link OverflowPolicy} decides which frame is lost, so producers never block on a slow reader.
+ * This class is thread-safe.
+ */
+public class OutboundQueue {
+  private final BlockingQueue<Frame> frames;
+  private final int capacity;
+  private final OverflowPolicy policy;
+  private final LongAdder dropped = new LongAdder();
+
+  public OutboundQueue(int capacity, OverflowPolicy policy) {
+    if (capacity < 1) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    this.frames = new ArrayBlockingQueue<>(capacity);
+    this.capacity = capacity;
+    this.policy = policy;
+  }
+
+  /**
+   * Enqueues a frame without blocking, applying the overflow policy if the queue is full.
+   * @param frame The frame to enqueue.
+   * @return {@code false} if the policy is {@link OverflowPolicy#DISCONNECT} and the frame did not fit,
+   *         meaning the caller should disconnect the client; {@code true} otherwise.
+   */
+  public boolean offer(Frame frame) {
+    if (frames.offer(frame)) return true;
+
+    switch (policy) {
+      case DROP_OLDEST -> {
+        do {
+          if (frames.poll() != null) dropped.increment();
+        } while (!frames.offer(frame));
+        return true;
+      }
+      case DROP_NEWEST -> {
+        dropped.increment();
+        return true;
+      }
+      default -> {
+        dropped.increment();
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Enqueues a frame regardless of capacity, evicting the oldest frames if needed.
+   * Used for the end-of-stream marker, which must never be lost.
+   */
+  void force(Frame frame) {
+    while (!frames.offer(frame)) {
+      if (frames.poll() != null) dropped.increment();
+    }
+  }
+
+  /**
+   * Blocks until a frame is available.
+   */
+  public Frame take() throws InterruptedException {
+    return frames.take();
+  }
+
+  /**
+   * @return The next frame, or {@code null} if the queue is empty.
+   */
+  public Frame poll() {
+    return frames.poll();
+  }
+
+  /**
+   * @return The number of frames currently waiting to be written.
+   */
+  public int depth() {
+    return frames.size();
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * @return The total number of frames lost to overflow so far.
+   */
+  public long droppedCount() {
+    return dropped.sum();
+  }
+
+  public OverflowPolicy policy() {
+    return policy;
+  }
+}
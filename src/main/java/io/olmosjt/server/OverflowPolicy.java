@@ -0,0 +1,13 @@
+package io.olmosjt.server;
+
+/**
+ * What a client's outbound queue does when a new frame arrives and the queue is full.
+ */
+public enum OverflowPolicy {
+  /** Evict the oldest queued frame to make room for the new one. */
+  DROP_OLDEST,
+  /** Discard the new frame and keep what is already queued. */
+  DROP_NEWEST,
+  /** Treat the client as a slow consumer and disconnect it. */
+  DISCONNECT
+}
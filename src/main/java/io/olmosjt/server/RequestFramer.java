@@ -0,0 +1,38 @@
+package io.olmosjt.server;
+
+import io.olmosjt.protocol.WireFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frames a connection's inbound requests in whichever {@link WireFormat} the client is using: lines through
+ * a {@link LineFramer} until the client switches to the binary protocol, records through a
+ * {@link BinaryFramer} from the next byte on.
+ * <p>
+ * Not thread-safe; each instance belongs to a single connection.
+ */
+final class RequestFramer {
+  private final int maxRequestBytes;
+  private final LineFramer lines;
+  private BinaryFramer records;
+
+  RequestFramer(int maxRequestBytes) {
+    this.maxRequestBytes = maxRequestBytes;
+    this.lines = new LineFramer(maxRequestBytes);
+  }
+
+  /**
+   * Consumes all remaining bytes of {@code src}, emitting each complete request to {@code sink}.
+   * @param src A buffer in read mode.
+   */
+  void feed(ByteBuffer src, LineFramer.LineSink sink) {
+    if (records == null) {
+      if (sink.inboundFormat() == WireFormat.TEXT) {
+        lines.feed(src, sink);
+        if (!src.hasRemaining() && sink.inboundFormat() == WireFormat.TEXT) return;
+      }
+      records = new BinaryFramer(maxRequestBytes);
+    }
+    records.feed(src, sink);
+  }
+}
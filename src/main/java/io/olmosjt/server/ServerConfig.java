@@ -1,25 +1,146 @@
 package io.olmosjt.server;
 
+import io.olmosjt.cluster.ClusterConfig;
+import io.olmosjt.protocol.CompressionConfig;
+import io.olmosjt.room.HistoryConfig;
+import io.olmosjt.room.RoomLimits;
+import io.olmosjt.state.StateConfig;
+import io.olmosjt.ratelimit.RateLimits;
+import io.olmosjt.store.StoreConfig;
+import io.olmosjt.trace.TraceConfig;
+import io.olmosjt.util.LoggerUtil;
+
+import java.nio.file.Path;
 import java.time.Duration;
 
 /**
  * Immutable server configuration.
  * <p>
  * Holds basic parameters like port, host, timeouts, etc.
+ *
+ * @param clientTimeout    How long a client may go without sending a complete line before it is disconnected;
+ *                         {@link Duration#ZERO} never disconnects idle clients.
+ * @param pingInterval     How long a client may be silent before the server sends it a PING;
+ *                         {@link Duration#ZERO} disables keepalives.
+ * @param transport        How client connections are accepted and served.
+ * @param eventLoopThreads Number of selector threads used by the {@link TransportType#NIO} transport.
+ * @param maxLineBytes     Longest inbound request line accepted; longer lines are discarded and answered with NOK.
+ * @param outbound         Per-client output queue and write coalescing settings.
+ * @param logLevel         Initial minimum log level; can be changed at runtime with the LOG_LEVEL command.
+ * @param history          Default message history limits for rooms.
+ * @param store            Persistent message log settings; disabled unless a directory is set.
+ * @param state            Room and user persistence settings; disabled unless a directory is set.
+ * @param rooms            Room count limits and how long empty rooms are kept.
+ * @param metricsPort      Loopback port serving Prometheus metrics at {@code /metrics}; 0 disables it.
+ * @param trace            Sampling rate and slow threshold for message delivery tracing.
+ * @param limits           Request rate limits per command and user, and the fan-out budget per room.
+ * @param admission        Connection caps, accept backlog and login deadline.
+ * @param cluster          The cluster this node joins; disabled unless a node ID is set.
+ * @param compression      Outbound compression offered to clients that ask for it.
  */
 public record ServerConfig(
         String host,
         int port,
-        Duration clientTimeout
+        Duration clientTimeout,
+        Duration pingInterval,
+        TransportType transport,
+        int eventLoopThreads,
+        int maxLineBytes,
+        OutboundConfig outbound,
+        LoggerUtil.Level logLevel,
+        HistoryConfig history,
+        StoreConfig store,
+        StateConfig state,
+        RoomLimits rooms,
+        int metricsPort,
+        TraceConfig trace,
+        RateLimits limits,
+        AdmissionConfig admission,
+        ClusterConfig cluster,
+        CompressionConfig compression
 ) {
 
   /**
    * Creates and returns a default {@link ServerConfig} instance.
    *
-   * @return A {@link ServerConfig} configured with a host of "127.0.0.1", port 9000, and a timeout of 5 minutes.
+   * @return A {@link ServerConfig} configured with a host of "127.0.0.1", port 9000, an idle timeout of 5 minutes
+   *         with a PING after 1 minute of silence,
+   *         the blocking transport (one event loop per CPU if switched to NIO), 8 KiB lines,
+   *         {@link OutboundConfig#defaults()} for the output path, DEBUG logging
+   *         {@link HistoryConfig#defaults()} for room history, nothing persisted and
+   *         {@link RoomLimits#defaults()} for rooms, metrics on port 9091 and
+   *         {@link TraceConfig#defaults()} for delivery tracing, {@link RateLimits#defaults()},
+   *         {@link AdmissionConfig#defaults()}, no cluster and {@link CompressionConfig#defaults()}.
    */
   public static ServerConfig defaultConfig() {
-    return new ServerConfig("127.0.0.1", 9000, Duration.ofMinutes(5));
+    return new ServerConfig("127.0.0.1", 9000, Duration.ofMinutes(5), Duration.ofMinutes(1),
+            TransportType.BLOCKING, Runtime.getRuntime().availableProcessors(), 8 * 1024,
+            OutboundConfig.defaults(), LoggerUtil.Level.DEBUG, HistoryConfig.defaults(),
+            StoreConfig.disabled(), StateConfig.disabled(), RoomLimits.defaults(), 9091,
+            TraceConfig.defaults(), RateLimits.defaults(), AdmissionConfig.defaults(), ClusterConfig.disabled(),
+            CompressionConfig.defaults());
+  }
+
+  /**
+   * Creates a configuration from {@code termitalk.*} system properties, falling back to
+   * {@link #defaultConfig()} for anything not set.
+   * <p>
+   * Supported properties: {@code termitalk.host}, {@code termitalk.port}, {@code termitalk.idleTimeoutSeconds},
+   * {@code termitalk.pingIntervalSeconds} (0 disables either), {@code termitalk.transport}
+   * ({@code BLOCKING} or {@code NIO}), {@code termitalk.eventLoops}, {@code termitalk.logLevel},
+   * {@code termitalk.history.messages}, {@code termitalk.history.bytes}, {@code termitalk.history.replay}
+   * and {@code termitalk.data.dir}, which enables the persistent message log (in {@code messages/})
+   * and room and user persistence (in {@code state/}), {@code termitalk.rooms.max},
+   * {@code termitalk.rooms.perUser}, {@code termitalk.rooms.perSession}, {@code termitalk.rooms.emptyTtlSeconds}
+   * (0 keeps empty rooms), {@code termitalk.metrics.port} (0 disables metrics), {@code termitalk.trace.sampleRate}
+   * (0 to 1), {@code termitalk.trace.slowMillis}, and the rate limits described in
+   * {@link RateLimits#fromSystemProperties(RateLimits)}, and {@code termitalk.maxConnections},
+   * {@code termitalk.maxConnectionsPerIp}, {@code termitalk.acceptBacklog}, {@code termitalk.maxUnauthenticated} and
+   * {@code termitalk.loginTimeoutSeconds} (0 disables the deadline), and the cluster settings described in
+   * {@link ClusterConfig#fromSystemProperties(ClusterConfig)}, and {@code termitalk.compression.enabled},
+   * {@code termitalk.compression.level} and {@code termitalk.compression.sharedMinBytes}.
+   */
+  public static ServerConfig fromSystemProperties() {
+    ServerConfig d = defaultConfig();
+    String dataDir = System.getProperty("termitalk.data.dir");
+    return new ServerConfig(
+            System.getProperty("termitalk.host", d.host()),
+            Integer.getInteger("termitalk.port", d.port()),
+            Duration.ofSeconds(Long.getLong("termitalk.idleTimeoutSeconds", d.clientTimeout().toSeconds())),
+            Duration.ofSeconds(Long.getLong("termitalk.pingIntervalSeconds", d.pingInterval().toSeconds())),
+            TransportType.valueOf(System.getProperty("termitalk.transport", d.transport().name()).toUpperCase()),
+            Integer.getInteger("termitalk.eventLoops", d.eventLoopThreads()),
+            d.maxLineBytes(),
+            d.outbound(),
+            LoggerUtil.Level.valueOf(System.getProperty("termitalk.logLevel", d.logLevel().name()).toUpperCase()),
+            new HistoryConfig(
+                    Integer.getInteger("termitalk.history.messages", d.history().maxMessages()),
+                    Integer.getInteger("termitalk.history.bytes", d.history().maxBytes()),
+                    Integer.getInteger("termitalk.history.replay", d.history().replayCount())),
+            dataDir == null ? d.store() : StoreConfig.at(Path.of(dataDir, "messages")),
+            dataDir == null ? d.state() : StateConfig.at(Path.of(dataDir, "state")),
+            new RoomLimits(
+                    Integer.getInteger("termitalk.rooms.max", d.rooms().maxRooms()),
+                    Integer.getInteger("termitalk.rooms.perUser", d.rooms().maxRoomsPerUser()),
+                    Integer.getInteger("termitalk.rooms.perSession", d.rooms().maxJoinedRooms()),
+                    Duration.ofSeconds(Long.getLong("termitalk.rooms.emptyTtlSeconds", d.rooms().emptyRoomTtl().toSeconds()))),
+            Integer.getInteger("termitalk.metrics.port", d.metricsPort()),
+            new TraceConfig(
+                    Double.parseDouble(System.getProperty("termitalk.trace.sampleRate", Double.toString(d.trace().sampleRate()))),
+                    Duration.ofMillis(Long.getLong("termitalk.trace.slowMillis", d.trace().slowThreshold().toMillis()))),
+            RateLimits.fromSystemProperties(d.limits()),
+            new AdmissionConfig(
+                    Integer.getInteger("termitalk.maxConnections", d.admission().maxConnections()),
+                    Integer.getInteger("termitalk.maxConnectionsPerIp", d.admission().maxConnectionsPerIp()),
+                    Integer.getInteger("termitalk.acceptBacklog", d.admission().acceptBacklog()),
+                    Integer.getInteger("termitalk.maxUnauthenticated", d.admission().maxUnauthenticated()),
+                    Duration.ofSeconds(Long.getLong("termitalk.loginTimeoutSeconds", d.admission().loginTimeout().toSeconds()))),
+            ClusterConfig.fromSystemProperties(d.cluster()),
+            new CompressionConfig(
+                    Boolean.parseBoolean(System.getProperty("termitalk.compression.enabled",
+                            Boolean.toString(d.compression().enabled()))),
+                    Integer.getInteger("termitalk.compression.level", d.compression().level()),
+                    Integer.getInteger("termitalk.compression.sharedMinBytes", d.compression().sharedMinBytes())));
   }
 
 }
@@ -0,0 +1,174 @@
+package io.olmosjt.server;
+
+import io.olmosjt.message.Message;
+import io.olmosjt.protocol.Frame;
+import io.olmosjt.protocol.MessageEncoder;
+import io.olmosjt.protocol.WireEncoder;
+import io.olmosjt.protocol.WireFormat;
+import io.olmosjt.trace.DeliveryTrace;
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ClientConnection} over a blocking {@link Socket}.
+ * <p>
+ * Runs as the client's reader virtual thread and starts a second virtual thread that drains the
+ * outbound queue. Input is read into a reusable byte buffer and split by a {@link RequestFramer}, so
+ * requests reach the parser as bytes without an intermediate {@code String}. The writer coalesces
+ * everything pending into one buffer and flushes once the queue runs dry (or
+ * {@link OutboundConfig#maxFlushDelay()} passes during a burst), so a burst costs a few socket writes
+ * rather than one per frame.
+ */
+public final class SocketConnection implements ClientConnection, Runnable, LineFramer.LineSink {
+  private static final int READ_BUFFER_BYTES = 8 * 1024;
+
+  /** Queued behind pending frames on close; tells the writer to close the socket. */
+  private static final Frame END_OF_STREAM = MessageEncoder.encodeFrame(Message.serverOk(null, ""));
+
+  private final Socket socket;
+  private final ClientHandler handler;
+  private final OutboundConfig outboundConfig;
+  private final RequestFramer framer;
+  private volatile Thread writer;
+
+  public SocketConnection(Socket socket, ClientHandler handler, ServerConfig config) {
+    this.socket = socket;
+    this.handler = handler;
+    this.outboundConfig = config.outbound();
+    this.framer = new RequestFramer(config.maxLineBytes());
+    handler.attach(this);
+  }
+
+  @Override
+  public void run() {
+    try {
+      InputStream in = socket.getInputStream();
+      OutputStream out = socket.getOutputStream();
+      writer = Thread.startVirtualThread(() -> writeLoop(out));
+
+      handler.onConnect();
+
+      byte[] bytes = new byte[READ_BUFFER_BYTES];
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      int read;
+      while (handler.isConnected() && (read = in.read(bytes)) >= 0) {
+        buffer.limit(read).position(0);
+        framer.feed(buffer, this);
+      }
+    } catch (IOException e) {
+      LoggerUtil.debug("Client connection error: " + e.getMessage());
+    } finally {
+      handler.disconnect();
+    }
+  }
+
+  /**
+   * Drains the outbound queue onto the socket until the end-of-stream marker or a write error.
+   * Runs on the client's writer virtual thread.
+   * <p>
+   * A lone frame goes straight to the socket. Once a second frame is waiting, frames are coalesced into a
+   * buffer of {@link OutboundConfig#writeBufferBytes()} and flushed when the queue is drained, so a burst
+   * is batched into as few writes as the buffer size and flush delay allow. The buffer is dropped whenever
+   * the queue runs dry, so idle connections hold none.
+   */
+  private void writeLoop(OutputStream socketOut) {
+    OutboundQueue outbound = handler.outbound();
+    long maxFlushDelay = outboundConfig.maxFlushDelay().toNanos();
+    List<DeliveryTrace> traced = new ArrayList<>(2);
+    WireEncoder wire = new WireEncoder();
+    OutputStream out = socketOut;
+    try {
+      Frame frame = outbound.take();
+      while (frame != END_OF_STREAM) {
+        long batchStart = System.nanoTime();
+        do {
+          Frame next = outbound.poll();
+          if (next != null && next != END_OF_STREAM && out == socketOut) {
+            out = new BufferedOutputStream(socketOut, outboundConfig.writeBufferBytes());
+          }
+          Frame encoded = wire.encode(frame);
+          if (encoded != null) encoded.writeTo(out);
+          if (frame.trace() != null) traced.add(frame.trace());
+          frame = next;
+        } while (frame != null && frame != END_OF_STREAM && System.nanoTime() - batchStart < maxFlushDelay);
+        Frame rest = wire.endBatch();
+        if (rest != null) rest.writeTo(out);
+        out.flush();
+        if (!traced.isEmpty()) {
+          for (DeliveryTrace trace : traced) handler.onWritten(trace);
+          traced.clear();
+        }
+
+        if (frame == null) {
+          out = socketOut;
+          frame = outbound.take();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      LoggerUtil.debug("Client write error: " + e.getMessage());
+    } finally {
+      wire.close();
+      closeSocket();
+      handler.disconnect();
+    }
+  }
+
+  @Override
+  public void onLine(byte[] buf, int off, int len) {
+    handler.onLine(buf, off, len);
+  }
+
+  @Override
+  public void onOversizedLine() {
+    handler.onOversizedLine();
+  }
+
+  @Override
+  public WireFormat inboundFormat() {
+    return handler.inboundFormat();
+  }
+
+  @Override
+  public void frameQueued() {
+    // The writer is parked on the queue and wakes up by itself.
+  }
+
+  @Override
+  public void close() {
+    if (writer != null) {
+      handler.outbound().force(END_OF_STREAM);
+    } else {
+      closeSocket();
+    }
+  }
+
+  @Override
+  public void abort() {
+    closeSocket();
+    Thread w = writer;
+    if (w != null) w.interrupt();
+  }
+
+  @Override
+  public InetAddress remoteAddress() {
+    return socket.getInetAddress();
+  }
+
+  private void closeSocket() {
+    try {
+      if (!socket.isClosed()) {
+        socket.close();
+      }
+    } catch (IOException e) {
+      LoggerUtil.error("Error closing client: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package io.olmosjt.server;
+
+import io.olmosjt.ServerContext;
+
+import java.io.IOException;
+
+/**
+ * Accepts client connections and feeds their input into {@link ClientHandler}s.
+ * <p>
+ * Selected with {@link ServerConfig#transport()}.
+ */
+public interface Transport {
+
+  /**
+   * Binds to the configured port and serves clients until the server stops.
+   * Blocks the calling thread.
+   * @param context The server context handed to every new session.
+   */
+  void serve(ServerContext context) throws IOException;
+
+  static Transport of(TransportType type) {
+    return switch (type) {
+      case BLOCKING -> new BlockingTransport();
+      case NIO -> new NioTransport();
+    };
+  }
+}
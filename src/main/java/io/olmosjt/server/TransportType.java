@@ -0,0 +1,8 @@
+package io.olmosjt.server;
+
+public enum TransportType {
+  /** One blocking {@link java.net.Socket} per client, read and written on virtual threads. */
+  BLOCKING,
+  /** Non-blocking channels multiplexed over a fixed number of selector event loops. */
+  NIO
+}
@@ -0,0 +1,41 @@
+package io.olmosjt.state;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for persisting rooms and users across restarts.
+ *
+ * @param directory              Where the snapshot and journal files are kept; {@code null} disables persistence.
+ * @param journalRecordsPerSnapshot A new snapshot is taken once the journal holds this many records.
+ * @param snapshotInterval       A new snapshot is also taken after this long if anything was journaled.
+ * @param fsyncInterval          How often journal writes are forced to disk. Journal records reach the OS
+ *                               before the change is acknowledged, so a process crash loses nothing; a machine
+ *                               crash may lose the last interval.
+ */
+public record StateConfig(
+        Path directory,
+        int journalRecordsPerSnapshot,
+        Duration snapshotInterval,
+        Duration fsyncInterval
+) {
+
+  /**
+   * @return Persistence disabled; use {@link #at(Path)} to enable it.
+   */
+  public static StateConfig disabled() {
+    return at(null);
+  }
+
+  /**
+   * @return A snapshot every 50,000 journal records or 10 minutes, and a journal fsync every second,
+   *         stored in {@code directory}.
+   */
+  public static StateConfig at(Path directory) {
+    return new StateConfig(directory, 50_000, Duration.ofMinutes(10), Duration.ofSeconds(1));
+  }
+
+  public boolean enabled() {
+    return directory != null;
+  }
+}
@@ -0,0 +1,35 @@
+package io.olmosjt.state;
+
+/**
+ * Receives the changes to rooms and users that must survive a restart.
+ * <p>
+ * Callers apply a change in memory first and then report it, so a snapshot taken concurrently either
+ * contains the change or is followed by its journal record. Replaying a record is idempotent.
+ */
+public interface StateJournal {
+
+  /** A journal that records nothing. */
+  StateJournal NONE = new StateJournal() {
+    @Override public void roomCreated(int id, String name, String owner, int maxMessages, int maxBytes, int replayCount) {}
+    @Override public void roomRemoved(int id) {}
+    @Override public void roomPinned(int id, boolean pinned) {}
+    @Override public void userSaved(String username, long joinedAt) {}
+    @Override public void userRenamed(String oldName, String newName) {}
+    @Override public void userRemoved(String username) {}
+  };
+
+  /**
+   * @param owner The user who created the room, or {@code null} for the server.
+   */
+  void roomCreated(int id, String name, String owner, int maxMessages, int maxBytes, int replayCount);
+
+  void roomRemoved(int id);
+
+  void roomPinned(int id, boolean pinned);
+
+  void userSaved(String username, long joinedAt);
+
+  void userRenamed(String oldName, String newName);
+
+  void userRemoved(String username);
+}
@@ -0,0 +1,27 @@
+package io.olmosjt.state;
+
+/**
+ * Cost of persisting server state, as reported by {@link StateStore#stats()}.
+ *
+ * @param snapshots          Snapshots written since startup.
+ * @param lastSnapshotMillis How long the last snapshot took to capture and write.
+ * @param lastSnapshotBytes  Size of the last snapshot file.
+ * @param rooms              Rooms in the last snapshot.
+ * @param users              Users in the last snapshot.
+ * @param journalRecords     Journal records written since startup.
+ * @param journalBytes       Journal bytes written since startup.
+ * @param journalNanos       Total time spent writing journal records.
+ * @param recoveryMillis     How long loading the snapshot and replaying the journal took at startup.
+ */
+public record StateStats(
+        long snapshots,
+        long lastSnapshotMillis,
+        long lastSnapshotBytes,
+        int rooms,
+        int users,
+        long journalRecords,
+        long journalBytes,
+        long journalNanos,
+        long recoveryMillis
+) {
+}
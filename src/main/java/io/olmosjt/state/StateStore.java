@@ -0,0 +1,465 @@
+package io.olmosjt.state;
+
+import io.olmosjt.room.ChatRoom;
+import io.olmosjt.room.ChatRoomManager;
+import io.olmosjt.room.HistoryConfig;
+import io.olmosjt.user.User;
+import io.olmosjt.user.UserRegistry;
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Persists rooms and users as a binary snapshot plus a journal of the changes made since.
+ * <p>
+ * Every change reported through {@link StateJournal} is appended to the current journal generation
+ * ({@code journal-<n>.log}) before the command that made it replies. A background thread forces the
+ * journal to disk periodically and takes a new snapshot once enough has been journaled: it switches to
+ * a new journal generation, captures rooms and users into {@code state.snap} (written to a temporary
+ * file and atomically renamed) and deletes the journals the snapshot covers.
+ * <p>
+ * On startup {@link #recover} loads the snapshot and replays the remaining journals, and only then
+ * attaches itself as the journal of the room manager and user registry. Restored users are
+ * {@link io.olmosjt.user.UserStatus#OFFLINE} until someone logs in with their name again.
+ * <p>
+ * Snapshot layout, big-endian: magic {@code TTS2}, int journal generation, int next room id, int room count,
+ * rooms (int id, UTF name, UTF owner or empty, boolean pinned, int max messages, int max bytes,
+ * int replay count), int user count, users (UTF name, long joined-at millis), int CRC32C of everything
+ * before it. Snapshots written before owners and pins were kept ({@code TTS1}, rooms without the owner and
+ * pinned fields) are still read; their rooms come back unowned and unpinned.
+ * Journal records are int length, int CRC32C, then a type byte and the fields of the change.
+ */
+public final class StateStore implements StateJournal, AutoCloseable {
+  private static final int MAGIC_V1 = 0x54545331; // "TTS1", rooms without owner and pin flag
+  private static final int MAGIC = 0x54545332; // "TTS2"
+  private static final String SNAPSHOT = "state.snap";
+
+  private static final byte ROOM_CREATED_V1 = 1;
+  private static final byte USER_SAVED = 2;
+  private static final byte USER_RENAMED = 3;
+  private static final byte USER_REMOVED = 4;
+  private static final byte ROOM_CREATED = 5;
+  private static final byte ROOM_REMOVED = 6;
+  private static final byte ROOM_PINNED = 7;
+
+  private final StateConfig config;
+  private final Object journalLock = new Object();
+  private final CRC32C crc = new CRC32C();
+
+  private FileChannel journal;
+  private int generation;
+  private long recordsSinceSnapshot;
+  private long lastSnapshotAt = System.currentTimeMillis();
+  private boolean unforced;
+
+  private volatile long snapshots;
+  private volatile long lastSnapshotMillis;
+  private volatile long lastSnapshotBytes;
+  private volatile int snapshotRooms;
+  private volatile int snapshotUsers;
+  private volatile long journalRecords;
+  private volatile long journalBytes;
+  private volatile long journalNanos;
+  private volatile long recoveryMillis;
+
+  private volatile boolean running;
+  private Thread background;
+  private ChatRoomManager rooms;
+  private UserRegistry users;
+
+  private StateStore(StateConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * Opens the state directory. Nothing is loaded until {@link #recover} is called.
+   */
+  public static StateStore open(StateConfig config) throws IOException {
+    Files.createDirectories(config.directory());
+    return new StateStore(config);
+  }
+
+  /**
+   * Loads the latest snapshot and replays the journals written after it into {@code rooms} and
+   * {@code users}, then starts journaling into a new generation and starts the background thread.
+   */
+  public void recover(ChatRoomManager rooms, UserRegistry users) throws IOException {
+    long start = System.nanoTime();
+    this.rooms = rooms;
+    this.users = users;
+
+    int firstGeneration = loadSnapshot(rooms, users);
+    int lastGeneration = firstGeneration - 1;
+    long replayed = 0;
+    for (int gen : journalGenerations()) {
+      if (gen < firstGeneration) continue;
+      replayed += replay(journalPath(gen), rooms, users);
+      lastGeneration = gen;
+    }
+
+    synchronized (journalLock) {
+      generation = Math.max(firstGeneration, lastGeneration + 1);
+      journal = openJournal(generation);
+      recordsSinceSnapshot = replayed;
+    }
+    rooms.setJournal(this);
+    users.setJournal(this);
+    recoveryMillis = (System.nanoTime() - start) / 1_000_000;
+    LoggerUtil.info("STATE recovered rooms=" + rooms.roomCount() + " users=" + users.size() +
+            " journalRecords=" + replayed + " took=" + recoveryMillis + "ms");
+
+    running = true;
+    background = Thread.ofPlatform().name("termitalk-state").daemon().start(this::backgroundLoop);
+  }
+
+  /**
+   * Writes a snapshot of the current rooms and users and drops the journals it covers.
+   */
+  public void snapshot() throws IOException {
+    long start = System.nanoTime();
+    int covers;
+    synchronized (journalLock) {
+      journal.force(false);
+      journal.close();
+      generation++;
+      journal = openJournal(generation);
+      covers = generation;
+      recordsSinceSnapshot = 0;
+      lastSnapshotAt = System.currentTimeMillis();
+      unforced = false;
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(MAGIC);
+    out.writeInt(covers);
+    out.writeInt(rooms.nextRoomId());
+    List<ChatRoom> roomList = rooms.allRooms();
+    out.writeInt(roomList.size());
+    for (ChatRoom room : roomList) {
+      HistoryConfig history = room.historyConfig();
+      out.writeInt(room.getId());
+      writeUtf(out, room.getName());
+      writeUtf(out, room.owner() == null ? "" : room.owner());
+      out.writeBoolean(room.isPinned());
+      out.writeInt(history.maxMessages());
+      out.writeInt(history.maxBytes());
+      out.writeInt(history.replayCount());
+    }
+    List<User> userList = List.copyOf(users.allUsers().values());
+    out.writeInt(userList.size());
+    for (User user : userList) {
+      writeUtf(out, user.username());
+      out.writeLong(user.joinedAt().toEpochMilli());
+    }
+    CRC32C snapshotCrc = new CRC32C();
+    snapshotCrc.update(bytes.toByteArray());
+    out.writeInt((int) snapshotCrc.getValue());
+
+    Path tmp = config.directory().resolve(SNAPSHOT + ".tmp");
+    try (FileChannel channel = FileChannel.open(tmp,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+      while (buffer.hasRemaining()) channel.write(buffer);
+      channel.force(true);
+    }
+    Path target = config.directory().resolve(SNAPSHOT);
+    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+    for (int gen : journalGenerations()) {
+      if (gen < covers) Files.deleteIfExists(journalPath(gen));
+    }
+
+    lastSnapshotBytes = Files.size(target);
+    lastSnapshotMillis = (System.nanoTime() - start) / 1_000_000;
+    snapshotRooms = roomList.size();
+    snapshotUsers = userList.size();
+    snapshots++;
+    LoggerUtil.info("STATE snapshot rooms=" + roomList.size() + " users=" + userList.size() +
+            " bytes=" + lastSnapshotBytes + " took=" + lastSnapshotMillis + "ms");
+  }
+
+  public StateStats stats() {
+    return new StateStats(snapshots, lastSnapshotMillis, lastSnapshotBytes, snapshotRooms, snapshotUsers,
+            journalRecords, journalBytes, journalNanos, recoveryMillis);
+  }
+
+  /**
+   * Takes a final snapshot and closes the journal.
+   */
+  @Override
+  public void close() {
+    if (!running) return;
+    running = false;
+    background.interrupt();
+    try {
+      background.join();
+      snapshot();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      LoggerUtil.error("STATE final snapshot failed: " + e.getMessage());
+    }
+    synchronized (journalLock) {
+      try {
+        journal.force(false);
+        journal.close();
+      } catch (IOException e) {
+        LoggerUtil.error("STATE closing journal failed: " + e.getMessage());
+      }
+    }
+  }
+
+  // ---- StateJournal ----
+
+  @Override
+  public void roomCreated(int id, String name, String owner, int maxMessages, int maxBytes, int replayCount) {
+    write(out -> {
+      out.writeByte(ROOM_CREATED);
+      out.writeInt(id);
+      writeUtf(out, name);
+      writeUtf(out, owner == null ? "" : owner);
+      out.writeInt(maxMessages);
+      out.writeInt(maxBytes);
+      out.writeInt(replayCount);
+    });
+  }
+
+  @Override
+  public void roomRemoved(int id) {
+    write(out -> {
+      out.writeByte(ROOM_REMOVED);
+      out.writeInt(id);
+    });
+  }
+
+  @Override
+  public void roomPinned(int id, boolean pinned) {
+    write(out -> {
+      out.writeByte(ROOM_PINNED);
+      out.writeInt(id);
+      out.writeBoolean(pinned);
+    });
+  }
+
+  @Override
+  public void userSaved(String username, long joinedAt) {
+    write(out -> {
+      out.writeByte(USER_SAVED);
+      writeUtf(out, username);
+      out.writeLong(joinedAt);
+    });
+  }
+
+  @Override
+  public void userRenamed(String oldName, String newName) {
+    write(out -> {
+      out.writeByte(USER_RENAMED);
+      writeUtf(out, oldName);
+      writeUtf(out, newName);
+    });
+  }
+
+  @Override
+  public void userRemoved(String username) {
+    write(out -> {
+      out.writeByte(USER_REMOVED);
+      writeUtf(out, username);
+    });
+  }
+
+  private interface RecordWriter {
+    void writeTo(DataOutputStream out) throws IOException;
+  }
+
+  private void write(RecordWriter record) {
+    long start = System.nanoTime();
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(0);
+      out.writeInt(0);
+      record.writeTo(out);
+      ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+      int bodyLength = buffer.capacity() - 8;
+      synchronized (journalLock) {
+        crc.reset();
+        crc.update(buffer.array(), 8, bodyLength);
+        buffer.putInt(0, bodyLength);
+        buffer.putInt(4, (int) crc.getValue());
+        while (buffer.hasRemaining()) journal.write(buffer);
+        recordsSinceSnapshot++;
+        unforced = true;
+        journalRecords++;
+        journalBytes += buffer.capacity();
+        journalNanos += System.nanoTime() - start;
+      }
+    } catch (IOException e) {
+      LoggerUtil.error("STATE journal write failed: " + e.getMessage());
+    }
+  }
+
+  // ---- background ----
+
+  private void backgroundLoop() {
+    long fsyncMillis = Math.max(1, config.fsyncInterval().toMillis());
+    while (running) {
+      try {
+        Thread.sleep(fsyncMillis);
+      } catch (InterruptedException e) {
+        return;
+      }
+      boolean due;
+      synchronized (journalLock) {
+        try {
+          if (unforced) {
+            journal.force(false);
+            unforced = false;
+          }
+        } catch (IOException e) {
+          LoggerUtil.error("STATE journal fsync failed: " + e.getMessage());
+        }
+        due = recordsSinceSnapshot >= config.journalRecordsPerSnapshot() || (recordsSinceSnapshot > 0 &&
+                System.currentTimeMillis() - lastSnapshotAt >= config.snapshotInterval().toMillis());
+      }
+      if (due) {
+        try {
+          snapshot();
+        } catch (IOException e) {
+          LoggerUtil.error("STATE snapshot failed: " + e.getMessage());
+        }
+      }
+    }
+  }
+
+  // ---- recovery ----
+
+  private int loadSnapshot(ChatRoomManager rooms, UserRegistry users) throws IOException {
+    Path path = config.directory().resolve(SNAPSHOT);
+    if (!Files.exists(path)) return 1;
+    ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+    CRC32C check = new CRC32C();
+    check.update(in.array(), 0, Math.max(0, in.capacity() - 4));
+    int magic = in.capacity() < 20 ? 0 : in.getInt(0);
+    if ((magic != MAGIC && magic != MAGIC_V1) || in.getInt(in.capacity() - 4) != (int) check.getValue()) {
+      throw new IOException("Snapshot " + path + " is corrupt");
+    }
+    in.position(4);
+    int generation = in.getInt();
+    int nextRoomId = in.getInt();
+    HistoryConfig defaults = rooms.historyDefaults();
+    int roomCount = in.getInt();
+    for (int i = 0; i < roomCount; i++) {
+      int id = in.getInt();
+      String name = readUtf(in);
+      String owner = magic == MAGIC_V1 ? null : owner(readUtf(in));
+      boolean pinned = magic != MAGIC_V1 && in.get() != 0;
+      HistoryConfig history = history(defaults, in.getInt(), in.getInt(), in.getInt());
+      rooms.restoreRoom(id, name, history, owner, pinned);
+    }
+    int userCount = in.getInt();
+    for (int i = 0; i < userCount; i++) {
+      users.restore(readUtf(in), in.getLong());
+    }
+    rooms.advanceRoomId(nextRoomId);
+    return generation;
+  }
+
+  private long replay(Path path, ChatRoomManager rooms, UserRegistry users) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+    CRC32C check = new CRC32C();
+    HistoryConfig defaults = rooms.historyDefaults();
+    long records = 0;
+    while (in.remaining() >= 9) {
+      int start = in.position();
+      int length = in.getInt();
+      int expected = in.getInt();
+      if (length <= 0 || length > in.remaining()) break;
+      check.reset();
+      check.update(in.array(), start + 8, length);
+      if ((int) check.getValue() != expected) break;
+      int end = start + 8 + length;
+      switch (in.get()) {
+        case ROOM_CREATED_V1 -> {
+          int id = in.getInt();
+          String name = readUtf(in);
+          rooms.restoreRoom(id, name, history(defaults, in.getInt(), in.getInt(), in.getInt()), null, false);
+        }
+        case ROOM_CREATED -> {
+          int id = in.getInt();
+          String name = readUtf(in);
+          String owner = owner(readUtf(in));
+          rooms.restoreRoom(id, name, history(defaults, in.getInt(), in.getInt(), in.getInt()), owner, false);
+        }
+        case ROOM_REMOVED -> rooms.removeRoom(in.getInt());
+        case ROOM_PINNED -> rooms.restorePinned(in.getInt(), in.get() != 0);
+        case USER_SAVED -> users.restore(readUtf(in), in.getLong());
+        case USER_RENAMED -> users.rename(readUtf(in), readUtf(in));
+        case USER_REMOVED -> users.unregister(readUtf(in));
+        default -> LoggerUtil.warn("STATE unknown journal record in " + path.getFileName());
+      }
+      in.position(end);
+      records++;
+    }
+    if (in.hasRemaining()) {
+      LoggerUtil.warn("STATE ignored " + in.remaining() + " trailing bytes in " + path.getFileName());
+    }
+    return records;
+  }
+
+  private static HistoryConfig history(HistoryConfig defaults, int maxMessages, int maxBytes, int replayCount) {
+    if (defaults.maxMessages() == maxMessages && defaults.maxBytes() == maxBytes
+            && defaults.replayCount() == replayCount) {
+      return defaults;
+    }
+    return new HistoryConfig(maxMessages, maxBytes, replayCount);
+  }
+
+  private static String owner(String value) {
+    return value.isEmpty() ? null : value;
+  }
+
+  private static void writeUtf(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readUtf(ByteBuffer in) {
+    int length = Short.toUnsignedInt(in.getShort());
+    String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+
+  private List<Integer> journalGenerations() throws IOException {
+    try (Stream<Path> files = Files.list(config.directory())) {
+      return files.map(p -> p.getFileName().toString())
+              .filter(n -> n.matches("journal-\\d{10}\\.log"))
+              .map(n -> Integer.parseInt(n.substring(8, 18)))
+              .sorted()
+              .toList();
+    }
+  }
+
+  private Path journalPath(int generation) {
+    return config.directory().resolve(String.format("journal-%010d.log", generation));
+  }
+
+  private FileChannel openJournal(int generation) throws IOException {
+    return FileChannel.open(journalPath(generation),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+}
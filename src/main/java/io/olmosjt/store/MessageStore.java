@@ -0,0 +1,73 @@
+package io.olmosjt.store;
+
+import io.olmosjt.protocol.Frame;
+
+import java.util.List;
+
+/**
+ * Persistent record of delivered messages.
+ * <p>
+ * {@link #append} and {@link #appendPrivate} are called from the delivery path and must never block;
+ * implementations queue the frame and persist it in the background.
+ */
+public interface MessageStore extends AutoCloseable {
+
+  /** Stream id used for private messages, which do not belong to a room. Room ids start at 100. */
+  int PRIVATE_STREAM = 0;
+
+  /** A store that keeps nothing. */
+  MessageStore NONE = new MessageStore() {
+    @Override public void append(int roomId, long sequence, Frame frame) {}
+    @Override public void appendPrivate(Frame frame) {}
+    @Override public List<StoredMessage> read(int roomId, long fromSequence, int max) { return List.of(); }
+    @Override public List<StoredMessage> readFrom(long timestamp, int max) { return List.of(); }
+    @Override public long lastSequence(int roomId) { return 0; }
+    @Override public void sync() {}
+    @Override public long droppedCount() { return 0; }
+    @Override public void close() {}
+  };
+
+  /**
+   * Queues a room message.
+   * @param roomId   The room it was broadcast to.
+   * @param sequence Its sequence number within the room.
+   * @param frame    The encoded message.
+   */
+  void append(int roomId, long sequence, Frame frame);
+
+  /**
+   * Queues a private message; the store numbers private messages itself.
+   * @param frame The encoded message.
+   */
+  void appendPrivate(Frame frame);
+
+  /**
+   * Reads the messages of a room with sequence numbers from {@code fromSequence} to
+   * {@code fromSequence + max - 1}, oldest first. Only messages already written are visible.
+   */
+  List<StoredMessage> read(int roomId, long fromSequence, int max);
+
+  /**
+   * Reads up to {@code max} messages of any stream, in write order, starting at the first one
+   * created at or after {@code timestamp} (epoch milliseconds).
+   */
+  List<StoredMessage> readFrom(long timestamp, int max);
+
+  /**
+   * @return The highest sequence number stored for the room, or 0 if none.
+   */
+  long lastSequence(int roomId);
+
+  /**
+   * Blocks until everything queued before the call is written and forced to disk.
+   */
+  void sync();
+
+  /**
+   * @return The number of messages dropped because the write queue was full.
+   */
+  long droppedCount();
+
+  @Override
+  void close();
+}
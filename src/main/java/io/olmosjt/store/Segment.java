@@ -0,0 +1,185 @@
+package io.olmosjt.store;
+
+import io.olmosjt.protocol.Frame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped file of the message log.
+ * <p>
+ * A record is laid out as
+ * <pre>
+ *   int  bodyLength   (0 marks the end of the segment)
+ *   int  crc32c(body)
+ *   body:
+ *     int  roomId
+ *     long sequence
+ *     long timestamp
+ *     int  previous segment id  \ location of the previous record of the same room,
+ *     int  previous offset      / or -1 if there is none
+ *     byte[] line
+ * </pre>
+ * Only the writer thread writes, always with absolute puts; readers see bytes up to {@link #committed()}.
+ */
+final class Segment {
+  static final int HEADER_BYTES = 8;
+  static final int BODY_FIXED_BYTES = 28;
+  static final int OVERHEAD = HEADER_BYTES + BODY_FIXED_BYTES;
+
+  private final int id;
+  private final Path path;
+  private final MappedByteBuffer buffer;
+  private volatile int committed;
+  private volatile long lastTimestamp;
+  private volatile boolean deleted;
+
+  private Segment(int id, Path path, MappedByteBuffer buffer) {
+    this.id = id;
+    this.path = path;
+    this.buffer = buffer;
+  }
+
+  static Path fileName(Path directory, int id) {
+    return directory.resolve(String.format("%010d.log", id));
+  }
+
+  /**
+   * Creates, or opens if present, the segment file and maps it writable.
+   */
+  static Segment open(Path directory, int id, int sizeBytes) throws IOException {
+    Path path = fileName(directory, id);
+    try (FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      long size = Math.max(channel.size(), sizeBytes);
+      return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+  }
+
+  int id() {
+    return id;
+  }
+
+  Path path() {
+    return path;
+  }
+
+  int capacity() {
+    return buffer.capacity();
+  }
+
+  int committed() {
+    return committed;
+  }
+
+  long lastTimestamp() {
+    return lastTimestamp;
+  }
+
+  boolean isDeleted() {
+    return deleted;
+  }
+
+  void markDeleted() {
+    deleted = true;
+  }
+
+  /**
+   * Writes one record at {@code offset}. Visible to readers only after {@link #commit(int, long)}.
+   * @return The offset just past the record.
+   */
+  int write(int offset, int roomId, long sequence, long timestamp, int prevSegment, int prevOffset,
+            Frame frame, CRC32C crc) {
+    int bodyLength = BODY_FIXED_BYTES + frame.length();
+    int body = offset + HEADER_BYTES;
+    buffer.putInt(body, roomId);
+    buffer.putLong(body + 4, sequence);
+    buffer.putLong(body + 12, timestamp);
+    buffer.putInt(body + 20, prevSegment);
+    buffer.putInt(body + 24, prevOffset);
+    frame.writeTo(buffer.slice(body + BODY_FIXED_BYTES, frame.length()), 0);
+    crc.reset();
+    crc.update(buffer.slice(body, bodyLength));
+    buffer.putInt(offset + 4, (int) crc.getValue());
+    buffer.putInt(offset, bodyLength);
+    return body + bodyLength;
+  }
+
+  void commit(int position, long timestamp) {
+    lastTimestamp = timestamp;
+    committed = position;
+  }
+
+  void force() {
+    buffer.force();
+  }
+
+  /**
+   * Validates the record at {@code offset} during recovery.
+   * @return The offset just past it, or -1 if there is no complete, intact record there.
+   */
+  int validate(int offset, CRC32C crc) {
+    if (offset + OVERHEAD > buffer.capacity()) return -1;
+    int bodyLength = buffer.getInt(offset);
+    if (bodyLength < BODY_FIXED_BYTES || offset + HEADER_BYTES + bodyLength > buffer.capacity()) return -1;
+    crc.reset();
+    crc.update(buffer.slice(offset + HEADER_BYTES, bodyLength));
+    if ((int) crc.getValue() != buffer.getInt(offset + 4)) return -1;
+    return offset + HEADER_BYTES + bodyLength;
+  }
+
+  int nextOffset(int offset) {
+    return offset + HEADER_BYTES + buffer.getInt(offset);
+  }
+
+  int roomId(int offset) {
+    return buffer.getInt(offset + HEADER_BYTES);
+  }
+
+  long sequence(int offset) {
+    return buffer.getLong(offset + HEADER_BYTES + 4);
+  }
+
+  long timestamp(int offset) {
+    return buffer.getLong(offset + HEADER_BYTES + 12);
+  }
+
+  int prevSegment(int offset) {
+    return buffer.getInt(offset + HEADER_BYTES + 20);
+  }
+
+  int prevOffset(int offset) {
+    return buffer.getInt(offset + HEADER_BYTES + 24);
+  }
+
+  StoredMessage read(int offset) {
+    int bodyLength = buffer.getInt(offset);
+    byte[] line = new byte[bodyLength - BODY_FIXED_BYTES];
+    buffer.get(offset + OVERHEAD, line);
+    return new StoredMessage(roomId(offset), sequence(offset), timestamp(offset), line);
+  }
+
+  /**
+   * Zeroes the bytes from {@code offset} on, so a torn record left by a crash is not mistaken for data.
+   */
+  void truncate(int offset) {
+    ByteBuffer zeros = ByteBuffer.allocate(Math.min(64 * 1024, Math.max(1, buffer.capacity() - offset)));
+    for (int pos = offset; pos < buffer.capacity(); pos += zeros.capacity()) {
+      int n = Math.min(zeros.capacity(), buffer.capacity() - pos);
+      if (isZero(pos, n)) break;
+      buffer.put(pos, zeros, 0, n);
+    }
+  }
+
+  private boolean isZero(int pos, int n) {
+    for (int i = 0; i < n; i++) {
+      if (buffer.get(pos + i) != 0) return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,375 @@
+package io.olmosjt.store;
+
+import io.olmosjt.protocol.Frame;
+import io.olmosjt.util.LoggerUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only message log kept in memory-mapped segment files.
+ * <p>
+ * Producers only offer to a bounded queue. A single writer thread drains it in batches, copies each
+ * record into the active segment, publishes the new end of data to readers, and forces the mapping to
+ * disk according to {@link StoreConfig#fsyncInterval()}; everything drained in one batch shares a single
+ * force (group commit). When a record does not fit, a new segment is started and retention is applied
+ * to the old ones. The writer also checks retention on every wake-up, at least every 100 ms, so a quiet
+ * server still drops expired segments. An active segment whose newest record has expired is rolled so
+ * that it can be dropped too.
+ * <p>
+ * Each record links back to the previous record of the same room. Two sparse in-memory indexes, rebuilt
+ * from the segments on startup, point into the log: per room, every n-th sequence number, and overall,
+ * every n-th record by timestamp. A read by sequence starts at the nearest indexed record at or after the
+ * end of the range and follows the back links; a read by time starts at the nearest indexed record before
+ * the timestamp and scans forward.
+ */
+public final class SegmentedMessageStore implements MessageStore {
+  private static final int BATCH = 1024;
+
+  private record Position(Segment segment, int offset) {}
+
+  private record Pending(int roomId, long sequence, Frame frame, CountDownLatch synced) {}
+
+  private static final class RoomIndex {
+    final ConcurrentSkipListMap<Long, Position> entries = new ConcurrentSkipListMap<>();
+    volatile Position last;
+    volatile long lastSequence;
+    long count;
+  }
+
+  private final StoreConfig config;
+  private final BlockingQueue<Pending> queue;
+  private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+  private final Map<Integer, RoomIndex> rooms = new ConcurrentHashMap<>();
+  private final ConcurrentSkipListMap<Long, Position> timeIndex = new ConcurrentSkipListMap<>();
+  private final LongAdder dropped = new LongAdder();
+  private final CRC32C crc = new CRC32C();
+  private final Thread writer;
+
+  // writer thread state
+  private Segment active;
+  private int position;
+  private long recordCount;
+  private long lastIndexedTimestamp;
+  private long privateSequence;
+  private long lastForce;
+  private boolean dirty;
+  private volatile boolean running = true;
+
+  private SegmentedMessageStore(StoreConfig config) {
+    this.config = config;
+    this.queue = new ArrayBlockingQueue<>(config.queueCapacity());
+    this.writer = Thread.ofPlatform().name("termitalk-store-writer").daemon().unstarted(this::writeLoop);
+  }
+
+  /**
+   * Opens the log in {@link StoreConfig#directory()}, recovering existing segments, and starts the writer.
+   */
+  public static SegmentedMessageStore open(StoreConfig config) throws IOException {
+    Files.createDirectories(config.directory());
+    SegmentedMessageStore store = new SegmentedMessageStore(config);
+    store.recover();
+    store.writer.start();
+    return store;
+  }
+
+  @Override
+  public void append(int roomId, long sequence, Frame frame) {
+    if (!queue.offer(new Pending(roomId, sequence, frame, null))) dropped.increment();
+  }
+
+  @Override
+  public void appendPrivate(Frame frame) {
+    append(PRIVATE_STREAM, 0, frame);
+  }
+
+  @Override
+  public List<StoredMessage> read(int roomId, long fromSequence, int max) {
+    RoomIndex index = rooms.get(roomId);
+    if (index == null || max <= 0 || fromSequence > index.lastSequence) return List.of();
+    long toSequence = fromSequence + max - 1;
+    Map.Entry<Long, Position> start = index.entries.ceilingEntry(toSequence);
+    Position pos = start != null ? start.getValue() : index.last;
+
+    List<StoredMessage> result = new ArrayList<>(Math.min(max, 256));
+    while (pos != null && !pos.segment().isDeleted()) {
+      Segment segment = pos.segment();
+      int offset = pos.offset();
+      long sequence = segment.sequence(offset);
+      if (sequence < fromSequence) break;
+      if (sequence <= toSequence) result.add(segment.read(offset));
+      pos = previous(segment, offset);
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
+  @Override
+  public List<StoredMessage> readFrom(long timestamp, int max) {
+    Map.Entry<Long, Position> start = timeIndex.floorEntry(timestamp);
+    if (start == null) start = timeIndex.firstEntry();
+    if (start == null || max <= 0) return List.of();
+
+    List<StoredMessage> result = new ArrayList<>(Math.min(max, 256));
+    Segment segment = start.getValue().segment();
+    int offset = start.getValue().offset();
+    while (segment != null && result.size() < max) {
+      if (segment.isDeleted()) {
+        segment = next(segment);
+        offset = 0;
+        continue;
+      }
+      int committed = segment.committed();
+      while (offset < committed && result.size() < max) {
+        if (segment.timestamp(offset) >= timestamp) result.add(segment.read(offset));
+        offset = segment.nextOffset(offset);
+      }
+      segment = next(segment);
+      offset = 0;
+    }
+    return result;
+  }
+
+  @Override
+  public long lastSequence(int roomId) {
+    RoomIndex index = rooms.get(roomId);
+    return index == null ? 0 : index.lastSequence;
+  }
+
+  @Override
+  public void sync() {
+    if (!writer.isAlive()) return;
+    CountDownLatch latch = new CountDownLatch(1);
+    try {
+      queue.put(new Pending(0, 0, null, latch));
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public long droppedCount() {
+    return dropped.sum();
+  }
+
+  /**
+   * @return The number of segment files currently kept.
+   */
+  public int segmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Writes everything still queued, forces it to disk and stops the writer.
+   */
+  @Override
+  public void close() {
+    if (!running) return;
+    running = false;
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private Position previous(Segment segment, int offset) {
+    int prevSegment = segment.prevSegment(offset);
+    if (prevSegment < 0) return null;
+    Segment prev = prevSegment == segment.id() ? segment : segments.get(prevSegment);
+    return prev == null ? null : new Position(prev, segment.prevOffset(offset));
+  }
+
+  private Segment next(Segment segment) {
+    Map.Entry<Integer, Segment> next = segments.higherEntry(segment.id());
+    return next == null ? null : next.getValue();
+  }
+
+  // ---- writer thread ----
+
+  private void writeLoop() {
+    List<Pending> batch = new ArrayList<>(BATCH);
+    List<CountDownLatch> synced = new ArrayList<>();
+    while (running || !queue.isEmpty()) {
+      try {
+        Pending first = queue.poll(fsyncWait(), TimeUnit.MILLISECONDS);
+        if (first != null) {
+          batch.add(first);
+          queue.drainTo(batch, BATCH - 1);
+        }
+        for (Pending pending : batch) {
+          if (pending.synced() != null) {
+            synced.add(pending.synced());
+          } else {
+            write(pending);
+          }
+        }
+        batch.clear();
+        if (dirty) active.commit(position, lastIndexedTimestamp);
+        maybeForce(!synced.isEmpty() || !running);
+        expire();
+        for (CountDownLatch latch : synced) latch.countDown();
+        synced.clear();
+      } catch (InterruptedException e) {
+        running = false;
+      } catch (IOException | RuntimeException e) {
+        LoggerUtil.error("STORE write failed: " + e.getMessage());
+        for (Pending pending : batch) {
+          if (pending.synced() != null) pending.synced().countDown();
+        }
+        batch.clear();
+      }
+    }
+    maybeForce(true);
+    for (Pending pending : queue) {
+      if (pending.synced() != null) pending.synced().countDown();
+    }
+  }
+
+  private long fsyncWait() {
+    long interval = config.fsyncInterval().toMillis();
+    return dirty && interval > 0 ? Math.max(1, interval - (System.currentTimeMillis() - lastForce)) : 100;
+  }
+
+  private void maybeForce(boolean now) {
+    if (!dirty) return;
+    long nowMillis = System.currentTimeMillis();
+    if (now || nowMillis - lastForce >= config.fsyncInterval().toMillis()) {
+      active.force();
+      lastForce = nowMillis;
+      dirty = false;
+    }
+  }
+
+  private void write(Pending pending) throws IOException {
+    Frame frame = pending.frame();
+    int size = Segment.OVERHEAD + frame.length();
+    if (size > config.segmentBytes() - Segment.HEADER_BYTES) {
+      dropped.increment();
+      return;
+    }
+    if (position + size + Segment.HEADER_BYTES > active.capacity()) roll();
+
+    int roomId = pending.roomId();
+    long sequence = roomId == PRIVATE_STREAM ? ++privateSequence : pending.sequence();
+    long timestamp = Math.max(frame.message().timestamp().toEpochMilli(), lastIndexedTimestamp);
+    RoomIndex room = rooms.computeIfAbsent(roomId, id -> new RoomIndex());
+    Position prev = room.last;
+    int offset = position;
+    position = active.write(offset, roomId, sequence, timestamp,
+            prev == null ? -1 : prev.segment().id(), prev == null ? -1 : prev.offset(), frame, crc);
+    dirty = true;
+    index(room, new Position(active, offset), sequence, timestamp);
+  }
+
+  private void index(RoomIndex room, Position pos, long sequence, long timestamp) {
+    int interval = config.indexInterval();
+    if (room.count++ % interval == 0) room.entries.put(sequence, pos);
+    room.last = pos;
+    room.lastSequence = Math.max(room.lastSequence, sequence);
+    if (recordCount++ % interval == 0) timeIndex.putIfAbsent(timestamp, pos);
+    lastIndexedTimestamp = timestamp;
+  }
+
+  private void roll() throws IOException {
+    Segment previous = active;
+    previous.commit(position, lastIndexedTimestamp);
+    previous.force();
+    active = Segment.open(config.directory(), previous.id() + 1, config.segmentBytes());
+    segments.put(active.id(), active);
+    position = 0;
+    // an index entry at the start of every segment bounds forward scans
+    timeIndex.putIfAbsent(lastIndexedTimestamp, new Position(active, 0));
+    applyRetention();
+  }
+
+  /**
+   * Applies the age limit without waiting for the active segment to fill.
+   */
+  private void expire() throws IOException {
+    if (position > 0 && active.lastTimestamp() < System.currentTimeMillis() - config.retention().toMillis()) {
+      roll();
+    } else if (segments.size() > 1) {
+      applyRetention();
+    }
+  }
+
+  private void applyRetention() {
+    long cutoff = System.currentTimeMillis() - config.retention().toMillis();
+    while (segments.size() > 1) {
+      Segment oldest = segments.firstEntry().getValue();
+      if (segments.size() <= config.maxSegments() && oldest.lastTimestamp() >= cutoff) break;
+      segments.remove(oldest.id());
+      oldest.markDeleted();
+      timeIndex.values().removeIf(p -> p.segment() == oldest);
+      for (RoomIndex room : rooms.values()) {
+        ConcurrentNavigableMap<Long, Position> entries = room.entries;
+        entries.values().removeIf(p -> p.segment() == oldest);
+      }
+      try {
+        Files.deleteIfExists(oldest.path());
+        LoggerUtil.info("STORE deleted segment " + oldest.path().getFileName());
+      } catch (IOException e) {
+        LoggerUtil.warn("STORE could not delete " + oldest.path() + ": " + e.getMessage());
+      }
+    }
+  }
+
+  // ---- startup ----
+
+  private void recover() throws IOException {
+    List<Integer> ids;
+    try (Stream<Path> files = Files.list(config.directory())) {
+      ids = files.map(p -> p.getFileName().toString())
+              .filter(n -> n.matches("\\d{10}\\.log"))
+              .map(n -> Integer.parseInt(n.substring(0, 10)))
+              .sorted()
+              .toList();
+    }
+    long records = 0;
+    for (int id : ids) {
+      Segment segment = Segment.open(config.directory(), id, 0);
+      segments.put(id, segment);
+      int offset = 0;
+      int end;
+      while ((end = segment.validate(offset, crc)) > 0) {
+        int roomId = segment.roomId(offset);
+        long sequence = segment.sequence(offset);
+        if (roomId == PRIVATE_STREAM) privateSequence = Math.max(privateSequence, sequence);
+        index(rooms.computeIfAbsent(roomId, r -> new RoomIndex()), new Position(segment, offset),
+                sequence, segment.timestamp(offset));
+        offset = end;
+        records++;
+      }
+      segment.commit(offset, lastIndexedTimestamp);
+      active = segment;
+      position = offset;
+    }
+    if (active == null) {
+      active = Segment.open(config.directory(), 1, config.segmentBytes());
+      segments.put(active.id(), active);
+    } else {
+      active.truncate(position);
+      if (active.capacity() < config.segmentBytes()) roll();
+    }
+    lastForce = System.currentTimeMillis();
+    LoggerUtil.info("STORE opened " + config.directory() + " segments=" + segments.size() +
+            " records=" + records + " rooms=" + rooms.size());
+  }
+}
@@ -0,0 +1,49 @@
+package io.olmosjt.store;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the persistent message log.
+ *
+ * @param directory     Where segment files are kept; {@code null} disables persistence.
+ * @param segmentBytes  Size each segment file is preallocated and mapped with; a new segment is started when
+ *                      the next record does not fit.
+ * @param maxSegments   Most segments kept on disk, including the active one; the oldest are deleted first.
+ * @param retention     Segments whose newest record is older than this are deleted.
+ * @param fsyncInterval How often written records are forced to disk. {@link Duration#ZERO} forces after every
+ *                      batch the writer drains (group commit); longer intervals trade durability for throughput.
+ * @param queueCapacity Records that may wait for the writer; when full, new records are dropped and counted so
+ *                      the delivery path never blocks.
+ * @param indexInterval Every n-th record of a room, and every n-th record overall, goes into the sparse index.
+ */
+public record StoreConfig(
+        Path directory,
+        int segmentBytes,
+        int maxSegments,
+        Duration retention,
+        Duration fsyncInterval,
+        int queueCapacity,
+        int indexInterval
+) {
+
+  /**
+   * @return Persistence disabled; use {@link #at(Path)} to enable it.
+   */
+  public static StoreConfig disabled() {
+    return at(null);
+  }
+
+  /**
+   * @return 64 MiB segments, at most 16 of them kept for up to 7 days, fsync every 100 ms,
+   *         a 64k-record write queue and an index entry every 32 records, stored in {@code directory}.
+   */
+  public static StoreConfig at(Path directory) {
+    return new StoreConfig(directory, 64 * 1024 * 1024, 16, Duration.ofDays(7), Duration.ofMillis(100),
+            64 * 1024, 32);
+  }
+
+  public boolean enabled() {
+    return directory != null;
+  }
+}
@@ -0,0 +1,27 @@
+package io.olmosjt.store;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message read back from the {@link MessageStore}.
+ *
+ * @param roomId    The room the message was sent to, or {@link MessageStore#PRIVATE_STREAM} for private messages.
+ * @param sequence  The message's sequence number within its room (or within the private stream).
+ * @param timestamp When the message was created, in epoch milliseconds.
+ * @param line      The encoded wire line, including the trailing newline.
+ */
+public record StoredMessage(
+        int roomId,
+        long sequence,
+        long timestamp,
+        byte[] line
+) {
+
+  /**
+   * @return The wire line as text, without the trailing newline.
+   */
+  public String text() {
+    int length = line.length > 0 && line[line.length - 1] == '\n' ? line.length - 1 : line.length;
+    return new String(line, 0, length, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,23 @@
+package io.olmosjt.trace;
+
+/**
+ * Timing of one sampled room message, shared by the frame every recipient receives.
+ */
+public final class DeliveryTrace {
+  final long acceptedNanos;
+  final int roomId;
+  final LatencyWindow roomLatency;
+
+  DeliveryTrace(long acceptedNanos, int roomId, LatencyWindow roomLatency) {
+    this.acceptedNanos = acceptedNanos;
+    this.roomId = roomId;
+    this.roomLatency = roomLatency;
+  }
+
+  /**
+   * @return The room the message was sent to.
+   */
+  public int roomId() {
+    return roomId;
+  }
+}
@@ -0,0 +1,95 @@
+package io.olmosjt.trace;
+
+import io.olmosjt.metrics.Counter;
+import io.olmosjt.metrics.Histogram;
+import io.olmosjt.metrics.ServerMetrics;
+import io.olmosjt.util.LoggerUtil;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Samples room messages and measures how long they take to reach each recipient.
+ * <p>
+ * A sampled message gets a {@link DeliveryTrace} stamped when the dispatcher accepts it. The trace rides
+ * on the shared frame, so each recipient reports two intervals without any per-recipient state: accepted
+ * to queued on that recipient (fan-out delay, which grows with the member's position in the room), and
+ * accepted to written on its socket (end-to-end delay). End-to-end delays feed server-wide histograms, a
+ * {@link LatencyWindow} per room and one per client; windows whose smoothed latency crosses
+ * {@link TraceConfig#slowThreshold()} are logged when they become slow and when they recover.
+ * <p>
+ * Unsampled messages cost one random draw in the dispatcher and a null check per recipient.
+ */
+public final class DeliveryTracer {
+  private static final Counter TRACED = ServerMetrics.REGISTRY.counter("termitalk_delivery_traces_total",
+          "Room messages sampled for delivery tracing.");
+  private static final Histogram QUEUE_DELAY = ServerMetrics.REGISTRY.histogram("termitalk_delivery_queue_delay_seconds",
+          "Sampled messages: time from dispatch until queued for a recipient.", 1e-9);
+  private static final Histogram LATENCY = ServerMetrics.REGISTRY.histogram("termitalk_delivery_latency_seconds",
+          "Sampled messages: time from dispatch until written to a recipient's socket.", 1e-9);
+
+  private static volatile double sampleRate;
+  private static volatile long slowNanos = TraceConfig.disabled().slowThreshold().toNanos();
+
+  private DeliveryTracer() {}
+
+  public static void configure(TraceConfig config) {
+    sampleRate = Math.max(0, Math.min(1, config.sampleRate()));
+    slowNanos = config.slowThreshold().toNanos();
+  }
+
+  /**
+   * @return {@code true} if the next message should be traced.
+   */
+  public static boolean sampled() {
+    double rate = sampleRate;
+    return rate > 0 && (rate >= 1 || ThreadLocalRandom.current().nextDouble() < rate);
+  }
+
+  /**
+   * Starts a trace for a message to a room.
+   * @param acceptedNanos When the message was accepted, from {@link System#nanoTime()}.
+   * @param roomLatency   The room's latency window.
+   */
+  public static DeliveryTrace start(long acceptedNanos, int roomId, LatencyWindow roomLatency) {
+    TRACED.increment();
+    return new DeliveryTrace(acceptedNanos, roomId, roomLatency);
+  }
+
+  /**
+   * Called when a traced frame is queued for one recipient.
+   */
+  public static void queued(DeliveryTrace trace) {
+    QUEUE_DELAY.record(System.nanoTime() - trace.acceptedNanos);
+  }
+
+  /**
+   * Called when a traced frame has been written to one recipient's socket.
+   * @param clientLatency The recipient's latency window.
+   * @param client        The recipient, for the log.
+   */
+  public static void written(DeliveryTrace trace, LatencyWindow clientLatency, String client) {
+    long latency = System.nanoTime() - trace.acceptedNanos;
+    LATENCY.record(latency);
+    long slow = slowNanos;
+    int roomChange = trace.roomLatency.record(latency, slow);
+    if (roomChange != 0) report(roomChange, "room #" + trace.roomId, trace.roomLatency);
+    int clientChange = clientLatency.record(latency, slow);
+    if (clientChange != 0) report(clientChange, "client " + client, clientLatency);
+  }
+
+  /**
+   * @return The server-wide end-to-end delivery latencies recorded so far.
+   */
+  public static Histogram.Snapshot latency() {
+    return LATENCY.snapshot();
+  }
+
+  private static void report(int transition, String who, LatencyWindow window) {
+    if (transition > 0) {
+      LoggerUtil.warn("TRACE slow delivery to " + who + " smoothed=" + window.smoothed() / 1_000_000 + "ms" +
+              " p99=" + window.quantile(0.99) / 1_000_000 + "ms samples=" + window.count());
+    } else if (transition < 0) {
+      LoggerUtil.info("TRACE delivery to " + who + " recovered smoothed=" + window.smoothed() / 1_000_000 + "ms");
+    }
+  }
+}
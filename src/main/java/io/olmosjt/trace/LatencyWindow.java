@@ -0,0 +1,71 @@
+package io.olmosjt.trace;
+
+import java.util.Arrays;
+
+/**
+ * The most recent delivery latencies of one room or client, plus a smoothed average used to decide
+ * whether it is persistently slow.
+ * <p>
+ * Keeps a ring of the last {@value #SIZE} samples, about half a kilobyte, so every room and client can
+ * afford one; percentiles are computed from the ring when asked for. Only sampled messages are recorded,
+ * so the lock is rarely contended.
+ */
+public final class LatencyWindow {
+  private static final int SIZE = 64;
+  /** Samples needed before the window may be reported as slow. */
+  private static final int MIN_SAMPLES = 8;
+  /** Weight of a new sample in the smoothed average; about the last 16 samples dominate. */
+  private static final double ALPHA = 1.0 / 16;
+
+  private final long[] samples = new long[SIZE];
+  private long count;
+  private double smoothed;
+  private boolean slow;
+
+  /**
+   * Records a latency and re-evaluates whether the window is slow.
+   * @return 1 if it just became slow, -1 if it just recovered, 0 otherwise.
+   */
+  synchronized int record(long nanos, long slowNanos) {
+    samples[(int) (count % SIZE)] = nanos;
+    smoothed = count == 0 ? nanos : smoothed + ALPHA * (nanos - smoothed);
+    count++;
+    boolean nowSlow = count >= MIN_SAMPLES && smoothed > slowNanos;
+    if (nowSlow == slow) return 0;
+    slow = nowSlow;
+    return nowSlow ? 1 : -1;
+  }
+
+  /**
+   * @param q The quantile, between 0 and 1.
+   * @return The latency at that quantile over the retained samples, in nanoseconds, or 0 if there are none.
+   */
+  public synchronized long quantile(double q) {
+    int n = (int) Math.min(count, SIZE);
+    if (n == 0) return 0;
+    long[] sorted = Arrays.copyOf(samples, n);
+    Arrays.sort(sorted);
+    return sorted[Math.max(0, Math.min(n - 1, (int) Math.ceil(q * n) - 1))];
+  }
+
+  /**
+   * @return The smoothed latency in nanoseconds.
+   */
+  public synchronized long smoothed() {
+    return (long) smoothed;
+  }
+
+  /**
+   * @return The number of latencies recorded.
+   */
+  public synchronized long count() {
+    return count;
+  }
+
+  /**
+   * @return {@code true} if the smoothed latency is above the slow threshold.
+   */
+  public synchronized boolean isSlow() {
+    return slow;
+  }
+}
@@ -0,0 +1,29 @@
+package io.olmosjt.trace;
+
+import java.time.Duration;
+
+/**
+ * Delivery tracing settings.
+ *
+ * @param sampleRate    Fraction of room messages traced, from 0 (off) to 1 (every message).
+ * @param slowThreshold A room or client whose smoothed delivery latency exceeds this is reported as slow.
+ */
+public record TraceConfig(
+        double sampleRate,
+        Duration slowThreshold
+) {
+
+  /**
+   * @return One message in a hundred traced, slow above 250 ms.
+   */
+  public static TraceConfig defaults() {
+    return new TraceConfig(0.01, Duration.ofMillis(250));
+  }
+
+  /**
+   * @return Tracing off.
+   */
+  public static TraceConfig disabled() {
+    return new TraceConfig(0, Duration.ofMillis(250));
+  }
+}
@@ -0,0 +1,247 @@
+package io.olmosjt.user;
+
+import io.olmosjt.server.ClientHandler;
+import io.olmosjt.state.StateJournal;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One map from username to both the user's identity and the connection logged in under it.
+ * <p>
+ * {@link UserRegistry} and {@link io.olmosjt.server.ClientManager} are views of the same directory, so a
+ * login is a single atomic step on one key: the name is registered or taken over from an
+ * {@link UserStatus#OFFLINE} user and bound to the connection together, or not at all. Every change to a
+ * name is one {@link ConcurrentHashMap} operation on that name, which locks only its hash bin, so logins
+ * of different names never wait for each other.
+ * <p>
+ * A rename touches two names and takes no lock: the new name is inserted first, and the old one removed
+ * only if it is still bound to the same session; if the old entry changed meanwhile the insert is undone.
+ * Until the rename completes the session is briefly visible under both names.
+ * <p>
+ * Changes are journaled inside the map operation that makes them, while its hash bin is locked, so the
+ * journal sees the changes to one name in the order they happened: a name freed by a rename cannot be
+ * claimed, and journaled, before the rename is. The state store never touches this map while it holds
+ * its journal lock, so the two locks are always taken in the same order.
+ */
+public final class SessionDirectory {
+
+  /** Identity and connection of one name. Compared by identity, so updates can be made conditional. */
+  private static final class Session {
+    final User user;
+    final ClientHandler client;
+
+    Session(User user, ClientHandler client) {
+      this.user = user;
+      this.client = client;
+    }
+
+    boolean online() {
+      return client != null;
+    }
+  }
+
+  private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>(1024);
+  private final AtomicInteger online = new AtomicInteger();
+  private volatile StateJournal journal = StateJournal.NONE;
+
+  /**
+   * Sets where new, renamed and removed users are recorded so they survive a restart.
+   */
+  public void setJournal(StateJournal journal) {
+    this.journal = journal;
+  }
+
+  /**
+   * Logs {@code client} in under {@code username}: registers the name if it is new, or takes it over if no
+   * connection holds it, atomically.
+   * @param client The connection, or {@code null} to only mark the user {@link UserStatus#ONLINE}.
+   * @return The user now bound to the name, or {@code null} if a connection already holds it.
+   */
+  public User claim(String username, ClientHandler client) {
+    if (username == null || username.isBlank()) return null;
+    String key = username.trim();
+    Session[] won = new Session[1];
+    sessions.compute(key, (k, current) -> {
+      if (current == null) {
+        won[0] = new Session(new User(k, UserStatus.ONLINE, Instant.now()), client);
+        journal.userSaved(k, won[0].user.joinedAt().toEpochMilli());
+        return won[0];
+      }
+      if (current.online()) return current;
+      won[0] = new Session(new User(k, UserStatus.ONLINE, current.user.joinedAt()), client);
+      return won[0];
+    });
+    if (won[0] == null) return null;
+    if (client != null) online.incrementAndGet();
+    return won[0].user;
+  }
+
+  /**
+   * Unbinds {@code client} from {@code username} and marks the user {@link UserStatus#OFFLINE}, if it is still
+   * the connection holding the name.
+   * @return {@code true} if it was.
+   */
+  public boolean release(String username, ClientHandler client) {
+    if (username == null || client == null) return false;
+    boolean[] released = new boolean[1];
+    sessions.computeIfPresent(username, (k, current) -> {
+      if (current.client != client) return current;
+      released[0] = true;
+      return new Session(new User(k, UserStatus.OFFLINE, current.user.joinedAt()), null);
+    });
+    if (released[0]) online.decrementAndGet();
+    return released[0];
+  }
+
+  /**
+   * Moves a user to a new, unregistered name, keeping its status, join time and connection.
+   * @param client The connection holding {@code oldName}, or {@code null} for a user that is not logged in.
+   * @return {@code false} if {@code newName} is registered, or {@code oldName} is not held by {@code client}.
+   */
+  public boolean rename(String oldName, String newName, ClientHandler client) {
+    if (oldName == null || newName == null || newName.isBlank()) return false;
+    String oldKey = oldName.trim();
+    String newKey = newName.trim();
+    if (oldKey.equals(newKey)) return false;
+
+    Session current = sessions.get(oldKey);
+    if (current == null || current.client != client) return false;
+    Session moved = new Session(new User(newKey, current.user.status(), current.user.joinedAt()), client);
+    if (sessions.putIfAbsent(newKey, moved) != null) return false;
+    boolean[] removed = new boolean[1];
+    sessions.computeIfPresent(oldKey, (k, now) -> {
+      if (now != current) return now;
+      removed[0] = true;
+      journal.userRenamed(k, newKey);
+      return null;
+    });
+    if (!removed[0]) {
+      // The old entry changed meanwhile, for example the client disconnected; give the new name back.
+      sessions.remove(newKey, moved);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Adds a persisted user as {@link UserStatus#OFFLINE}. Does nothing if the name is already registered.
+   */
+  public void restore(String username, long joinedAtMillis) {
+    sessions.putIfAbsent(username, new Session(new User(username, UserStatus.OFFLINE, Instant.ofEpochMilli(joinedAtMillis)), null));
+  }
+
+  /**
+   * Registers a name that is not logged in yet as {@link UserStatus#ONLINE}.
+   * @return {@code false} if it is already registered.
+   */
+  public boolean register(String username) {
+    if (username == null || username.isBlank()) return false;
+    String key = username.trim();
+    boolean[] added = new boolean[1];
+    sessions.computeIfAbsent(key, k -> {
+      User user = new User(k, UserStatus.ONLINE, Instant.now());
+      journal.userSaved(k, user.joinedAt().toEpochMilli());
+      added[0] = true;
+      return new Session(user, null);
+    });
+    return added[0];
+  }
+
+  /**
+   * Forgets a user, unbinding its connection if it has one.
+   */
+  public void unregister(String username) {
+    if (username == null) return;
+    Session[] removed = new Session[1];
+    sessions.computeIfPresent(username.trim(), (k, current) -> {
+      removed[0] = current;
+      journal.userRemoved(k);
+      return null;
+    });
+    if (removed[0] != null && removed[0].online()) online.decrementAndGet();
+  }
+
+  public void updateStatus(String username, UserStatus status) {
+    if (username == null || status == null) return;
+    sessions.computeIfPresent(username.trim(), (k, current) ->
+            new Session(new User(current.user.username(), status, current.user.joinedAt()), current.client));
+  }
+
+  /**
+   * @return The user registered under the name, or {@code null}.
+   */
+  public User user(String username) {
+    if (username == null) return null;
+    Session session = sessions.get(username.trim());
+    return session == null ? null : session.user;
+  }
+
+  /**
+   * @return The connection logged in under the name, or {@code null}.
+   */
+  public ClientHandler client(String username) {
+    if (username == null) return null;
+    Session session = sessions.get(username.trim());
+    return session == null ? null : session.client;
+  }
+
+  /**
+   * @return The number of registered users, online or not.
+   */
+  public int size() {
+    return sessions.size();
+  }
+
+  /**
+   * @return The number of names a connection is logged in under.
+   */
+  public int onlineCount() {
+    return online.get();
+  }
+
+  /**
+   * @return A copy of all registered users by name.
+   */
+  public Map<String, User> users() {
+    Map<String, User> copy = new HashMap<>(sessions.size() * 2);
+    sessions.forEach((name, session) -> copy.put(name, session.user));
+    return copy;
+  }
+
+  /**
+   * @return A weakly consistent view of the logged-in connections.
+   */
+  public Iterable<ClientHandler> clients() {
+    return () -> new Iterator<>() {
+      private final Iterator<Session> it = sessions.values().iterator();
+      private ClientHandler next = advance();
+
+      private ClientHandler advance() {
+        while (it.hasNext()) {
+          ClientHandler client = it.next().client;
+          if (client != null) return client;
+        }
+        return null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public ClientHandler next() {
+        if (next == null) throw new NoSuchElementException();
+        ClientHandler current = next;
+        next = advance();
+        return current;
+      }
+    };
+  }
+}
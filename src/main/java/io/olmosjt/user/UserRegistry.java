@@ -1,18 +1,36 @@
 package io.olmosjt.user;
 
-import java.time.Instant;
+import io.olmosjt.state.StateJournal;
+
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
- * Keeps connected users in {@link java.util.concurrent.ConcurrentHashMap} and tracks them.
+ * The identity side of a {@link SessionDirectory}: registered users and their status.
  * <p>
- * Each username is unique and mapped to a {@link io.olmosjt.server.ClientHandler}.
+ * Each username is unique. Users stay registered as {@link UserStatus#OFFLINE} after they disconnect, so their
+ * name and first-seen time survive; an offline name can be claimed again by the next login.
  */
 public class UserRegistry {
-  private final ConcurrentMap<String, User> users = new ConcurrentHashMap<>();
+  private final SessionDirectory sessions;
+
+  public UserRegistry() {
+    this(new SessionDirectory());
+  }
+
+  /**
+   * @param sessions The directory shared with the {@link io.olmosjt.server.ClientManager}.
+   */
+  public UserRegistry(SessionDirectory sessions) {
+    this.sessions = sessions;
+  }
+
+  /**
+   * Sets where user changes are recorded so they survive a restart.
+   */
+  public void setJournal(StateJournal journal) {
+    sessions.setJournal(journal);
+  }
 
   /**
    * Creates a new user with an initial status of {@link UserStatus#ONLINE} and sets the joined time to the current instant.
@@ -21,55 +39,53 @@ public class UserRegistry {
    * @return {@code true} if the user was successfully added; otherwise, {@code false}.
    */
   public boolean register(String username) {
-    if (username == null || username.isBlank()) return false;
+    return sessions.register(username);
+  }
+
+  /**
+   * Marks a user {@link UserStatus#ONLINE} without binding a connection: registers the name if it is new, or
+   * takes over a user of that name that no connection holds, atomically. Logins use
+   * {@link io.olmosjt.server.ClientManager#claim} instead.
+   *
+   * @param username The username to claim.
+   * @return {@code true} if the name is now this caller's; {@code false} if it is invalid or a connection holds it.
+   */
+  public boolean claim(String username) {
+    return sessions.claim(username, null) != null;
+  }
 
-    String key = username.trim();
-    User user = new User(key, UserStatus.ONLINE, Instant.now());
-    return users.putIfAbsent(key, user) == null;
+  /**
+   * Adds a persisted user as {@link UserStatus#OFFLINE}. Does nothing if the name is already registered.
+   */
+  public void restore(String username, long joinedAtMillis) {
+    sessions.restore(username, joinedAtMillis);
   }
 
   public void unregister(String username) {
-    if (username == null) return;
-    users.remove(username.trim());
+    sessions.unregister(username);
   }
 
   public Optional<User> find(String username) {
-    if (username == null) return Optional.empty();
-    return Optional.ofNullable(users.get(username.trim()));
+    return Optional.ofNullable(sessions.user(username));
   }
 
+  /**
+   * Renames a user that is not logged in, for replaying a persisted rename.
+   */
   public boolean rename(String oldName, String newName) {
-    if (oldName == null || newName == null) return false;
-
-    String oldKey = oldName.trim();
-    String newKey = newName.trim();
-
-    if (newKey.isBlank() || users.containsKey(newKey)) return false;
-
-    synchronized (this) {
-      User oldUser = users.remove(oldKey);
-      if (oldUser == null) return false;
-
-      User renamed = new User(newKey, oldUser.status(), oldUser.joinedAt());
-      users.put(newKey, renamed);
-    }
-    return true;
+    return sessions.rename(oldName, newName, null);
   }
 
   public void updateStatus(String username, UserStatus newStatus) {
-    if (username == null || newStatus == null) return;
-
-    users.computeIfPresent(username.trim(), (key, user) ->
-            new User(user.username(), newStatus, user.joinedAt())
-    );
+    sessions.updateStatus(username, newStatus);
   }
 
   public int size() {
-    return users.size();
+    return sessions.size();
   }
 
   public Map<String, User> allUsers() {
-    return Map.copyOf(users);
+    return sessions.users();
   }
 
 }
@@ -0,0 +1,261 @@
+package io.olmosjt.util;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background log writer fed through a bounded, lock-free ring buffer.
+ * <p>
+ * Producers claim a slot with a single CAS and store the level, timestamp and message into
+ * preallocated arrays, so handing off a log line allocates nothing and never takes a lock.
+ * One writer thread drains the ring in batches, formats lines into a reusable buffer with a
+ * timestamp prefix cached per second, and writes each batch to the console and to a
+ * {@link FileChannel} in one call.
+ * <p>
+ * The writer parks without a timeout once the ring is empty. It raises {@code sleeping} before its last
+ * look at the ring, and a producer unparks it if it sees the flag after publishing a line, so an idle
+ * server wakes it for nothing and a lone line is written straight away.
+ */
+final class AsyncLogWriter implements Runnable {
+  private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+  private static final int BLOCKED_SPINS = 64;
+  private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  private static final int BATCH_BYTES = 64 * 1024;
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicLongArray sequences;
+  private final long[] timestamps;
+  private final LoggerUtil.Level[] levels;
+  private final String[] messages;
+  private final AtomicLong tail = new AtomicLong();
+  private long head;
+
+  private final LoggerUtil.Overflow overflow;
+  private final LongAdder dropped = new LongAdder();
+  private long droppedReported;
+
+  private final ByteBuffer batch = ByteBuffer.allocate(BATCH_BYTES);
+  private long cachedSecond = Long.MIN_VALUE;
+  private byte[] cachedTimestamp;
+
+  private volatile String path;
+  private String openPath;
+  private FileChannel channel;
+  private volatile boolean console = true;
+  private volatile boolean running = true;
+  private volatile boolean sleeping;
+  private final Thread thread;
+
+  AsyncLogWriter(int capacity, LoggerUtil.Overflow overflow, String path) {
+    if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) sequences.set(i, i);
+    this.timestamps = new long[capacity];
+    this.levels = new LoggerUtil.Level[capacity];
+    this.messages = new String[capacity];
+    this.overflow = overflow;
+    this.path = path;
+    this.thread = Thread.ofPlatform().name("termitalk-log-writer").daemon().start(this);
+  }
+
+  /**
+   * Hands a log line to the writer thread. Never blocks under {@link LoggerUtil.Overflow#DROP}.
+   */
+  void append(LoggerUtil.Level level, String message, long epochMillis) {
+    int spins = 0;
+    while (!offer(level, message, epochMillis)) {
+      if (overflow == LoggerUtil.Overflow.DROP) {
+        dropped.increment();
+        return;
+      }
+      // Full: the writer is busy draining. Spin briefly, then park so a blocked producer frees its carrier.
+      if (++spins < BLOCKED_SPINS) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+      }
+    }
+    if (sleeping) LockSupport.unpark(thread);
+  }
+
+  private boolean offer(LoggerUtil.Level level, String message, long epochMillis) {
+    long position;
+    int index;
+    while (true) {
+      position = tail.get();
+      index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) {
+        if (tail.compareAndSet(position, position + 1)) break;
+      } else if (difference < 0) {
+        return false; // full
+      }
+    }
+    levels[index] = level;
+    timestamps[index] = epochMillis;
+    messages[index] = message;
+    sequences.set(index, position + 1);
+    return true;
+  }
+
+  void setPath(String path) {
+    this.path = path;
+    LockSupport.unpark(thread);
+  }
+
+  void setConsole(boolean console) {
+    this.console = console;
+  }
+
+  long droppedCount() {
+    return dropped.sum();
+  }
+
+  /**
+   * Stops the writer after it has drained everything already queued.
+   */
+  void close() {
+    running = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      reopenIfNeeded();
+      int drained = drain();
+      reportDrops();
+      if (batch.position() > 0) writeBatch();
+      if (drained == 0) {
+        if (!running) break;
+        sleeping = true;
+        if (isEmpty() && running) LockSupport.park(this);
+        sleeping = false;
+      }
+    }
+    closeChannel();
+  }
+
+  private boolean isEmpty() {
+    return sequences.get((int) (head & mask)) != head + 1;
+  }
+
+  private int drain() {
+    int count = 0;
+    while (true) {
+      int index = (int) (head & mask);
+      if (sequences.get(index) != head + 1) return count;
+
+      LoggerUtil.Level level = levels[index];
+      long epochMillis = timestamps[index];
+      String message = messages[index];
+      messages[index] = null;
+      sequences.set(index, head + capacity);
+      head++;
+      count++;
+
+      format(level, message, epochMillis);
+    }
+  }
+
+  private void format(LoggerUtil.Level level, String message, long epochMillis) {
+    byte[] timestamp = timestamp(epochMillis);
+    byte[] levelTag = level.tag();
+    byte[] text = message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+    int length = timestamp.length + levelTag.length + text.length + 1;
+
+    if (batch.remaining() < length) writeBatch();
+    if (batch.remaining() < length) {
+      // A single oversized line: write it on its own.
+      ByteBuffer line = ByteBuffer.allocate(length);
+      line.put(timestamp).put(levelTag).put(text).put((byte) '\n');
+      write(line.array(), length);
+      return;
+    }
+    batch.put(timestamp).put(levelTag).put(text).put((byte) '\n');
+  }
+
+  private void reportDrops() {
+    long total = dropped.sum();
+    if (total > droppedReported) {
+      format(LoggerUtil.Level.WARN, "LoggerUtil dropped " + (total - droppedReported) + " log lines (ring buffer full)",
+              System.currentTimeMillis());
+      droppedReported = total;
+    }
+  }
+
+  private byte[] timestamp(long epochMillis) {
+    long second = Math.floorDiv(epochMillis, 1000);
+    if (second != cachedSecond) {
+      LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault());
+      cachedTimestamp = ("[" + time.format(FORMATTER) + "] ").getBytes(StandardCharsets.US_ASCII);
+      cachedSecond = second;
+    }
+    return cachedTimestamp;
+  }
+
+  private void writeBatch() {
+    write(batch.array(), batch.position());
+    batch.clear();
+  }
+
+  private void write(byte[] bytes, int length) {
+    if (console) {
+      PrintStream out = System.out;
+      out.write(bytes, 0, length);
+      out.flush();
+    }
+    if (channel != null) {
+      try {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) channel.write(buffer);
+      } catch (IOException e) {
+        System.err.println("[LoggerUtil] Failed to write log file '" + openPath + "': " + e.getMessage());
+        closeChannel();
+      }
+    }
+  }
+
+  private void reopenIfNeeded() {
+    String requested = path;
+    if (requested == null || requested.equals(openPath)) return;
+    closeChannel();
+    openPath = requested;
+    try {
+      channel = FileChannel.open(Path.of(requested),
+              StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      channel = null; // fall back to console only
+      System.err.println("[LoggerUtil] Failed to open log file '" + requested + "': " + e.getMessage());
+    }
+  }
+
+  private void closeChannel() {
+    if (channel != null) {
+      try { channel.close(); } catch (IOException ignored) {}
+      channel = null;
+    }
+  }
+}
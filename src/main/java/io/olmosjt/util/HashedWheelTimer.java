@@ -0,0 +1,198 @@
+package io.olmosjt.util;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Approximate timer for large numbers of mostly cancelled timeouts, such as per-room or per-connection
+ * idle timers.
+ * <p>
+ * Timeouts are hashed into a fixed ring of buckets by their deadline tick. A single worker thread advances
+ * one bucket per tick and only looks at the timeouts in that bucket, so scheduling, cancelling and each
+ * tick cost O(1) regardless of how many timeouts are pending; a timeout further away than one revolution
+ * simply waits a number of extra rounds. Deadlines are honoured with tick granularity.
+ * <p>
+ * {@link #schedule} and {@link Timeout#cancel()} may be called from any thread; they only enqueue.
+ * Tasks run on the worker thread and must be short and non-blocking.
+ */
+public final class HashedWheelTimer implements AutoCloseable {
+
+  /**
+   * Handle to a scheduled task.
+   */
+  public interface Timeout {
+    /**
+     * Cancels the task if it has not run yet.
+     * @return {@code true} if this call cancelled it.
+     */
+    boolean cancel();
+
+    /**
+     * @return {@code true} if the task has run or is running.
+     */
+    boolean isExpired();
+  }
+
+  private static final int PENDING = 0;
+  private static final int CANCELLED = 1;
+  private static final int EXPIRED = 2;
+  private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+  private final class Entry implements Timeout {
+    final Runnable task;
+    final long deadline;
+    final AtomicInteger state = new AtomicInteger(PENDING);
+    long rounds;
+    Entry next;
+    Entry prev;
+    Bucket bucket;
+
+    Entry(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public boolean cancel() {
+      if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+      cancelled.add(this);
+      return true;
+    }
+
+    @Override
+    public boolean isExpired() {
+      return state.get() == EXPIRED;
+    }
+  }
+
+  /** Doubly linked list of entries; only touched by the worker thread. */
+  private static final class Bucket {
+    Entry head;
+    Entry tail;
+
+    void add(Entry entry) {
+      entry.bucket = this;
+      if (head == null) {
+        head = tail = entry;
+      } else {
+        tail.next = entry;
+        entry.prev = tail;
+        tail = entry;
+      }
+    }
+
+    Entry remove(Entry entry) {
+      Entry next = entry.next;
+      if (entry.prev != null) entry.prev.next = next;
+      if (entry.next != null) entry.next.prev = entry.prev;
+      if (entry == head) head = next;
+      if (entry == tail) tail = entry.prev;
+      entry.prev = entry.next = null;
+      entry.bucket = null;
+      return next;
+    }
+  }
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+  private final Queue<Entry> cancelled = new ConcurrentLinkedQueue<>();
+  private final long startTime = System.nanoTime();
+  private final Thread worker;
+  private volatile boolean running = true;
+  private long tick;
+
+  /**
+   * Creates and starts a timer.
+   * @param name      Name of the worker thread.
+   * @param tick      Timer resolution.
+   * @param wheelSize Number of buckets; rounded up to a power of two.
+   */
+  public HashedWheelTimer(String name, Duration tick, int wheelSize) {
+    this.tickNanos = Math.max(1_000_000L, tick.toNanos());
+    int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+    this.mask = size - 1;
+    this.worker = Thread.ofPlatform().name(name).daemon().start(this::run);
+  }
+
+  /**
+   * Runs {@code task} once, on the timer thread, roughly {@code delay} from now.
+   * @return A handle to cancel it.
+   */
+  public Timeout schedule(Runnable task, Duration delay) {
+    Entry entry = new Entry(task, System.nanoTime() - startTime + Math.max(0, delay.toNanos()));
+    pending.add(entry);
+    return entry;
+  }
+
+  /**
+   * Stops the worker; pending tasks never run.
+   */
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(worker);
+  }
+
+  private void run() {
+    while (running) {
+      long deadline = tickNanos * (tick + 1);
+      long sleep;
+      while (running && (sleep = deadline - (System.nanoTime() - startTime)) > 0) {
+        LockSupport.parkNanos(this, sleep);
+      }
+      if (!running) return;
+
+      unlinkCancelled();
+      transferPending();
+      expire(wheel[(int) (tick & mask)], deadline);
+      tick++;
+    }
+  }
+
+  private void unlinkCancelled() {
+    Entry entry;
+    while ((entry = cancelled.poll()) != null) {
+      if (entry.bucket != null) entry.bucket.remove(entry);
+    }
+  }
+
+  private void transferPending() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      Entry entry = pending.poll();
+      if (entry == null) return;
+      if (entry.state.get() != PENDING) continue;
+      long target = entry.deadline / tickNanos;
+      entry.rounds = Math.max(0, (target - tick) / wheel.length);
+      wheel[(int) (Math.max(target, tick) & mask)].add(entry);
+    }
+  }
+
+  private void expire(Bucket bucket, long now) {
+    Entry entry = bucket.head;
+    while (entry != null) {
+      if (entry.state.get() != PENDING) {
+        entry = bucket.remove(entry);
+      } else if (entry.rounds <= 0 && entry.deadline <= now) {
+        Entry next = bucket.remove(entry);
+        if (entry.state.compareAndSet(PENDING, EXPIRED)) {
+          try {
+            entry.task.run();
+          } catch (RuntimeException e) {
+            LoggerUtil.error("Timer task failed: " + e);
+          }
+        }
+        entry = next;
+      } else {
+        entry.rounds--;
+        entry = entry.next;
+      }
+    }
+  }
+}
@@ -3,28 +3,144 @@ package io.olmosjt.util;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-
+import java.util.function.Supplier;
+
+/**
+ * Server-wide logger writing to the console and to {@code action.log}.
+ * <p>
+ * By default lines are handed to an {@link AsyncLogWriter}: callers only claim a ring-buffer slot and
+ * return, while a background thread batches formatting and I/O. The previous synchronous path, which
+ * formats and writes under a global lock on the caller's thread, remains available via {@link #useSync()}.
+ * Lines below the minimum level are rejected before any formatting.
+ * <p>
+ * Hot paths should guard message construction with {@link #isEnabled(Level)}, so a disabled level
+ * costs a single volatile read and allocates nothing. A {@link Supplier} is only invoked when the level
+ * is enabled, but a lambda that captures variables is still allocated on every call, so suppliers suit
+ * paths that are not hot.
+ */
 public class LoggerUtil {
   public enum Level {
-    INFO,
-    WARN,
-    ERROR,
-    DEBUG,
-    TRACE
+    INFO(2),
+    WARN(3),
+    ERROR(4),
+    DEBUG(1),
+    TRACE(0);
+
+    private final int severity;
+    private final byte[] tag;
+
+    Level(int severity) {
+      this.severity = severity;
+      this.tag = ("[" + name() + "] ").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    byte[] tag() {
+      return tag;
+    }
+  }
+
+  /**
+   * What the asynchronous writer does when its ring buffer is full.
+   */
+  public enum Overflow {
+    /** Discard the line and count it; the writer reports the number of dropped lines. */
+    DROP,
+    /** Wait until the writer frees a slot, spinning briefly and then parking. */
+    BLOCK
   }
 
   private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+  private static final int DEFAULT_RING_CAPACITY = 16 * 1024;
 
   private static volatile PrintWriter fileWriter;
   private static volatile String logFilePath = "action.log";
+  private static volatile Level minLevel = Level.DEBUG;
+  private static volatile boolean console = true;
+  private static volatile AsyncLogWriter asyncWriter;
+
+  static {
+    useAsync(DEFAULT_RING_CAPACITY, Overflow.DROP);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      AsyncLogWriter writer = asyncWriter;
+      if (writer != null) writer.close();
+    }, "termitalk-log-shutdown"));
+  }
 
   public static synchronized void setLogFile(String path) {
     if (path == null || path.isBlank()) return;
     logFilePath = path;
-    reopenFileWriter();
+    AsyncLogWriter writer = asyncWriter;
+    if (writer != null) {
+      writer.setPath(path);
+    } else {
+      reopenFileWriter();
+    }
+  }
+
+  /**
+   * Switches to asynchronous logging through a ring buffer of the given capacity.
+   * @param ringCapacity Number of pending lines; must be a power of two.
+   * @param overflow     What producers do when the ring is full.
+   */
+  public static synchronized void useAsync(int ringCapacity, Overflow overflow) {
+    AsyncLogWriter previous = asyncWriter;
+    AsyncLogWriter writer = new AsyncLogWriter(ringCapacity, overflow, logFilePath);
+    writer.setConsole(console);
+    asyncWriter = writer;
+    if (previous != null) previous.close();
+    closeFileWriter();
+  }
+
+  /**
+   * Switches to synchronous logging: each call formats and writes on the caller's thread.
+   */
+  public static synchronized void useSync() {
+    AsyncLogWriter previous = asyncWriter;
+    asyncWriter = null;
+    if (previous != null) previous.close();
+  }
+
+  /**
+   * Sets the lowest level that is logged; anything below it is discarded before formatting.
+   */
+  public static void setMinLevel(Level level) {
+    if (level == null) return;
+    minLevel = level;
+  }
+
+  /**
+   * @return The lowest level that is currently logged.
+   */
+  public static Level minLevel() {
+    return minLevel;
+  }
+
+  /**
+   * @return {@code true} if lines at {@code level} are currently logged.
+   */
+  public static boolean isEnabled(Level level) {
+    return level.severity >= minLevel.severity;
+  }
+
+  /**
+   * Enables or disables console output; the log file is always written.
+   */
+  public static void setConsole(boolean enabled) {
+    console = enabled;
+    AsyncLogWriter writer = asyncWriter;
+    if (writer != null) writer.setConsole(enabled);
+  }
+
+  /**
+   * @return The number of lines the asynchronous writer had to drop, or 0 in synchronous mode.
+   */
+  public static long droppedCount() {
+    AsyncLogWriter writer = asyncWriter;
+    return writer == null ? 0 : writer.droppedCount();
   }
 
   private static synchronized void reopenFileWriter() {
@@ -46,11 +162,22 @@ public class LoggerUtil {
 
 
   public static void log(Level level, String message) {
+    if (!isEnabled(level)) return;
+
+    AsyncLogWriter writer = asyncWriter;
+    if (writer != null) {
+      writer.append(level, message, System.currentTimeMillis());
+      return;
+    }
+    logSync(level, message);
+  }
+
+  private static void logSync(Level level, String message) {
     String timestamp = LocalDateTime.now().format(FORMATTER);
     String line = String.format("[%s] [%s] %s", timestamp, level, message);
 
     // Console
-    System.out.println(line);
+    if (console) System.out.println(line);
 
     // File (lazy-open)
     PrintWriter writer = fileWriter;
@@ -67,6 +194,22 @@ public class LoggerUtil {
     }
   }
 
+  /**
+   * Logs the supplied message, invoking {@code message} only if {@code level} is enabled.
+   */
+  public static void log(Level level, Supplier<String> message) {
+    if (!isEnabled(level)) return;
+    log(level, message.get());
+  }
+
+  public static void info(Supplier<String> message) {
+    log(Level.INFO, message);
+  }
+
+  public static void debug(Supplier<String> message) {
+    log(Level.DEBUG, message);
+  }
+
   public static void info(String message) {
     log(Level.INFO, message);
   }
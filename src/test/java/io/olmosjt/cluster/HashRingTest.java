@@ -0,0 +1,85 @@
+package io.olmosjt.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ownership on the ring: the same for every node that builds it, and moving only what it must as members
+ * join and leave.
+ */
+class HashRingTest {
+  private static final int KEYS = 20_000;
+  private static final int VIRTUAL_NODES = 128;
+
+  @Test
+  void sameMembersGiveSameOwnersInAnyOrder() {
+    HashRing one = HashRing.of(List.of("a", "b", "c"), VIRTUAL_NODES);
+    HashRing other = HashRing.of(List.of("c", "a", "b", "a"), VIRTUAL_NODES);
+
+    assertEquals(List.of("a", "b", "c"), other.nodes());
+    for (int i = 0; i < KEYS; i++) {
+      assertEquals(one.ownerOf(key(i)), other.ownerOf(key(i)));
+    }
+  }
+
+  @Test
+  void keysSpreadEvenlyOverTheNodes() {
+    HashRing ring = HashRing.of(List.of("a", "b", "c", "d"), VIRTUAL_NODES);
+    int[] counts = new int[4];
+    for (int i = 0; i < KEYS; i++) {
+      counts[ring.nodes().indexOf(ring.ownerOf(key(i)))]++;
+    }
+    for (int count : counts) {
+      assertTrue(count > KEYS / 4 * 0.75 && count < KEYS / 4 * 1.25, "share " + count + " of " + KEYS);
+    }
+  }
+
+  @Test
+  void joiningNodeOnlyTakesKeysForItself() {
+    HashRing before = HashRing.of(List.of("a", "b", "c"), VIRTUAL_NODES);
+    HashRing after = HashRing.of(List.of("a", "b", "c", "d"), VIRTUAL_NODES);
+
+    int moved = 0;
+    for (int i = 0; i < KEYS; i++) {
+      String was = before.ownerOf(key(i));
+      String now = after.ownerOf(key(i));
+      if (was.equals(now)) continue;
+      assertEquals("d", now, key(i) + " moved between existing nodes");
+      moved++;
+    }
+    assertTrue(moved > KEYS / 4 * 0.75 && moved < KEYS / 4 * 1.25, moved + " of " + KEYS + " keys moved");
+  }
+
+  @Test
+  void leavingNodeOnlyGivesUpItsOwnKeys() {
+    HashRing before = HashRing.of(List.of("a", "b", "c", "d"), VIRTUAL_NODES);
+    HashRing after = HashRing.of(List.of("a", "c", "d"), VIRTUAL_NODES);
+
+    for (int i = 0; i < KEYS; i++) {
+      String was = before.ownerOf(key(i));
+      if (!was.equals("b")) assertEquals(was, after.ownerOf(key(i)), key(i) + " moved off a surviving node");
+    }
+  }
+
+  @Test
+  void singleNodeOwnsEverything() {
+    HashRing ring = HashRing.of(List.of("solo"), 1);
+    for (int i = 0; i < 100; i++) {
+      assertEquals("solo", ring.ownerOf(key(i)));
+    }
+  }
+
+  @Test
+  void emptyRingIsRejected() {
+    assertThrows(IllegalArgumentException.class, () -> HashRing.of(List.of(), VIRTUAL_NODES));
+  }
+
+  private static String key(int i) {
+    return "room:room-" + i;
+  }
+}
@@ -0,0 +1,144 @@
+package io.olmosjt.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Two mesh nodes in one JVM, linked over loopback.
+ */
+class TcpMeshBusTest {
+  private static final long TIMEOUT_SECONDS = 10;
+
+  /** What a node's listener was told, as {@code "<event> <peer>"} or the message received. */
+  private static final class Recorder implements ClusterBus.Listener {
+    final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+
+    @Override
+    public void peerUp(String nodeId) {
+      events.add("up " + nodeId);
+    }
+
+    @Override
+    public void peerConnected(String nodeId) {
+      events.add("connected " + nodeId);
+    }
+
+    @Override
+    public void peerDown(String nodeId) {
+      events.add("down " + nodeId);
+    }
+
+    @Override
+    public void received(String nodeId, ClusterMessage message) {
+      events.add(List.of(nodeId, message));
+    }
+
+    /** Skips events until {@code expected} arrives. */
+    void await(Object expected) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+      while (true) {
+        Object event = events.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        assertNotNull(event, "timed out waiting for " + expected);
+        if (event.equals(expected)) return;
+      }
+    }
+
+    /** @return The next message received, skipping link events. */
+    List<?> nextMessage() throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+      while (true) {
+        Object event = events.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        assertNotNull(event, "timed out waiting for a message");
+        if (event instanceof List<?> message) return message;
+      }
+    }
+  }
+
+  @Test
+  void linkedNodesDeliverInOrderBothWays() throws Exception {
+    int portA = freePort();
+    int portB = freePort();
+    Recorder a = new Recorder();
+    Recorder b = new Recorder();
+    TcpMeshBus busA = new TcpMeshBus(config("a", portA, "b", portB));
+    TcpMeshBus busB = new TcpMeshBus(config("b", portB, "a", portA));
+    try {
+      busA.start(a);
+      busB.start(b);
+      a.await("up b");
+      b.await("up a");
+      assertEquals(1, busA.connectedPeers());
+
+      for (int i = 0; i < 500; i++) {
+        assertEquals(1, busA.send(List.of("b"), new ClusterMessage.RoomHandoff("lobby", i)));
+      }
+      for (int i = 0; i < 500; i++) {
+        assertEquals(List.of("a", new ClusterMessage.RoomHandoff("lobby", i)), b.nextMessage());
+      }
+
+      assertEquals(1, busB.broadcast(new ClusterMessage.PrivateMessage("bob", "alice", "hi", 42)));
+      assertEquals(List.of("b", new ClusterMessage.PrivateMessage("bob", "alice", "hi", 42)), a.nextMessage());
+    } finally {
+      busA.close();
+      busB.close();
+    }
+  }
+
+  @Test
+  void closedPeerIsReportedDownAndNotSentTo() throws Exception {
+    int portA = freePort();
+    int portB = freePort();
+    Recorder a = new Recorder();
+    TcpMeshBus busA = new TcpMeshBus(config("a", portA, "b", portB));
+    TcpMeshBus busB = new TcpMeshBus(config("b", portB, "a", portA));
+    try {
+      busA.start(a);
+      busB.start(new Recorder());
+      a.await("up b");
+      a.await("connected b");
+
+      busB.close();
+      a.await("down b");
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+      while (busA.connectedPeers() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+      assertEquals(0, busA.connectedPeers());
+      assertEquals(0, busA.send(List.of("b"), new ClusterMessage.UserPresence("alice", true)));
+    } finally {
+      busA.close();
+      busB.close();
+    }
+  }
+
+  @Test
+  void unknownNodesAreSkipped() throws Exception {
+    TcpMeshBus bus = new TcpMeshBus(config("a", freePort(), "b", freePort()));
+    try {
+      bus.start(new Recorder());
+      assertEquals(0, bus.send(List.of("nobody"), new ClusterMessage.UserPresence("alice", true)));
+    } finally {
+      bus.close();
+    }
+  }
+
+  private static ClusterConfig config(String nodeId, int port, String peer, int peerPort) {
+    return new ClusterConfig(nodeId, "127.0.0.1", port, Map.of(peer, new InetSocketAddress("127.0.0.1", peerPort)),
+            1024, 16);
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
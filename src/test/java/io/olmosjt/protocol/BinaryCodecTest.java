@@ -0,0 +1,151 @@
+package io.olmosjt.protocol;
+
+import io.olmosjt.command.CommandType;
+import io.olmosjt.message.Message;
+import io.olmosjt.message.MessageType;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Binary records: requests as clients encode them, messages as the server encodes them, history replays
+ * transcoded from text, and the varint length prefix at its size boundaries.
+ */
+class BinaryCodecTest {
+
+  /** One decoded message record. */
+  private record Decoded(int type, int senderId, String recipient, String content) {}
+
+  @Test
+  void encodedRequestParsesBack() {
+    String payload = "#101 pipes | and\nline breaks survive, as does ü";
+    ByteBuffer record = ByteBuffer.wrap(BinaryCodec.encodeRequest(CommandType.MSG, payload));
+    int length = readVarint(record);
+    assertEquals(record.remaining(), length);
+
+    ParsedRequest request = BinaryCodec.parseRequest(record.array(), record.position(), length);
+    assertEquals(CommandType.MSG, request.type());
+    assertEquals(payload, request.payload());
+  }
+
+  @Test
+  void requestWithoutPayloadOrBodyParses() {
+    byte[] quit = BinaryCodec.encodeRequest(CommandType.QUIT, "ignored");
+    ParsedRequest request = BinaryCodec.parseRequest(quit, 1, quit.length - 1);
+    assertEquals(CommandType.QUIT, request.type());
+    assertEquals("", request.payload());
+
+    assertEquals(CommandType.UNKNOWN, BinaryCodec.parseRequest(new byte[0], 0, 0).type());
+    assertEquals(CommandType.UNKNOWN, BinaryCodec.parseRequest(new byte[]{(byte) 0xF0}, 0, 1).type());
+  }
+
+  @Test
+  void varintSizesChangeAtSevenBitBoundaries() {
+    assertVarint(0, 0x00);
+    assertVarint(127, 0x7F);
+    assertVarint(128, 0x80, 0x01);
+    assertVarint(16383, 0xFF, 0x7F);
+    assertVarint(16384, 0x80, 0x80, 0x01);
+    assertVarint(Integer.MAX_VALUE, 0xFF, 0xFF, 0xFF, 0xFF, 0x07);
+  }
+
+  @Test
+  void requestLengthPrefixGrowsWithTheBody() {
+    // The body is the type byte plus the payload.
+    for (int body : new int[]{127, 128, 16383, 16384}) {
+      byte[] record = BinaryCodec.encodeRequest(CommandType.MSG, "x".repeat(body - 1));
+      ByteBuffer buffer = ByteBuffer.wrap(record);
+      assertEquals(body, readVarint(buffer));
+      assertEquals(BinaryCodec.varintSize(body), buffer.position());
+      assertEquals(body, buffer.remaining());
+    }
+  }
+
+  @Test
+  void encodedMessageKeepsItsFields() {
+    Message message = new Message(MessageType.PRIVATE, "alice", "bob", "a|b\nc", Instant.now());
+    List<Decoded> records = decode(BinaryCodec.encode(message, 300));
+    assertEquals(List.of(new Decoded(MessageType.PRIVATE.code(), 300, "bob", "a|b\nc")), records);
+  }
+
+  @Test
+  void transcodedReplayMatchesTheTextLines() {
+    String lines = "USER|alice|#101|hello|world\n"
+            + "not a message\n"
+            + "BOGUS|x|y|z\n"
+            + "SYSTEM|SYSTEM||'bob' has joined\n"
+            + "USER|bob|#101|" + "y".repeat(200) + "\n"
+            + "USER|alice|#101|no newline at the end";
+    BinaryCodec.Transcoded transcoded = BinaryCodec.transcode(lines.getBytes(StandardCharsets.UTF_8));
+
+    int alice = SenderIds.intern("alice").id();
+    int bob = SenderIds.intern("bob").id();
+    int system = SenderIds.intern("SYSTEM").id();
+    assertEquals(List.of(
+            new Decoded(MessageType.USER.code(), alice, "#101", "hello|world"),
+            new Decoded(MessageType.SYSTEM.code(), system, "", "'bob' has joined"),
+            new Decoded(MessageType.USER.code(), bob, "#101", "y".repeat(200)),
+            new Decoded(MessageType.USER.code(), alice, "#101", "no newline at the end")
+    ), decode(transcoded.bytes()));
+
+    List<Integer> senders = new ArrayList<>();
+    for (SenderIds.Sender sender : transcoded.senders()) senders.add(sender.id());
+    assertEquals(List.of(alice, system, bob), senders);
+  }
+
+  @Test
+  void senderDefinitionBindsIdToName() {
+    ByteBuffer record = ByteBuffer.wrap(BinaryCodec.encodeSenderDefinition(200, "zoë"));
+    int length = readVarint(record);
+    assertEquals(record.remaining(), length);
+    assertEquals(BinaryCodec.SENDER_DEFINITION, record.get() & 0xFF);
+    assertEquals(200, readVarint(record));
+    assertEquals("zoë", StandardCharsets.UTF_8.decode(record).toString());
+  }
+
+  private static void assertVarint(int value, int... expected) {
+    assertEquals(expected.length, BinaryCodec.varintSize(value), "size of " + value);
+    byte[] out = new byte[8];
+    assertEquals(expected.length, BinaryCodec.putVarint(out, 0, value));
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], out[i] & 0xFF, "byte " + i + " of " + value);
+    }
+    assertEquals(value, readVarint(ByteBuffer.wrap(out)));
+  }
+
+  private static int readVarint(ByteBuffer buffer) {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = buffer.get() & 0xFF;
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) return value;
+    }
+  }
+
+  private static List<Decoded> decode(byte[] bytes) {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    List<Decoded> records = new ArrayList<>();
+    while (buffer.hasRemaining()) {
+      int end = readVarint(buffer);
+      end += buffer.position();
+      int type = buffer.get() & 0xFF;
+      int sender = readVarint(buffer);
+      byte[] recipient = new byte[readVarint(buffer)];
+      buffer.get(recipient);
+      byte[] content = new byte[end - buffer.position()];
+      buffer.get(content);
+      records.add(new Decoded(type, sender, new String(recipient, StandardCharsets.UTF_8),
+              new String(content, StandardCharsets.UTF_8)));
+    }
+    assertTrue(records.size() > 0);
+    return records;
+  }
+}
@@ -0,0 +1,46 @@
+package io.olmosjt.ratelimit;
+
+import io.olmosjt.command.CommandType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Command and user buckets: a request refused by one must not be charged to the other.
+ */
+class RateLimiterTest {
+
+  private static final long NOW = 1_000_000_000_000L;
+
+  @Test
+  void refusedCommandDoesNotSpendUserBudget() {
+    RateLimiter limiter = new RateLimiter(new RateLimits(
+            Map.of(CommandType.MSG, new RateLimit(1, 2)), new RateLimit(1, 3), null));
+    TokenBuckets connection = limiter.newConnectionBuckets();
+
+    assertEquals(0, limiter.acquire(connection, "alice", CommandType.MSG, NOW));
+    assertEquals(0, limiter.acquire(connection, "alice", CommandType.MSG, NOW));
+    for (int i = 0; i < 10; i++) {
+      assertTrue(limiter.acquire(connection, "alice", CommandType.MSG, NOW) > 0);
+    }
+    // Two permits of three spent; the refused MSGs left the third for other commands.
+    assertEquals(0, limiter.acquire(connection, "alice", CommandType.WHO, NOW));
+    assertTrue(limiter.acquire(connection, "alice", CommandType.WHO, NOW) > 0);
+  }
+
+  @Test
+  void refusedUserDoesNotSpendCommandBudget() {
+    RateLimiter limiter = new RateLimiter(new RateLimits(
+            Map.of(CommandType.MSG, new RateLimit(1, 2)), new RateLimit(1, 1), null));
+    TokenBuckets connection = limiter.newConnectionBuckets();
+
+    assertEquals(0, limiter.acquire(connection, "alice", CommandType.WHO, NOW));
+    assertTrue(limiter.acquire(connection, "alice", CommandType.MSG, NOW) > 0);
+    // A second of refill covers the user bucket; the MSG bucket is still full at two.
+    assertEquals(0, limiter.acquire(connection, "alice", CommandType.MSG, NOW + 1_000_000_000L));
+    assertEquals(0, limiter.acquire(connection, null, CommandType.MSG, NOW + 1_000_000_000L));
+  }
+}
@@ -0,0 +1,65 @@
+package io.olmosjt.room;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Room ID partitioning, which keeps the IDs of rooms created on different cluster nodes apart.
+ */
+class ChatRoomManagerTest {
+
+  @Test
+  void idsStayInTheirPartition() {
+    ChatRoomManager rooms = new ChatRoomManager();
+    rooms.setIdPartition(2, 3);
+
+    int previous = Integer.MIN_VALUE;
+    for (int i = 0; i < 50; i++) {
+      int expected = rooms.nextRoomId();
+      int id = rooms.createRoom("room" + i).getId();
+      assertEquals(expected, id);
+      assertEquals(2, Math.floorMod(id, 3), "id " + id);
+      assertTrue(id > previous);
+      previous = id;
+    }
+  }
+
+  @Test
+  void partitionsNeverShareIds() {
+    int nodes = 4;
+    Set<Integer> seen = new HashSet<>();
+    for (int index = 0; index < nodes; index++) {
+      ChatRoomManager rooms = new ChatRoomManager();
+      rooms.setIdPartition(index, nodes);
+      for (int i = 0; i < 100; i++) {
+        int id = rooms.createRoom("room" + i).getId();
+        assertTrue(seen.add(id), "id " + id + " handed out twice");
+      }
+    }
+  }
+
+  @Test
+  void restoredIdsDoNotBreakThePartition() {
+    ChatRoomManager rooms = new ChatRoomManager();
+    rooms.setIdPartition(1, 2);
+    rooms.restoreRoom(201, "old", HistoryConfig.defaults(), null, false);
+
+    ChatRoom created = rooms.createRoom("new");
+    assertTrue(created.getId() > 201);
+    assertEquals(1, Math.floorMod(created.getId(), 2));
+  }
+
+  @Test
+  void invalidPartitionsAreRejected() {
+    ChatRoomManager rooms = new ChatRoomManager();
+    assertThrows(IllegalArgumentException.class, () -> rooms.setIdPartition(0, 0));
+    assertThrows(IllegalArgumentException.class, () -> rooms.setIdPartition(3, 3));
+    assertThrows(IllegalArgumentException.class, () -> rooms.setIdPartition(-1, 3));
+  }
+}
@@ -0,0 +1,130 @@
+package io.olmosjt.server;
+
+import io.olmosjt.command.CommandType;
+import io.olmosjt.protocol.BinaryCodec;
+import io.olmosjt.protocol.WireFormat;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Splitting binary request records out of a byte stream, however it is chunked, and recovering from
+ * records that are too long or whose length prefix is malformed.
+ */
+class BinaryFramerTest {
+  private static final int MAX_BODY = 20_000;
+
+  /** Collects bodies as strings and counts oversized records. */
+  private static final class Sink implements LineFramer.LineSink {
+    final List<String> bodies = new ArrayList<>();
+    int oversized;
+
+    @Override
+    public void onLine(byte[] buf, int off, int len) {
+      bodies.add(new String(buf, off, len, StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    public void onOversizedLine() {
+      oversized++;
+    }
+
+    @Override
+    public WireFormat inboundFormat() {
+      return WireFormat.BINARY;
+    }
+  }
+
+  @Test
+  void recordsSurviveAnyChunking() {
+    byte[] stream = concat(
+            BinaryCodec.encodeRequest(CommandType.LOGIN, "alice"),
+            BinaryCodec.encodeRequest(CommandType.MSG, "x".repeat(300)),
+            BinaryCodec.encodeRequest(CommandType.QUIT, null));
+    for (int chunk : new int[]{1, 2, 3, 7, 64, stream.length}) {
+      Sink sink = new Sink();
+      BinaryFramer framer = new BinaryFramer(MAX_BODY);
+      for (int off = 0; off < stream.length; off += chunk) {
+        framer.feed(ByteBuffer.wrap(stream, off, Math.min(chunk, stream.length - off)), sink);
+      }
+      assertEquals(List.of(body(CommandType.LOGIN, "alice"), body(CommandType.MSG, "x".repeat(300)),
+              body(CommandType.QUIT, "")), sink.bodies, "chunks of " + chunk);
+      assertEquals(0, sink.oversized);
+    }
+  }
+
+  @Test
+  void bodiesAtVarintBoundariesAreFramed() {
+    for (int size : new int[]{127, 128, 16383, 16384}) {
+      String payload = "p".repeat(size - 1);
+      Sink sink = new Sink();
+      new BinaryFramer(MAX_BODY).feed(ByteBuffer.wrap(BinaryCodec.encodeRequest(CommandType.MSG, payload)), sink);
+      assertEquals(List.of(body(CommandType.MSG, payload)), sink.bodies, "body of " + size);
+    }
+  }
+
+  @Test
+  void oversizedRecordIsSkippedAndTheNextOneFramed() {
+    byte[] stream = concat(
+            BinaryCodec.encodeRequest(CommandType.MSG, "o".repeat(200)),
+            BinaryCodec.encodeRequest(CommandType.MSG, "fits"));
+    Sink sink = new Sink();
+    BinaryFramer framer = new BinaryFramer(100);
+    // Split inside the oversized body, so the skip carries over to the next read.
+    framer.feed(ByteBuffer.wrap(stream, 0, 50), sink);
+    framer.feed(ByteBuffer.wrap(stream, 50, stream.length - 50), sink);
+
+    assertEquals(1, sink.oversized);
+    assertEquals(List.of(body(CommandType.MSG, "fits")), sink.bodies);
+  }
+
+  @Test
+  void recordAtTheLimitIsFramed() {
+    Sink sink = new Sink();
+    new BinaryFramer(100).feed(ByteBuffer.wrap(BinaryCodec.encodeRequest(CommandType.MSG, "l".repeat(99))), sink);
+    assertEquals(0, sink.oversized);
+    assertEquals(1, sink.bodies.size());
+  }
+
+  @Test
+  void fiveByteLengthPrefixDiscardsTheRestOfTheStream() {
+    byte[] malformed = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80};
+    Sink sink = new Sink();
+    BinaryFramer framer = new BinaryFramer(MAX_BODY);
+    framer.feed(ByteBuffer.wrap(concat(BinaryCodec.encodeRequest(CommandType.LOGIN, "before"), malformed,
+            BinaryCodec.encodeRequest(CommandType.MSG, "after"))), sink);
+    framer.feed(ByteBuffer.wrap(BinaryCodec.encodeRequest(CommandType.MSG, "later")), sink);
+
+    assertEquals(1, sink.oversized);
+    assertEquals(List.of(body(CommandType.LOGIN, "before")), sink.bodies);
+  }
+
+  @Test
+  void negativeLengthDiscardsTheRestOfTheStream() {
+    // Five bytes that end the varint but overflow an int.
+    byte[] overflow = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x0F};
+    Sink sink = new Sink();
+    new BinaryFramer(MAX_BODY).feed(ByteBuffer.wrap(concat(overflow,
+            BinaryCodec.encodeRequest(CommandType.MSG, "after"))), sink);
+
+    assertEquals(1, sink.oversized);
+    assertEquals(List.of(), sink.bodies);
+  }
+
+  private static String body(CommandType type, String payload) {
+    return (char) type.code() + payload;
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) out.writeBytes(part);
+    return out.toByteArray();
+  }
+}
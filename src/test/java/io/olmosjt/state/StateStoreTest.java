@@ -0,0 +1,236 @@
+package io.olmosjt.state;
+
+import io.olmosjt.room.ChatRoom;
+import io.olmosjt.room.ChatRoomManager;
+import io.olmosjt.room.HistoryConfig;
+import io.olmosjt.store.MessageStore;
+import io.olmosjt.user.UserRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Snapshot and journal recovery: clean restarts, crashes before a snapshot, damaged files and old formats.
+ */
+class StateStoreTest {
+
+  @TempDir
+  Path directory;
+
+  /** Rooms and users recovered from one directory. */
+  private record Restored(StateStore state, ChatRoomManager rooms, UserRegistry users) implements AutoCloseable {
+    ChatRoom room(int id) {
+      return rooms.getRoom(id).orElseThrow();
+    }
+
+    @Override
+    public void close() {
+      state.close();
+    }
+  }
+
+  @Test
+  void snapshotRestoresRoomsUsersAndRoomIdCounter() throws IOException {
+    int lobby;
+    try (Restored live = recover(directory)) {
+      lobby = live.rooms().createRoom("lobby", HistoryConfig.defaults(), "alice").getId();
+      live.rooms().createRoom("random");
+      live.rooms().setPinned(lobby, true);
+      live.users().register("alice");
+      live.users().register("bob");
+    }
+
+    try (Restored restored = recover(directory)) {
+      assertEquals(2, restored.rooms().roomCount());
+      assertEquals("alice", restored.room(lobby).owner());
+      assertTrue(restored.room(lobby).isPinned());
+      assertEquals(2, restored.users().size());
+      assertTrue(restored.rooms().createRoom("next").getId() > lobby + 1);
+    }
+  }
+
+  @Test
+  void journalIsReplayedAfterCrashBeforeSnapshot() throws IOException {
+    Path live = directory.resolve("live");
+    try (Restored state = recover(live)) {
+      int doomed = state.rooms().createRoom("doomed").getId();
+      state.rooms().createRoom("kept");
+      state.rooms().removeRoom(doomed);
+      state.state().roomRemoved(doomed); // as the reaper journals it
+      state.users().register("alice");
+      state.users().rename("alice", "alicia");
+      // Copy the files as they are now, as if the process died here.
+      copy(live, directory.resolve("crashed"));
+    }
+
+    try (Restored restored = recover(directory.resolve("crashed"))) {
+      assertEquals(List.of("kept"), names(restored.rooms()));
+      assertTrue(restored.users().find("alicia").isPresent());
+      assertFalse(restored.users().find("alice").isPresent());
+    }
+  }
+
+  @Test
+  void replayingJournalRecordsTwiceChangesNothing() throws IOException {
+    Path live = directory.resolve("live");
+    int second;
+    try (Restored state = recover(live)) {
+      state.rooms().createRoom("first");
+      second = state.rooms().createRoom("second").getId();
+      state.rooms().setPinned(second, true);
+      state.users().register("alice");
+      copy(live, directory.resolve("crashed"));
+    }
+    Path journal = journals(directory.resolve("crashed")).getLast();
+    Files.write(journal, Files.readAllBytes(journal), StandardOpenOption.APPEND);
+
+    try (Restored restored = recover(directory.resolve("crashed"))) {
+      assertEquals(List.of("first", "second"), names(restored.rooms()));
+      assertTrue(restored.room(second).isPinned());
+      assertEquals(1, restored.users().size());
+      assertTrue(restored.rooms().createRoom("third").getId() > second);
+    }
+  }
+
+  @Test
+  void tornJournalTailIsIgnored() throws IOException {
+    Path live = directory.resolve("live");
+    try (Restored state = recover(live)) {
+      state.rooms().createRoom("complete");
+      copy(live, directory.resolve("crashed"));
+    }
+    // Length and checksum of a record whose body never reached the disk.
+    Files.write(journals(directory.resolve("crashed")).getLast(), new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 5},
+            StandardOpenOption.APPEND);
+
+    try (Restored restored = recover(directory.resolve("crashed"))) {
+      assertEquals(List.of("complete"), names(restored.rooms()));
+    }
+  }
+
+  @Test
+  void journalRecordWithBadChecksumEndsReplay() throws IOException {
+    Path live = directory.resolve("live");
+    try (Restored state = recover(live)) {
+      state.rooms().createRoom("good");
+      state.rooms().createRoom("damaged");
+      copy(live, directory.resolve("crashed"));
+    }
+    Path journal = journals(directory.resolve("crashed")).getLast();
+    byte[] bytes = Files.readAllBytes(journal);
+    bytes[bytes.length - 1] ^= 1; // last field of the second record
+    Files.write(journal, bytes);
+
+    try (Restored restored = recover(directory.resolve("crashed"))) {
+      assertEquals(List.of("good"), names(restored.rooms()));
+    }
+  }
+
+  @Test
+  void corruptSnapshotFailsRecovery() throws IOException {
+    try (Restored live = recover(directory)) {
+      live.rooms().createRoom("lobby");
+    }
+    Path snapshot = directory.resolve("state.snap");
+    byte[] bytes = Files.readAllBytes(snapshot);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(snapshot, bytes);
+
+    StateStore state = StateStore.open(config(directory));
+    assertThrows(IOException.class, () -> state.recover(new ChatRoomManager(), new UserRegistry()));
+  }
+
+  @Test
+  void versionOneSnapshotIsUpgraded() throws IOException {
+    HistoryConfig custom = new HistoryConfig(50, 64 * 1024, 10);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0x54545331); // "TTS1"
+    out.writeInt(1); // journal generation
+    out.writeInt(110); // next room id
+    out.writeInt(2);
+    writeRoomV1(out, 100, "general", HistoryConfig.defaults());
+    writeRoomV1(out, 105, "archive", custom);
+    out.writeInt(1);
+    writeUtf(out, "alice");
+    out.writeLong(1_700_000_000_000L);
+    CRC32C crc = new CRC32C();
+    crc.update(bytes.toByteArray());
+    out.writeInt((int) crc.getValue());
+    Files.write(directory.resolve("state.snap"), bytes.toByteArray());
+
+    try (Restored restored = recover(directory)) {
+      assertEquals(List.of("archive", "general"), names(restored.rooms()));
+      assertNull(restored.room(105).owner());
+      assertFalse(restored.room(105).isPinned());
+      assertEquals(custom, restored.room(105).historyConfig());
+      assertEquals(1_700_000_000_000L, restored.users().find("alice").orElseThrow().joinedAt().toEpochMilli());
+      assertEquals(110, restored.rooms().createRoom("new").getId());
+    }
+    // Closing wrote a current snapshot, which must read back the same.
+    try (Restored upgraded = recover(directory)) {
+      assertEquals(List.of("archive", "general", "new"), names(upgraded.rooms()));
+      assertEquals(custom, upgraded.room(105).historyConfig());
+    }
+  }
+
+  private static Restored recover(Path directory) throws IOException {
+    ChatRoomManager rooms = new ChatRoomManager(HistoryConfig.defaults(), MessageStore.NONE);
+    UserRegistry users = new UserRegistry();
+    StateStore state = StateStore.open(config(directory));
+    state.recover(rooms, users);
+    return new Restored(state, rooms, users);
+  }
+
+  private static StateConfig config(Path directory) {
+    return new StateConfig(directory, 50_000, Duration.ofMinutes(10), Duration.ofMillis(10));
+  }
+
+  private static List<String> names(ChatRoomManager rooms) {
+    return rooms.allRooms().stream().map(ChatRoom::getName).sorted().toList();
+  }
+
+  private static List<Path> journals(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(p -> p.getFileName().toString().startsWith("journal-")).sorted().toList();
+    }
+  }
+
+  private static void copy(Path from, Path to) throws IOException {
+    Files.createDirectories(to);
+    try (Stream<Path> files = Files.list(from)) {
+      for (Path file : files.toList()) Files.copy(file, to.resolve(file.getFileName()));
+    }
+  }
+
+  private static void writeRoomV1(DataOutputStream out, int id, String name, HistoryConfig history) throws IOException {
+    out.writeInt(id);
+    writeUtf(out, name);
+    out.writeInt(history.maxMessages());
+    out.writeInt(history.maxBytes());
+    out.writeInt(history.replayCount());
+  }
+
+  private static void writeUtf(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+}
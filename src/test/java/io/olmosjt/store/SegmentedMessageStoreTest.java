@@ -0,0 +1,240 @@
+package io.olmosjt.store;
+
+import io.olmosjt.message.Message;
+import io.olmosjt.protocol.MessageEncoder;
+import io.olmosjt.room.ChatRoom;
+import io.olmosjt.room.ChatRoomManager;
+import io.olmosjt.room.HistoryConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recovery of the message log after clean shutdowns and after the damage a crash can leave behind.
+ */
+class SegmentedMessageStoreTest {
+  private static final int ROOM = 100;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void messagesSurviveReopen() {
+    write(1, 10);
+
+    try (SegmentedMessageStore store = open()) {
+      assertEquals(10, store.lastSequence(ROOM));
+      List<StoredMessage> read = store.read(ROOM, 1, 100);
+      assertEquals(10, read.size());
+      assertEquals(1, read.get(0).sequence());
+      assertTrue(read.get(9).text().endsWith("|message 10"));
+    }
+  }
+
+  @Test
+  void tornTailIsTruncatedAndOverwritten() throws IOException {
+    write(1, 5);
+    int end = endOfRecords();
+    // A record whose header made it to disk but whose body did not.
+    ByteBuffer torn = ByteBuffer.allocate(Segment.HEADER_BYTES + 6);
+    torn.putInt(Segment.BODY_FIXED_BYTES + 40).putInt(0x12345678).put(new byte[]{1, 2, 3, 4, 5, 6}).flip();
+    writeAt(end, torn);
+
+    write(6, 7);
+
+    try (SegmentedMessageStore store = open()) {
+      assertEquals(7, store.lastSequence(ROOM));
+      List<StoredMessage> read = store.read(ROOM, 1, 100);
+      assertEquals(7, read.size());
+      for (int i = 0; i < read.size(); i++) {
+        assertEquals(i + 1, read.get(i).sequence());
+        assertTrue(read.get(i).text().endsWith("|message " + (i + 1)));
+      }
+    }
+  }
+
+  @Test
+  void recordsAfterBadChecksumAreDiscarded() throws IOException {
+    write(1, 5);
+    int third = recordOffsets().get(2);
+    // Flip one byte of the third record's line.
+    writeAt(third + Segment.OVERHEAD, ByteBuffer.wrap(new byte[]{'X'}));
+
+    try (SegmentedMessageStore store = open()) {
+      assertEquals(2, store.lastSequence(ROOM));
+      assertEquals(2, store.read(ROOM, 1, 100).size());
+    }
+    // The new third record is as long as the damaged one, so it ends where the stale fourth one began.
+    // Recovery zeroed everything after the last intact record, so the stale ones must not come back.
+    write(3, 3);
+    try (SegmentedMessageStore store = open()) {
+      assertEquals(3, store.lastSequence(ROOM));
+      List<StoredMessage> read = store.read(ROOM, 1, 100);
+      assertEquals(3, read.size());
+      assertTrue(read.get(2).text().endsWith("|message 3"));
+    }
+  }
+
+  @Test
+  void tornTailRecordIsZeroedOnReopen() throws IOException {
+    write(1, 3);
+    int end = endOfRecords();
+    ByteBuffer torn = ByteBuffer.allocate(Segment.HEADER_BYTES + 6);
+    torn.putInt(Segment.BODY_FIXED_BYTES + 40).putInt(0x12345678).put(new byte[]{1, 2, 3, 4, 5, 6}).flip();
+    writeAt(end, torn);
+
+    try (SegmentedMessageStore store = open()) {
+      assertEquals(3, store.lastSequence(ROOM));
+    }
+    assertTrue(isZero(end, end + torn.capacity()));
+  }
+
+  @Test
+  void tailRecordWithBadChecksumIsZeroedOnReopen() throws IOException {
+    write(1, 3);
+    int last = recordOffsets().getLast();
+    int end = endOfRecords();
+    writeAt(last + Segment.OVERHEAD, ByteBuffer.wrap(new byte[]{'X'}));
+
+    try (SegmentedMessageStore store = open()) {
+      assertEquals(2, store.lastSequence(ROOM));
+      assertEquals(2, store.read(ROOM, 1, 100).size());
+    }
+    assertTrue(isZero(last, end));
+  }
+
+  @Test
+  void sequenceLookupSpansSegmentRolls() {
+    int count = 3000; // about 80 bytes each, so several 64 KiB segments
+    write(1, count);
+
+    try (SegmentedMessageStore store = open()) {
+      assertTrue(store.segmentCount() > 2);
+      assertEquals(count, store.lastSequence(ROOM));
+      List<StoredMessage> all = store.read(ROOM, 1, count);
+      assertEquals(count, all.size());
+      for (int i = 0; i < count; i++) assertEquals(i + 1, all.get(i).sequence());
+      for (int from = 1; from < count; from += 97) {
+        List<StoredMessage> range = store.read(ROOM, from, 50);
+        assertEquals(Math.min(50, count - from + 1), range.size());
+        assertEquals(from, range.get(0).sequence());
+        assertTrue(range.get(0).text().endsWith("|message " + from));
+      }
+    }
+  }
+
+  @Test
+  void reusedRoomIdContinuesAfterStoredSequences() {
+    try (SegmentedMessageStore store = open()) {
+      ChatRoom before = new ChatRoomManager(HistoryConfig.defaults(), store).createRoom("before");
+      for (int i = 1; i <= 3; i++) before.broadcast(Message.userMsg("alice", before.getId(), "before " + i));
+      store.sync();
+
+      // A restart that lost the room ID counter hands out the same ID again.
+      ChatRoom after = new ChatRoomManager(HistoryConfig.defaults(), store).createRoom("after");
+      assertEquals(before.getId(), after.getId());
+      assertEquals(0, after.historySize());
+      after.broadcast(Message.userMsg("bob", after.getId(), "after 1"));
+      store.sync();
+
+      List<StoredMessage> stored = store.read(after.getId(), 1, 100);
+      assertEquals(4, stored.size());
+      for (int i = 0; i < stored.size(); i++) assertEquals(i + 1, stored.get(i).sequence());
+      assertTrue(stored.get(3).text().endsWith("|after 1"));
+    }
+  }
+
+  @Test
+  void expiredSegmentsAreDroppedWithoutNewWrites() throws InterruptedException {
+    try (SegmentedMessageStore store = open(Duration.ofMillis(200))) {
+      store.append(ROOM, 1, MessageEncoder.encodeFrame(Message.userMsg("alice", ROOM, "soon gone")));
+      store.sync();
+      assertTrue(Files.exists(Segment.fileName(directory, 1)));
+
+      long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+      while (Files.exists(Segment.fileName(directory, 1)) && System.nanoTime() < deadline) Thread.sleep(20);
+      assertFalse(Files.exists(Segment.fileName(directory, 1)));
+      assertEquals(1, store.segmentCount());
+      assertEquals(0, store.read(ROOM, 1, 10).size());
+    }
+  }
+
+  @Test
+  void privateMessagesContinueNumberingAfterReopen() {
+    try (SegmentedMessageStore store = open()) {
+      store.appendPrivate(MessageEncoder.encodeFrame(Message.privateMsg("alice", "bob", "first")));
+      store.sync();
+    }
+    try (SegmentedMessageStore store = open()) {
+      store.appendPrivate(MessageEncoder.encodeFrame(Message.privateMsg("alice", "bob", "second")));
+      store.sync();
+      assertEquals(2, store.lastSequence(MessageStore.PRIVATE_STREAM));
+    }
+  }
+
+  private SegmentedMessageStore open() {
+    return open(Duration.ofDays(1));
+  }
+
+  private SegmentedMessageStore open(Duration retention) {
+    StoreConfig config = new StoreConfig(directory, 64 * 1024, 16, retention, Duration.ZERO, 8192, 2);
+    try {
+      return SegmentedMessageStore.open(config);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private void write(int fromSequence, int toSequence) {
+    try (SegmentedMessageStore store = open()) {
+      for (int sequence = fromSequence; sequence <= toSequence; sequence++) {
+        store.append(ROOM, sequence, MessageEncoder.encodeFrame(Message.userMsg("alice", ROOM, "message " + sequence)));
+      }
+      store.sync();
+    }
+  }
+
+  private boolean isZero(int from, int to) throws IOException {
+    byte[] segment = Files.readAllBytes(Segment.fileName(directory, 1));
+    for (int i = from; i < to; i++) {
+      if (segment[i] != 0) return false;
+    }
+    return true;
+  }
+
+  private List<Integer> recordOffsets() throws IOException {
+    ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(Segment.fileName(directory, 1)));
+    List<Integer> offsets = new ArrayList<>();
+    int offset = 0;
+    while (segment.getInt(offset) != 0) {
+      offsets.add(offset);
+      offset += Segment.HEADER_BYTES + segment.getInt(offset);
+    }
+    return offsets;
+  }
+
+  private int endOfRecords() throws IOException {
+    ByteBuffer segment = ByteBuffer.wrap(Files.readAllBytes(Segment.fileName(directory, 1)));
+    int last = recordOffsets().getLast();
+    return last + Segment.HEADER_BYTES + segment.getInt(last);
+  }
+
+  private void writeAt(int offset, ByteBuffer bytes) throws IOException {
+    try (FileChannel channel = FileChannel.open(Segment.fileName(directory, 1), StandardOpenOption.WRITE)) {
+      channel.write(bytes, offset);
+    }
+  }
+}